@@ -25,6 +25,7 @@ import com.alibaba.otter.canal.client.adapter.rdb.service.RdbEtlService;
 import com.alibaba.otter.canal.client.adapter.rdb.service.RdbMirrorDbSyncService;
 import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SyncUtil;
+import com.alibaba.otter.canal.client.adapter.rdb.support.UpsertDialect;
 import com.alibaba.otter.canal.client.adapter.support.*;
 
 /**
@@ -123,6 +124,14 @@ public class RdbAdapter implements OuterAdapter {
         dataSource.setTimeBetweenEvictionRunsMillis(60000);
         dataSource.setMinEvictableIdleTimeMillis(300000);
         dataSource.setUseUnfairLock(true);
+        if (StringUtils.startsWith(properties.get("jdbc.url"), "jdbc:mysql")
+            && !StringUtils.contains(properties.get("jdbc.url"), "rewriteBatchedStatements")) {
+            // 批量执行时由驱动改写为多值insert
+            dataSource.addConnectionProperty("rewriteBatchedStatements", "true");
+        } else if (StringUtils.startsWith(properties.get("jdbc.url"), "jdbc:postgresql")
+                   && !StringUtils.contains(properties.get("jdbc.url"), "reWriteBatchedInserts")) {
+            dataSource.addConnectionProperty("reWriteBatchedInserts", "true");
+        }
         // List<String> array = new ArrayList<>();
         // array.add("set names utf8mb4;");
         // dataSource.setConnectionInitSqls(array);
@@ -141,6 +150,18 @@ public class RdbAdapter implements OuterAdapter {
         rdbSyncService = new RdbSyncService(dataSource,
             threads != null ? Integer.valueOf(threads) : null,
             skipDupException);
+        String batchSize = properties.get("batchSize");
+        if (batchSize != null) {
+            rdbSyncService.setBatchSize(Integer.valueOf(batchSize));
+        }
+        if (BooleanUtils.toBoolean(properties.get("upsert"))) {
+            UpsertDialect upsertDialect = UpsertDialect.of(properties.get("jdbc.url"));
+            if (upsertDialect == null) {
+                logger.warn("Upsert is not supported for target: {}, use insert/update instead",
+                    properties.get("jdbc.url"));
+            }
+            rdbSyncService.setUpsertDialect(upsertDialect);
+        }
 
         rdbMirrorDbSyncService = new RdbMirrorDbSyncService(mirrorDbConfigCache,
             dataSource,
@@ -294,6 +315,10 @@ public class RdbAdapter implements OuterAdapter {
             rdbSyncService.close();
         }
 
+        if (rdbMirrorDbSyncService != null) {
+            rdbMirrorDbSyncService.close();
+        }
+
         if (dataSource != null) {
             dataSource.close();
         }
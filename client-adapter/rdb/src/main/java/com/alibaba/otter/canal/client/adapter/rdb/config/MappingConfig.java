@@ -5,6 +5,8 @@ import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.alibaba.otter.canal.client.adapter.rdb.support.SqlTemplate;
+
 /**
  * RDB表映射配置
  *
@@ -103,6 +105,8 @@ public class MappingConfig {
 
         private Map<String, String> allMapColumns;
 
+        private volatile SqlTemplate sqlTemplate;                        // 预先生成的sql模板，DDL之后重建
+
         public boolean getMirrorDb() {
             return mirrorDb;
         }
@@ -205,5 +209,13 @@ public class MappingConfig {
         public void setAllMapColumns(Map<String, String> allMapColumns) {
             this.allMapColumns = allMapColumns;
         }
+
+        public SqlTemplate getSqlTemplate() {
+            return sqlTemplate;
+        }
+
+        public void setSqlTemplate(SqlTemplate sqlTemplate) {
+            this.sqlTemplate = sqlTemplate;
+        }
     }
 }
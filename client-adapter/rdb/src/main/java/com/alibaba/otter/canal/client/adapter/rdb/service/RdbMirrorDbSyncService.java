@@ -92,21 +92,9 @@ public class RdbMirrorDbSyncService {
                     return false;
                 }
 
-                if (config.getConcurrent()) {
-                    List<SingleDml> singleDmls = SingleDml.dml2SingleDmls(dml);
-                    singleDmls.forEach(singleDml -> {
-                        int hash = rdbSyncService.pkHash(config.getDbMapping(), singleDml.getData());
-                        RdbSyncService.SyncItem syncItem = new RdbSyncService.SyncItem(config, singleDml);
-                        rdbSyncService.getDmlsPartition()[hash].add(syncItem);
-                    });
-                } else {
-                    int hash = 0;
-                    List<SingleDml> singleDmls = SingleDml.dml2SingleDmls(dml);
-                    singleDmls.forEach(singleDml -> {
-                        RdbSyncService.SyncItem syncItem = new RdbSyncService.SyncItem(config, singleDml);
-                        rdbSyncService.getDmlsPartition()[hash].add(syncItem);
-                    });
-                }
+                List<SingleDml> singleDmls = SingleDml.dml2SingleDmls(dml);
+                singleDmls.forEach(singleDml -> rdbSyncService.getSyncItems()
+                    .add(new RdbSyncService.SyncItem(config, singleDml)));
                 return true;
             });
         }
@@ -162,4 +150,8 @@ public class RdbMirrorDbSyncService {
             throw new RuntimeException(e);
         }
     }
+
+    public void close() {
+        rdbSyncService.close();
+    }
 }
@@ -4,11 +4,16 @@ import java.sql.Connection;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -27,7 +32,10 @@ import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
 import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig.DbMapping;
 import com.alibaba.otter.canal.client.adapter.rdb.support.BatchExecutor;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SingleDml;
+import com.alibaba.otter.canal.client.adapter.rdb.support.SqlTemplate;
+import com.alibaba.otter.canal.client.adapter.rdb.support.SqlTemplate.BoundSql;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SyncUtil;
+import com.alibaba.otter.canal.client.adapter.rdb.support.UpsertDialect;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
 import com.alibaba.otter.canal.client.adapter.support.Util;
 
@@ -46,13 +54,14 @@ public class RdbSyncService {
 
     private int                               threads = 3;
     private boolean                           skipDupException;
+    private UpsertDialect                     upsertDialect;                                          // 不为空时insert/update以upsert的方式执行
 
-    private List<SyncItem>[]                  dmlsPartition;
+    private List<SyncItem>                    syncItems;                                              // 按到达顺序排列的待同步变更
     private BatchExecutor[]                   batchExecutors;
     private ExecutorService[]                 executorThreads;
 
-    public List<SyncItem>[] getDmlsPartition() {
-        return dmlsPartition;
+    public List<SyncItem> getSyncItems() {
+        return syncItems;
     }
 
     public Map<String, Map<String, Integer>> getColumnsTypeCache() {
@@ -63,7 +72,6 @@ public class RdbSyncService {
         this(dataSource, threads, new ConcurrentHashMap<>(), skipDupException);
     }
 
-    @SuppressWarnings("unchecked")
     public RdbSyncService(DataSource dataSource, Integer threads, Map<String, Map<String, Integer>> columnsTypeCache,
                           boolean skipDupException){
         this.columnsTypeCache = columnsTypeCache;
@@ -72,11 +80,10 @@ public class RdbSyncService {
             if (threads != null) {
                 this.threads = threads;
             }
-            this.dmlsPartition = new List[this.threads];
+            this.syncItems = new ArrayList<>();
             this.batchExecutors = new BatchExecutor[this.threads];
             this.executorThreads = new ExecutorService[this.threads];
             for (int i = 0; i < this.threads; i++) {
-                dmlsPartition[i] = new ArrayList<>();
                 batchExecutors[i] = new BatchExecutor(dataSource);
                 executorThreads[i] = Executors.newSingleThreadExecutor();
             }
@@ -102,19 +109,28 @@ public class RdbSyncService {
                 }
             }
             if (toExecute) {
+                // 合并和分组都依赖变更的原始顺序(truncate、修改主键的update)
+                Queue<List<SyncItem>> chunks = new ConcurrentLinkedQueue<>(chunk(schedule(merge(syncItems,
+                    upsertDialect != null)), threads));
+
                 List<Future<Boolean>> futures = new ArrayList<>();
                 for (int i = 0; i < threads; i++) {
                     int j = i;
                     futures.add(executorThreads[i].submit(() -> {
                         try {
-                            dmlsPartition[j].forEach(syncItem -> sync(batchExecutors[j],
-                                syncItem.config,
-                                syncItem.singleDml));
-                            dmlsPartition[j].clear();
+                            List<SyncItem> chunk;
+                            while ((chunk = chunks.poll()) != null) {
+                                chunk.forEach(syncItem -> sync(batchExecutors[j], syncItem.config, syncItem.singleDml));
+                            }
                             batchExecutors[j].commit();
                             return true;
                         } catch (Throwable e) {
-                            batchExecutors[j].rollback();
+                            // 出错之后连接状态不确定，回滚后释放连接及缓存的statement，下一批次重新获取
+                            try {
+                                batchExecutors[j].rollback();
+                            } finally {
+                                batchExecutors[j].close();
+                            }
                             throw new RuntimeException(e);
                         }
                     }));
@@ -129,11 +145,7 @@ public class RdbSyncService {
                 });
             }
         } finally {
-            for (BatchExecutor batchExecutor : batchExecutors) {
-                if (batchExecutor != null) {
-                    batchExecutor.close();
-                }
-            }
+            syncItems.clear();
         }
     }
 
@@ -148,19 +160,20 @@ public class RdbSyncService {
             if (dml.getIsDdl() != null && dml.getIsDdl() && StringUtils.isNotEmpty(dml.getSql())) {
                 // DDL
             columnsTypeCache.remove(dml.getDestination() + "." + dml.getDatabase() + "." + dml.getTable());
+            Map<String, MappingConfig> configMap = getConfigMap(mappingConfig, dml, envProperties);
+            if (configMap != null) {
+                // 表结构变化，重新生成字段映射和sql模板
+                for (MappingConfig config : configMap.values()) {
+                    if (config.getDbMapping().getMapAll()) {
+                        config.getDbMapping().setAllMapColumns(null);
+                    }
+                    config.getDbMapping().setSqlTemplate(null);
+                }
+            }
             return false;
         } else {
             // DML
-            String destination = StringUtils.trimToEmpty(dml.getDestination());
-            String groupId = StringUtils.trimToEmpty(dml.getGroupId());
-            String database = dml.getDatabase();
-            String table = dml.getTable();
-            Map<String, MappingConfig> configMap;
-            if (envProperties != null && !"tcp".equalsIgnoreCase(envProperties.getProperty("canal.conf.mode"))) {
-                configMap = mappingConfig.get(destination + "-" + groupId + "_" + database + "-" + table);
-            } else {
-                configMap = mappingConfig.get(destination + "_" + database + "-" + table);
-            }
+            Map<String, MappingConfig> configMap = getConfigMap(mappingConfig, dml, envProperties);
 
             if (configMap == null) {
                 return false;
@@ -171,27 +184,27 @@ public class RdbSyncService {
             }
 
             for (MappingConfig config : configMap.values()) {
-                if (config.getConcurrent()) {
-                    List<SingleDml> singleDmls = SingleDml.dml2SingleDmls(dml);
-                    singleDmls.forEach(singleDml -> {
-                        int hash = pkHash(config.getDbMapping(), singleDml.getData());
-                        SyncItem syncItem = new SyncItem(config, singleDml);
-                        dmlsPartition[hash].add(syncItem);
-                    });
-                } else {
-                    int hash = 0;
-                    List<SingleDml> singleDmls = SingleDml.dml2SingleDmls(dml);
-                    singleDmls.forEach(singleDml -> {
-                        SyncItem syncItem = new SyncItem(config, singleDml);
-                        dmlsPartition[hash].add(syncItem);
-                    });
-                }
+                List<SingleDml> singleDmls = SingleDml.dml2SingleDmls(dml);
+                singleDmls.forEach(singleDml -> syncItems.add(new SyncItem(config, singleDml)));
             }
             return true;
         }
     }   );
     }
 
+    private Map<String, MappingConfig> getConfigMap(Map<String, Map<String, MappingConfig>> mappingConfig, Dml dml,
+                                                    Properties envProperties) {
+        String destination = StringUtils.trimToEmpty(dml.getDestination());
+        String groupId = StringUtils.trimToEmpty(dml.getGroupId());
+        String database = dml.getDatabase();
+        String table = dml.getTable();
+        if (envProperties != null && !"tcp".equalsIgnoreCase(envProperties.getProperty("canal.conf.mode"))) {
+            return mappingConfig.get(destination + "-" + groupId + "_" + database + "-" + table);
+        } else {
+            return mappingConfig.get(destination + "_" + database + "-" + table);
+        }
+    }
+
     /**
      * 单条 dml 同步
      *
@@ -233,43 +246,23 @@ public class RdbSyncService {
             return;
         }
 
-        DbMapping dbMapping = config.getDbMapping();
-
-        Map<String, String> columnsMap = SyncUtil.getColumnsMap(dbMapping, data);
-
-        StringBuilder insertSql = new StringBuilder();
-        insertSql.append("INSERT INTO ").append(SyncUtil.getDbTableName(dbMapping)).append(" (");
-
-        columnsMap.forEach((targetColumnName, srcColumnName) -> insertSql.append(targetColumnName).append(","));
-        int len = insertSql.length();
-        insertSql.delete(len - 1, len).append(") VALUES (");
-        int mapLen = columnsMap.size();
-        for (int i = 0; i < mapLen; i++) {
-            insertSql.append("?,");
+        if (upsertDialect != null) {
+            upsert(batchExecutor, config, dml);
+            return;
         }
-        len = insertSql.length();
-        insertSql.delete(len - 1, len).append(")");
-
-        Map<String, Integer> ctype = getTargetColumnType(batchExecutor.getConn(), config);
-
-        List<Map<String, ?>> values = new ArrayList<>();
-        for (Map.Entry<String, String> entry : columnsMap.entrySet()) {
-            String targetColumnName = entry.getKey();
-            String srcColumnName = entry.getValue();
-            if (srcColumnName == null) {
-                srcColumnName = Util.cleanColumn(targetColumnName);
-            }
 
-            Integer type = ctype.get(Util.cleanColumn(targetColumnName).toLowerCase());
-            if (type == null) {
-                throw new RuntimeException("Target column: " + targetColumnName + " not matched");
+        BoundSql insertSql = getSqlTemplate(batchExecutor, config, data).insert(data);
+        if (!skipDupException) {
+            batchExecutor.addBatch(insertSql);
+            if (logger.isTraceEnabled()) {
+                logger.trace("Insert into target table, sql: {}", insertSql.getSql());
             }
-            Object value = data.get(srcColumnName);
-            BatchExecutor.setValue(values, type, value);
+            return;
         }
 
+        // 需要忽略主键冲突时逐条执行，批量执行时无法区分冲突的行
         try {
-            batchExecutor.execute(insertSql.toString(), values);
+            batchExecutor.execute(insertSql);
         } catch (SQLException e) {
             if (skipDupException
                 && (e.getMessage().contains("Duplicate entry") || e.getMessage().startsWith("ORA-00001: 违反唯一约束条件"))) {
@@ -280,7 +273,7 @@ public class RdbSyncService {
             }
         }
         if (logger.isTraceEnabled()) {
-            logger.trace("Insert into target table, sql: {}", insertSql);
+            logger.trace("Insert into target table, sql: {}", insertSql.getSql());
         }
 
     }
@@ -302,47 +295,35 @@ public class RdbSyncService {
             return;
         }
 
-        DbMapping dbMapping = config.getDbMapping();
-
-        Map<String, String> columnsMap = SyncUtil.getColumnsMap(dbMapping, data);
-
-        Map<String, Integer> ctype = getTargetColumnType(batchExecutor.getConn(), config);
-
-        StringBuilder updateSql = new StringBuilder();
-        updateSql.append("UPDATE ").append(SyncUtil.getDbTableName(dbMapping)).append(" SET ");
-        List<Map<String, ?>> values = new ArrayList<>();
-        boolean hasMatched = false;
-        for (String srcColumnName : old.keySet()) {
-            List<String> targetColumnNames = new ArrayList<>();
-            columnsMap.forEach((targetColumn, srcColumn) -> {
-                if (srcColumnName.equalsIgnoreCase(srcColumn)) {
-                    targetColumnNames.add(targetColumn);
-                }
-            });
-            if (!targetColumnNames.isEmpty()) {
-                hasMatched = true;
-                for (String targetColumnName : targetColumnNames) {
-                    updateSql.append(targetColumnName).append("=?, ");
-                    Integer type = ctype.get(Util.cleanColumn(targetColumnName).toLowerCase());
-                    if (type == null) {
-                        throw new RuntimeException("Target column: " + targetColumnName + " not matched");
-                    }
-                    BatchExecutor.setValue(values, type, data.get(srcColumnName));
-                }
-            }
+        if (upsertDialect != null && !isPkChanged(config, dml)) {
+            // data为完整的行数据，目标行不存在时也能补齐
+            upsert(batchExecutor, config, dml);
+            return;
         }
-        if (!hasMatched) {
+
+        BoundSql updateSql = getSqlTemplate(batchExecutor, config, data).update(data, old);
+        if (updateSql == null) {
             logger.warn("Did not matched any columns to update ");
             return;
         }
-        int len = updateSql.length();
-        updateSql.delete(len - 2, len).append(" WHERE ");
+        batchExecutor.addBatch(updateSql);
+        if (logger.isTraceEnabled()) {
+            logger.trace("Update target table, sql: {}", updateSql.getSql());
+        }
+    }
 
-        // 拼接主键
-        appendCondition(dbMapping, updateSql, ctype, values, data, old);
-        batchExecutor.execute(updateSql.toString(), values);
+    /**
+     * upsert操作，目标行存在时更新，不存在时插入
+     *
+     * @param config 配置项
+     * @param dml DML数据
+     */
+    private void upsert(BatchExecutor batchExecutor, MappingConfig config, SingleDml dml) throws SQLException {
+        Map<String, Object> data = dml.getData();
+        BoundSql upsertSql = getSqlTemplate(batchExecutor, config, data).upsert(data);
+        batchExecutor.addBatch(upsertSql);
         if (logger.isTraceEnabled()) {
-            logger.trace("Update target table, sql: {}", updateSql);
+            logger.trace("Upsert into target table, sql: {}", upsertSql.getSql());
         }
     }
 
@@ -358,19 +339,10 @@ public class RdbSyncService {
             return;
         }
 
-        DbMapping dbMapping = config.getDbMapping();
-
-        Map<String, Integer> ctype = getTargetColumnType(batchExecutor.getConn(), config);
-
-        StringBuilder sql = new StringBuilder();
-        sql.append("DELETE FROM ").append(SyncUtil.getDbTableName(dbMapping)).append(" WHERE ");
-
-        List<Map<String, ?>> values = new ArrayList<>();
-        // 拼接主键
-        appendCondition(dbMapping, sql, ctype, values, data);
-        batchExecutor.execute(sql.toString(), values);
+        BoundSql deleteSql = getSqlTemplate(batchExecutor, config, data).delete(data);
+        batchExecutor.addBatch(deleteSql);
         if (logger.isTraceEnabled()) {
-            logger.trace("Delete from target table, sql: {}", sql);
+            logger.trace("Delete from target table, sql: {}", deleteSql.getSql());
         }
     }
 
@@ -426,36 +398,304 @@ public class RdbSyncService {
     }
 
     /**
-     * 拼接主键 where条件
+     * 获取映射对应的sql模板，第一次使用或者DDL之后重新生成
+     *
+     * @param data 行数据，mapAll时用于确定字段
      */
-    private void appendCondition(MappingConfig.DbMapping dbMapping, StringBuilder sql, Map<String, Integer> ctype,
-                                 List<Map<String, ?>> values, Map<String, Object> d) {
-        appendCondition(dbMapping, sql, ctype, values, d, null);
+    private SqlTemplate getSqlTemplate(BatchExecutor batchExecutor, MappingConfig config, Map<String, Object> data) {
+        DbMapping dbMapping = config.getDbMapping();
+        SqlTemplate sqlTemplate = dbMapping.getSqlTemplate();
+        if (sqlTemplate == null) {
+            Map<String, String> columnsMap = SyncUtil.getColumnsMap(dbMapping, data);
+            Map<String, Integer> ctype = getTargetColumnType(batchExecutor.getConn(), config);
+            sqlTemplate = new SqlTemplate(dbMapping, columnsMap, ctype, upsertDialect);
+            dbMapping.setSqlTemplate(sqlTemplate);
+        }
+        return sqlTemplate;
     }
 
-    private void appendCondition(MappingConfig.DbMapping dbMapping, StringBuilder sql, Map<String, Integer> ctype,
-                                 List<Map<String, ?>> values, Map<String, Object> d, Map<String, Object> o) {
-        // 拼接主键
-        for (Map.Entry<String, String> entry : dbMapping.getTargetPk().entrySet()) {
-            String targetColumnName = entry.getKey();
+    /**
+     * 合并同一主键的变更，减少执行的sql数量
+     *
+     * <pre>
+     * 1. update + update -> update(最终数据，old取每个字段最早的值)
+     * 2. insert/update/delete + delete -> delete
+     * 3. upsert模式下insert + update -> insert(最终数据，以upsert执行)
+     * 4. upsert模式下delete/insert + insert -> insert(以upsert执行)
+     * 5. 其余组合不合并，按原顺序执行，后续的变更合并到最后一条。
+     *    非upsert模式下insert + update不合并，目标行已存在时insert会作为重复数据被跳过，合并会丢失update
+     * 6. 修改主键的update、没有主键的数据以及truncate不参与合并，并且作为屏障，之前的变更不再和之后的合并
+     * 7. 非并行的映射不合并，不同主键之间可能存在依赖(如外键)，需要保持原有的整体顺序
+     * </pre>
+     *
+     * 合并后的变更放在该主键最后一条变更的位置
+     *
+     * @param items 按到达顺序排列的变更
+     * @param upsert 是否upsert模式
+     * @return 合并后的变更
+     */
+    public static List<SyncItem> merge(List<SyncItem> items, boolean upsert) {
+        List<SyncItem> result = new ArrayList<>(items.size());
+        Map<List<Object>, Integer> positions = new HashMap<>(); // 主键 -> 该主键最后一条变更在result中的位置
+        for (SyncItem item : items) {
+            SingleDml dml = item.singleDml;
+            if ("TRUNCATE".equalsIgnoreCase(dml.getType())) {
+                positions.clear();
+                result.add(item);
+                continue;
+            }
+
+            if (!item.config.getConcurrent()) {
+                result.add(item);
+                continue;
+            }
+
+            List<Object> key = mergeKey(item.config, dml.getData());
+            if (key == null || isPkChanged(item.config, dml)) {
+                if (key != null) {
+                    positions.remove(key);
+                    positions.remove(mergeKey(item.config, mergeData(dml.getData(), dml.getOld())));
+                }
+                result.add(item);
+                continue;
+            }
+
+            Integer position = positions.get(key);
+            SingleDml merged = position == null ? null : merge(result.get(position).singleDml, dml, upsert);
+            if (merged != null) {
+                // 被合并的变更先置空，最后统一移除
+                result.set(position, null);
+                item = new SyncItem(item.config, merged);
+            }
+            positions.put(key, result.size());
+            result.add(item);
+        }
+
+        List<SyncItem> compacted = new ArrayList<>(result.size());
+        for (SyncItem item : result) {
+            if (item != null) {
+                compacted.add(item);
+            }
+        }
+        return compacted;
+    }
+
+    private static SingleDml merge(SingleDml prev, SingleDml cur, boolean upsert) {
+        String prevType = prev.getType();
+        String curType = cur.getType();
+        SingleDml merged;
+        if ("DELETE".equalsIgnoreCase(curType)) {
+            if ("INSERT".equalsIgnoreCase(prevType) || "UPDATE".equalsIgnoreCase(prevType)
+                || "DELETE".equalsIgnoreCase(prevType)) {
+                return cur;
+            }
+            return null;
+        } else if ("INSERT".equalsIgnoreCase(curType)) {
+            if (upsert && ("INSERT".equalsIgnoreCase(prevType) || "DELETE".equalsIgnoreCase(prevType))) {
+                return cur;
+            }
+            return null;
+        } else if (upsert && "UPDATE".equalsIgnoreCase(curType) && "INSERT".equalsIgnoreCase(prevType)) {
+            merged = copyOf(prev);
+            merged.setData(mergeData(prev.getData(), cur.getData()));
+        } else if ("UPDATE".equalsIgnoreCase(curType) && "UPDATE".equalsIgnoreCase(prevType)) {
+            merged = copyOf(prev);
+            merged.setData(mergeData(prev.getData(), cur.getData()));
+            // 每个字段保留最早的旧值
+            merged.setOld(mergeData(cur.getOld(), prev.getOld()));
+        } else {
+            return null;
+        }
+        return merged;
+    }
+
+    private static SingleDml copyOf(SingleDml dml) {
+        SingleDml copy = new SingleDml();
+        copy.setDestination(dml.getDestination());
+        copy.setDatabase(dml.getDatabase());
+        copy.setTable(dml.getTable());
+        copy.setType(dml.getType());
+        copy.setData(dml.getData());
+        copy.setOld(dml.getOld());
+        return copy;
+    }
+
+    /**
+     * 合并两份字段值，后者覆盖前者，不修改原对象
+     */
+    private static Map<String, Object> mergeData(Map<String, Object> d1, Map<String, Object> d2) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        if (d1 != null) {
+            data.putAll(d1);
+        }
+        if (d2 != null) {
+            data.putAll(d2);
+        }
+        return data;
+    }
+
+    /**
+     * 合并用的key: 映射配置 + 主键值，没有主键或者主键值为空时返回null
+     */
+    private static List<Object> mergeKey(MappingConfig config, Map<String, Object> data) {
+        return pkKey(config, config, data);
+    }
+
+    /**
+     * 依赖分析用的key: 目标表 + 主键值，不同的映射写同一张目标表时也能识别冲突
+     */
+    private static List<Object> conflictKey(MappingConfig config, Map<String, Object> data) {
+        return pkKey(SyncUtil.getDbTableName(config.getDbMapping()), config, data);
+    }
+
+    private static List<Object> pkKey(Object prefix, MappingConfig config, Map<String, Object> data) {
+        Map<String, String> targetPk = config.getDbMapping().getTargetPk();
+        if (data == null || targetPk == null || targetPk.isEmpty()) {
+            return null;
+        }
+
+        List<Object> key = new ArrayList<>(targetPk.size() + 1);
+        key.add(prefix);
+        for (Map.Entry<String, String> entry : targetPk.entrySet()) {
             String srcColumnName = entry.getValue();
             if (srcColumnName == null) {
-                srcColumnName = Util.cleanColumn(targetColumnName);
+                srcColumnName = Util.cleanColumn(entry.getKey());
             }
-            sql.append(targetColumnName).append("=? AND ");
-            Integer type = ctype.get(Util.cleanColumn(targetColumnName).toLowerCase());
-            if (type == null) {
-                throw new RuntimeException("Target column: " + targetColumnName + " not matched");
+            Object value = data.get(srcColumnName);
+            if (value == null) {
+                return null;
             }
-            // 如果有修改主键的情况
-            if (o != null && o.containsKey(srcColumnName)) {
-                BatchExecutor.setValue(values, type, o.get(srcColumnName));
+            key.add(value);
+        }
+        return key;
+    }
+
+    /**
+     * 按数据依赖把变更划分为互不冲突的组，组内保持原有顺序，不同组之间可以并行执行
+     *
+     * <pre>
+     * 1. 并行(concurrent)的映射按目标表+主键划分，修改主键的update把新旧主键合并为一组
+     * 2. 包含truncate或者没有主键值的目标表，该表所有的变更为一组
+     * 3. 非并行的映射需要保持整体顺序(如存在外键)，所有非并行的变更为一组
+     * </pre>
+     *
+     * @param items 按顺序排列的变更
+     * @return 按第一条变更出现顺序排列的分组
+     */
+    public static List<List<SyncItem>> schedule(List<SyncItem> items) {
+        Object serial = new Object(); // 非并行变更共用的节点
+        // 需要整表串行的目标表
+        Set<String> serialTables = new HashSet<>();
+        for (SyncItem item : items) {
+            if (item.config.getConcurrent()
+                && ("TRUNCATE".equalsIgnoreCase(item.singleDml.getType())
+                    || conflictKey(item.config, item.singleDml.getData()) == null)) {
+                serialTables.add(SyncUtil.getDbTableName(item.config.getDbMapping()));
+            }
+        }
+
+        // 并查集: 节点 -> 父节点
+        Map<Object, Object> parents = new HashMap<>();
+        Object[] nodes = new Object[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            SyncItem item = items.get(i);
+            Object node;
+            if (!item.config.getConcurrent()) {
+                node = serial;
             } else {
-                BatchExecutor.setValue(values, type, d.get(srcColumnName));
+                String table = SyncUtil.getDbTableName(item.config.getDbMapping());
+                if (serialTables.contains(table)) {
+                    node = table;
+                } else {
+                    node = conflictKey(item.config, item.singleDml.getData());
+                    if (isPkChanged(item.config, item.singleDml)) {
+                        Object oldNode = conflictKey(item.config,
+                            mergeData(item.singleDml.getData(), item.singleDml.getOld()));
+                        union(parents, node, oldNode);
+                    }
+                }
+            }
+            nodes[i] = node;
+            if (!parents.containsKey(node)) {
+                parents.put(node, node);
             }
         }
-        int len = sql.length();
-        sql.delete(len - 4, len);
+
+        Map<Object, List<SyncItem>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            groups.computeIfAbsent(find(parents, nodes[i]), k -> new ArrayList<>()).add(items.get(i));
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static Object find(Map<Object, Object> parents, Object node) {
+        Object root = node;
+        Object parent;
+        while ((parent = parents.get(root)) != null && parent != root) {
+            root = parent;
+        }
+        // 路径压缩
+        while (node != root) {
+            Object next = parents.get(node);
+            parents.put(node, root);
+            node = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<Object, Object> parents, Object node1, Object node2) {
+        if (!parents.containsKey(node1)) {
+            parents.put(node1, node1);
+        }
+        if (!parents.containsKey(node2)) {
+            parents.put(node2, node2);
+        }
+        Object root1 = find(parents, node1);
+        Object root2 = find(parents, node2);
+        if (root1 != root2) {
+            parents.put(root2, root1);
+        }
+    }
+
+    /**
+     * 把分组打包为多个任务，由空闲的线程依次领取，避免固定分区时最慢的分区拖慢整个批次
+     */
+    private static List<List<SyncItem>> chunk(List<List<SyncItem>> groups, int threads) {
+        // 每个线程平均领取4次，兼顾负载均衡和同一sql的攒批
+        int chunkSize = Math.max(1, groups.size() / (threads * 4));
+        List<List<SyncItem>> chunks = new ArrayList<>();
+        List<SyncItem> chunk = new ArrayList<>();
+        int count = 0;
+        for (List<SyncItem> group : groups) {
+            chunk.addAll(group);
+            if (++count >= chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                count = 0;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static boolean isPkChanged(MappingConfig config, SingleDml dml) {
+        Map<String, Object> old = dml.getOld();
+        if (old == null || old.isEmpty() || !"UPDATE".equalsIgnoreCase(dml.getType())) {
+            return false;
+        }
+
+        for (Map.Entry<String, String> entry : config.getDbMapping().getTargetPk().entrySet()) {
+            String srcColumnName = entry.getValue();
+            if (srcColumnName == null) {
+                srcColumnName = Util.cleanColumn(entry.getKey());
+            }
+            if (old.containsKey(srcColumnName)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static class SyncItem {
@@ -467,40 +707,30 @@ public class RdbSyncService {
             this.config = config;
             this.singleDml = singleDml;
         }
+
+        public MappingConfig getConfig() {
+            return config;
+        }
+
+        public SingleDml getSingleDml() {
+            return singleDml;
+        }
     }
 
-    /**
-     * 取主键hash
-     */
-    public int pkHash(DbMapping dbMapping, Map<String, Object> d) {
-        return pkHash(dbMapping, d, null);
+    public void setUpsertDialect(UpsertDialect upsertDialect) {
+        this.upsertDialect = upsertDialect;
     }
 
-    public int pkHash(DbMapping dbMapping, Map<String, Object> d, Map<String, Object> o) {
-        int hash = 0;
-        // 取主键
-        for (Map.Entry<String, String> entry : dbMapping.getTargetPk().entrySet()) {
-            String targetColumnName = entry.getKey();
-            String srcColumnName = entry.getValue();
-            if (srcColumnName == null) {
-                srcColumnName = Util.cleanColumn(targetColumnName);
-            }
-            Object value = null;
-            if (o != null && o.containsKey(srcColumnName)) {
-                value = o.get(srcColumnName);
-            } else if (d != null) {
-                value = d.get(srcColumnName);
-            }
-            if (value != null) {
-                hash += value.hashCode();
-            }
+    public void setBatchSize(int batchSize) {
+        for (BatchExecutor batchExecutor : batchExecutors) {
+            batchExecutor.setBatchSize(batchSize);
         }
-        hash = Math.abs(hash) % threads;
-        return Math.abs(hash);
     }
 
     public void close() {
         for (int i = 0; i < threads; i++) {
+            // 连接及statement只在各自的执行线程中使用，关闭也交给该线程
+            executorThreads[i].submit(batchExecutors[i]::close);
             executorThreads[i].shutdown();
         }
     }
@@ -5,6 +5,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -14,9 +15,17 @@ import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.alibaba.otter.canal.client.adapter.rdb.support.SqlTemplate.BoundSql;
+
 /**
  * sql批量执行器
  *
+ * <pre>
+ * 1. 连接及PreparedStatement在多个批次之间复用，只在出错后或者close时释放，statement按sql做LRU缓存，超出上限时关闭最久未使用的
+ * 2. addBatch的连续相同sql(同表同操作同列)通过addBatch/executeBatch合并执行，sql变化、达到batchSize或者commit时才提交到数据库
+ * 3. execute会先提交之前攒批的sql再立即执行，保证执行顺序
+ * </pre>
+ *
  * @author rewerma 2018-11-7 下午06:45:49
  * @version 1.0.0
  */
@@ -24,9 +33,16 @@ public class BatchExecutor implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(BatchExecutor.class);
 
-    private DataSource          dataSource;
-    private Connection          conn;
-    private AtomicInteger       idx    = new AtomicInteger(0);
+    private DataSource                     dataSource;
+    private Connection                     conn;
+    private AtomicInteger                  idx           = new AtomicInteger(0);
+
+    private int                            batchSize     = 1000;                 // 单次executeBatch的最大行数
+    private int                            maxStatements = 256;                  // 缓存的PreparedStatement上限
+    private Map<String, PreparedStatement> statements    = new StatementCache(); // sql -> 缓存的PreparedStatement
+    private String                         batchSql;                             // 当前攒批的sql
+    private PreparedStatement              batchStmt;
+    private int                            batchCount    = 0;                    // 当前攒批的行数
 
     public BatchExecutor(DataSource dataSource){
         this.dataSource = dataSource;
@@ -51,22 +67,102 @@ public class BatchExecutor implements Closeable {
         values.add(valueItem);
     }
 
+    /**
+     * 立即执行，需要单条sql的执行结果时使用(如忽略主键冲突)
+     */
     public void execute(String sql, List<Map<String, ?>> values) throws SQLException {
-        PreparedStatement pstmt = getConn().prepareStatement(sql);
-        int len = values.size();
-        for (int i = 0; i < len; i++) {
-            int type = (Integer) values.get(i).get("type");
-            Object value = values.get(i).get("value");
-            SyncUtil.setPStmt(type, pstmt, value, i + 1);
-        }
+        execute(new BoundSql(sql, types(values), values(values)));
+    }
 
+    public void execute(BoundSql boundSql) throws SQLException {
+        flush();
+        PreparedStatement pstmt = prepare(boundSql.getSql());
+        setValues(pstmt, boundSql);
         pstmt.execute();
         idx.incrementAndGet();
-        pstmt.close();
+    }
+
+    /**
+     * 加入批量执行，和上一条sql不同时先提交之前的批次
+     */
+    public void addBatch(String sql, List<Map<String, ?>> values) throws SQLException {
+        addBatch(new BoundSql(sql, types(values), values(values)));
+    }
+
+    public void addBatch(BoundSql boundSql) throws SQLException {
+        String sql = boundSql.getSql();
+        if (!sql.equals(batchSql)) {
+            flush();
+            batchStmt = prepare(sql);
+            batchSql = sql;
+        }
+
+        setValues(batchStmt, boundSql);
+        batchStmt.addBatch();
+        batchCount++;
+        idx.incrementAndGet();
+        if (batchCount >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 提交当前攒批的sql
+     */
+    public void flush() throws SQLException {
+        if (batchCount == 0) {
+            return;
+        }
+
+        try {
+            batchStmt.executeBatch();
+            if (logger.isTraceEnabled()) {
+                logger.trace("Batch executor execute batch " + batchCount + " rows, sql: " + batchSql);
+            }
+        } finally {
+            batchCount = 0;
+        }
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement pstmt = statements.get(sql);
+        if (pstmt == null) {
+            pstmt = getConn().prepareStatement(sql);
+            statements.put(sql, pstmt);
+        }
+        return pstmt;
+    }
+
+    private static void setValues(PreparedStatement pstmt, BoundSql boundSql) throws SQLException {
+        int[] types = boundSql.getTypes();
+        Object[] values = boundSql.getValues();
+        for (int i = 0; i < types.length; i++) {
+            SyncUtil.setPStmt(types[i], pstmt, values[i], i + 1);
+        }
+    }
+
+    private static int[] types(List<Map<String, ?>> values) {
+        int[] types = new int[values.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = (Integer) values.get(i).get("type");
+        }
+        return types;
+    }
+
+    private static Object[] values(List<Map<String, ?>> values) {
+        Object[] result = new Object[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).get("value");
+        }
+        return result;
     }
 
     public void commit() throws SQLException {
-        getConn().commit();
+        flush();
+        if (conn == null) {
+            return; // 本批次没有执行sql，不需要获取连接
+        }
+        conn.commit();
         if (logger.isTraceEnabled()) {
             logger.trace("Batch executor commit " + idx.get() + " rows");
         }
@@ -74,15 +170,72 @@ public class BatchExecutor implements Closeable {
     }
 
     public void rollback() throws SQLException {
-        getConn().rollback();
+        if (batchCount > 0) {
+            try {
+                batchStmt.clearBatch();
+            } catch (SQLException e) {
+                logger.warn(e.getMessage(), e);
+            } finally {
+                batchCount = 0;
+            }
+        }
+        if (conn == null) {
+            return;
+        }
+        conn.rollback();
         if (logger.isTraceEnabled()) {
             logger.trace("Batch executor rollback " + idx.get() + " rows");
         }
         idx.set(0);
     }
 
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 按最近使用排序的statement缓存，超出上限时关闭最久未使用的statement
+     */
+    private class StatementCache extends LinkedHashMap<String, PreparedStatement> {
+
+        private static final long serialVersionUID = 1L;
+
+        StatementCache(){
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= maxStatements) {
+                return false;
+            }
+            // 新的statement只在flush之后加入，被淘汰的statement不会有未提交的批次
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 关闭缓存的PreparedStatement并归还连接，之后再次使用时重新获取
+     */
     @Override
     public void close() {
+        for (PreparedStatement pstmt : statements.values()) {
+            closeQuietly(pstmt);
+        }
+        statements.clear();
+        batchSql = null;
+        batchStmt = null;
+        batchCount = 0;
+
         if (conn != null) {
             try {
                 conn.close();
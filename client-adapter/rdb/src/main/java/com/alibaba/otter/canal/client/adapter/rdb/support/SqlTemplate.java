@@ -0,0 +1,258 @@
+package com.alibaba.otter.canal.client.adapter.rdb.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
+import com.alibaba.otter.canal.client.adapter.support.Util;
+
+/**
+ * 单个DbMapping预先生成的sql模板
+ *
+ * <pre>
+ * 1. insert/upsert/delete的sql、字段顺序和目标字段类型在构造时确定，每行只需要按下标取值
+ * 2. update的set字段随old变化，按set字段的下标组合缓存生成的sql
+ * 3. 目标表结构变化(DDL)之后需要重新构造
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class SqlTemplate {
+
+    private static final int                    NOT_MATCHED      = Integer.MIN_VALUE;         // 目标表中不存在的字段，使用时报错
+    private static final int                    MAX_UPDATE_CACHE = 1024;                      // update sql缓存的最大数量
+
+    private final String                        tableName;
+    private final String[]                      targetColumns;                                // 目标字段，insert/upsert的参数顺序
+    private final String[]                      srcColumns;                                   // 目标字段对应的源字段
+    private final int[]                         types;                                        // 目标字段的jdbc类型
+    private String                              unmatchedColumn;                              // 第一个目标表中不存在的字段
+    private final String[]                      pkTargetColumns;
+    private final String[]                      pkSrcColumns;
+    private final int[]                         pkTypes;
+    private final Map<String, int[]>            srcIndexes       = new HashMap<>();           // 源字段(小写) -> 目标字段下标
+    private final String                        insertSql;
+    private final String                        upsertSql;
+    private final String                        deleteSql;
+    private final String                        condition;                                    // 主键条件
+    private final ConcurrentMap<String, String> updateSqls       = new ConcurrentHashMap<>(); // set字段下标 -> update sql
+
+    /**
+     * @param dbMapping 映射配置
+     * @param columnsMap 目标字段 -> 源字段
+     * @param ctype 目标表字段(小写) -> jdbc类型
+     * @param upsertDialect upsert方言，为空时不生成upsert sql
+     */
+    public SqlTemplate(MappingConfig.DbMapping dbMapping, Map<String, String> columnsMap, Map<String, Integer> ctype,
+                       UpsertDialect upsertDialect){
+        this.tableName = SyncUtil.getDbTableName(dbMapping);
+
+        int size = columnsMap.size();
+        targetColumns = new String[size];
+        srcColumns = new String[size];
+        types = new int[size];
+        Map<String, List<Integer>> indexes = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<String, String> entry : columnsMap.entrySet()) {
+            targetColumns[i] = entry.getKey();
+            srcColumns[i] = entry.getValue() != null ? entry.getValue() : Util.cleanColumn(entry.getKey());
+            types[i] = typeOf(ctype, targetColumns[i]);
+            if (types[i] == NOT_MATCHED && unmatchedColumn == null) {
+                unmatchedColumn = targetColumns[i];
+            }
+            List<Integer> index = indexes.get(srcColumns[i].toLowerCase());
+            if (index == null) {
+                index = new ArrayList<>();
+                indexes.put(srcColumns[i].toLowerCase(), index);
+            }
+            index.add(i);
+            i++;
+        }
+        for (Map.Entry<String, List<Integer>> entry : indexes.entrySet()) {
+            int[] index = new int[entry.getValue().size()];
+            for (int j = 0; j < index.length; j++) {
+                index[j] = entry.getValue().get(j);
+            }
+            srcIndexes.put(entry.getKey(), index);
+        }
+
+        Map<String, String> targetPk = dbMapping.getTargetPk();
+        pkTargetColumns = new String[targetPk.size()];
+        pkSrcColumns = new String[targetPk.size()];
+        pkTypes = new int[targetPk.size()];
+        i = 0;
+        for (Map.Entry<String, String> entry : targetPk.entrySet()) {
+            pkTargetColumns[i] = entry.getKey();
+            pkSrcColumns[i] = entry.getValue() != null ? entry.getValue() : Util.cleanColumn(entry.getKey());
+            pkTypes[i] = typeOf(ctype, pkTargetColumns[i]);
+            i++;
+        }
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(tableName).append(" (");
+        for (String column : targetColumns) {
+            sql.append(column).append(",");
+        }
+        int len = sql.length();
+        sql.delete(len - 1, len).append(") VALUES (");
+        for (int j = 0; j < size; j++) {
+            sql.append("?,");
+        }
+        len = sql.length();
+        insertSql = sql.delete(len - 1, len).append(")").toString();
+
+        sql.setLength(0);
+        for (String column : pkTargetColumns) {
+            sql.append(column).append("=? AND ");
+        }
+        len = sql.length();
+        condition = len > 0 ? sql.delete(len - 5, len).toString() : "";
+        deleteSql = "DELETE FROM " + tableName + " WHERE " + condition;
+
+        upsertSql = upsertDialect == null ? null : upsertDialect.upsertSql(tableName,
+            Arrays.asList(targetColumns),
+            Arrays.asList(pkTargetColumns));
+    }
+
+    /**
+     * 插入所有映射字段
+     */
+    public BoundSql insert(Map<String, Object> data) {
+        if (unmatchedColumn != null) {
+            throw new RuntimeException("Target column: " + unmatchedColumn + " not matched");
+        }
+        return new BoundSql(insertSql, types, values(data));
+    }
+
+    /**
+     * upsert所有映射字段，构造时需要指定方言
+     */
+    public BoundSql upsert(Map<String, Object> data) {
+        if (unmatchedColumn != null) {
+            throw new RuntimeException("Target column: " + unmatchedColumn + " not matched");
+        }
+        return new BoundSql(upsertSql, types, values(data));
+    }
+
+    /**
+     * 更新old中出现的字段，没有匹配的字段时返回null
+     */
+    public BoundSql update(Map<String, Object> data, Map<String, Object> old) {
+        int[] setIndexes = new int[targetColumns.length];
+        int count = 0;
+        for (String srcColumnName : old.keySet()) {
+            int[] index = srcIndexes.get(srcColumnName.toLowerCase());
+            if (index != null) {
+                for (int i : index) {
+                    setIndexes[count++] = i;
+                }
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            key.append(setIndexes[i]).append(',');
+        }
+        String sql = updateSqls.get(key.toString());
+        if (sql == null) {
+            StringBuilder updateSql = new StringBuilder();
+            updateSql.append("UPDATE ").append(tableName).append(" SET ");
+            for (int i = 0; i < count; i++) {
+                updateSql.append(targetColumns[setIndexes[i]]).append("=?, ");
+            }
+            int len = updateSql.length();
+            sql = updateSql.delete(len - 2, len).append(" WHERE ").append(condition).toString();
+            if (updateSqls.size() < MAX_UPDATE_CACHE) {
+                updateSqls.put(key.toString(), sql);
+            }
+        }
+
+        int[] sqlTypes = new int[count + pkTypes.length];
+        Object[] values = new Object[count + pkTypes.length];
+        for (int i = 0; i < count; i++) {
+            sqlTypes[i] = checkType(types[setIndexes[i]], targetColumns[setIndexes[i]]);
+            values[i] = data.get(srcColumns[setIndexes[i]]);
+        }
+        bindPk(sqlTypes, values, count, data, old);
+        return new BoundSql(sql, sqlTypes, values);
+    }
+
+    /**
+     * 根据主键删除
+     */
+    public BoundSql delete(Map<String, Object> data) {
+        int[] sqlTypes = new int[pkTypes.length];
+        Object[] values = new Object[pkTypes.length];
+        bindPk(sqlTypes, values, 0, data, null);
+        return new BoundSql(deleteSql, sqlTypes, values);
+    }
+
+    private void bindPk(int[] sqlTypes, Object[] values, int offset, Map<String, Object> data,
+                        Map<String, Object> old) {
+        for (int i = 0; i < pkTypes.length; i++) {
+            sqlTypes[offset + i] = checkType(pkTypes[i], pkTargetColumns[i]);
+            // 如果有修改主键的情况
+            if (old != null && old.containsKey(pkSrcColumns[i])) {
+                values[offset + i] = old.get(pkSrcColumns[i]);
+            } else {
+                values[offset + i] = data.get(pkSrcColumns[i]);
+            }
+        }
+    }
+
+    private Object[] values(Map<String, Object> data) {
+        Object[] values = new Object[srcColumns.length];
+        for (int i = 0; i < srcColumns.length; i++) {
+            values[i] = data.get(srcColumns[i]);
+        }
+        return values;
+    }
+
+    private static int checkType(int type, String targetColumnName) {
+        if (type == NOT_MATCHED) {
+            throw new RuntimeException("Target column: " + targetColumnName + " not matched");
+        }
+        return type;
+    }
+
+    private static int typeOf(Map<String, Integer> ctype, String targetColumnName) {
+        Integer type = ctype.get(Util.cleanColumn(targetColumnName).toLowerCase());
+        return type != null ? type : NOT_MATCHED;
+    }
+
+    /**
+     * 绑定了参数的sql
+     */
+    public static class BoundSql {
+
+        private final String   sql;
+        private final int[]    types;
+        private final Object[] values;
+
+        public BoundSql(String sql, int[] types, Object[] values){
+            this.sql = sql;
+            this.types = types;
+            this.values = values;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int[] getTypes() {
+            return types;
+        }
+
+        public Object[] getValues() {
+            return values;
+        }
+    }
+}
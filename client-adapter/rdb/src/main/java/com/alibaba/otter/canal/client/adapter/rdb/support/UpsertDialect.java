@@ -0,0 +1,139 @@
+package com.alibaba.otter.canal.client.adapter.rdb.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.alibaba.otter.canal.client.adapter.support.Util;
+
+/**
+ * 各目标库upsert语句的生成，所有方言的参数顺序都和columns一致
+ *
+ * <pre>
+ * mysql:      INSERT ... ON DUPLICATE KEY UPDATE
+ * postgresql: INSERT ... ON CONFLICT (pk) DO UPDATE
+ * oracle:     MERGE INTO ... USING (SELECT ... FROM DUAL)
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public enum UpsertDialect {
+
+    MYSQL {
+
+        @Override
+        public String upsertSql(String table, List<String> columns, List<String> pkColumns) {
+            StringBuilder sql = insertSql(table, columns);
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+            List<String> updateColumns = nonPkColumns(columns, pkColumns);
+            if (updateColumns.isEmpty()) {
+                // 只有主键时不需要更新，用主键自身赋值避免语法错误
+                updateColumns = pkColumns;
+            }
+            for (String column : updateColumns) {
+                sql.append(column).append("=VALUES(").append(column).append("),");
+            }
+            return sql.deleteCharAt(sql.length() - 1).toString();
+        }
+    },
+    POSTGRESQL {
+
+        @Override
+        public String upsertSql(String table, List<String> columns, List<String> pkColumns) {
+            StringBuilder sql = insertSql(table, columns);
+            sql.append(" ON CONFLICT (").append(StringUtils.join(pkColumns, ",")).append(")");
+            List<String> updateColumns = nonPkColumns(columns, pkColumns);
+            if (updateColumns.isEmpty()) {
+                return sql.append(" DO NOTHING").toString();
+            }
+            sql.append(" DO UPDATE SET ");
+            for (String column : updateColumns) {
+                sql.append(column).append("=EXCLUDED.").append(column).append(",");
+            }
+            return sql.deleteCharAt(sql.length() - 1).toString();
+        }
+    },
+    ORACLE {
+
+        @Override
+        public String upsertSql(String table, List<String> columns, List<String> pkColumns) {
+            StringBuilder sql = new StringBuilder();
+            sql.append("MERGE INTO ").append(table).append(" T USING (SELECT ");
+            for (String column : columns) {
+                sql.append("? ").append(column).append(",");
+            }
+            sql.deleteCharAt(sql.length() - 1).append(" FROM DUAL) S ON (");
+            for (String column : pkColumns) {
+                sql.append("T.").append(column).append("=S.").append(column).append(" AND ");
+            }
+            sql.delete(sql.length() - 5, sql.length()).append(")");
+
+            List<String> updateColumns = nonPkColumns(columns, pkColumns);
+            if (!updateColumns.isEmpty()) {
+                sql.append(" WHEN MATCHED THEN UPDATE SET ");
+                for (String column : updateColumns) {
+                    sql.append("T.").append(column).append("=S.").append(column).append(",");
+                }
+                sql.deleteCharAt(sql.length() - 1);
+            }
+
+            sql.append(" WHEN NOT MATCHED THEN INSERT (").append(StringUtils.join(columns, ",")).append(") VALUES (");
+            for (String column : columns) {
+                sql.append("S.").append(column).append(",");
+            }
+            return sql.deleteCharAt(sql.length() - 1).append(")").toString();
+        }
+    };
+
+    /**
+     * 生成upsert语句
+     *
+     * @param table 目标表名
+     * @param columns 目标字段，和参数顺序一致
+     * @param pkColumns 目标主键字段
+     * @return upsert sql
+     */
+    public abstract String upsertSql(String table, List<String> columns, List<String> pkColumns);
+
+    /**
+     * 根据jdbc url获取对应的方言，不支持的数据库返回null
+     */
+    public static UpsertDialect of(String jdbcUrl) {
+        if (StringUtils.startsWithIgnoreCase(jdbcUrl, "jdbc:mysql")
+            || StringUtils.startsWithIgnoreCase(jdbcUrl, "jdbc:mariadb")) {
+            return MYSQL;
+        } else if (StringUtils.startsWithIgnoreCase(jdbcUrl, "jdbc:postgresql")) {
+            return POSTGRESQL;
+        } else if (StringUtils.startsWithIgnoreCase(jdbcUrl, "jdbc:oracle")) {
+            return ORACLE;
+        }
+        return null;
+    }
+
+    private static StringBuilder insertSql(String table, List<String> columns) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(table).append(" (").append(StringUtils.join(columns, ",")).append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append("?,");
+        }
+        return sql.deleteCharAt(sql.length() - 1).append(")");
+    }
+
+    private static List<String> nonPkColumns(List<String> columns, List<String> pkColumns) {
+        List<String> result = new ArrayList<>();
+        for (String column : columns) {
+            boolean isPk = false;
+            for (String pkColumn : pkColumns) {
+                if (Util.cleanColumn(pkColumn).equalsIgnoreCase(Util.cleanColumn(column))) {
+                    isPk = true;
+                    break;
+                }
+            }
+            if (!isPk) {
+                result.add(column);
+            }
+        }
+        return result;
+    }
+}
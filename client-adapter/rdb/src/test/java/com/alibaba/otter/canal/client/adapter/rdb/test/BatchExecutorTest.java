@@ -0,0 +1,177 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.support.BatchExecutor;
+import com.alibaba.otter.canal.client.adapter.rdb.support.SqlTemplate.BoundSql;
+
+/**
+ * 验证批量执行器在sql变化、execute和达到batchSize时的提交顺序，以及连接和statement在批次之间的复用
+ *
+ * @since 1.1.3
+ */
+public class BatchExecutorTest {
+
+    private static final String INSERT = "INSERT INTO user (id) VALUES (?)";
+    private static final String UPDATE = "UPDATE user SET name = ? WHERE id = 1";
+    private static final String DELETE = "DELETE FROM user WHERE id = ?";
+
+    private List<String>        log         = new ArrayList<>();
+    private int                 connections = 0;
+    private BatchExecutor       batchExecutor;
+
+    @Before
+    public void setUp() {
+        batchExecutor = new BatchExecutor(dataSource());
+    }
+
+    @Test
+    public void testOrderWhenSqlChanges() throws Exception {
+        batchExecutor.addBatch(bound(INSERT, 1));
+        batchExecutor.addBatch(bound(INSERT, 2));
+        batchExecutor.addBatch(bound(UPDATE, 3));
+        batchExecutor.addBatch(bound(INSERT, 4));
+        batchExecutor.execute(bound(DELETE, 5));
+        batchExecutor.addBatch(bound(INSERT, 6));
+        batchExecutor.commit();
+        batchExecutor.close();
+
+        // sql变化和execute之前都要先提交之前攒批的sql，PreparedStatement按sql复用
+        Assert.assertEquals(Arrays.asList("prepare " + INSERT,
+            "executeBatch " + INSERT + " x2",
+            "prepare " + UPDATE,
+            "executeBatch " + UPDATE + " x1",
+            "executeBatch " + INSERT + " x1",
+            "prepare " + DELETE,
+            "execute " + DELETE,
+            "executeBatch " + INSERT + " x1",
+            "commit"), log);
+    }
+
+    @Test
+    public void testFlushAtBatchSize() throws Exception {
+        batchExecutor.setBatchSize(3);
+        for (int i = 0; i < 7; i++) {
+            batchExecutor.addBatch(bound(INSERT, i));
+        }
+        Assert.assertEquals(Arrays.asList("prepare " + INSERT,
+            "executeBatch " + INSERT + " x3",
+            "executeBatch " + INSERT + " x3"), log);
+
+        batchExecutor.commit();
+        Assert.assertEquals(Arrays.asList("executeBatch " + INSERT + " x1", "commit"), log.subList(3, log.size()));
+        batchExecutor.close();
+    }
+
+    @Test
+    public void testRollbackDiscardsBatch() throws Exception {
+        batchExecutor.addBatch(bound(INSERT, 1));
+        batchExecutor.addBatch(bound(INSERT, 2));
+        batchExecutor.rollback();
+        // 回滚之后未提交的批次不再执行
+        batchExecutor.commit();
+        batchExecutor.close();
+
+        Assert.assertEquals(Arrays.asList("prepare " + INSERT, "clearBatch " + INSERT, "rollback", "commit"), log);
+    }
+
+    @Test
+    public void testReuseAcrossCommits() throws Exception {
+        // 没有执行sql时commit不获取连接
+        batchExecutor.commit();
+        Assert.assertEquals(0, connections);
+
+        batchExecutor.addBatch(bound(INSERT, 1));
+        batchExecutor.commit();
+        batchExecutor.addBatch(bound(INSERT, 2));
+        batchExecutor.commit();
+        Assert.assertEquals(1, connections);
+        Assert.assertEquals(Arrays.asList("prepare " + INSERT,
+            "executeBatch " + INSERT + " x1",
+            "commit",
+            "executeBatch " + INSERT + " x1",
+            "commit"), log);
+
+        // close之后重新获取连接并prepare
+        batchExecutor.close();
+        batchExecutor.addBatch(bound(INSERT, 3));
+        batchExecutor.commit();
+        Assert.assertEquals(2, connections);
+        Assert.assertEquals(Arrays.asList("prepare " + INSERT, "executeBatch " + INSERT + " x1", "commit"),
+            log.subList(5, log.size()));
+        batchExecutor.close();
+    }
+
+    private BoundSql bound(String sql, long id) {
+        return new BoundSql(sql, new int[] { Types.BIGINT }, new Object[] { id });
+    }
+
+    /**
+     * 基于动态代理的jdbc实现，记录prepare/executeBatch/execute/commit/rollback的顺序
+     */
+    private DataSource dataSource() {
+        Connection conn = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { Connection.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        log.add("prepare " + args[0]);
+                        return statement((String) args[0]);
+                    case "commit":
+                    case "rollback":
+                        log.add(method.getName());
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { DataSource.class },
+            (proxy, method, args) -> {
+                if ("getConnection".equals(method.getName())) {
+                    connections++;
+                    return conn;
+                }
+                return null;
+            });
+    }
+
+    private PreparedStatement statement(String sql) {
+        int[] batchCount = new int[1];
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { PreparedStatement.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "addBatch":
+                        batchCount[0]++;
+                        return null;
+                    case "clearBatch":
+                        log.add("clearBatch " + sql);
+                        batchCount[0] = 0;
+                        return null;
+                    case "executeBatch":
+                        log.add("executeBatch " + sql + " x" + batchCount[0]);
+                        int[] result = new int[batchCount[0]];
+                        batchCount[0] = 0;
+                        return result;
+                    case "execute":
+                        log.add("execute " + sql);
+                        return false;
+                    default:
+                        return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,118 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import static com.alibaba.otter.canal.client.adapter.rdb.test.SyncItems.buildConfig;
+import static com.alibaba.otter.canal.client.adapter.rdb.test.SyncItems.item;
+import static com.alibaba.otter.canal.client.adapter.rdb.test.SyncItems.old;
+import static com.alibaba.otter.canal.client.adapter.rdb.test.SyncItems.row;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
+import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService;
+import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService.SyncItem;
+import com.alibaba.otter.canal.client.adapter.rdb.support.SingleDml;
+
+/**
+ * 验证同一主键变更的合并结果
+ *
+ * @since 1.1.3
+ */
+public class DmlMergeTest {
+
+    @Test
+    public void testMerge() {
+        MappingConfig config = buildConfig("user", true);
+        List<SyncItem> items = new ArrayList<>();
+        items.add(item(config, "INSERT", row(1, "a", 0), null));
+        items.add(item(config, "UPDATE", row(2, "b", 0), null));
+        items.add(item(config, "UPDATE", row(1, "a", 1), old("cnt", 0)));
+        items.add(item(config, "UPDATE", row(2, "b", 1), old("cnt", 0)));
+        items.add(item(config, "UPDATE", row(2, "c", 2), old("name", "b", "cnt", 1)));
+        items.add(item(config, "DELETE", row(3, "c", 0), null));
+        items.add(item(config, "INSERT", row(3, "d", 0), null));
+        items.add(item(config, "UPDATE", row(3, "d", 1), old("cnt", 0)));
+        items.add(item(config, "UPDATE", row(1, "a", 2), old("cnt", 1)));
+        items.add(item(config, "DELETE", row(1, "a", 2), null));
+
+        List<SyncItem> result = RdbSyncService.merge(items, false);
+        Assert.assertEquals(6, result.size());
+
+        // 非upsert模式下insert + update不合并，之后的update合并到最后一条update
+        SingleDml dml = result.get(0).getSingleDml();
+        Assert.assertEquals("INSERT", dml.getType());
+        Assert.assertEquals(row(1, "a", 0), dml.getData());
+
+        dml = result.get(1).getSingleDml();
+        Assert.assertEquals("UPDATE", dml.getType());
+        Assert.assertEquals(row(2, "c", 2), dml.getData());
+        Assert.assertEquals(old("cnt", 0, "name", "b"), dml.getOld());
+
+        Assert.assertEquals("DELETE", result.get(2).getSingleDml().getType());
+        dml = result.get(3).getSingleDml();
+        Assert.assertEquals("INSERT", dml.getType());
+        Assert.assertEquals(row(3, "d", 0), dml.getData());
+        dml = result.get(4).getSingleDml();
+        Assert.assertEquals("UPDATE", dml.getType());
+        Assert.assertEquals(row(3, "d", 1), dml.getData());
+
+        // 合并后的变更放在该主键最后一条变更的位置
+        dml = result.get(5).getSingleDml();
+        Assert.assertEquals("DELETE", dml.getType());
+        Assert.assertEquals(1, dml.getData().get("id"));
+
+        // 原始数据不被修改
+        Assert.assertEquals(row(2, "b", 0), items.get(1).getSingleDml().getData());
+    }
+
+    @Test
+    public void testBarrier() {
+        MappingConfig config = buildConfig("user", true);
+        List<SyncItem> items = new ArrayList<>();
+        items.add(item(config, "UPDATE", row(1, "a", 1), old("cnt", 0)));
+        // 修改主键
+        items.add(item(config, "UPDATE", row(2, "a", 1), old("id", 1)));
+        items.add(item(config, "UPDATE", row(2, "a", 2), old("cnt", 1)));
+        items.add(item(config, "TRUNCATE", null, null));
+        items.add(item(config, "INSERT", row(2, "a", 0), null));
+
+        List<SyncItem> result = RdbSyncService.merge(items, false);
+        Assert.assertEquals(5, result.size());
+        for (int i = 0; i < items.size(); i++) {
+            Assert.assertSame(items.get(i), result.get(i));
+        }
+    }
+
+    @Test
+    public void testNotConcurrent() {
+        MappingConfig config = buildConfig("user", true);
+        config.setConcurrent(false);
+        List<SyncItem> items = new ArrayList<>();
+        items.add(item(config, "UPDATE", row(1, "p", 1), old("cnt", 0)));
+        items.add(item(config, "UPDATE", row(2, "c", 1), old("cnt", 0)));
+        items.add(item(config, "DELETE", row(2, "c", 1), null));
+        items.add(item(config, "DELETE", row(1, "p", 1), null));
+
+        // 非并行的映射之间可能存在外键，不合并
+        List<SyncItem> result = RdbSyncService.merge(items, false);
+        Assert.assertEquals(items, result);
+    }
+
+    @Test
+    public void testUpsertMerge() {
+        MappingConfig config = buildConfig("user", true);
+        List<SyncItem> items = new ArrayList<>();
+        items.add(item(config, "DELETE", row(1, "a", 0), null));
+        items.add(item(config, "INSERT", row(1, "b", 0), null));
+        items.add(item(config, "UPDATE", row(1, "b", 1), old("cnt", 0)));
+
+        Assert.assertEquals(3, RdbSyncService.merge(items, false).size());
+        List<SyncItem> result = RdbSyncService.merge(items, true);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("INSERT", result.get(0).getSingleDml().getType());
+        Assert.assertEquals(row(1, "b", 1), result.get(0).getSingleDml().getData());
+    }
+}
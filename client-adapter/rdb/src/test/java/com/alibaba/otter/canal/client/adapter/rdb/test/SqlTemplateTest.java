@@ -0,0 +1,64 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
+import com.alibaba.otter.canal.client.adapter.rdb.support.SqlTemplate;
+import com.alibaba.otter.canal.client.adapter.rdb.support.SqlTemplate.BoundSql;
+
+/**
+ * 验证sql模板生成的语句和参数
+ *
+ * @since 1.1.3
+ */
+public class SqlTemplateTest {
+
+    @Test
+    public void testTemplate() {
+        MappingConfig.DbMapping dbMapping = new MappingConfig.DbMapping();
+        dbMapping.setTargetDb("mytest2");
+        dbMapping.setTargetTable("user");
+        dbMapping.getTargetPk().put("id", "id");
+        Map<String, String> columnsMap = new LinkedHashMap<>();
+        columnsMap.put("id", "id");
+        columnsMap.put("name", "name");
+        columnsMap.put("role", "role_id");
+        Map<String, Integer> ctype = new LinkedHashMap<>();
+        ctype.put("id", Types.BIGINT);
+        ctype.put("name", Types.VARCHAR);
+        ctype.put("role", Types.INTEGER);
+        SqlTemplate template = new SqlTemplate(dbMapping, columnsMap, ctype, null);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", 1L);
+        data.put("name", "Eric");
+        data.put("role_id", 2);
+
+        BoundSql insert = template.insert(data);
+        Assert.assertEquals("INSERT INTO mytest2.user (id,name,role) VALUES (?,?,?)", insert.getSql());
+        Assert.assertArrayEquals(new int[] { Types.BIGINT, Types.VARCHAR, Types.INTEGER }, insert.getTypes());
+        Assert.assertArrayEquals(new Object[] { 1L, "Eric", 2 }, insert.getValues());
+
+        Map<String, Object> old = new LinkedHashMap<>();
+        old.put("ROLE_ID", 1);
+        old.put("id", 3L);
+        BoundSql update = template.update(data, old);
+        Assert.assertEquals("UPDATE mytest2.user SET role=?, id=? WHERE id=?", update.getSql());
+        Assert.assertArrayEquals(new int[] { Types.INTEGER, Types.BIGINT, Types.BIGINT }, update.getTypes());
+        Assert.assertArrayEquals(new Object[] { 2, 1L, 3L }, update.getValues());
+        Assert.assertSame(update.getSql(), template.update(data, old).getSql());
+
+        old.clear();
+        old.put("unknown", 1);
+        Assert.assertNull(template.update(data, old));
+
+        BoundSql delete = template.delete(data);
+        Assert.assertEquals("DELETE FROM mytest2.user WHERE id=?", delete.getSql());
+        Assert.assertArrayEquals(new Object[] { 1L }, delete.getValues());
+    }
+}
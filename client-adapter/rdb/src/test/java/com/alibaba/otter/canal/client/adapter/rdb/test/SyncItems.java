@@ -0,0 +1,57 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
+import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService.SyncItem;
+import com.alibaba.otter.canal.client.adapter.rdb.support.SingleDml;
+
+/**
+ * 构造合并、分组测试使用的映射配置和变更数据
+ *
+ * @since 1.1.3
+ */
+public class SyncItems {
+
+    private SyncItems(){
+    }
+
+    public static MappingConfig buildConfig(String table, boolean concurrent) {
+        MappingConfig config = new MappingConfig();
+        config.setConcurrent(concurrent);
+        MappingConfig.DbMapping dbMapping = new MappingConfig.DbMapping();
+        dbMapping.setTargetDb("mytest2");
+        dbMapping.setTargetTable(table);
+        dbMapping.getTargetPk().put("id", "id");
+        config.setDbMapping(dbMapping);
+        return config;
+    }
+
+    public static SyncItem item(MappingConfig config, String type, Map<String, Object> data,
+                                Map<String, Object> old) {
+        SingleDml dml = new SingleDml();
+        dml.setDatabase("mytest");
+        dml.setTable(config.getDbMapping().getTargetTable());
+        dml.setType(type);
+        dml.setData(data);
+        dml.setOld(old);
+        return new SyncItem(config, dml);
+    }
+
+    public static Map<String, Object> row(int id, String name, int cnt) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", id);
+        data.put("name", name);
+        data.put("cnt", cnt);
+        return data;
+    }
+
+    public static Map<String, Object> old(Object... kvs) {
+        Map<String, Object> old = new LinkedHashMap<>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            old.put((String) kvs[i], kvs[i + 1]);
+        }
+        return old;
+    }
+}
@@ -0,0 +1,183 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import static com.alibaba.otter.canal.client.adapter.rdb.test.SyncItems.buildConfig;
+import static com.alibaba.otter.canal.client.adapter.rdb.test.SyncItems.item;
+import static com.alibaba.otter.canal.client.adapter.rdb.test.SyncItems.old;
+import static com.alibaba.otter.canal.client.adapter.rdb.test.SyncItems.row;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
+import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService;
+import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService.SyncItem;
+import com.alibaba.otter.canal.client.adapter.support.Dml;
+
+/**
+ * 验证按数据依赖划分的并行分组，以及sync()按到达顺序合并、分组后执行
+ *
+ * @since 1.1.3
+ */
+public class SyncScheduleTest {
+
+    private List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testSchedule() {
+        MappingConfig user = buildConfig("user", true);
+        MappingConfig role = buildConfig("role", true);
+        MappingConfig log1 = buildConfig("log1", false);
+        MappingConfig log2 = buildConfig("log2", false);
+        List<SyncItem> items = new ArrayList<>();
+        items.add(item(user, "INSERT", row(1, "name1", 0), null));          // 0
+        items.add(item(user, "INSERT", row(2, "name2", 0), null));          // 1
+        items.add(item(log1, "INSERT", row(1, "name1", 0), null));          // 2
+        items.add(item(user, "UPDATE", row(3, "name3", 0), old("id", 1)));  // 3: 1 -> 3
+        items.add(item(role, "INSERT", row(1, "name1", 0), null));          // 4
+        items.add(item(log2, "INSERT", row(1, "name1", 0), null));          // 5
+        items.add(item(user, "DELETE", row(3, "name3", 0), null));          // 6
+        items.add(item(role, "TRUNCATE", null, null));                      // 7
+        items.add(item(role, "INSERT", row(2, "name2", 0), null));          // 8
+
+        List<List<SyncItem>> groups = RdbSyncService.schedule(items);
+        Assert.assertEquals(4, groups.size());
+        assertGroup(items, groups.get(0), 0, 3, 6);
+        assertGroup(items, groups.get(1), 1);
+        assertGroup(items, groups.get(2), 2, 5);
+        assertGroup(items, groups.get(3), 4, 7, 8);
+    }
+
+    @Test
+    public void testSyncKeepsArrivalOrder() {
+        MappingConfig user = buildConfig("user", true);
+        MappingConfig role = buildConfig("role", true);
+        user.getDbMapping().setMapAll(true);
+        role.getDbMapping().setMapAll(true);
+        Map<String, Map<String, MappingConfig>> mappingConfig = new HashMap<>();
+        mappingConfig.put("_mytest-user", Collections.singletonMap("user.yml", user));
+        mappingConfig.put("_mytest-role", Collections.singletonMap("role.yml", role));
+
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("role", "INSERT", row(1, "name1", 0), null));
+        dmls.add(dml("role", "INSERT", row(2, "name2", 0), null));
+        dmls.add(dml("role", "TRUNCATE", null, null));
+        dmls.add(dml("role", "INSERT", row(3, "name3", 0), null));
+        dmls.add(dml("user", "INSERT", row(1, "name1", 0), null));
+        dmls.add(dml("user", "UPDATE", row(3, "name1", 0), old("id", 1)));
+
+        Map<String, Map<String, Integer>> columnsTypeCache = new ConcurrentHashMap<>();
+        Map<String, Integer> columnsType = new LinkedHashMap<>();
+        columnsType.put("id", Types.INTEGER);
+        columnsType.put("name", Types.VARCHAR);
+        columnsType.put("cnt", Types.INTEGER);
+        columnsTypeCache.put("null.null.null", columnsType);
+        RdbSyncService service = new RdbSyncService(dataSource(), 3, columnsTypeCache, false);
+        try {
+            service.sync(mappingConfig, dmls, null);
+        } finally {
+            service.close();
+        }
+
+        // truncate之前的变更不能排到truncate之后，按旧主键和新主键的变更保持原有顺序
+        assertOrder("INSERT INTO mytest2.role (id,name,cnt) VALUES (?,?,?) [1, name1, 0]",
+            "INSERT INTO mytest2.role (id,name,cnt) VALUES (?,?,?) [2, name2, 0]",
+            "TRUNCATE TABLE mytest2.role []",
+            "INSERT INTO mytest2.role (id,name,cnt) VALUES (?,?,?) [3, name3, 0]");
+        assertOrder("INSERT INTO mytest2.user (id,name,cnt) VALUES (?,?,?) [1, name1, 0]",
+            "UPDATE mytest2.user SET id=? WHERE id=? [3, 1]");
+        Assert.assertEquals(6, log.size());
+    }
+
+    private void assertOrder(String... sqls) {
+        int last = -1;
+        for (String sql : sqls) {
+            int index = log.indexOf(sql);
+            Assert.assertTrue(sql + " in " + log, index > last);
+            last = index;
+        }
+    }
+
+    private static Dml dml(String table, String type, Map<String, Object> data, Map<String, Object> old) {
+        Dml dml = new Dml();
+        dml.setDatabase("mytest");
+        dml.setTable(table);
+        dml.setType(type);
+        dml.setIsDdl(false);
+        if (data != null) {
+            dml.setData(Collections.singletonList(data));
+        }
+        if (old != null) {
+            dml.setOld(Collections.singletonList(old));
+        }
+        return dml;
+    }
+
+    /**
+     * 基于动态代理的jdbc实现，按执行的顺序记录sql和参数
+     */
+    private DataSource dataSource() {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { DataSource.class },
+            (proxy, method, args) -> "getConnection".equals(method.getName()) ? connection() : null);
+    }
+
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { Connection.class },
+            (proxy, method, args) -> "prepareStatement".equals(method.getName()) ? statement((String) args[0]) : null);
+    }
+
+    private PreparedStatement statement(String sql) {
+        Map<Integer, Object> params = new TreeMap<>();
+        List<String> batch = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { PreparedStatement.class },
+            (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    params.put((Integer) args[0], args[1]);
+                    return null;
+                }
+                switch (name) {
+                    case "addBatch":
+                        batch.add(sql + " " + params.values());
+                        params.clear();
+                        return null;
+                    case "executeBatch":
+                        log.addAll(batch);
+                        int[] result = new int[batch.size()];
+                        batch.clear();
+                        return result;
+                    case "execute":
+                        log.add(sql + " " + params.values());
+                        params.clear();
+                        return false;
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    private static void assertGroup(List<SyncItem> items, List<SyncItem> group, int... indexes) {
+        Assert.assertEquals(indexes.length, group.size());
+        for (int i = 0; i < indexes.length; i++) {
+            Assert.assertSame(items.get(indexes[i]), group.get(i));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.support.UpsertDialect;
+
+/**
+ * 验证各方言生成的upsert语句
+ *
+ * @since 1.1.3
+ */
+public class UpsertDialectTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("id", "name", "cnt");
+    private static final List<String> PK      = Collections.singletonList("id");
+
+    @Test
+    public void testUpsertSql() {
+        Assert.assertEquals("INSERT INTO mytest.user (id,name,cnt) VALUES (?,?,?) ON DUPLICATE KEY UPDATE name=VALUES(name),cnt=VALUES(cnt)",
+            UpsertDialect.MYSQL.upsertSql("mytest.user", COLUMNS, PK));
+        Assert.assertEquals("INSERT INTO mytest.user (id,name,cnt) VALUES (?,?,?) ON CONFLICT (id) DO UPDATE SET name=EXCLUDED.name,cnt=EXCLUDED.cnt",
+            UpsertDialect.POSTGRESQL.upsertSql("mytest.user", COLUMNS, PK));
+        Assert.assertEquals("MERGE INTO mytest.user T USING (SELECT ? id,? name,? cnt FROM DUAL) S ON (T.id=S.id)"
+                            + " WHEN MATCHED THEN UPDATE SET T.name=S.name,T.cnt=S.cnt"
+                            + " WHEN NOT MATCHED THEN INSERT (id,name,cnt) VALUES (S.id,S.name,S.cnt)",
+            UpsertDialect.ORACLE.upsertSql("mytest.user", COLUMNS, PK));
+
+        // 只有主键
+        Assert.assertEquals("INSERT INTO mytest.user (id) VALUES (?) ON CONFLICT (id) DO NOTHING",
+            UpsertDialect.POSTGRESQL.upsertSql("mytest.user", PK, PK));
+        Assert.assertEquals("MERGE INTO mytest.user T USING (SELECT ? id FROM DUAL) S ON (T.id=S.id)"
+                            + " WHEN NOT MATCHED THEN INSERT (id) VALUES (S.id)",
+            UpsertDialect.ORACLE.upsertSql("mytest.user", PK, PK));
+    }
+
+    @Test
+    public void testOf() {
+        Assert.assertEquals(UpsertDialect.MYSQL, UpsertDialect.of("jdbc:mysql://127.0.0.1:3306/mytest"));
+        Assert.assertEquals(UpsertDialect.POSTGRESQL, UpsertDialect.of("jdbc:postgresql://localhost:5432/postgres"));
+        Assert.assertEquals(UpsertDialect.ORACLE, UpsertDialect.of("jdbc:oracle:thin:@localhost:49161:XE"));
+        Assert.assertNull(UpsertDialect.of("jdbc:sqlserver://localhost:1433"));
+    }
+}
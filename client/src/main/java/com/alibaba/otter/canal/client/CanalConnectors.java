@@ -5,6 +5,7 @@ import java.util.List;
 
 import com.alibaba.otter.canal.client.impl.ClusterCanalConnector;
 import com.alibaba.otter.canal.client.impl.ClusterNodeAccessStrategy;
+import com.alibaba.otter.canal.client.impl.PrefetchCanalConnector;
 import com.alibaba.otter.canal.client.impl.SimpleCanalConnector;
 import com.alibaba.otter.canal.client.impl.SimpleNodeAccessStrategy;
 import com.alibaba.otter.canal.common.zookeeper.ZkClientx;
@@ -35,6 +36,24 @@ public class CanalConnectors {
         return canalConnector;
     }
 
+    /**
+     * 创建异步预取的单链接客户端，后台线程保持prefetch个GET请求在途
+     *
+     * @param address
+     * @param destination
+     * @param username
+     * @param password
+     * @param prefetch
+     * @return
+     */
+    public static CanalConnector newPrefetchConnector(SocketAddress address, String destination, String username,
+                                                      String password, int prefetch) {
+        SimpleCanalConnector canalConnector = new SimpleCanalConnector(address, username, password, destination);
+        canalConnector.setSoTimeout(60 * 1000);
+        canalConnector.setIdleTimeout(60 * 60 * 1000);
+        return new PrefetchCanalConnector(canalConnector, prefetch);
+    }
+
     /**
      * 创建带cluster模式的客户端链接，自动完成failover切换
      *
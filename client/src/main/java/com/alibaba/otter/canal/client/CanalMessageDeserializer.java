@@ -5,6 +5,7 @@ import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
 import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
 import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.compress.CompressionCodecs;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
 import com.google.protobuf.ByteString;
 
@@ -23,12 +24,18 @@ public class CanalMessageDeserializer {
                 CanalPacket.Packet p = CanalPacket.Packet.parseFrom(data);
                 switch (p.getType()) {
                     case MESSAGES: {
-                        if (!p.getCompression().equals(Compression.NONE)
-                            && !p.getCompression().equals(Compression.COMPRESSIONCOMPATIBLEPROTO2)) {
-                            throw new CanalClientException("compression is not supported in this connector");
+                        Compression compression = p.getCompression();
+                        CanalPacket.Messages messages = null;
+                        if (!CompressionCodecs.isCompressed(compression)) {
+                            messages = CanalPacket.Messages.parseFrom(p.getBody());
+                        } else if (CompressionCodecs.isSupported(compression)) {
+                            messages = CanalPacket.Messages.parseFrom(CompressionCodecs.decompress(compression,
+                                p.getBody()));
+                        } else {
+                            throw new CanalClientException("compression " + compression
+                                                           + " is not supported in this connector");
                         }
 
-                        CanalPacket.Messages messages = CanalPacket.Messages.parseFrom(p.getBody());
                         Message result = new Message(messages.getBatchId());
                         if (lazyParseEntry) {
                             // byteString
@@ -0,0 +1,339 @@
+package com.alibaba.otter.canal.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * 基于Entry原始二进制的轻量级视图，配合lazyParseEntry使用
+ *
+ * <pre>
+ * 1. 头部字段(schema/table/eventType/position等)直接从protobuf字节中扫描获取，不构造Entry/Header对象
+ * 2. storeValue以零拷贝的方式引用原始数据，只有调用getRowChange时才解析
+ * 3. getRowChange(columns)只解析指定名字的列，其余列只读取name字段后跳过
+ * </pre>
+ *
+ * 过滤型的消费者可以先根据schema/table判断，丢弃的Entry不需要付出完整解析的开销
+ *
+ * @since 1.1.3
+ */
+public class EntryView {
+
+    // Entry
+    private static final int ENTRY_HEADER          = 1;
+    private static final int ENTRY_TYPE            = 2;
+    private static final int ENTRY_STORE_VALUE     = 3;
+    // Header
+    private static final int HEADER_LOGFILE_NAME   = 2;
+    private static final int HEADER_LOGFILE_OFFSET = 3;
+    private static final int HEADER_EXECUTE_TIME   = 6;
+    private static final int HEADER_SCHEMA_NAME    = 8;
+    private static final int HEADER_TABLE_NAME     = 9;
+    private static final int HEADER_EVENT_LENGTH   = 10;
+    private static final int HEADER_EVENT_TYPE     = 11;
+    private static final int HEADER_GTID           = 13;
+    // RowChange/RowData/Column
+    private static final int ROWCHANGE_ROW_DATAS   = 12;
+    private static final int ROWDATA_BEFORE        = 1;
+    private static final int ROWDATA_AFTER         = 2;
+    private static final int COLUMN_NAME           = 3;
+
+    private final ByteString raw;
+    private EntryType        entryType      = EntryType.ROWDATA;
+    private ByteString       header         = ByteString.EMPTY;
+    private ByteString       storeValue     = ByteString.EMPTY;
+    // header字段，第一次访问时解析
+    private boolean          headerParsed   = false;
+    private String           logfileName    = "";
+    private long             logfileOffset;
+    private long             executeTime;
+    private long             eventLength;
+    private String           schemaName     = "";
+    private String           tableName      = "";
+    private EventType        eventType      = EventType.UPDATE;
+    private String           gtid           = "";
+
+    public EntryView(ByteString raw){
+        this.raw = raw;
+        try {
+            CodedInputStream input = newInput(raw);
+            while (true) {
+                int tag = input.readTag();
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case 0:
+                        return;
+                    case ENTRY_HEADER:
+                        header = input.readBytes();
+                        break;
+                    case ENTRY_TYPE:
+                        EntryType value = EntryType.valueOf(input.readEnum());
+                        if (value != null) {
+                            entryType = value; // 未知的类型保持默认值，和protobuf解析一致
+                        }
+                        break;
+                    case ENTRY_STORE_VALUE:
+                        storeValue = input.readBytes();
+                        break;
+                    default:
+                        input.skipField(tag);
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            throw new CanalClientException("parse entry failed", e);
+        }
+    }
+
+    /**
+     * 构造Message中所有Entry的视图，非raw的Message需要重新序列化，建议开启lazyParseEntry
+     */
+    public static List<EntryView> of(Message message) {
+        List<EntryView> views = new ArrayList<EntryView>();
+        if (message.isRaw()) {
+            for (ByteString rawEntry : message.getRawEntries()) {
+                views.add(new EntryView(rawEntry));
+            }
+        } else {
+            for (Entry entry : message.getEntries()) {
+                views.add(new EntryView(entry.toByteString()));
+            }
+        }
+        return views;
+    }
+
+    public EntryType getEntryType() {
+        return entryType;
+    }
+
+    public String getLogfileName() {
+        parseHeader();
+        return logfileName;
+    }
+
+    public long getLogfileOffset() {
+        parseHeader();
+        return logfileOffset;
+    }
+
+    public long getExecuteTime() {
+        parseHeader();
+        return executeTime;
+    }
+
+    public long getEventLength() {
+        parseHeader();
+        return eventLength;
+    }
+
+    public String getSchemaName() {
+        parseHeader();
+        return schemaName;
+    }
+
+    public String getTableName() {
+        parseHeader();
+        return tableName;
+    }
+
+    public EventType getEventType() {
+        parseHeader();
+        return eventType;
+    }
+
+    public String getGtid() {
+        parseHeader();
+        return gtid;
+    }
+
+    /**
+     * 完整解析Entry
+     */
+    public Entry getEntry() {
+        try {
+            return Entry.parseFrom(raw);
+        } catch (IOException e) {
+            throw new CanalClientException("parse entry failed", e);
+        }
+    }
+
+    /**
+     * 完整解析RowChange
+     */
+    public RowChange getRowChange() {
+        try {
+            return RowChange.parseFrom(storeValue);
+        } catch (IOException e) {
+            throw new CanalClientException("parse row change failed", e);
+        }
+    }
+
+    /**
+     * 解析RowChange，before/after中只保留指定名字(忽略大小写)的列，其余字段保持不变
+     */
+    public RowChange getRowChange(Collection<String> columns) {
+        if (columns == null) {
+            return getRowChange();
+        }
+
+        Set<String> names = new HashSet<String>();
+        for (String column : columns) {
+            names.add(column.toLowerCase());
+        }
+
+        try {
+            // 非rowDatas的字段原样写出，交给protobuf解析
+            ByteString.Output others = ByteString.newOutput();
+            CodedOutputStream output = CodedOutputStream.newInstance(others);
+            List<RowData> rowDatas = new ArrayList<RowData>();
+            CodedInputStream input = newInput(storeValue);
+            while (true) {
+                int tag = input.readTag();
+                int field = WireFormat.getTagFieldNumber(tag);
+                if (field == 0) {
+                    break;
+                } else if (field == ROWCHANGE_ROW_DATAS) {
+                    rowDatas.add(parseRowData(input.readBytes(), names));
+                } else {
+                    input.skipField(tag, output);
+                }
+            }
+            output.flush();
+            return RowChange.parseFrom(others.toByteString()).toBuilder().addAllRowDatas(rowDatas).build();
+        } catch (IOException e) {
+            throw new CanalClientException("parse row change failed", e);
+        }
+    }
+
+    private RowData parseRowData(ByteString data, Set<String> names) throws IOException {
+        RowData.Builder builder = RowData.newBuilder();
+        CodedInputStream input = newInput(data);
+        while (true) {
+            int tag = input.readTag();
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 0:
+                    return builder.build();
+                case ROWDATA_BEFORE: {
+                    ByteString column = input.readBytes();
+                    if (names.contains(readColumnName(column))) {
+                        builder.addBeforeColumns(Column.parseFrom(column));
+                    }
+                    break;
+                }
+                case ROWDATA_AFTER: {
+                    ByteString column = input.readBytes();
+                    if (names.contains(readColumnName(column))) {
+                        builder.addAfterColumns(Column.parseFrom(column));
+                    }
+                    break;
+                }
+                default:
+                    // props
+                    builder.mergeFrom(readField(input, tag));
+                    break;
+            }
+        }
+    }
+
+    private String readColumnName(ByteString column) throws IOException {
+        CodedInputStream input = newInput(column);
+        while (true) {
+            int tag = input.readTag();
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == 0) {
+                return "";
+            } else if (field == COLUMN_NAME) {
+                return input.readStringRequireUtf8().toLowerCase();
+            } else {
+                input.skipField(tag);
+            }
+        }
+    }
+
+    private void parseHeader() {
+        if (headerParsed) {
+            return;
+        }
+
+        try {
+            CodedInputStream input = newInput(header);
+            while (true) {
+                int tag = input.readTag();
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case 0:
+                        headerParsed = true;
+                        return;
+                    case HEADER_LOGFILE_NAME:
+                        logfileName = input.readStringRequireUtf8();
+                        break;
+                    case HEADER_LOGFILE_OFFSET:
+                        logfileOffset = input.readInt64();
+                        break;
+                    case HEADER_EXECUTE_TIME:
+                        executeTime = input.readInt64();
+                        break;
+                    case HEADER_SCHEMA_NAME:
+                        schemaName = input.readStringRequireUtf8();
+                        break;
+                    case HEADER_TABLE_NAME:
+                        tableName = input.readStringRequireUtf8();
+                        break;
+                    case HEADER_EVENT_LENGTH:
+                        eventLength = input.readInt64();
+                        break;
+                    case HEADER_EVENT_TYPE:
+                        EventType value = EventType.valueOf(input.readEnum());
+                        if (value != null) {
+                            eventType = value; // 未知的类型保持默认值，和protobuf解析一致
+                        }
+                        break;
+                    case HEADER_GTID:
+                        gtid = input.readStringRequireUtf8();
+                        break;
+                    default:
+                        input.skipField(tag);
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            throw new CanalClientException("parse entry header failed", e);
+        }
+    }
+
+    private static ByteString readField(CodedInputStream input, int tag) throws IOException {
+        ByteString.Output bytes = ByteString.newOutput();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        input.skipField(tag, output);
+        output.flush();
+        return bytes.toByteString();
+    }
+
+    private static CodedInputStream newInput(ByteString data) {
+        CodedInputStream input = data.newCodedInput();
+        input.enableAliasing(true); // readBytes直接引用原始数据，避免拷贝
+        return input;
+    }
+
+    public ByteString getRaw() {
+        return raw;
+    }
+
+    public ByteString getStoreValue() {
+        return storeValue;
+    }
+}
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.client.CanalConnector;
 import com.alibaba.otter.canal.client.CanalNodeAccessStrategy;
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
 
@@ -31,6 +32,7 @@ public class ClusterCanalConnector implements CanalConnector {
     private SimpleCanalConnector    currentConnector;
     private String                  destination;
     private String                  filter;                                                  // 记录上一次的filter提交值,便于自动重试时提交
+    private Compression             compression   = Compression.NONE;                        // 期望服务端使用的数据压缩方式
 
     public ClusterCanalConnector(String username, String password, String destination,
                                  CanalNodeAccessStrategy accessStrategy){
@@ -56,6 +58,7 @@ public class ClusterCanalConnector implements CanalConnector {
                     };
                     currentConnector.setSoTimeout(soTimeout);
                     currentConnector.setIdleTimeout(idleTimeout);
+                    currentConnector.setCompression(compression);
                     if (filter != null) {
                         currentConnector.setFilter(filter);
                     }
@@ -337,6 +340,14 @@ public class ClusterCanalConnector implements CanalConnector {
         this.accessStrategy = accessStrategy;
     }
 
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
     public SimpleCanalConnector getCurrentConnector() {
         return currentConnector;
     }
@@ -0,0 +1,259 @@
+package com.alibaba.otter.canal.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.client.CanalConnector;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+
+/**
+ * 异步预取的connector，后台IO线程保持多个GET请求在途，解析之后的Message放入有界队列，应用的处理和网络传输并行
+ *
+ * <pre>
+ * 1. 在途的GET请求数 + 队列中未被取走的Message数不超过prefetch
+ * 2. 服务端按照请求顺序返回，每个批次都是独立的batchId，应用按顺序ack即可，ack只写出数据包不等待结果
+ * 3. rollback/subscribe/unsubscribe会先停止IO线程，丢弃在途和队列中的批次，下一次getWithoutAck时重新开始预取
+ *    IO线程出现异常之后无法确定在途的响应数，getWithoutAck会一直抛出该异常，直到rollback/subscribe重建连接
+ * 4. 预取使用第一次getWithoutAck的batchSize，服务端单次GET的等待时间为fetchTimeout
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class PrefetchCanalConnector implements CanalConnector {
+
+    private static final Logger           logger       = LoggerFactory.getLogger(PrefetchCanalConnector.class);
+    private final SimpleCanalConnector    connector;
+    private int                           prefetch     = 4;                                                    // 最多预取的批次数
+    private long                          fetchTimeout = 1000L;                                                // 服务端单次GET的等待时间(ms)，避免没有数据时空转
+    private BlockingQueue<Message>        queue;
+    private Semaphore                     permits;                                                             // 剩余可以发送的GET请求数
+    private Thread                        ioThread;
+    private volatile boolean              running      = false;
+    private volatile int                  inflight     = 0;                                                    // 在途的GET请求数，只由IO线程修改
+    private volatile CanalClientException error;
+    private int                           batchSize;
+
+    public PrefetchCanalConnector(SimpleCanalConnector connector){
+        this(connector, 4);
+    }
+
+    public PrefetchCanalConnector(SimpleCanalConnector connector, int prefetch){
+        this.connector = connector;
+        this.prefetch = prefetch;
+    }
+
+    public void connect() throws CanalClientException {
+        connector.connect();
+    }
+
+    public void disconnect() throws CanalClientException {
+        stopPrefetch(false);
+        connector.disconnect();
+    }
+
+    public boolean checkValid() throws CanalClientException {
+        return connector.checkValid();
+    }
+
+    public void subscribe(String filter) throws CanalClientException {
+        stopPrefetch(true);
+        connector.subscribe(filter);
+    }
+
+    public void subscribe() throws CanalClientException {
+        stopPrefetch(true);
+        connector.subscribe();
+    }
+
+    public void unsubscribe() throws CanalClientException {
+        stopPrefetch(true);
+        connector.unsubscribe();
+    }
+
+    public Message get(int batchSize) throws CanalClientException {
+        return get(batchSize, null, null);
+    }
+
+    public Message get(int batchSize, Long timeout, TimeUnit unit) throws CanalClientException {
+        Message message = getWithoutAck(batchSize, timeout, unit);
+        ack(message.getId());
+        return message;
+    }
+
+    public Message getWithoutAck(int batchSize) throws CanalClientException {
+        return getWithoutAck(batchSize, null, null);
+    }
+
+    /**
+     * 从预取队列中获取数据，timeout的语义和{@linkplain SimpleCanalConnector}保持一致: 为空或者小于0时不等待，
+     * 等于0时一直等待，没有数据时返回空包
+     */
+    public Message getWithoutAck(int batchSize, Long timeout, TimeUnit unit) throws CanalClientException {
+        startPrefetch(batchSize);
+        if (unit == null) {
+            unit = TimeUnit.MILLISECONDS;
+        }
+
+        try {
+            Message message = null;
+            if (timeout == null || timeout < 0) {
+                message = queue.poll();
+            } else if (timeout == 0) {
+                // 阻塞等待，同时检查IO线程的异常
+                while (message == null) {
+                    checkError();
+                    message = queue.poll(100, TimeUnit.MILLISECONDS);
+                }
+            } else {
+                message = queue.poll(timeout, unit);
+            }
+
+            if (message == null) {
+                checkError();
+                return new Message(-1, true, new ArrayList());
+            }
+
+            permits.release();
+            return message;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CanalClientException(e);
+        }
+    }
+
+    public void ack(long batchId) throws CanalClientException {
+        connector.ack(batchId);
+    }
+
+    /**
+     * 预取模式下后续的批次也已经发出，按照batchId回滚和全部回滚效果一致
+     */
+    public void rollback(long batchId) throws CanalClientException {
+        rollback();
+    }
+
+    public void rollback() throws CanalClientException {
+        stopPrefetch(true);
+        connector.rollback();
+    }
+
+    private synchronized void startPrefetch(int batchSize) {
+        checkError();
+        if (running) {
+            return;
+        }
+
+        this.batchSize = batchSize;
+        this.queue = new LinkedBlockingQueue<Message>(prefetch);
+        this.permits = new Semaphore(prefetch);
+        this.inflight = 0;
+        this.running = true;
+        ioThread = new Thread(new Runnable() {
+
+            public void run() {
+                prefetch();
+            }
+        }, "canal-client-prefetch");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * 停止IO线程，needDrain为true时读取并丢弃在途的结果，保证后续请求/响应的对应关系，
+     * IO线程异常或者读取失败时无法确定在途的响应，只能重建连接
+     */
+    private synchronized void stopPrefetch(boolean needDrain) {
+        if (ioThread != null) {
+            running = false;
+            try {
+                ioThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CanalClientException(e);
+            } finally {
+                ioThread = null;
+            }
+
+            try {
+                if (needDrain && error == null) {
+                    while (inflight > 0) {
+                        connector.receiveMessages();
+                        inflight--;
+                    }
+                }
+            } catch (Throwable e) {
+                logger.warn("drain inflight messages failed", e);
+                error = new CanalClientException(e);
+            } finally {
+                inflight = 0;
+                queue.clear();
+            }
+        }
+
+        if (needDrain && error != null) {
+            // 重建失败时保留异常，下一次rollback/subscribe继续重建
+            connector.reconnect();
+        }
+        error = null;
+    }
+
+    private void prefetch() {
+        try {
+            while (running) {
+                // 尽可能多的发送GET请求
+                while (permits.tryAcquire()) {
+                    connector.writeGet(batchSize, fetchTimeout, TimeUnit.MILLISECONDS);
+                    inflight++;
+                }
+
+                if (inflight == 0) {
+                    // 队列已满，等待应用取走数据
+                    if (permits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                        permits.release();
+                    }
+                    continue;
+                }
+
+                Message message = connector.receiveMessages();
+                inflight--;
+                if (message.getId() == -1) {
+                    permits.release(); // 空包不放入队列
+                } else {
+                    queue.put(message);
+                }
+            }
+        } catch (Throwable e) {
+            logger.error("prefetch messages failed", e);
+            error = (e instanceof CanalClientException) ? (CanalClientException) e : new CanalClientException(e);
+            running = false;
+        }
+    }
+
+    private void checkError() {
+        CanalClientException exception = error;
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    public SimpleCanalConnector getConnector() {
+        return connector;
+    }
+
+    public void setPrefetch(int prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    public void setFetchTimeout(long fetchTimeout) {
+        this.fetchTimeout = fetchTimeout;
+    }
+
+}
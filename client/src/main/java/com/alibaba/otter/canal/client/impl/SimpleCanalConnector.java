@@ -12,6 +12,8 @@ import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -24,6 +26,7 @@ import com.alibaba.otter.canal.client.impl.running.ClientRunningListener;
 import com.alibaba.otter.canal.client.impl.running.ClientRunningMonitor;
 import com.alibaba.otter.canal.common.utils.AddressUtils;
 import com.alibaba.otter.canal.common.utils.BooleanMutex;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.common.zookeeper.ZkClientx;
 import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
 import com.alibaba.otter.canal.protocol.CanalPacket.ClientAck;
@@ -38,6 +41,7 @@ import com.alibaba.otter.canal.protocol.CanalPacket.Sub;
 import com.alibaba.otter.canal.protocol.CanalPacket.Unsub;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.compress.CompressionCodecs;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
 import com.google.protobuf.ByteString;
 
@@ -72,6 +76,12 @@ public class SimpleCanalConnector implements CanalConnector {
     private boolean              rollbackOnConnect     = true;                                               // 是否在connect链接成功后，自动执行rollback操作
     private boolean              rollbackOnDisConnect  = false;                                              // 是否在connect链接成功后，自动执行rollback操作
     private boolean              lazyParseEntry        = false;                                              // 是否自动化解析Entry对象,如果考虑最大化性能可以延后解析
+    private Compression          compression           = Compression.NONE;                                   // 期望服务端使用的数据压缩方式，服务端不支持时不压缩
+    private volatile boolean     streaming             = false;                                              // 是否处于服务端推送模式
+    private long                 ackInterval           = 0;                                                  // 合并ack的时间间隔(ms)，大于0时定时发送累计ack，要求按batchId顺序ack
+    private long                 pendingAck            = -1L;                                                // 等待发送的最大batchId
+    private ScheduledExecutorService ackScheduler;
+    private Object               ackLock               = new Object();
     // 读写数据分别使用不同的锁进行控制，减小锁粒度,读也需要排他锁，并发度容易造成数据包混乱，反序列化失败
     private Object               readDataLock          = new Object();
     private Object               writeDataLock         = new Object();
@@ -131,6 +141,13 @@ public class SimpleCanalConnector implements CanalConnector {
             rollback();
         }
 
+        synchronized (ackLock) {
+            if (ackScheduler != null) {
+                ackScheduler.shutdownNow();
+                ackScheduler = null;
+            }
+        }
+
         connected = false;
         if (runningMonitor != null) {
             if (runningMonitor.isStart()) {
@@ -163,14 +180,19 @@ public class SimpleCanalConnector implements CanalConnector {
             }
             //
             Handshake handshake = Handshake.parseFrom(p.getBody());
-            supportedCompressions.add(handshake.getSupportedCompressions());
+            supportedCompressions.clear();
+            supportedCompressions.addAll(handshake.getSupportedCodecsList());
             //
-            ClientAuth ca = ClientAuth.newBuilder()
+            ClientAuth.Builder caBuilder = ClientAuth.newBuilder()
                 .setUsername(username != null ? username : "")
                 .setPassword(ByteString.copyFromUtf8(password != null ? password : ""))
                 .setNetReadTimeout(idleTimeout)
-                .setNetWriteTimeout(idleTimeout)
-                .build();
+                .setNetWriteTimeout(idleTimeout);
+            Compression negotiated = chooseCompression();
+            if (CompressionCodecs.isCompressed(negotiated)) {
+                caBuilder.setCompression(negotiated);
+            }
+            ClientAuth ca = caBuilder.build();
             writeWithHeader(Packet.newBuilder()
                 .setType(PacketType.CLIENTAUTHENTICATION)
                 .setBody(ca.toByteString())
@@ -189,14 +211,57 @@ public class SimpleCanalConnector implements CanalConnector {
             }
 
             connected = true;
+            streaming = false;
             return new InetSocketAddress(channel.socket().getLocalAddress(), channel.socket().getLocalPort());
         } catch (IOException e) {
             throw new CanalClientException(e);
         }
     }
 
+    /**
+     * 根据服务端handshake中声明的压缩方式选择本次链接使用的压缩方式，期望的方式双方都支持时优先使用，否则按服务端的顺序选择第一个客户端支持的方式。
+     * 服务端未声明时(旧版本)按期望的方式请求，由服务端决定是否启用
+     */
+    private Compression chooseCompression() {
+        if (!CompressionCodecs.isCompressed(compression)) {
+            return Compression.NONE;
+        }
+
+        if (supportedCompressions.isEmpty()) {
+            if (CompressionCodecs.isSupported(compression)) {
+                return compression;
+            }
+            logger.warn("compression {} is not supported in this connector, ignore it", compression);
+            return Compression.NONE;
+        }
+
+        if (supportedCompressions.contains(compression) && CompressionCodecs.isSupported(compression)) {
+            return compression;
+        }
+        for (Compression candidate : supportedCompressions) {
+            if (CompressionCodecs.isCompressed(candidate) && CompressionCodecs.isSupported(candidate)) {
+                logger.warn("compression {} is not supported by both server {} and connector, use {} instead",
+                    compression,
+                    supportedCompressions,
+                    candidate);
+                return candidate;
+            }
+        }
+        logger.warn("no compression is supported by both server {} and connector, ignore {}",
+            supportedCompressions,
+            compression);
+        return Compression.NONE;
+    }
+
 //
     private void doDisconnect() throws CanalClientException {
+        if (writableChannel != null) {
+            try {
+                flushAck(); // 关闭链接之前发送合并的ack
+            } catch (Throwable e) {
+                logger.warn("flush ack failed before disconnect", e);
+            }
+        }
         if (readableChannel != null) {
             quietlyClose(readableChannel);
             readableChannel = null;
@@ -211,6 +276,20 @@ public class SimpleCanalConnector implements CanalConnector {
         }
     }
 
+    /**
+     * 重建连接并恢复订阅，用于请求和响应已经无法对应的情况，比如{@linkplain PrefetchCanalConnector}读取在途的响应失败
+     */
+    void reconnect() throws CanalClientException {
+        doDisconnect();
+        doConnect();
+        if (clientIdentity.getFilter() != null) {
+            subscribe(clientIdentity.getFilter());
+        }
+        if (rollbackOnConnect) {
+            rollback();
+        }
+    }
+
 //
     private void quietlyClose(Channel channel) {
         try {
@@ -260,6 +339,7 @@ public class SimpleCanalConnector implements CanalConnector {
             return;
         }
         try {
+            flushAck();
             writeWithHeader(Packet.newBuilder()
                 .setType(PacketType.UNSUBSCRIPTION)
                 .setBody(Unsub.newBuilder()
@@ -302,15 +382,66 @@ public class SimpleCanalConnector implements CanalConnector {
         if (!running) {
             return null;
         }
+        if (streaming) {
+            throw new CanalClientException("connector is streaming, use receive() instead");
+        }
+        try {
+            writeGet(batchSize, timeout, unit);
+            return receiveMessages();
+        } catch (IOException e) {
+            throw new CanalClientException(e);
+        }
+    }
+
+    /**
+     * 只发送GET请求，不等待结果，用于{@linkplain PrefetchCanalConnector}连续发送多个请求
+     */
+    void writeGet(int batchSize, Long timeout, TimeUnit unit) throws IOException {
+        int size = (batchSize <= 0) ? 1000 : batchSize;
+        long time = (timeout == null || timeout < 0) ? -1 : timeout; // -1代表不做timeout控制
+        if (unit == null) {
+            unit = TimeUnit.MILLISECONDS;
+        }
+
+        writeWithHeader(Packet.newBuilder()
+            .setType(PacketType.GET)
+            .setBody(Get.newBuilder()
+                .setAutoAck(false)
+                .setDestination(clientIdentity.getDestination())
+                .setClientId(String.valueOf(clientIdentity.getClientId()))
+                .setFetchSize(size)
+                .setTimeout(time)
+                .setUnit(unit.ordinal())
+                .build()
+                .toByteString())
+            .build()
+            .toByteArray());
+    }
+
+    /**
+     * 开启服务端推送模式，服务端持续推送数据，最多允许window个未ack的批次，通过{@link #receive()}读取推送的数据
+     *
+     * @param batchSize 每个批次的最大条数
+     * @param window 未ack的最大批次数，ack/rollback之后服务端继续推送
+     * @param timeout 服务端单次获取数据的等待时间，为空时使用服务端默认值
+     */
+    public void stream(int batchSize, int window, Long timeout, TimeUnit unit) throws CanalClientException {
+        waitClientRunning();
+        if (!running) {
+            return;
+        }
+        if (window <= 0) {
+            throw new CanalClientException("window should be positive: " + window);
+        }
         try {
             int size = (batchSize <= 0) ? 1000 : batchSize;
-            long time = (timeout == null || timeout < 0) ? -1 : timeout; // -1代表不做timeout控制
+            long time = (timeout == null || timeout < 0) ? -1 : timeout;
             if (unit == null) {
                 unit = TimeUnit.MILLISECONDS;
             }
 
             writeWithHeader(Packet.newBuilder()
-                .setType(PacketType.GET)
+                .setType(PacketType.STREAM)
                 .setBody(Get.newBuilder()
                     .setAutoAck(false)
                     .setDestination(clientIdentity.getDestination())
@@ -318,17 +449,80 @@ public class SimpleCanalConnector implements CanalConnector {
                     .setFetchSize(size)
                     .setTimeout(time)
                     .setUnit(unit.ordinal())
+                    .setWindow(window)
                     .build()
                     .toByteString())
                 .build()
                 .toByteArray());
+            Packet p = Packet.parseFrom(readNextPacket());
+            Ack ack = Ack.parseFrom(p.getBody());
+            if (ack.getErrorCode() > 0) {
+                throw new CanalClientException("failed to stream with reason: " + ack.getErrorMessage());
+            }
+
+            streaming = true;
+        } catch (IOException e) {
+            throw new CanalClientException(e);
+        }
+    }
+
+    /**
+     * 读取服务端推送的下一个批次，在soTimeout时间内没有数据时抛出超时异常
+     */
+    public Message receive() throws CanalClientException {
+        waitClientRunning();
+        if (!running) {
+            return null;
+        }
+        if (!streaming) {
+            throw new CanalClientException("connector is not streaming, call stream() first");
+        }
+        try {
             return receiveMessages();
         } catch (IOException e) {
             throw new CanalClientException(e);
         }
     }
 
-    private Message receiveMessages() throws IOException {
+    /**
+     * 停止服务端推送，丢弃已经在途的批次并回滚所有未ack的批次，之后可以继续使用get模式
+     */
+    public void stopStream() throws CanalClientException {
+        waitClientRunning();
+        if (!running || !streaming) {
+            return;
+        }
+        try {
+            writeWithHeader(Packet.newBuilder()
+                .setType(PacketType.STREAM)
+                .setBody(Get.newBuilder()
+                    .setDestination(clientIdentity.getDestination())
+                    .setClientId(String.valueOf(clientIdentity.getClientId()))
+                    .setWindow(0)
+                    .build()
+                    .toByteString())
+                .build()
+                .toByteArray());
+            // 服务端在最后一个推送的批次之后回复ack
+            while (true) {
+                Packet p = Packet.parseFrom(readNextPacket());
+                if (p.getType() == PacketType.ACK) {
+                    Ack ack = Ack.parseFrom(p.getBody());
+                    if (ack.getErrorCode() > 0) {
+                        throw new CanalClientException("failed to stop stream with reason: " + ack.getErrorMessage());
+                    }
+                    break;
+                }
+            }
+
+            streaming = false;
+        } catch (IOException e) {
+            throw new CanalClientException(e);
+        }
+        rollback();
+    }
+
+    Message receiveMessages() throws IOException {
         byte[] data = readNextPacket();
         return CanalMessageDeserializer.deserializer(data, lazyParseEntry);
     }
@@ -339,25 +533,75 @@ public class SimpleCanalConnector implements CanalConnector {
         if (!running) {
             return;
         }
+
+        try {
+            if (ackInterval > 0 && batchId > 0) {
+                // 只记录最大的batchId，由定时任务发送累计ack
+                synchronized (ackLock) {
+                    pendingAck = Math.max(pendingAck, batchId);
+                    if (ackScheduler == null) {
+                        startAckScheduler();
+                    }
+                }
+            } else {
+                writeAck(batchId, false);
+            }
+        } catch (IOException e) {
+            throw new CanalClientException(e);
+        }
+    }
+
+    /**
+     * 立即发送合并的ack
+     */
+    public void flushAck() throws CanalClientException {
+        synchronized (ackLock) {
+            if (pendingAck <= 0) {
+                return;
+            }
+
+            try {
+                writeAck(pendingAck, true);
+            } catch (IOException e) {
+                throw new CanalClientException(e);
+            } finally {
+                pendingAck = -1L; // 发送失败时链接已经不可用，重连之后会rollback
+            }
+        }
+    }
+
+    private void writeAck(long batchId, boolean cumulative) throws IOException {
         ClientAck ca = ClientAck.newBuilder()
             .setDestination(clientIdentity.getDestination())
             .setClientId(String.valueOf(clientIdentity.getClientId()))
             .setBatchId(batchId)
+            .setCumulative(cumulative)
             .build();
-        try {
-            writeWithHeader(Packet.newBuilder()
-                .setType(PacketType.CLIENTACK)
-                .setBody(ca.toByteString())
-                .build()
-                .toByteArray());
-        } catch (IOException e) {
-            throw new CanalClientException(e);
-        }
+        writeWithHeader(Packet.newBuilder()
+            .setType(PacketType.CLIENTACK)
+            .setBody(ca.toByteString())
+            .build()
+            .toByteArray());
+    }
+
+    private void startAckScheduler() {
+        ackScheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("canal-client-ack"));
+        ackScheduler.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    flushAck();
+                } catch (Throwable e) {
+                    logger.warn("flush ack failed", e);
+                }
+            }
+        }, ackInterval, ackInterval, TimeUnit.MILLISECONDS);
     }
 
 //
     public void rollback(long batchId) throws CanalClientException {
         waitClientRunning();
+        flushAck(); // 已经ack的批次不需要回滚
         ClientRollback ca = ClientRollback.newBuilder()
             .setDestination(clientIdentity.getDestination())
             .setClientId(String.valueOf(clientIdentity.getClientId()))
@@ -545,6 +789,22 @@ public class SimpleCanalConnector implements CanalConnector {
         this.lazyParseEntry = lazyParseEntry;
     }
 
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public long getAckInterval() {
+        return ackInterval;
+    }
+
+    public void setAckInterval(long ackInterval) {
+        this.ackInterval = ackInterval;
+    }
+
     public void stopRunning() {
         if (running) {
             running = false; // 设置为非running状态
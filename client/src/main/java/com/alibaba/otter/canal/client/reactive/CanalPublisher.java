@@ -0,0 +1,226 @@
+package com.alibaba.otter.canal.client.reactive;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.client.CanalConnector;
+import com.alibaba.otter.canal.client.CanalMQConnector;
+import com.alibaba.otter.canal.protocol.Message;
+
+/**
+ * 基于{@linkplain CanalConnector}/{@linkplain CanalMQConnector}的{@linkplain Publisher}，替代手写的get/ack/rollback循环
+ *
+ * <pre>
+ * 1. 下游request(n)的需求量按entry计数，单次get的batchSize = min(剩余需求, maxBatchSize)，内存中最多只有n个entry
+ * 2. 每个Message消耗其entry数量的需求(至少为1)，空批次不会下发
+ * 3. onNext正常返回之后ack该批次，MQ模式下一次拉取的所有Message都完成之后再ack
+ * 4. onNext抛出异常或者connector异常时rollback，并通过onError通知下游，订阅结束
+ * 5. canal的数据流没有终点，不会调用onComplete，下游通过cancel结束订阅
+ * </pre>
+ *
+ * 每个Publisher只支持一个订阅者，数据拉取和下发都在独立的"canal-publisher"线程中完成
+ *
+ * @since 1.1.3
+ */
+public class CanalPublisher implements Publisher<Message> {
+
+    private static final Logger  logger       = LoggerFactory.getLogger(CanalPublisher.class);
+    private final CanalConnector connector;
+    private String               filter;                                                       // 订阅的filter，为null时使用服务端的配置
+    private int                  maxBatchSize = 1000;                                          // 单次获取的最大entry数
+    private long                 fetchTimeout = 1000L;                                         // 单次获取的等待时间(ms)，同时决定cancel的响应时间
+    private final AtomicBoolean  subscribed   = new AtomicBoolean(false);
+
+    public CanalPublisher(CanalConnector connector){
+        this(connector, null, 1000);
+    }
+
+    public CanalPublisher(CanalConnector connector, String filter, int maxBatchSize){
+        this.connector = connector;
+        this.filter = filter;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void subscribe(Subscriber<? super Message> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber is null");
+        }
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+
+                public void request(long n) {
+                }
+
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("CanalPublisher only supports one subscriber"));
+            return;
+        }
+
+        CanalSubscription subscription = new CanalSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        Thread thread = new Thread(subscription, "canal-publisher");
+        thread.start();
+    }
+
+    private static int sizeOf(Message message) {
+        return message.isRaw() ? message.getRawEntries().size() : message.getEntries().size();
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void setFetchTimeout(long fetchTimeout) {
+        this.fetchTimeout = fetchTimeout;
+    }
+
+    /**
+     * 单个订阅者的需求管理和数据拉取
+     */
+    private class CanalSubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super Message> subscriber;
+        private final Object                      lock      = new Object();
+        private long                              demand    = 0;            // 剩余的需求量(entry数)
+        private volatile boolean                  cancelled = false;
+        private Throwable                         invalid;                  // 非法的request参数
+
+        CanalSubscription(Subscriber<? super Message> subscriber){
+            this.subscriber = subscriber;
+        }
+
+        public void request(long n) {
+            synchronized (lock) {
+                if (n <= 0) {
+                    // Reactive Streams 3.9
+                    invalid = new IllegalArgumentException("request must be positive, but was " + n);
+                    cancelled = true;
+                } else {
+                    demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+                }
+                lock.notifyAll();
+            }
+        }
+
+        public void cancel() {
+            synchronized (lock) {
+                cancelled = true;
+                lock.notifyAll();
+            }
+        }
+
+        public void run() {
+            try {
+                connector.connect();
+                if (filter != null) {
+                    connector.subscribe(filter);
+                } else {
+                    connector.subscribe();
+                }
+                connector.rollback(); // 回到上一次ack的位置
+
+                while (awaitDemand()) {
+                    if (connector instanceof CanalMQConnector) {
+                        emitList((CanalMQConnector) connector);
+                    } else {
+                        emit();
+                    }
+                }
+
+                if (invalid != null) {
+                    subscriber.onError(invalid);
+                }
+            } catch (Throwable e) {
+                logger.error("publish canal messages failed", e);
+                try {
+                    connector.rollback();
+                } catch (Throwable re) {
+                    logger.warn("rollback failed", re);
+                }
+                cancelled = true;
+                subscriber.onError(e);
+            } finally {
+                try {
+                    connector.disconnect();
+                } catch (Throwable e) {
+                    logger.warn("disconnect failed", e);
+                }
+            }
+        }
+
+        private void emit() {
+            int batchSize;
+            synchronized (lock) {
+                batchSize = (int) Math.min(demand, maxBatchSize);
+            }
+
+            Message message = connector.getWithoutAck(batchSize, fetchTimeout, TimeUnit.MILLISECONDS);
+            long batchId = message.getId();
+            int size = sizeOf(message);
+            if (batchId == -1 || size == 0) {
+                if (batchId != -1) {
+                    connector.ack(batchId);
+                }
+                return;
+            }
+
+            if (cancelled) {
+                connector.rollback(batchId);
+                return;
+            }
+
+            consume(size);
+            subscriber.onNext(message);
+            connector.ack(batchId);
+        }
+
+        private void emitList(CanalMQConnector mqConnector) throws InterruptedException {
+            List<Message> messages = mqConnector.getListWithoutAck(fetchTimeout, TimeUnit.MILLISECONDS);
+            if (messages == null || messages.isEmpty()) {
+                return;
+            }
+
+            // MQ的拉取数量由consumer配置决定，超出需求的部分等待下游继续request
+            for (Message message : messages) {
+                int size = sizeOf(message);
+                if (size == 0) {
+                    continue;
+                }
+
+                if (!awaitDemand()) {
+                    mqConnector.rollback();
+                    return;
+                }
+                consume(size);
+                subscriber.onNext(message);
+            }
+            mqConnector.ack();
+        }
+
+        private boolean awaitDemand() throws InterruptedException {
+            synchronized (lock) {
+                while (!cancelled && demand == 0) {
+                    lock.wait();
+                }
+                return !cancelled;
+            }
+        }
+
+        private void consume(int size) {
+            synchronized (lock) {
+                demand = Math.max(0, demand - size);
+            }
+        }
+    }
+}
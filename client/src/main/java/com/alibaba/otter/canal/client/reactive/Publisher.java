@@ -0,0 +1,19 @@
+package com.alibaba.otter.canal.client.reactive;
+
+/**
+ * 数据发布者，接口定义和Reactive Streams(org.reactivestreams.Publisher)保持一致
+ *
+ * <pre>
+ * client依然基于jdk1.7编译，无法直接使用java.util.concurrent.Flow，也不额外引入reactive-streams依赖，
+ * 需要对接Reactor/RxJava等框架时，简单的适配即可
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public interface Publisher<T> {
+
+    /**
+     * 订阅数据，通过{@linkplain Subscriber#onSubscribe(Subscription)}回传{@linkplain Subscription}
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+}
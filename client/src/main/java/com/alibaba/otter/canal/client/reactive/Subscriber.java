@@ -0,0 +1,17 @@
+package com.alibaba.otter.canal.client.reactive;
+
+/**
+ * 数据订阅者，接口定义和Reactive Streams(org.reactivestreams.Subscriber)保持一致
+ *
+ * @since 1.1.3
+ */
+public interface Subscriber<T> {
+
+    void onSubscribe(Subscription subscription);
+
+    void onNext(T t);
+
+    void onError(Throwable t);
+
+    void onComplete();
+}
@@ -0,0 +1,19 @@
+package com.alibaba.otter.canal.client.reactive;
+
+/**
+ * 订阅关系，接口定义和Reactive Streams(org.reactivestreams.Subscription)保持一致
+ *
+ * @since 1.1.3
+ */
+public interface Subscription {
+
+    /**
+     * 增加下游的需求量
+     */
+    void request(long n);
+
+    /**
+     * 取消订阅
+     */
+    void cancel();
+}
@@ -0,0 +1,104 @@
+package com.alibaba.otter.canal.client;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.Pair;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.Message;
+
+/**
+ * 验证EntryView扫描的头部字段以及按列解析的结果和完整解析一致
+ *
+ * @since 1.1.3
+ */
+public class EntryViewTest {
+
+    @Test
+    public void testHeader() {
+        Entry entry = buildEntry();
+        EntryView view = new EntryView(entry.toByteString());
+        Assert.assertEquals(EntryType.ROWDATA, view.getEntryType());
+        Assert.assertEquals("mysql-bin.000001", view.getLogfileName());
+        Assert.assertEquals(1024L, view.getLogfileOffset());
+        Assert.assertEquals(1553760000000L, view.getExecuteTime());
+        Assert.assertEquals("test", view.getSchemaName());
+        Assert.assertEquals("test_table", view.getTableName());
+        Assert.assertEquals(EventType.INSERT, view.getEventType());
+        Assert.assertEquals("uuid:1-10", view.getGtid());
+        Assert.assertEquals(entry, view.getEntry());
+        Assert.assertEquals(entry.getStoreValue(), view.getStoreValue());
+
+        // 缺省字段和protobuf解析的默认值一致
+        Entry empty = Entry.newBuilder().build();
+        view = new EntryView(empty.toByteString());
+        Assert.assertEquals(empty.getEntryType(), view.getEntryType());
+        Assert.assertEquals(empty.getHeader().getEventType(), view.getEventType());
+        Assert.assertEquals("", view.getTableName());
+    }
+
+    @Test
+    public void testColumns() throws Exception {
+        Entry entry = buildEntry();
+        RowChange full = RowChange.parseFrom(entry.getStoreValue());
+        List<EntryView> views = EntryView.of(new Message(1L, true, Arrays.asList(entry.toByteString())));
+        Assert.assertEquals(1, views.size());
+        EntryView view = views.get(0);
+        Assert.assertEquals(full, view.getRowChange());
+        Assert.assertEquals(full, view.getRowChange(null));
+
+        RowChange part = view.getRowChange(Arrays.asList("ID", "name"));
+        Assert.assertEquals(full.getSql(), part.getSql());
+        Assert.assertEquals(full.getEventType(), part.getEventType());
+        Assert.assertEquals(full.getPropsList(), part.getPropsList());
+        Assert.assertEquals(full.getRowDatasCount(), part.getRowDatasCount());
+        for (int i = 0; i < full.getRowDatasCount(); i++) {
+            RowData fullRow = full.getRowDatas(i);
+            RowData partRow = part.getRowDatas(i);
+            Assert.assertEquals(fullRow.getPropsList(), partRow.getPropsList());
+            Assert.assertEquals(2, partRow.getAfterColumnsCount());
+            Assert.assertEquals(fullRow.getAfterColumns(0), partRow.getAfterColumns(0));
+            Assert.assertEquals(fullRow.getAfterColumns(1), partRow.getAfterColumns(1));
+        }
+
+        Assert.assertEquals(0, view.getRowChange(Arrays.asList("unknown")).getRowDatas(0).getAfterColumnsCount());
+    }
+
+    private Entry buildEntry() {
+        Header header = Header.newBuilder()
+            .setLogfileName("mysql-bin.000001")
+            .setLogfileOffset(1024L)
+            .setExecuteTime(1553760000000L)
+            .setSchemaName("test")
+            .setTableName("test_table")
+            .setEventType(EventType.INSERT)
+            .addProps(Pair.newBuilder().setKey("key").setValue("value"))
+            .setGtid("uuid:1-10")
+            .build();
+        RowChange.Builder rowChange = RowChange.newBuilder()
+            .setEventType(EventType.INSERT)
+            .setSql("insert into test_table values(?,?,?)")
+            .addProps(Pair.newBuilder().setKey("rowsCount").setValue("2"));
+        for (int i = 0; i < 2; i++) {
+            rowChange.addRowDatas(RowData.newBuilder()
+                .addAfterColumns(Column.newBuilder().setIndex(0).setName("id").setIsKey(true).setValue("" + i))
+                .addAfterColumns(Column.newBuilder().setIndex(1).setName("name").setValue("name" + i))
+                .addAfterColumns(Column.newBuilder().setIndex(2).setName("content").setIsNull(true))
+                .addProps(Pair.newBuilder().setKey("row").setValue("" + i)));
+        }
+        return Entry.newBuilder()
+            .setHeader(header)
+            .setEntryType(EntryType.ROWDATA)
+            .setStoreValue(rowChange.build().toByteString())
+            .build();
+    }
+}
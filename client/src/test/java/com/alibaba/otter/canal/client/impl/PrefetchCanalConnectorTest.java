@@ -0,0 +1,153 @@
+package com.alibaba.otter.canal.client.impl;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+
+/**
+ * 验证预取模式下rollback/异常之后请求和响应的对应关系，以及getWithoutAck的timeout语义
+ *
+ * @since 1.1.3
+ */
+public class PrefetchCanalConnectorTest {
+
+    private FakeConnector          fake      = new FakeConnector();
+    private PrefetchCanalConnector connector = new PrefetchCanalConnector(fake, 4);
+
+    @After
+    public void tearDown() {
+        connector.disconnect();
+    }
+
+    @Test(timeout = 10000)
+    public void testDrainOnRollback() throws Exception {
+        Assert.assertEquals(1L, connector.getWithoutAck(10, 0L, TimeUnit.MILLISECONDS).getId());
+        // 等待IO线程把GET请求发满
+        while (fake.writes.get() < 5) {
+            Thread.sleep(10L);
+        }
+
+        connector.rollback();
+        Assert.assertEquals(0, fake.pending.size());
+        Assert.assertEquals(0, fake.reconnects.get());
+        Assert.assertTrue(connector.getWithoutAck(10, 0L, TimeUnit.MILLISECONDS).getId() >= fake.rollbackBatchId);
+    }
+
+    @Test(timeout = 10000)
+    public void testReconnectAfterError() throws Exception {
+        fake.failAt = 2;
+        Assert.assertEquals(1L, connector.getWithoutAck(10, 0L, TimeUnit.MILLISECONDS).getId());
+        try {
+            connector.getWithoutAck(10, 0L, TimeUnit.MILLISECONDS);
+            Assert.fail("expect io error");
+        } catch (CanalClientException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        // 没有rollback之前一直返回相同的异常
+        try {
+            connector.getWithoutAck(10);
+            Assert.fail("expect io error");
+        } catch (CanalClientException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+
+        // 在途的响应数已经无法确定，需要重建连接，不能读到rollback之前发出的GET的响应
+        connector.rollback();
+        Assert.assertEquals(1, fake.reconnects.get());
+        Message message = connector.getWithoutAck(10, 0L, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(message.getId() >= fake.rollbackBatchId);
+        Assert.assertEquals(message.getId() + 1, connector.getWithoutAck(10, 0L, TimeUnit.MILLISECONDS).getId());
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeout() {
+        fake.hasData = false;
+        // 和SimpleCanalConnector一致，为空或者小于0时不等待
+        Assert.assertEquals(-1L, connector.getWithoutAck(10).getId());
+        Assert.assertEquals(-1L, connector.getWithoutAck(10, -1L, TimeUnit.MILLISECONDS).getId());
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(-1L, connector.getWithoutAck(10, 200L, TimeUnit.MILLISECONDS).getId());
+        Assert.assertTrue(System.currentTimeMillis() - start >= 150L);
+    }
+
+    /**
+     * 模拟服务端按照GET的顺序返回连续的batchId，failAt指定第几次读取时连接异常
+     */
+    private static class FakeConnector extends SimpleCanalConnector {
+
+        private final LinkedList<Long> pending         = new LinkedList<Long>();        // 在途GET对应的batchId
+        private final AtomicInteger    writes          = new AtomicInteger();
+        private final AtomicInteger    reconnects      = new AtomicInteger();
+        private long                   nextBatchId     = 1;
+        private int                    receives        = 0;
+        private volatile int           failAt          = -1;
+        private volatile boolean       hasData         = true;
+        private volatile long          rollbackBatchId = -1;                            // rollback之后的第一个batchId
+
+        public FakeConnector(){
+            super(new InetSocketAddress("127.0.0.1", 11111), "", "", "example");
+        }
+
+        @Override
+        void writeGet(int batchSize, Long timeout, TimeUnit unit) throws IOException {
+            synchronized (pending) {
+                pending.add(hasData ? nextBatchId++ : -1L);
+            }
+            writes.incrementAndGet();
+        }
+
+        @Override
+        Message receiveMessages() throws IOException {
+            Long batchId;
+            synchronized (pending) {
+                batchId = pending.poll();
+            }
+            if (++receives == failAt) {
+                throw new IOException("connection reset by peer");
+            }
+            if (batchId == -1L) {
+                // 服务端等待fetchTimeout之后返回空包
+                try {
+                    Thread.sleep(20L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new Message(batchId, true, new ArrayList());
+        }
+
+        @Override
+        void reconnect() throws CanalClientException {
+            synchronized (pending) {
+                pending.clear();
+            }
+            reconnects.incrementAndGet();
+        }
+
+        @Override
+        public void rollback() throws CanalClientException {
+            synchronized (pending) {
+                rollbackBatchId = nextBatchId;
+            }
+        }
+
+        @Override
+        public void ack(long batchId) throws CanalClientException {
+        }
+
+        @Override
+        public void disconnect() throws CanalClientException {
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.alibaba.otter.canal.client.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientAck;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientRollback;
+import com.alibaba.otter.canal.protocol.CanalPacket.Handshake;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.google.protobuf.ByteString;
+
+/**
+ * 验证ack合并：按间隔发送累计ack，rollback和断开链接之前先发送合并的ack
+ *
+ * @since 1.1.3
+ */
+public class SimpleCanalConnectorAckTest {
+
+    private FakeServer           server;
+    private SimpleCanalConnector connector;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeServer();
+        server.start();
+        connector = new SimpleCanalConnector(new InetSocketAddress("127.0.0.1", server.getPort()),
+            "",
+            "",
+            "example");
+        connector.setRollbackOnConnect(false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testAckWithoutInterval() throws Exception {
+        connector.connect();
+        connector.ack(1L);
+        assertAck(server.next(), 1L, false);
+        connector.disconnect();
+    }
+
+    @Test(timeout = 10000)
+    public void testCoalesceAcks() throws Exception {
+        connector.setAckInterval(60 * 1000L);
+        connector.connect();
+        connector.ack(1L);
+        connector.ack(2L);
+        connector.ack(3L);
+        // 间隔内不发送
+        Assert.assertNull(server.packets.poll(200L, TimeUnit.MILLISECONDS));
+
+        connector.flushAck();
+        assertAck(server.next(), 3L, true);
+        // 没有新的ack时flush不发送
+        connector.flushAck();
+        Assert.assertNull(server.packets.poll(200L, TimeUnit.MILLISECONDS));
+
+        // 断开链接之前发送合并的ack
+        connector.ack(4L);
+        connector.disconnect();
+        assertAck(server.next(), 4L, true);
+    }
+
+    @Test(timeout = 10000)
+    public void testScheduledFlush() throws Exception {
+        connector.setAckInterval(100L);
+        connector.connect();
+        connector.ack(1L);
+        connector.ack(2L);
+        assertAck(server.next(), 2L, true);
+
+        connector.ack(3L);
+        assertAck(server.next(), 3L, true);
+        connector.disconnect();
+    }
+
+    @Test(timeout = 10000)
+    public void testFlushBeforeRollback() throws Exception {
+        connector.setAckInterval(60 * 1000L);
+        connector.connect();
+        connector.ack(1L);
+        connector.ack(2L);
+        connector.rollback();
+
+        // 已经ack的批次先确认，rollback只回滚之后的批次
+        assertAck(server.next(), 2L, true);
+        Packet packet = server.next();
+        Assert.assertEquals(PacketType.CLIENTROLLBACK, packet.getType());
+        Assert.assertEquals(0L, ClientRollback.parseFrom(packet.getBody()).getBatchId());
+        connector.disconnect();
+    }
+
+    private void assertAck(Packet packet, long batchId, boolean cumulative) throws IOException {
+        Assert.assertEquals(PacketType.CLIENTACK, packet.getType());
+        ClientAck ack = ClientAck.parseFrom(packet.getBody());
+        Assert.assertEquals(batchId, ack.getBatchId());
+        Assert.assertEquals(cumulative, ack.getCumulative());
+    }
+
+    /**
+     * 完成握手和鉴权之后，记录客户端发送的所有数据包
+     */
+    private static class FakeServer extends Thread {
+
+        private final ServerSocket          serverSocket = new ServerSocket(0);
+        private final BlockingQueue<Packet> packets      = new LinkedBlockingQueue<Packet>();
+        private volatile Socket             socket;
+
+        public FakeServer() throws IOException{
+            setDaemon(true);
+        }
+
+        public int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    socket = serverSocket.accept();
+                    DataInputStream input = new DataInputStream(socket.getInputStream());
+                    DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+                    write(output, PacketType.HANDSHAKE, Handshake.newBuilder()
+                        .setSeeds(ByteString.copyFromUtf8("seeds"))
+                        .build()
+                        .toByteString());
+                    read(input);
+                    write(output, PacketType.ACK, Ack.newBuilder().build().toByteString());
+                    try {
+                        while (true) {
+                            packets.add(read(input));
+                        }
+                    } catch (IOException e) {
+                        // 客户端断开
+                    }
+                }
+            } catch (IOException e) {
+                // server关闭
+            }
+        }
+
+        Packet next() throws InterruptedException {
+            Packet packet = packets.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(packet);
+            return packet;
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            if (socket != null) {
+                socket.close();
+            }
+        }
+
+        private Packet read(DataInputStream input) throws IOException {
+            byte[] body = new byte[input.readInt()];
+            input.readFully(body);
+            return Packet.parseFrom(body);
+        }
+
+        private void write(DataOutputStream output, PacketType type, ByteString body) throws IOException {
+            byte[] bytes = Packet.newBuilder().setVersion(1).setType(type).setBody(body).build().toByteArray();
+            output.writeInt(bytes.length);
+            output.write(bytes);
+            output.flush();
+        }
+    }
+}
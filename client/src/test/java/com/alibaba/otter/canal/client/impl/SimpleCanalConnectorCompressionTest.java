@@ -0,0 +1,122 @@
+package com.alibaba.otter.canal.client.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientAuth;
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
+import com.alibaba.otter.canal.protocol.CanalPacket.Handshake;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.protocol.compress.CompressionCodecs;
+import com.google.protobuf.ByteString;
+
+/**
+ * 验证客户端根据handshake中服务端声明的压缩方式选择ClientAuth中的压缩方式
+ *
+ * @since 1.1.3
+ */
+public class SimpleCanalConnectorCompressionTest {
+
+    @Test(timeout = 10000)
+    public void testRequestedCodecAdvertised() throws Exception {
+        Assert.assertEquals(Compression.GZIP,
+            negotiate(Compression.GZIP, Arrays.asList(Compression.ZLIB, Compression.GZIP)));
+    }
+
+    @Test(timeout = 10000)
+    public void testFallbackToAdvertisedCodec() throws Exception {
+        // 服务端未声明期望的方式时，按服务端的顺序选择客户端支持的第一个
+        Assert.assertEquals(Compression.ZLIB,
+            negotiate(Compression.LZF, Arrays.asList(Compression.LZF, Compression.ZLIB, Compression.GZIP)));
+        Assert.assertEquals(Compression.GZIP, negotiate(Compression.ZLIB, Arrays.asList(Compression.GZIP)));
+    }
+
+    @Test(timeout = 10000)
+    public void testNoCommonCodec() throws Exception {
+        // 不压缩时ClientAuth中不设置该字段
+        Assert.assertFalse(CompressionCodecs.isCompressed(negotiate(Compression.GZIP,
+            Arrays.asList(Compression.LZF))));
+        Assert.assertFalse(CompressionCodecs.isCompressed(negotiate(Compression.NONE,
+            Arrays.asList(Compression.ZLIB, Compression.GZIP))));
+    }
+
+    @Test(timeout = 10000)
+    public void testServerWithoutCodecs() throws Exception {
+        // 旧版本服务端不声明，按期望的方式请求
+        Assert.assertEquals(Compression.GZIP, negotiate(Compression.GZIP, Arrays.<Compression> asList()));
+    }
+
+    /**
+     * 返回客户端在ClientAuth中请求的压缩方式
+     */
+    private Compression negotiate(Compression compression, List<Compression> codecs) throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final ByteString handshake = Handshake.newBuilder().addAllSupportedCodecs(codecs).build().toByteString();
+        final BlockingQueue<ClientAuth> auths = new LinkedBlockingQueue<ClientAuth>();
+        Thread server = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    try {
+                        DataInputStream input = new DataInputStream(socket.getInputStream());
+                        DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+                        write(output, PacketType.HANDSHAKE, handshake);
+                        auths.add(ClientAuth.parseFrom(read(input).getBody()));
+                        write(output, PacketType.ACK, Ack.newBuilder().build().toByteString());
+                        // 等待客户端断开
+                        while (input.read() != -1) {
+                        }
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // server关闭
+                }
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+
+        SimpleCanalConnector connector = new SimpleCanalConnector(new InetSocketAddress("127.0.0.1",
+            serverSocket.getLocalPort()), "", "", "example");
+        connector.setRollbackOnConnect(false);
+        connector.setCompression(compression);
+        try {
+            connector.connect();
+            ClientAuth auth = auths.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(auth);
+            return auth.getCompression();
+        } finally {
+            connector.disconnect();
+            serverSocket.close();
+        }
+    }
+
+    private static Packet read(DataInputStream input) throws IOException {
+        byte[] body = new byte[input.readInt()];
+        input.readFully(body);
+        return Packet.parseFrom(body);
+    }
+
+    private static void write(DataOutputStream output, PacketType type, ByteString body) throws IOException {
+        byte[] bytes = Packet.newBuilder().setVersion(1).setType(type).setBody(body).build().toByteArray();
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        output.flush();
+    }
+}
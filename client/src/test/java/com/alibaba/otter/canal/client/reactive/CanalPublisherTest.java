@@ -0,0 +1,162 @@
+package com.alibaba.otter.canal.client.reactive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.CanalConnector;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+
+/**
+ * 验证CanalPublisher按照下游需求决定batchSize，以及onNext之后的ack/rollback
+ *
+ * @since 1.1.3
+ */
+public class CanalPublisherTest {
+
+    @Test
+    public void testDemand() throws InterruptedException {
+        final FakeConnector connector = new FakeConnector();
+        final CountDownLatch latch = new CountDownLatch(3);
+        final List<Long> received = Collections.synchronizedList(new ArrayList<Long>());
+        CanalPublisher publisher = new CanalPublisher(connector, null, 8);
+        publisher.subscribe(new Subscriber<Message>() {
+
+            private Subscription subscription;
+
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(5);
+            }
+
+            public void onNext(Message message) {
+                received.add(message.getId());
+                latch.countDown();
+                if (latch.getCount() == 0) {
+                    subscription.cancel();
+                } else {
+                    subscription.request(20);
+                }
+            }
+
+            public void onError(Throwable t) {
+                Assert.fail(t.getMessage());
+            }
+
+            public void onComplete() {
+            }
+        });
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        connector.awaitDisconnect();
+        Assert.assertEquals(3, received.size());
+        // 第一次只请求了5个entry，之后受maxBatchSize限制
+        Assert.assertEquals(Integer.valueOf(5), connector.batchSizes.get(0));
+        Assert.assertEquals(Integer.valueOf(8), connector.batchSizes.get(1));
+        Assert.assertEquals(received, connector.acks);
+    }
+
+    @Test
+    public void testError() throws InterruptedException {
+        final FakeConnector connector = new FakeConnector();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        new CanalPublisher(connector).subscribe(new Subscriber<Message>() {
+
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            public void onNext(Message message) {
+                throw new IllegalStateException("process failed");
+            }
+
+            public void onError(Throwable t) {
+                errors.add(t);
+                latch.countDown();
+            }
+
+            public void onComplete() {
+            }
+        });
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        connector.awaitDisconnect();
+        Assert.assertEquals("process failed", errors.get(0).getMessage());
+        Assert.assertTrue(connector.acks.isEmpty());
+        Assert.assertEquals(2, connector.rollbacks); // 订阅时一次，失败时一次
+    }
+
+    private static class FakeConnector implements CanalConnector {
+
+        private final List<Integer>  batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        private final List<Long>     acks       = Collections.synchronizedList(new ArrayList<Long>());
+        private volatile int         rollbacks  = 0;
+        private long                 batchId    = 0;
+        private final CountDownLatch disconnect = new CountDownLatch(1);
+
+        public void connect() throws CanalClientException {
+        }
+
+        public void disconnect() throws CanalClientException {
+            disconnect.countDown();
+        }
+
+        public boolean checkValid() throws CanalClientException {
+            return true;
+        }
+
+        public void subscribe(String filter) throws CanalClientException {
+        }
+
+        public void subscribe() throws CanalClientException {
+        }
+
+        public void unsubscribe() throws CanalClientException {
+        }
+
+        public Message get(int batchSize) throws CanalClientException {
+            throw new UnsupportedOperationException();
+        }
+
+        public Message get(int batchSize, Long timeout, TimeUnit unit) throws CanalClientException {
+            throw new UnsupportedOperationException();
+        }
+
+        public Message getWithoutAck(int batchSize) throws CanalClientException {
+            return getWithoutAck(batchSize, null, null);
+        }
+
+        public Message getWithoutAck(int batchSize, Long timeout, TimeUnit unit) throws CanalClientException {
+            batchSizes.add(batchSize);
+            List<Entry> entries = new ArrayList<Entry>();
+            for (int i = 0; i < batchSize; i++) {
+                entries.add(Entry.newBuilder().build());
+            }
+            return new Message(++batchId, entries);
+        }
+
+        public void ack(long batchId) throws CanalClientException {
+            acks.add(batchId);
+        }
+
+        public void rollback(long batchId) throws CanalClientException {
+            rollbacks++;
+        }
+
+        public void rollback() throws CanalClientException {
+            rollbacks++;
+        }
+
+        void awaitDisconnect() throws InterruptedException {
+            Assert.assertTrue(disconnect.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -6,6 +6,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 /**
@@ -26,15 +32,23 @@ import java.util.Arrays;
  * // file ending reached.
  * </pre>
  * 
+ * 开启mmap之后基于FileChannel.map按窗口读取文件，读取到窗口末尾时重新检查文件大小，可以继续读取追加的数据
+ * 
  * @author <a href="mailto:changyuan.lh@taobao.com">Changyuan.lh</a>
  * @version 1.0
  */
 //
 public final class FileLogFetcher extends LogFetcher {
 
-    public static final byte[] BINLOG_MAGIC = { -2, 0x62, 0x69, 0x6e };
+    public static final byte[] BINLOG_MAGIC     = { -2, 0x62, 0x69, 0x6e };
+    public static final int    MMAP_WINDOW_SIZE = 64 * 1024 * 1024;
 
     private FileInputStream    fin;
+    private boolean            mmap             = false;
+    private RandomAccessFile   raf;
+    private FileChannel        channel;
+    private MappedByteBuffer   mapped;
+    private long               mappedOffset;                             // 下一次读取的文件位置
 
     public FileLogFetcher(){
         super(DEFAULT_INITIAL_CAPACITY, DEFAULT_GROWTH_FACTOR);
@@ -73,10 +87,18 @@ public final class FileLogFetcher extends LogFetcher {
      * Open binlog file in local disk to fetch.
      */
     public void open(File file, final long filePosition) throws FileNotFoundException, IOException {
-        fin = new FileInputStream(file);
+        // 切换文件时先释放上一个文件的句柄及mmap
+        close();
+        if (mmap) {
+            raf = new RandomAccessFile(file, "r");
+            channel = raf.getChannel();
+            mappedOffset = 0L;
+        } else {
+            fin = new FileInputStream(file);
+        }
 
         ensureCapacity(BIN_LOG_HEADER_SIZE);
-        if (BIN_LOG_HEADER_SIZE != fin.read(buffer, 0, BIN_LOG_HEADER_SIZE)) {
+        if (BIN_LOG_HEADER_SIZE != read(0, BIN_LOG_HEADER_SIZE)) {
             throw new IOException("No binlog file header");
         }
 
@@ -97,9 +119,15 @@ public final class FileLogFetcher extends LogFetcher {
                                                      + LogEvent.CHECKSUM_CRC32_SIGNATURE_LEN;
 
             ensureCapacity(maxFormatDescriptionEventLen);
-            limit = fin.read(buffer, 0, maxFormatDescriptionEventLen);
+            limit = read(0, maxFormatDescriptionEventLen);
             limit = (int) getUint32(LogEvent.EVENT_LEN_OFFSET);
-            fin.getChannel().position(filePosition);
+            if (mmap) {
+                unmap(mapped);
+                mapped = null;
+                mappedOffset = filePosition;
+            } else {
+                fin.getChannel().position(filePosition);
+            }
         }
     }
 
@@ -110,7 +138,7 @@ public final class FileLogFetcher extends LogFetcher {
      */
     public boolean fetch() throws IOException {
         if (limit == 0) {
-            final int len = fin.read(buffer, 0, buffer.length);
+            final int len = read(0, buffer.length);
             if (len >= 0) {
                 limit += len;
                 position = 0;
@@ -123,7 +151,7 @@ public final class FileLogFetcher extends LogFetcher {
             if (limit > buffer.length / 2) {
                 ensureCapacity(buffer.length + limit);
             }
-            final int len = fin.read(buffer, limit, buffer.length - limit);
+            final int len = read(limit, buffer.length - limit);
             if (len >= 0) {
                 limit += len;
 
@@ -147,7 +175,7 @@ public final class FileLogFetcher extends LogFetcher {
             System.arraycopy(buffer, origin, buffer, 0, limit);
             position -= origin;
             origin = 0;
-            final int len = fin.read(buffer, limit, buffer.length - limit);
+            final int len = read(limit, buffer.length - limit);
             if (len >= 0) {
                 limit += len;
 
@@ -163,16 +191,101 @@ public final class FileLogFetcher extends LogFetcher {
         return false;
     }
 
+    /**
+     * 读取数据到buffer中，返回-1代表到达文件末尾
+     */
+    private int read(final int off, final int len) throws IOException {
+        if (!mmap) {
+            return fin.read(buffer, off, len);
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (mapped == null || !mapped.hasRemaining()) {
+            // 当前窗口读取完成，按照最新的文件大小映射下一个窗口
+            long size = channel.size();
+            if (mappedOffset >= size) {
+                return -1;
+            }
+            unmap(mapped);
+            mapped = null;
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, mappedOffset, Math.min(size - mappedOffset,
+                MMAP_WINDOW_SIZE));
+        }
+
+        final int n = Math.min(len, mapped.remaining());
+        mapped.get(buffer, off, n);
+        mappedOffset += n;
+        return n;
+    }
+
+    /**
+     * 是否使用mmap的方式读取文件，需要在open之前设置
+     */
+    public void setMmap(boolean mmap) {
+        this.mmap = mmap;
+    }
+
     /**
      * {@inheritDoc}
      * 
      * @see com.taobao.tddl.dbsync.binlog.LogFetcher#close()
      */
     public void close() throws IOException {
-        if (fin != null) {
-            fin.close();
+        unmap(mapped);
+        mapped = null;
+        try {
+            if (fin != null) {
+                fin.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+            if (raf != null) {
+                raf.close();
+            }
+        } finally {
+            fin = null;
+            channel = null;
+            raf = null;
         }
+    }
 
-        fin = null;
+    /**
+     * 主动释放mmap，避免切换文件或者窗口之后依赖gc回收映射的内存，释放失败时仍然交给gc
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        try {
+            // jdk9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (NoSuchMethodException e) {
+            // jdk8及以下版本，继续尝试cleaner
+        } catch (Throwable e) {
+            return;
+        }
+
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (Throwable e) {
+            // 交给gc回收
+        }
     }
 }
@@ -47,6 +47,7 @@ public final class RowsLogBuffer {
     private int                javaType;
     private int                length;
     private Serializable       value;
+    private boolean            textBytes         = false;                        // 字符类型是否直接返回原始字节，由调用方完成编码
 
     public RowsLogBuffer(LogBuffer buffer, final int columnLen, String charsetName, int jsonColumnCount, boolean partial){
         this.buffer = buffer;
@@ -1018,7 +1019,7 @@ public final class RowsLogBuffer {
                     javaType = Types.VARBINARY;
                     value = binary;
                 } else {
-                    value = buffer.getFullString(len, charsetName);
+                    value = textBytes ? fillText(len) : buffer.getFullString(len, charsetName);
                     javaType = Types.VARCHAR;
                 }
 
@@ -1040,7 +1041,7 @@ public final class RowsLogBuffer {
                     javaType = Types.BINARY;
                     value = binary;
                 } else {
-                    value = buffer.getFullString(len, charsetName);
+                    value = textBytes ? fillText(len) : buffer.getFullString(len, charsetName);
                     javaType = Types.CHAR; // Types.VARCHAR;
                 }
                 length = len;
@@ -1147,6 +1148,19 @@ public final class RowsLogBuffer {
         return value;
     }
 
+    private byte[] fillText(int len) {
+        byte[] text = new byte[len];
+        buffer.fillBytes(text, 0, len);
+        return text;
+    }
+
+    /**
+     * 开启之后char/varchar类型的value为charsetName编码的byte[]，避免创建中间String对象
+     */
+    public void setTextBytes(boolean textBytes) {
+        this.textBytes = textBytes;
+    }
+
     public final boolean isNull() {
         return fNull;
     }
@@ -3,6 +3,8 @@ package com.taobao.tddl.dbsync.binlog;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -88,4 +90,61 @@ public class FileLogFetcherTest extends BaseLogFetcherTest {
             }
         }
     }
+
+    @Test
+    public void testMmap() throws IOException {
+        File current = new File(directory, "mysql-bin.000001");
+        List<Long> expected = readPositions(current, 4L, false);
+        List<Long> actual = readPositions(current, 4L, true);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testMmapReopen() throws IOException {
+        File current = new File(directory, "mysql-bin.000001");
+        List<Long> expected = readPositions(current, 4L, false);
+        File fds = new File("/proc/self/fd");
+        FileLogFetcher fetcher = new FileLogFetcher(256);
+        fetcher.setMmap(true);
+        try {
+            fetcher.open(current, 4L);
+            int opened = fds.isDirectory() ? fds.list().length : 0;
+            for (int i = 0; i < 10; i++) {
+                Assert.assertEquals(expected, readPositions(fetcher, current, 4L));
+            }
+            // 重复open同一个fetcher不会泄漏文件句柄
+            if (fds.isDirectory()) {
+                Assert.assertTrue(fds.list().length <= opened);
+            }
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    private List<Long> readPositions(File file, long position, boolean mmap) throws IOException {
+        // 使用较小的buffer，覆盖多次读取的场景
+        FileLogFetcher fetcher = new FileLogFetcher(256);
+        fetcher.setMmap(mmap);
+        try {
+            return readPositions(fetcher, file, position);
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    private List<Long> readPositions(FileLogFetcher fetcher, File file, long position) throws IOException {
+        List<Long> positions = new ArrayList<Long>();
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        LogContext context = new LogContext();
+        fetcher.open(file, position);
+        context.setLogPosition(new LogPosition(file.getName()));
+        while (fetcher.fetch()) {
+            LogEvent event = decoder.decode(fetcher, context);
+            if (event != null) {
+                positions.add(event.getLogPos());
+            }
+        }
+        return positions;
+    }
 }
@@ -19,6 +19,8 @@ public class CanalConstants {
     public static final String CANAL_METRICS_PULL_PORT           = ROOT + "." + "metrics.pull.port";
     public static final String CANAL_ZKSERVERS                   = ROOT + "." + "zkServers";
     public static final String CANAL_WITHOUT_NETTY               = ROOT + "." + "withoutNetty";
+    public static final String CANAL_NETTY_IO_THREADS            = ROOT + "." + "netty.ioThreads";
+    public static final String CANAL_NETTY_STREAM_THREADS        = ROOT + "." + "netty.streamThreads";
 
     public static final String CANAL_DESTINATIONS                = ROOT + "." + "destinations";
     public static final String CANAL_AUTO_SCAN                   = ROOT + "." + "auto.scan";
@@ -50,6 +52,8 @@ public class CanalConstants {
     public static final String CANAL_MQ_COMPRESSION_TYPE         = ROOT + "." + "mq.compressionType";
     public static final String CANAL_MQ_ACKS                     = ROOT + "." + "mq.acks";
     public static final String CANAL_MQ_TRANSACTION              = ROOT + "." + "mq.transaction";
+    public static final String CANAL_MQ_ASYNC                    = ROOT + "." + "mq.async";
+    public static final String CANAL_MQ_MAX_INFLIGHT_BATCHES     = ROOT + "." + "mq.maxInFlightBatches";
     public static final String CANAL_MQ_PRODUCERGROUP            = ROOT + "." + "mq.producerGroup";
     public static final String CANAL_ALIYUN_ACCESSKEY            = ROOT + "." + "aliyun.accessKey";
     public static final String CANAL_ALIYUN_SECRETKEY            = ROOT + "." + "aliyun.secretKey";
@@ -124,6 +124,14 @@ public class CanalController {
             canalServer = CanalServerWithNetty.instance();
             canalServer.setIp(ip);
             canalServer.setPort(port);
+            String ioThreads = getProperty(properties, CanalConstants.CANAL_NETTY_IO_THREADS);
+            if (StringUtils.isNotEmpty(ioThreads)) {
+                canalServer.setIoThreads(Integer.valueOf(ioThreads));
+            }
+            String streamThreads = getProperty(properties, CanalConstants.CANAL_NETTY_STREAM_THREADS);
+            if (StringUtils.isNotEmpty(streamThreads)) {
+                canalServer.setStreamThreads(Integer.valueOf(streamThreads));
+            }
         }
 
         // 处理下ip为空，默认使用hostIp暴露到zk中
@@ -201,6 +201,15 @@ public class CanalStater {
         if (!StringUtils.isEmpty(transaction)) {
             mqProperties.setTransaction(Boolean.valueOf(transaction));
         }
+        String async = CanalController.getProperty(properties, CanalConstants.CANAL_MQ_ASYNC);
+        if (!StringUtils.isEmpty(async)) {
+            mqProperties.setAsync(Boolean.valueOf(async));
+        }
+        String maxInFlightBatches = CanalController.getProperty(properties,
+            CanalConstants.CANAL_MQ_MAX_INFLIGHT_BATCHES);
+        if (!StringUtils.isEmpty(maxInFlightBatches)) {
+            mqProperties.setMaxInFlightBatches(Integer.valueOf(maxInFlightBatches));
+        }
 
         String producerGroup = CanalController.getProperty(properties, CanalConstants.CANAL_MQ_PRODUCERGROUP);
         if (!StringUtils.isEmpty(producerGroup)) {
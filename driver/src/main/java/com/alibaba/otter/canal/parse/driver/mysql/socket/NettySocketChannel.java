@@ -11,7 +11,6 @@ import io.netty.util.internal.SystemPropertyUtil;
 import java.io.IOException;
 import java.net.SocketAddress;
 
-import org.apache.commons.lang.NotImplementedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -203,9 +202,55 @@ public class NettySocketChannel implements SocketChannel {
         } while (true);
     }
 
+    /**
+     * 直接从direct缓存读取到目标数组，可读数据不足时先读取已有部分，不要求缓存能容纳整个len
+     */
     @Override
     public void read(byte[] data, int off, int len, int timeout) throws IOException {
-        throw new NotImplementedException();
+        int accumulatedWaitTime = 0;
+        int n = 0;
+        while (n < len) {
+            int readable = 0;
+            synchronized (lock) {
+                if (null == cache) {
+                    throw new IOException("socket is closed !");
+                }
+
+                readable = Math.min(cache.readableBytes(), len - n);
+                if (readable > 0) {
+                    cache.readBytes(data, off + n, readable);
+                }
+            }
+
+            if (readable > 0) {
+                n += readable;
+                accumulatedWaitTime = 0;
+                continue;
+            }
+
+            if (null == channel) {
+                throw new IOException("socket has Interrupted !");
+            }
+
+            if (timeout > 0) {
+                accumulatedWaitTime += WAIT_PERIOD;
+                if (accumulatedWaitTime > timeout) {
+                    StringBuilder sb = new StringBuilder("socket read timeout occured !");
+                    sb.append(" readSize = ").append(len);
+                    sb.append(", actualRead = ").append(n);
+                    sb.append(", timeout = ").append(timeout);
+                    throw new IOException(sb.toString());
+                }
+            }
+
+            synchronized (this) {
+                try {
+                    wait(WAIT_PERIOD);
+                } catch (InterruptedException e) {
+                    throw new IOException("socket has Interrupted !");
+                }
+            }
+        }
     }
 
     public boolean isConnected() {
@@ -21,6 +21,7 @@ import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.sink.CanalEventSink;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalSubscribeEventStore;
 import com.alibaba.otter.canal.store.model.Event;
 
 /**
@@ -81,6 +82,7 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
 
         if (!eventStore.isStart()) {
             eventStore.start();
+            subscribeEventStore();
         }
 
         if (!eventSink.isStart()) {
@@ -125,6 +127,17 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
         logger.info("stop successful....");
     }
 
+    // 在parser启动之前注册历史订阅者的游标，避免数据在所有订阅者消费之前被清理
+    protected void subscribeEventStore() {
+        if (eventStore instanceof CanalSubscribeEventStore) {
+            List<ClientIdentity> clientIdentitys = metaManager.listAllSubscribeInfo(destination);
+            for (ClientIdentity clientIdentity : clientIdentitys) {
+                ((CanalSubscribeEventStore<Event>) eventStore).subscribe(clientIdentity,
+                    metaManager.getCursor(clientIdentity));
+            }
+        }
+    }
+
     protected void beforeStartEventParser(CanalEventParser eventParser) {
 
         boolean isGroup = (eventParser instanceof GroupEventParser);
@@ -36,6 +36,7 @@ import com.alibaba.otter.canal.parse.CanalEventParser;
 import com.alibaba.otter.canal.parse.ha.CanalHAController;
 import com.alibaba.otter.canal.parse.ha.HeartBeatHAController;
 import com.alibaba.otter.canal.parse.inbound.AbstractEventParser;
+import com.alibaba.otter.canal.parse.inbound.MultiStageWaitStrategy;
 import com.alibaba.otter.canal.parse.inbound.group.GroupEventParser;
 import com.alibaba.otter.canal.parse.inbound.mysql.LocalBinlogEventParser;
 import com.alibaba.otter.canal.parse.inbound.mysql.MysqlEventParser;
@@ -54,7 +55,10 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
 import com.alibaba.otter.canal.sink.entry.EntryEventSink;
 import com.alibaba.otter.canal.sink.entry.group.GroupEventSink;
 import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
+import com.alibaba.otter.canal.store.file.FileEventStore;
+import com.alibaba.otter.canal.store.memory.LockFreeMemoryEventStoreWithBuffer;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.wait.WaitStrategyType;
 import com.alibaba.otter.canal.store.model.BatchMode;
 
 /**
@@ -142,19 +146,48 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
         logger.info("init eventStore begin...");
         StorageMode mode = parameters.getStorageMode();
         if (mode.isMemory()) {
-            MemoryEventStoreWithBuffer memoryEventStore = new MemoryEventStoreWithBuffer();
+            MemoryEventStoreWithBuffer memoryEventStore;
+            if (BooleanUtils.isTrue(parameters.getMemoryStorageLockFree())) {
+                LockFreeMemoryEventStoreWithBuffer lockFreeEventStore = new LockFreeMemoryEventStoreWithBuffer();
+                lockFreeEventStore.setWaitStrategyType(WaitStrategyType.valueOf(parameters.getMemoryStorageWaitStrategy()
+                    .name()));
+                memoryEventStore = lockFreeEventStore;
+            } else {
+                memoryEventStore = new MemoryEventStoreWithBuffer();
+            }
             memoryEventStore.setBufferSize(parameters.getMemoryStorageBufferSize());
             memoryEventStore.setBufferMemUnit(parameters.getMemoryStorageBufferMemUnit());
             memoryEventStore.setBatchMode(BatchMode.valueOf(parameters.getStorageBatchMode().name()));
             memoryEventStore.setDdlIsolation(parameters.getDdlIsolation());
             memoryEventStore.setRaw(parameters.getMemoryStorageRawEntry());
+            memoryEventStore.setFanout(BooleanUtils.isTrue(parameters.getMemoryStorageFanout()));
+            memoryEventStore.setDirectMemory(BooleanUtils.isTrue(parameters.getMemoryStorageDirectMemory()));
+            if (parameters.getMemoryStorageDirectMemorySize() != null) {
+                memoryEventStore.setDirectMemorySize(parameters.getMemoryStorageDirectMemorySize());
+            }
             eventStore = memoryEventStore;
-        } else if (mode.isFile()) {
-            // 后续版本支持
-            throw new CanalException("unsupport MetaMode for " + mode);
-        } else if (mode.isMixed()) {
-            // 后续版本支持
-            throw new CanalException("unsupport MetaMode for " + mode);
+        } else if (mode.isFile() || mode.isMixed()) {
+            FileEventStore fileEventStore = new FileEventStore();
+            String storageDirectory = parameters.getFileStorageDirectory();
+            fileEventStore.setDataDir(StringUtils.isNotEmpty(storageDirectory) ? storageDirectory : parameters.getDataDir());
+            if (parameters.getFileStorageStoreCount() != null) {
+                fileEventStore.setStoreCount(parameters.getFileStorageStoreCount());
+            }
+            if (parameters.getFileStorageRollverCount() != null) {
+                fileEventStore.setRollverCount(parameters.getFileStorageRollverCount());
+            }
+            if (parameters.getFileStoragePercentThresold() != null) {
+                fileEventStore.setPercentThresold(parameters.getFileStoragePercentThresold());
+            }
+            // mixed模式下，内存buffer作为最近写入数据的缓存
+            fileEventStore.setMixed(mode.isMixed());
+            fileEventStore.setBufferSize(parameters.getMemoryStorageBufferSize());
+            fileEventStore.setBufferMemUnit(parameters.getMemoryStorageBufferMemUnit());
+            fileEventStore.setBatchMode(BatchMode.valueOf(parameters.getStorageBatchMode().name()));
+            fileEventStore.setDdlIsolation(parameters.getDdlIsolation());
+            fileEventStore.setRaw(parameters.getMemoryStorageRawEntry());
+            fileEventStore.setFanout(BooleanUtils.isTrue(parameters.getMemoryStorageFanout()));
+            eventStore = fileEventStore;
         } else {
             throw new CanalException("unsupport MetaMode for " + mode);
         }
@@ -295,6 +328,11 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             mysqlEventParser.setProfilingEnabled(false);
             mysqlEventParser.setFilterTableError(parameters.getFilterTableError());
             mysqlEventParser.setParallel(parameters.getParallel());
+            mysqlEventParser.setParallelByTable(BooleanUtils.toBoolean(parameters.getParallelByTable()));
+            if (StringUtils.isNotEmpty(parameters.getParallelWaitStrategy())) {
+                mysqlEventParser.setParallelWaitStrategy(MultiStageWaitStrategy.valueOf(parameters.getParallelWaitStrategy()));
+            }
+            mysqlEventParser.setParallelAutoTune(BooleanUtils.toBoolean(parameters.getParallelAutoTune()));
             mysqlEventParser.setIsGTIDMode(BooleanUtils.toBoolean(parameters.getGtidEnable()));
             // tsdb
             if (parameters.getTsdbSnapshotInterval() != null) {
@@ -342,6 +380,11 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             localBinlogEventParser.setDetectingIntervalInSeconds(parameters.getDetectingIntervalInSeconds());
             localBinlogEventParser.setFilterTableError(parameters.getFilterTableError());
             localBinlogEventParser.setParallel(parameters.getParallel());
+            localBinlogEventParser.setParallelByTable(BooleanUtils.toBoolean(parameters.getParallelByTable()));
+            if (StringUtils.isNotEmpty(parameters.getParallelWaitStrategy())) {
+                localBinlogEventParser.setParallelWaitStrategy(MultiStageWaitStrategy.valueOf(parameters.getParallelWaitStrategy()));
+            }
+            localBinlogEventParser.setParallelAutoTune(BooleanUtils.toBoolean(parameters.getParallelAutoTune()));
             // 数据库信息，反查表结构时需要
             if (!CollectionUtils.isEmpty(dbAddresses)) {
                 localBinlogEventParser.setMasterInfo(new AuthenticationInfo(dbAddresses.get(0),
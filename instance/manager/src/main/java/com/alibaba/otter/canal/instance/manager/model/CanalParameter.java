@@ -40,6 +40,11 @@ public class CanalParameter implements Serializable {
     private Integer                  memoryStorageBufferSize            = 16 * 1024;                 // 内存存储的buffer大小
     private Integer                  memoryStorageBufferMemUnit         = 1024;                      // 内存存储的buffer内存占用单位，默认为1kb
     private Boolean                  memoryStorageRawEntry              = Boolean.TRUE;              // 内存存储的对象是否启用raw的ByteString模式
+    private Boolean                  memoryStorageLockFree              = Boolean.FALSE;             // 内存存储是否启用无锁模式
+    private StorageWaitStrategy      memoryStorageWaitStrategy          = StorageWaitStrategy.BLOCKING; // 无锁模式下put/get的等待策略
+    private Boolean                  memoryStorageFanout                = Boolean.FALSE;             // 是否为每个订阅者维护独立的消费游标
+    private Boolean                  memoryStorageDirectMemory          = Boolean.FALSE;             // raw模式下entry是否存储在direct内存中
+    private Long                     memoryStorageDirectMemorySize;                                  // direct内存的大小，默认为bufferSize * bufferMemUnit
     private String                   fileStorageDirectory;                                           // 文件存储的目录位置
     private Integer                  fileStorageStoreCount;                                          // 每个文件store存储的记录数
     private Integer                  fileStorageRollverCount;                                        // store文件的个数
@@ -119,6 +124,9 @@ public class CanalParameter implements Serializable {
     private Long                     standbyLogfileOffest               = null;
     private Long                     standbyTimestamp                   = null;
     private Boolean                  parallel                           = Boolean.FALSE;
+    private Boolean                  parallelByTable                    = Boolean.FALSE;             // 是否按表分配解析线程
+    private String                   parallelWaitStrategy               = "BLOCKING";                // 并行解析的等待策略
+    private Boolean                  parallelAutoTune                   = Boolean.FALSE;             // 是否自动扩容并行解析
 
     public static enum RunMode {
 
@@ -327,6 +335,17 @@ public class CanalParameter implements Serializable {
         }
     }
 
+    public static enum StorageWaitStrategy {
+        /** 阻塞等待 */
+        BLOCKING,
+        /** 自旋+yield+sleep */
+        SLEEPING,
+        /** 自旋+yield */
+        YIELDING,
+        /** 纯自旋 */
+        BUSYSPIN;
+    }
+
     /**
      * 数据来源描述
      *
@@ -967,6 +986,46 @@ public class CanalParameter implements Serializable {
         this.memoryStorageRawEntry = memoryStorageRawEntry;
     }
 
+    public Boolean getMemoryStorageLockFree() {
+        return memoryStorageLockFree;
+    }
+
+    public void setMemoryStorageLockFree(Boolean memoryStorageLockFree) {
+        this.memoryStorageLockFree = memoryStorageLockFree;
+    }
+
+    public StorageWaitStrategy getMemoryStorageWaitStrategy() {
+        return memoryStorageWaitStrategy == null ? StorageWaitStrategy.BLOCKING : memoryStorageWaitStrategy;
+    }
+
+    public void setMemoryStorageWaitStrategy(StorageWaitStrategy memoryStorageWaitStrategy) {
+        this.memoryStorageWaitStrategy = memoryStorageWaitStrategy;
+    }
+
+    public Boolean getMemoryStorageFanout() {
+        return memoryStorageFanout;
+    }
+
+    public void setMemoryStorageFanout(Boolean memoryStorageFanout) {
+        this.memoryStorageFanout = memoryStorageFanout;
+    }
+
+    public Boolean getMemoryStorageDirectMemory() {
+        return memoryStorageDirectMemory;
+    }
+
+    public void setMemoryStorageDirectMemory(Boolean memoryStorageDirectMemory) {
+        this.memoryStorageDirectMemory = memoryStorageDirectMemory;
+    }
+
+    public Long getMemoryStorageDirectMemorySize() {
+        return memoryStorageDirectMemorySize;
+    }
+
+    public void setMemoryStorageDirectMemorySize(Long memoryStorageDirectMemorySize) {
+        this.memoryStorageDirectMemorySize = memoryStorageDirectMemorySize;
+    }
+
     public Integer getTsdbSnapshotInterval() {
         return tsdbSnapshotInterval;
     }
@@ -991,6 +1050,30 @@ public class CanalParameter implements Serializable {
         this.parallel = parallel;
     }
 
+    public Boolean getParallelByTable() {
+        return parallelByTable;
+    }
+
+    public void setParallelByTable(Boolean parallelByTable) {
+        this.parallelByTable = parallelByTable;
+    }
+
+    public String getParallelWaitStrategy() {
+        return parallelWaitStrategy;
+    }
+
+    public void setParallelWaitStrategy(String parallelWaitStrategy) {
+        this.parallelWaitStrategy = parallelWaitStrategy;
+    }
+
+    public Boolean getParallelAutoTune() {
+        return parallelAutoTune;
+    }
+
+    public void setParallelAutoTune(Boolean parallelAutoTune) {
+        this.parallelAutoTune = parallelAutoTune;
+    }
+
     public String toString() {
         return ToStringBuilder.reflectionToString(this, CanalToStringStyle.DEFAULT_STYLE);
     }
@@ -11,10 +11,10 @@ import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MigrateMap;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -131,11 +131,14 @@ public class MemoryMetaManager extends AbstractCanalLifeCycle implements CanalMe
 
     // ============================
 
+    /**
+     * 单个client的batch记录，batchId基于AtomicLong无锁分配，记录按照batchId有序存放
+     */
     public static class MemoryClientIdentityBatch {
 
-        private ClientIdentity           clientIdentity;
-        private Map<Long, PositionRange> batches          = new MapMaker().makeMap();
-        private AtomicLong               atomicMaxBatchId = new AtomicLong(1);
+        private ClientIdentity                              clientIdentity;
+        private ConcurrentNavigableMap<Long, PositionRange> batches          = new ConcurrentSkipListMap<Long, PositionRange>();
+        private AtomicLong                                  atomicMaxBatchId = new AtomicLong(1);
 
         public static MemoryClientIdentityBatch create(ClientIdentity clientIdentity) {
             return new MemoryClientIdentityBatch(clientIdentity);
@@ -149,70 +152,63 @@ public class MemoryMetaManager extends AbstractCanalLifeCycle implements CanalMe
             this.clientIdentity = clientIdentity;
         }
 
-        public synchronized void addPositionRange(PositionRange positionRange, Long batchId) {
+        public void addPositionRange(PositionRange positionRange, Long batchId) {
             updateMaxId(batchId);
             batches.put(batchId, positionRange);
         }
 
-        public synchronized Long addPositionRange(PositionRange positionRange) {
+        public Long addPositionRange(PositionRange positionRange) {
             Long batchId = atomicMaxBatchId.getAndIncrement();
             batches.put(batchId, positionRange);
             return batchId;
         }
 
-        public synchronized PositionRange removePositionRange(Long batchId) {
+        public PositionRange removePositionRange(Long batchId) {
             if (batches.containsKey(batchId)) {
-                Long minBatchId = Collections.min(batches.keySet());
-                if (!minBatchId.equals(batchId)) {
+                Map.Entry<Long, PositionRange> first = batches.firstEntry();
+                if (first != null && !first.getKey().equals(batchId)) {
                     // 检查一下提交的ack/rollback，必须按batchId分出去的顺序提交，否则容易出现丢数据
                     throw new CanalMetaManagerException(String.format("batchId:%d is not the firstly:%d",
                         batchId,
-                        minBatchId));
+                        first.getKey()));
                 }
+                // 并发的ack/rollback只会有一个成功
                 return batches.remove(batchId);
             } else {
                 return null;
             }
         }
 
-        public synchronized PositionRange getPositionRange(Long batchId) {
+        public PositionRange getPositionRange(Long batchId) {
             return batches.get(batchId);
         }
 
-        public synchronized PositionRange getLastestPositionRange() {
-            if (batches.size() == 0) {
-                return null;
-            } else {
-                Long batchId = Collections.max(batches.keySet());
-                return batches.get(batchId);
-            }
+        public PositionRange getLastestPositionRange() {
+            Map.Entry<Long, PositionRange> last = batches.lastEntry();
+            return last == null ? null : last.getValue();
         }
 
-        public synchronized PositionRange getFirstPositionRange() {
-            if (batches.size() == 0) {
-                return null;
-            } else {
-                Long batchId = Collections.min(batches.keySet());
-                return batches.get(batchId);
-            }
+        public PositionRange getFirstPositionRange() {
+            Map.Entry<Long, PositionRange> first = batches.firstEntry();
+            return first == null ? null : first.getValue();
         }
 
-        public synchronized Map<Long, PositionRange> listAllPositionRange() {
-            Set<Long> batchIdSets = batches.keySet();
-            List<Long> batchIds = Lists.newArrayList(batchIdSets);
-            Collections.sort(Lists.newArrayList(batchIds));
-
+        public Map<Long, PositionRange> listAllPositionRange() {
             return Maps.newHashMap(batches);
         }
 
-        public synchronized void clearPositionRanges() {
+        public void clearPositionRanges() {
             batches.clear();
         }
 
-        private synchronized void updateMaxId(Long batchId) {
-            if (atomicMaxBatchId.get() < batchId + 1) {
-                atomicMaxBatchId.set(batchId + 1);
-            }
+        private void updateMaxId(Long batchId) {
+            long current;
+            do {
+                current = atomicMaxBatchId.get();
+                if (current >= batchId + 1) {
+                    return;
+                }
+            } while (!atomicMaxBatchId.compareAndSet(current, batchId + 1));
         }
 
         // ============ setter & getter =========
@@ -1,10 +1,15 @@
 package com.alibaba.otter.canal.meta;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.alibaba.otter.canal.meta.exception.CanalMetaManagerException;
 import com.alibaba.otter.canal.protocol.position.PositionRange;
 
 public class MemoryMetaManagerTest extends AbstractMetaManagerTest {
@@ -36,4 +41,51 @@ public class MemoryMetaManagerTest extends AbstractMetaManagerTest {
         doCursorTest(metaManager);
         metaManager.stop();
     }
+
+    @Test
+    public void testConcurrentBatch() throws InterruptedException {
+        final MemoryMetaManager metaManager = new MemoryMetaManager();
+        metaManager.start();
+
+        final int threads = 4;
+        final int count = 1000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final List<Long> batchIds = Collections.synchronizedList(new ArrayList<Long>());
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+
+                public void run() {
+                    try {
+                        for (int j = 0; j < count; j++) {
+                            batchIds.add(metaManager.addBatch(clientIdentity, new PositionRange()));
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+        latch.await();
+
+        // batchId不重复且连续
+        Assert.assertEquals(threads * count, metaManager.listAllBatchs(clientIdentity).size());
+        Collections.sort(batchIds);
+        for (int i = 0; i < batchIds.size(); i++) {
+            Assert.assertEquals(Long.valueOf(i + 1), batchIds.get(i));
+        }
+        Assert.assertEquals(metaManager.getBatch(clientIdentity, 1L), metaManager.getFirstBatch(clientIdentity));
+        Assert.assertEquals(metaManager.getBatch(clientIdentity, (long) threads * count),
+            metaManager.getLastestBatch(clientIdentity));
+
+        // 必须按顺序ack
+        try {
+            metaManager.removeBatch(clientIdentity, 2L);
+            Assert.fail();
+        } catch (CanalMetaManagerException e) {
+            // ignore
+        }
+        Assert.assertNotNull(metaManager.removeBatch(clientIdentity, 1L));
+        Assert.assertNull(metaManager.removeBatch(clientIdentity, 1L));
+        metaManager.stop();
+    }
 }
@@ -96,6 +96,9 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
     protected Integer                                parallelThreadSize         = Runtime.getRuntime()
                                                                                     .availableProcessors() * 60 / 100;     // 60%的能力跑解析,剩余部分处理网络
     protected int                                    parallelBufferSize         = 256;                                     // 必须为2的幂
+    protected boolean                                parallelByTable            = false;                                   // 是否按表分配解析线程，同一张表由固定线程解析
+    protected MultiStageWaitStrategy                 parallelWaitStrategy       = MultiStageWaitStrategy.BLOCKING;         // 并行解析各stage之间的等待策略
+    protected boolean                                parallelAutoTune           = false;                                   // 是否根据投递阻塞时间自动扩容
     protected MultiStageCoprocessor                  multiStageCoprocessor;
     protected ParserExceptionHandler                 parserExceptionHandler;
     protected long                                   serverId;
@@ -639,6 +642,30 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         this.parallelBufferSize = parallelBufferSize;
     }
 
+    public boolean isParallelByTable() {
+        return parallelByTable;
+    }
+
+    public void setParallelByTable(boolean parallelByTable) {
+        this.parallelByTable = parallelByTable;
+    }
+
+    public MultiStageWaitStrategy getParallelWaitStrategy() {
+        return parallelWaitStrategy;
+    }
+
+    public void setParallelWaitStrategy(MultiStageWaitStrategy parallelWaitStrategy) {
+        this.parallelWaitStrategy = parallelWaitStrategy;
+    }
+
+    public boolean isParallelAutoTune() {
+        return parallelAutoTune;
+    }
+
+    public void setParallelAutoTune(boolean parallelAutoTune) {
+        this.parallelAutoTune = parallelAutoTune;
+    }
+
     public ParserExceptionHandler getParserExceptionHandler() {
         return parserExceptionHandler;
     }
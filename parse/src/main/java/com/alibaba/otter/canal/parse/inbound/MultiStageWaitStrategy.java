@@ -0,0 +1,43 @@
+package com.alibaba.otter.canal.parse.inbound;
+
+import java.util.concurrent.TimeUnit;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+/**
+ * 多阶段解析中各stage之间的等待策略
+ *
+ * <pre>
+ * 1. BLOCKING : 基于锁和条件等待，cpu占用最低，默认策略
+ * 2. TIMEOUT_BLOCKING : 带超时的锁等待，避免极端情况下的信号丢失
+ * 3. YIELDING : 自旋之后yield，延迟低，空闲时会占用cpu
+ * 4. BUSY_SPIN : 纯自旋，延迟最低，每个stage会独占一个cpu核
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public enum MultiStageWaitStrategy {
+
+    BLOCKING, TIMEOUT_BLOCKING, YIELDING, BUSY_SPIN;
+
+    public WaitStrategy newWaitStrategy() {
+        switch (this) {
+            case TIMEOUT_BLOCKING:
+                return new TimeoutBlockingWaitStrategy(1, TimeUnit.MILLISECONDS);
+            case YIELDING:
+                return new YieldingWaitStrategy();
+            case BUSY_SPIN:
+                return new BusySpinWaitStrategy();
+            default:
+                return new BlockingWaitStrategy();
+        }
+    }
+
+    public boolean isSpin() {
+        return this == YIELDING || this == BUSY_SPIN;
+    }
+}
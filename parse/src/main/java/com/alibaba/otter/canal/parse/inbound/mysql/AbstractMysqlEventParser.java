@@ -38,6 +38,7 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
     protected boolean              filterRows                = false;
     protected boolean              filterTableError          = false;
     protected boolean              useDruidDdlFilter         = true;
+    protected boolean              generatePkHash            = false;
     // instance received binlog bytes
     protected final AtomicLong     receivedBinlogBytes       = new AtomicLong(0L);
     private final AtomicLong       eventsPublishBlockingTime = new AtomicLong(0L);
@@ -59,6 +60,7 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         convert.setFilterRows(filterRows);
         convert.setFilterTableError(filterTableError);
         convert.setUseDruidDdlFilter(useDruidDdlFilter);
+        convert.setGeneratePkHash(generatePkHash);
         return convert;
     }
 
@@ -145,6 +147,9 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
             transactionBuffer,
             destination);
         mysqlMultiStageCoprocessor.setEventsPublishBlockingTime(eventsPublishBlockingTime);
+        mysqlMultiStageCoprocessor.setParallelByTable(parallelByTable);
+        mysqlMultiStageCoprocessor.setWaitStrategy(parallelWaitStrategy);
+        mysqlMultiStageCoprocessor.setAutoTune(parallelAutoTune);
         return mysqlMultiStageCoprocessor;
     }
 
@@ -178,6 +183,10 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         this.filterRows = filterRows;
     }
 
+    public void setGeneratePkHash(boolean generatePkHash) {
+        this.generatePkHash = generatePkHash;
+    }
+
     public void setFilterTableError(boolean filterTableError) {
         this.filterTableError = filterTableError;
     }
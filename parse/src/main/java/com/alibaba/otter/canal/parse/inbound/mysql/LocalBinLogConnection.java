@@ -2,13 +2,18 @@ package com.alibaba.otter.canal.parse.inbound.mysql;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.GTIDSet;
 import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.alibaba.otter.canal.parse.exception.ServerIdNotMatchException;
@@ -16,6 +21,7 @@ import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
 import com.alibaba.otter.canal.parse.inbound.SinkFunction;
 import com.alibaba.otter.canal.parse.inbound.mysql.local.BinLogFileQueue;
+import com.alibaba.otter.canal.parse.inbound.mysql.local.ParallelBinLogFileDecoder;
 import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
 import com.taobao.tddl.dbsync.binlog.LogContext;
 import com.taobao.tddl.dbsync.binlog.LogDecoder;
@@ -31,14 +37,18 @@ import com.taobao.tddl.dbsync.binlog.event.QueryLogEvent;
 //
 public class LocalBinLogConnection implements ErosaConnection {
 
-    private static final Logger logger     = LoggerFactory.getLogger(LocalBinLogConnection.class);
-    private BinLogFileQueue     binlogs    = null;
+    private static final Logger logger        = LoggerFactory.getLogger(LocalBinLogConnection.class);
+    private BinLogFileQueue     binlogs       = null;
     private boolean             needWait;
     private String              directory;
-    private int                 bufferSize = 16 * 1024;
-    private boolean             running    = false;
+    private int                 bufferSize    = 16 * 1024;
+    private boolean             running       = false;
     private long                serverId;
     private FileParserListener  parserListener;
+    private boolean             mmap          = false;                                    // 是否使用mmap读取，并预读下一个文件
+    private ExecutorService     readAheadExecutor;
+    private int                 parallelFiles = 0;                                        // 并行解码的binlog文件数，小于2代表串行解析
+    private int                 lookAheadSize = ParallelBinLogFileDecoder.DEFAULT_LOOK_AHEAD_SIZE; // 并行解码时每个文件预解码的最大字节数
 
     public LocalBinLogConnection(){
     }
@@ -53,6 +63,9 @@ public class LocalBinLogConnection implements ErosaConnection {
         if (this.binlogs == null) {
             this.binlogs = new BinLogFileQueue(this.directory);
         }
+        if (mmap && readAheadExecutor == null) {
+            readAheadExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("LocalBinLog-ReadAhead"));
+        }
         this.running = true;
     }
 
@@ -70,6 +83,10 @@ public class LocalBinLogConnection implements ErosaConnection {
         }
         this.binlogs = null;
         this.running = false;
+        if (readAheadExecutor != null) {
+            readAheadExecutor.shutdownNow();
+            readAheadExecutor = null;
+        }
     }
 
     public boolean isConnected() {
@@ -81,12 +98,18 @@ public class LocalBinLogConnection implements ErosaConnection {
 
     public void dump(String binlogfilename, Long binlogPosition, SinkFunction func) throws IOException {
         File current = new File(directory, binlogfilename);
+        if (parallelFiles > 1) {
+            parallelDump(current, binlogPosition, func);
+            return;
+        }
 
         FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
+        fetcher.setMmap(mmap);
         LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
         LogContext context = new LogContext();
         try {
             fetcher.open(current, binlogPosition);
+            readAhead(current);
             context.setLogPosition(new LogPosition(binlogfilename, binlogPosition));
             while (running) {
                 boolean needContinue = true;
@@ -123,6 +146,7 @@ public class LocalBinLogConnection implements ErosaConnection {
 
                     current = nextFile;
                     fetcher.open(current);
+                    readAhead(current);
                     context.setLogPosition(new LogPosition(nextFile.getName()));
                 } else {
                     break;// 跳出
@@ -221,17 +245,28 @@ public class LocalBinLogConnection implements ErosaConnection {
     }
 
     @Override
-    public void dump(String binlogfilename, Long binlogPosition, MultiStageCoprocessor coprocessor) throws IOException {
+    public void dump(String binlogfilename, Long binlogPosition, final MultiStageCoprocessor coprocessor) throws IOException {
         File current = new File(directory, binlogfilename);
         if (!current.exists()) {
             throw new CanalParseException("binlog:" + binlogfilename + " is not found");
         }
+        if (parallelFiles > 1) {
+            parallelDump(current, binlogPosition, new SinkFunction<LogEvent>() {
+
+                public boolean sink(LogEvent event) {
+                    return coprocessor.publish(event);
+                }
+            });
+            return;
+        }
 
         FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
+        fetcher.setMmap(mmap);
         LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
         LogContext context = new LogContext();
         try {
             fetcher.open(current, binlogPosition);
+            readAhead(current);
             context.setLogPosition(new LogPosition(binlogfilename, binlogPosition));
             while (running) {
                 boolean needContinue = true;
@@ -267,6 +302,7 @@ public class LocalBinLogConnection implements ErosaConnection {
 
                     current = nextFile;
                     fetcher.open(current);
+                    readAhead(current);
                     binlogfilename = nextFile.getName();
                 } else {
                     break;// 跳出
@@ -281,6 +317,101 @@ public class LocalBinLogConnection implements ErosaConnection {
         }
     }
 
+    /**
+     * 多个binlog文件并行解码，按照文件顺序交给func处理
+     */
+    private void parallelDump(File current, Long binlogPosition, SinkFunction<LogEvent> func) throws IOException {
+        ParallelBinLogFileDecoder decoder = new ParallelBinLogFileDecoder(binlogs,
+            parallelFiles,
+            bufferSize,
+            mmap,
+            needWait);
+        decoder.setLookAheadSize(lookAheadSize);
+        decoder.start();
+        try {
+            ParallelBinLogFileDecoder.FileTask task = decoder.open(current, binlogPosition);
+            while (running) {
+                boolean needContinue = true;
+                LogEvent event = null;
+                while ((event = task.take()) != null) {
+                    if (serverId != 0 && event.getServerId() != serverId) {
+                        throw new ServerIdNotMatchException("unexpected serverId " + serverId + " in binlog file !");
+                    }
+
+                    if (!func.sink(event)) {
+                        needContinue = false;
+                        break;
+                    }
+                }
+
+                parserFinish(current.getName());
+                if (needContinue) {// 读取下一个
+                    File nextFile;
+                    if (needWait) {
+                        nextFile = binlogs.waitForNextFile(current);
+                    } else {
+                        nextFile = binlogs.getNextFile(current);
+                    }
+
+                    if (nextFile == null) {
+                        break;
+                    }
+
+                    current = nextFile;
+                    task = decoder.open(current, 0L);
+                } else {
+                    break;// 跳出
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("LocalBinLogConnection dump interrupted");
+        } finally {
+            decoder.stop();
+        }
+    }
+
+    /**
+     * 后台将下一个binlog文件加载到page cache中，当前文件解析完成后可以直接从内存读取
+     */
+    private void readAhead(File current) {
+        if (readAheadExecutor == null || binlogs == null) {
+            return;
+        }
+
+        final File nextFile = binlogs.getNextFile(current);
+        if (nextFile == null) {
+            return;
+        }
+
+        readAheadExecutor.execute(new Runnable() {
+
+            public void run() {
+                RandomAccessFile file = null;
+                try {
+                    file = new RandomAccessFile(nextFile, "r");
+                    FileChannel channel = file.getChannel();
+                    long size = channel.size();
+                    long offset = 0;
+                    while (offset < size && running && !Thread.currentThread().isInterrupted()) {
+                        long length = Math.min(size - offset, FileLogFetcher.MMAP_WINDOW_SIZE);
+                        channel.map(FileChannel.MapMode.READ_ONLY, offset, length).load();
+                        offset += length;
+                    }
+                } catch (Throwable e) {
+                    logger.warn("read ahead binlog file {} failed, {}", nextFile.getName(), e.getMessage());
+                } finally {
+                    if (file != null) {
+                        try {
+                            file.close();
+                        } catch (IOException e) {
+                            // ignore
+                        }
+                    }
+                }
+            }
+        });
+    }
+
     private void parserFinish(String fileName) {
         if (parserListener != null) {
             parserListener.onFinish(fileName);
@@ -377,6 +508,9 @@ public class LocalBinLogConnection implements ErosaConnection {
         connection.setBufferSize(this.bufferSize);
         connection.setDirectory(this.directory);
         connection.setNeedWait(this.needWait);
+        connection.setMmap(this.mmap);
+        connection.setParallelFiles(this.parallelFiles);
+        connection.setLookAheadSize(this.lookAheadSize);
         return connection;
     }
 
@@ -417,6 +551,30 @@ public class LocalBinLogConnection implements ErosaConnection {
         this.serverId = serverId;
     }
 
+    public boolean isMmap() {
+        return mmap;
+    }
+
+    public void setMmap(boolean mmap) {
+        this.mmap = mmap;
+    }
+
+    public int getParallelFiles() {
+        return parallelFiles;
+    }
+
+    public void setParallelFiles(int parallelFiles) {
+        this.parallelFiles = parallelFiles;
+    }
+
+    public int getLookAheadSize() {
+        return lookAheadSize;
+    }
+
+    public void setLookAheadSize(int lookAheadSize) {
+        this.lookAheadSize = lookAheadSize;
+    }
+
     public void setParserListener(FileParserListener parserListener) {
         this.parserListener = parserListener;
     }
@@ -5,6 +5,7 @@ import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.TableMetaCache;
+import com.alibaba.otter.canal.parse.inbound.mysql.local.ParallelBinLogFileDecoder;
 import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.DatabaseTableMeta;
 import com.alibaba.otter.canal.parse.index.CanalLogPositionManager;
 import com.alibaba.otter.canal.parse.support.AuthenticationInfo;
@@ -30,8 +31,11 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
     protected TableMetaCache     tableMetaCache;        // 对应meta
 
     protected String             directory;
-    protected boolean            needWait   = false;
-    protected int                bufferSize = 16 * 1024;
+    protected boolean            needWait      = false;
+    protected int                bufferSize    = 16 * 1024;
+    protected boolean            mmap          = false; // 是否使用mmap读取binlog文件
+    protected int                parallelFiles = 0;     // 并行解码的binlog文件数，小于2代表串行解析
+    protected int                lookAheadSize = ParallelBinLogFileDecoder.DEFAULT_LOOK_AHEAD_SIZE; // 并行解码时每个文件预解码的最大字节数
 
     public LocalBinlogEventParser(){
         // this.runningInfo = new AuthenticationInfo();
@@ -108,6 +112,9 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
         connection.setBufferSize(this.bufferSize);
         connection.setDirectory(this.directory);
         connection.setNeedWait(this.needWait);
+        connection.setMmap(this.mmap);
+        connection.setParallelFiles(this.parallelFiles);
+        connection.setLookAheadSize(this.lookAheadSize);
 
         return connection;
     }
@@ -172,6 +179,18 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
         this.bufferSize = bufferSize;
     }
 
+    public void setMmap(boolean mmap) {
+        this.mmap = mmap;
+    }
+
+    public void setParallelFiles(int parallelFiles) {
+        this.parallelFiles = parallelFiles;
+    }
+
+    public void setLookAheadSize(int lookAheadSize) {
+        this.lookAheadSize = lookAheadSize;
+    }
+
     public void setMasterPosition(EntryPosition masterPosition) {
         this.masterPosition = masterPosition;
     }
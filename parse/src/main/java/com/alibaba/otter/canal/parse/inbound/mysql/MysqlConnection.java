@@ -232,10 +232,10 @@ public class MysqlConnection implements ErosaConnection {
         DirectLogFetcher fetcher = new DirectLogFetcher(connector.getReceiveBufferSize());
         try {
             fetcher.start(connector.getChannel());
-            while (fetcher.fetch()) {
-                accumulateReceivedBytes(fetcher.limit());
-                LogBuffer buffer = fetcher.duplicate();
-                fetcher.consume(fetcher.limit());
+            // 每个事件直接读取到独立的buffer中，避免duplicate的拷贝
+            LogBuffer buffer = null;
+            while ((buffer = fetcher.fetchBuffer()) != null) {
+                accumulateReceivedBytes(buffer.limit());
                 if (!coprocessor.publish(buffer)) {
                     break;
                 }
@@ -260,10 +260,10 @@ public class MysqlConnection implements ErosaConnection {
         DirectLogFetcher fetcher = new DirectLogFetcher(connector.getReceiveBufferSize());
         try {
             fetcher.start(connector.getChannel());
-            while (fetcher.fetch()) {
-                accumulateReceivedBytes(fetcher.limit());
-                LogBuffer buffer = fetcher.duplicate();
-                fetcher.consume(fetcher.limit());
+            // 每个事件直接读取到独立的buffer中，避免duplicate的拷贝
+            LogBuffer buffer = null;
+            while ((buffer = fetcher.fetchBuffer()) != null) {
+                accumulateReceivedBytes(buffer.limit());
                 if (!coprocessor.publish(buffer)) {
                     break;
                 }
@@ -7,10 +7,12 @@ import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.EventTransactionBuffer;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
+import com.alibaba.otter.canal.parse.inbound.MultiStageWaitStrategy;
 import com.alibaba.otter.canal.parse.inbound.TableMeta;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.lmax.disruptor.*;
+import com.lmax.disruptor.util.Util;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
 import com.taobao.tddl.dbsync.binlog.LogContext;
 import com.taobao.tddl.dbsync.binlog.LogDecoder;
@@ -23,6 +25,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * 针对解析器提供一个多阶段协同的处理
  * 
@@ -31,6 +36,13 @@ import java.util.concurrent.locks.LockSupport;
  * 2. 事件基本解析 (单线程，事件类型、DDL解析构造TableMeta、维护位点信息)
  * 3. 事件深度解析 (多线程, DML事件数据的完整解析)
  * 4. 投递到store (单线程)
+ * 
+ * 开启parallelByTable之后，第3步按照schema.table的hash分配到固定的解析线程，同一张表的事件始终由同一个线程顺序解析，
+ * 每个解析线程处理完自己的事件后立即上报进度，第4步依然按照binlog的顺序(即事务的提交顺序)投递，
+ * 但每条事件只等待负责它的解析线程，不会被其他表正在解析的大事件阻塞
+ * 
+ * 开启autoTune之后，如果投递阻塞的时间占比过高并且瓶颈在第3步，会在投递线程中等待已有数据处理完成，
+ * 然后按照更大的ringBufferSize/parserThreadCount重建各个stage
  * </pre>
  * 
  * @author agapple 2018年7月3日 下午4:54:17
@@ -38,24 +50,42 @@ import java.util.concurrent.locks.LockSupport;
  */
 public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implements MultiStageCoprocessor {
 
-    private static final int                  maxFullTimes = 10;
-    private LogEventConvert                   logEventConvert;
-    private EventTransactionBuffer            transactionBuffer;
-    private ErosaConnection                   connection;
-
-    private int                               parserThreadCount;
-    private int                               ringBufferSize;
-    private RingBuffer<MessageEvent>          disruptorMsgBuffer;
-    private ExecutorService                   parserExecutor;
-    private ExecutorService                   stageExecutor;
-    private String                            destination;
-    private volatile CanalParseException      exception;
-    private AtomicLong                        eventsPublishBlockingTime;
-    private GTIDSet                           gtidSet;
-    private WorkerPool<MessageEvent>          workerPool;
-    private BatchEventProcessor<MessageEvent> simpleParserStage;
-    private BatchEventProcessor<MessageEvent> sinkStoreStage;
-    private LogContext                        logContext;
+    private static final Logger                 logger                = LoggerFactory.getLogger(MysqlMultiStageCoprocessor.class);
+    private static final int                    maxFullTimes          = 10;
+    private static final int                    tuneCheckInterval     = 1024;                                   // 每投递多少条数据检查一次
+    private static final int                    tuneBlockingPercent   = 10;                                     // 阻塞时间占比超过该值时扩容
+    private LogEventConvert                     logEventConvert;
+    private EventTransactionBuffer              transactionBuffer;
+    private ErosaConnection                     connection;
+
+    private int                                 parserThreadCount;
+    private int                                 ringBufferSize;
+    private boolean                             parallelByTable       = false;                                  // 是否按表分配解析线程
+    private MultiStageWaitStrategy              waitStrategy          = MultiStageWaitStrategy.BLOCKING;
+    private boolean                             autoTune              = false;                                  // 是否根据投递阻塞时间自动扩容
+    private long                                tuneWindowNanos       = TimeUnit.SECONDS.toNanos(10);           // 最小的观察周期
+    private int                                 maxRingBufferSize;
+    private int                                 maxParserThreadCount;
+    private RingBuffer<MessageEvent>            disruptorMsgBuffer;
+    private ExecutorService                     parserExecutor;
+    private ExecutorService                     stageExecutor;
+    private String                              destination;
+    private volatile CanalParseException        exception;
+    private AtomicLong                          eventsPublishBlockingTime;
+    private GTIDSet                             gtidSet;
+    private WorkerPool<MessageEvent>            workerPool;
+    private BatchEventProcessor<MessageEvent>[] tableParserStages;
+    private SequenceBarrier[]                   tableParserBarriers;                                            // sink等待各个表解析线程的进度
+    private BatchEventProcessor<MessageEvent>   simpleParserStage;
+    private BatchEventProcessor<MessageEvent>   sinkStoreStage;
+    private Sequence[]                          dmlParserSequences;
+    private LogContext                          logContext;
+    // autoTune的统计信息，只有投递线程会访问
+    private long                                publishTimes;
+    private long                                blockedTimes;
+    private long                                parserBoundTimes;
+    private long                                tuneWindowStart;
+    private long                                tuneWindowBlockingTime;
 
     public MysqlMultiStageCoprocessor(int ringBufferSize, int parserThreadCount, LogEventConvert logEventConvert,
                                       EventTransactionBuffer transactionBuffer, String destination){
@@ -64,16 +94,27 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         this.logEventConvert = logEventConvert;
         this.transactionBuffer = transactionBuffer;
         this.destination = destination;
+        this.maxRingBufferSize = ringBufferSize * 16;
+        this.maxParserThreadCount = Math.max(Runtime.getRuntime().availableProcessors(), parserThreadCount);
     }
 
     @Override
     public void start() {
         super.start();
         this.exception = null;
+        this.logContext = new LogContext();
+        if (gtidSet != null) {
+            logContext.setGtidSet(gtidSet);
+        }
+        startStages();
+        resetTuneWindow();
+    }
+
+    private void startStages() {
 //        用disruptor做的无锁队列
         this.disruptorMsgBuffer = RingBuffer.createSingleProducer(new MessageEventFactory(),
             ringBufferSize,
-            new BlockingWaitStrategy());
+            waitStrategy.newWaitStrategy());
         int tc = parserThreadCount > 0 ? parserThreadCount : 1;
         this.parserExecutor = Executors.newFixedThreadPool(tc, new NamedThreadFactory("MultiStageCoprocessor-Parser-"
                                                                                       + destination));
@@ -83,38 +124,65 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         SequenceBarrier sequenceBarrier = disruptorMsgBuffer.newBarrier();
         ExceptionHandler exceptionHandler = new SimpleFatalExceptionHandler();
         // stage 2
-        this.logContext = new LogContext();
         simpleParserStage = new BatchEventProcessor<MessageEvent>(disruptorMsgBuffer,
             sequenceBarrier,
-            new SimpleParserStage(logContext));
+            new SimpleParserStage(logContext, parallelByTable ? tc : 0));
         simpleParserStage.setExceptionHandler(exceptionHandler);
         disruptorMsgBuffer.addGatingSequences(simpleParserStage.getSequence());
 
         // stage 3
         SequenceBarrier dmlParserSequenceBarrier = disruptorMsgBuffer.newBarrier(simpleParserStage.getSequence());
-        WorkHandler<MessageEvent>[] workHandlers = new DmlParserStage[tc];
-        for (int i = 0; i < tc; i++) {
-            workHandlers[i] = new DmlParserStage();
-        }
-        workerPool = new WorkerPool<MessageEvent>(disruptorMsgBuffer,
-            dmlParserSequenceBarrier,
-            exceptionHandler,
-            workHandlers);
-        Sequence[] sequence = workerPool.getWorkerSequences();
+        Sequence[] sequence = null;
+        if (parallelByTable) {
+            // 每个线程只处理分配给自己的表，其余事件直接跳过
+            tableParserStages = new BatchEventProcessor[tc];
+            tableParserBarriers = new SequenceBarrier[tc];
+            sequence = new Sequence[tc];
+            for (int i = 0; i < tc; i++) {
+                tableParserStages[i] = new BatchEventProcessor<MessageEvent>(disruptorMsgBuffer,
+                    dmlParserSequenceBarrier,
+                    new DmlParserStage(i));
+                tableParserStages[i].setExceptionHandler(exceptionHandler);
+                sequence[i] = tableParserStages[i].getSequence();
+                tableParserBarriers[i] = disruptorMsgBuffer.newBarrier(sequence[i]);
+            }
+        } else {
+            WorkHandler<MessageEvent>[] workHandlers = new DmlParserStage[tc];
+            for (int i = 0; i < tc; i++) {
+                workHandlers[i] = new DmlParserStage(-1);
+            }
+            workerPool = new WorkerPool<MessageEvent>(disruptorMsgBuffer,
+                dmlParserSequenceBarrier,
+                exceptionHandler,
+                workHandlers);
+            sequence = workerPool.getWorkerSequences();
+        }
         disruptorMsgBuffer.addGatingSequences(sequence);
-
-        // stage 4
-        SequenceBarrier sinkSequenceBarrier = disruptorMsgBuffer.newBarrier(sequence);
+        this.dmlParserSequences = sequence;
+
+        // stage 4，按表并行时只依赖基本解析，每条事件在投递前单独等待负责它的解析线程
+        SequenceBarrier sinkSequenceBarrier = null;
+        if (parallelByTable) {
+            sinkSequenceBarrier = disruptorMsgBuffer.newBarrier(simpleParserStage.getSequence());
+        } else {
+            sinkSequenceBarrier = disruptorMsgBuffer.newBarrier(sequence);
+        }
         sinkStoreStage = new BatchEventProcessor<MessageEvent>(disruptorMsgBuffer,
             sinkSequenceBarrier,
-            new SinkStoreStage());
+            new SinkStoreStage(tableParserBarriers));
         sinkStoreStage.setExceptionHandler(exceptionHandler);
         disruptorMsgBuffer.addGatingSequences(sinkStoreStage.getSequence());
 
         // start work
         stageExecutor.submit(simpleParserStage);
         stageExecutor.submit(sinkStoreStage);
-        workerPool.start(parserExecutor);
+        if (parallelByTable) {
+            for (BatchEventProcessor<MessageEvent> tableParserStage : tableParserStages) {
+                parserExecutor.submit(tableParserStage);
+            }
+        } else {
+            workerPool.start(parserExecutor);
+        }
     }
 
     public void setBinlogChecksum(int binlogChecksum) {
@@ -125,18 +193,29 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
     @Override
     public void stop() {
+        // 和投递线程中的resize互斥，避免重建出来的stage线程在stop之后泄漏
+        synchronized (this) {
+            super.stop();
+            haltStages();
+        }
+    }
+
+    private void haltStages() {
         // fix bug #968，对于pool与
-        workerPool.halt();
+        haltParserStages();
         simpleParserStage.halt();
         sinkStoreStage.halt();
+        if (tableParserBarriers != null) {
+            // sink可能正在等待已经停止的表解析线程
+            for (SequenceBarrier tableParserBarrier : tableParserBarriers) {
+                tableParserBarrier.alert();
+            }
+        }
         try {
             parserExecutor.shutdownNow();
-            while (!parserExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
-                if (parserExecutor.isShutdown() || parserExecutor.isTerminated()) {
-                    break;
-                }
-
-                parserExecutor.shutdownNow();
+            // 刚提交还未开始运行的processor启动时会清除halt的标记，并且吞掉中断，需要再次halt
+            for (int i = 0; i < 10 && !parserExecutor.awaitTermination(100, TimeUnit.MILLISECONDS); i++) {
+                haltParserStages();
             }
         } catch (Throwable e) {
             // ignore
@@ -154,7 +233,20 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         } catch (Throwable e) {
             // ignore
         }
-        super.stop();
+        workerPool = null;
+        tableParserStages = null;
+        tableParserBarriers = null;
+    }
+
+    private void haltParserStages() {
+        if (workerPool != null) {
+            workerPool.halt();
+        }
+        if (tableParserStages != null) {
+            for (BatchEventProcessor<MessageEvent> tableParserStage : tableParserStages) {
+                tableParserStage.halt();
+            }
+        }
     }
 
     public boolean publish(LogBuffer buffer) {
@@ -199,10 +291,19 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 if (fullTimes > 0) {
                     eventsPublishBlockingTime.addAndGet(System.nanoTime() - blockingStart);
                 }
+                if (autoTune && ++publishTimes % tuneCheckInterval == 0) {
+                    tune();
+                }
                 break;
             } catch (InsufficientCapacityException e) {
                 if (fullTimes == 0) {
                     blockingStart = System.nanoTime();
+                    if (autoTune) {
+                        blockedTimes++;
+                        if (isParserBound()) {
+                            parserBoundTimes++;
+                        }
+                    }
                 }
                 // park
                 // LockSupport.parkNanos(1L);
@@ -220,6 +321,14 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
     // 处理无数据的情况，避免空循环挂死
     private void applyWait(int fullTimes) {
+        if (waitStrategy == MultiStageWaitStrategy.BUSY_SPIN) {
+            // 忙等，换取最低的投递延迟
+            return;
+        } else if (waitStrategy == MultiStageWaitStrategy.YIELDING) {
+            Thread.yield();
+            return;
+        }
+
         int newFullTimes = fullTimes > maxFullTimes ? maxFullTimes : fullTimes;
         if (fullTimes <= 3) { // 3次以内
             Thread.yield();
@@ -229,17 +338,80 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
     }
 
+    /**
+     * ringBuffer满的时候判断瓶颈是否在dml解析，等待dml解析的数据比等待sink的数据多
+     * (sink通常正在处理dml刚完成的数据，不能要求sink完全追上dml解析)
+     */
+    private boolean isParserBound() {
+        long dmlSequence = Util.getMinimumSequence(dmlParserSequences);
+        long sinkSequence = sinkStoreStage.getSequence().get();
+        return simpleParserStage.getSequence().get() - dmlSequence > dmlSequence - sinkSequence;
+    }
+
+    private void tune() {
+        long now = System.nanoTime();
+        long elapsed = now - tuneWindowStart;
+        if (elapsed < tuneWindowNanos) {
+            return;
+        }
+
+        long blockingTime = eventsPublishBlockingTime.get() - tuneWindowBlockingTime;
+        // 阻塞主要是因为store/下游消费慢的时候，扩容没有意义
+        if (blockingTime * 100 > elapsed * tuneBlockingPercent && parserBoundTimes * 2 > blockedTimes) {
+            int newRingBufferSize = Math.min(ringBufferSize << 1, maxRingBufferSize);
+            int newParserThreadCount = Math.min(Math.max(parserThreadCount, 1) + 1, maxParserThreadCount);
+            if (newRingBufferSize > ringBufferSize || newParserThreadCount > parserThreadCount) {
+                resize(newRingBufferSize, newParserThreadCount);
+            }
+        }
+        resetTuneWindow();
+    }
+
+    private void resize(int newRingBufferSize, int newParserThreadCount) {
+        // 等待已投递的数据全部处理完成，保证重建前后数据的顺序
+        long cursor = disruptorMsgBuffer.getCursor();
+        while (sinkStoreStage.getSequence().get() < cursor) {
+            if (exception != null) {
+                throw exception;
+            }
+            if (!isStart() || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            LockSupport.parkNanos(100 * 1000L);
+        }
+
+        synchronized (this) {
+            // 已经被其他线程stop，stage已经释放，不能再重建
+            if (!isStart()) {
+                return;
+            }
+
+            logger.warn("{} publish blocking too long, resize ringBufferSize {} -> {}, parserThreadCount {} -> {}",
+                new Object[] { destination, ringBufferSize, newRingBufferSize, parserThreadCount, newParserThreadCount });
+            haltStages();
+            this.ringBufferSize = newRingBufferSize;
+            this.parserThreadCount = newParserThreadCount;
+            startStages();
+        }
+    }
+
+    private void resetTuneWindow() {
+        tuneWindowStart = System.nanoTime();
+        tuneWindowBlockingTime = eventsPublishBlockingTime != null ? eventsPublishBlockingTime.get() : 0L;
+        blockedTimes = 0;
+        parserBoundTimes = 0;
+    }
+
     private class SimpleParserStage implements EventHandler<MessageEvent>, LifecycleAware {
 
         private LogDecoder decoder;
         private LogContext context;
+        private int        partitionCount; // 按表并行时的解析线程数，0代表不分区
 
-        public SimpleParserStage(LogContext context){
+        public SimpleParserStage(LogContext context, int partitionCount){
             decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
             this.context = context;
-            if (gtidSet != null) {
-                context.setGtidSet(gtidSet);
-            }
+            this.partitionCount = partitionCount;
         }
 
         public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
@@ -282,12 +454,28 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 // 记录一下DML的表结构
                 event.setNeedDmlParse(needDmlParse);
                 event.setTable(tableMeta);
+                if (needDmlParse && partitionCount > 0) {
+                    event.setPartition(partition(logEvent, sequence));
+                }
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
             }
         }
 
+        private int partition(LogEvent logEvent, long sequence) {
+            if (logEvent instanceof RowsLogEvent) {
+                TableMapLogEvent table = ((RowsLogEvent) logEvent).getTable();
+                if (table != null) {
+                    int hash = 31 * table.getDbName().hashCode() + table.getTableName().hashCode();
+                    return (hash & Integer.MAX_VALUE) % partitionCount;
+                }
+            }
+
+            // rows query等事件和表无关，轮询分配
+            return (int) (sequence % partitionCount);
+        }
+
         @Override
         public void onStart() {
 
@@ -299,7 +487,26 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         }
     }
 
-    private class DmlParserStage implements WorkHandler<MessageEvent>, LifecycleAware {
+    private class DmlParserStage implements WorkHandler<MessageEvent>, SequenceReportingEventHandler<MessageEvent>, LifecycleAware {
+
+        private int      partition;       // 按表并行时负责的分区，-1代表由WorkerPool分配
+        private Sequence sequenceCallback;
+
+        public DmlParserStage(int partition){
+            this.partition = partition;
+        }
+
+        public void setSequenceCallback(Sequence sequenceCallback) {
+            this.sequenceCallback = sequenceCallback;
+        }
+
+        public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+            if (event.getPartition() == partition) {
+                onEvent(event);
+                // 不等整批处理完，立即让sink看到这条事件已经解析完成
+                sequenceCallback.set(sequence);
+            }
+        }
 
         @Override
         public void onEvent(MessageEvent event) throws Exception {
@@ -337,7 +544,18 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
     private class SinkStoreStage implements EventHandler<MessageEvent>, LifecycleAware {
 
+        private SequenceBarrier[] tableParserBarriers; // 按表并行时各个解析线程的进度，null代表依赖整个WorkerPool
+
+        public SinkStoreStage(SequenceBarrier[] tableParserBarriers){
+            this.tableParserBarriers = tableParserBarriers;
+        }
+
         public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+            if (tableParserBarriers != null && event.getPartition() >= 0) {
+                // 只等待负责该事件的解析线程，halt时抛出AlertException结束stage
+                tableParserBarriers[event.getPartition()].waitFor(sequence);
+            }
+
             try {
                 if (event.getEntry() != null) {
                     transactionBuffer.add(event.getEntry());
@@ -356,6 +574,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 event.setTable(null);
                 event.setEntry(null);
                 event.setNeedDmlParse(false);
+                event.setPartition(-1);
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
@@ -380,6 +599,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         private boolean          needDmlParse = false;
         private TableMeta        table;
         private LogEvent         event;
+        private int              partition    = -1;
 
         public LogBuffer getBuffer() {
             return buffer;
@@ -421,6 +641,14 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
             this.table = table;
         }
 
+        public int getPartition() {
+            return partition;
+        }
+
+        public void setPartition(int partition) {
+            this.partition = partition;
+        }
+
     }
 
     class SimpleFatalExceptionHandler implements ExceptionHandler {
@@ -465,4 +693,38 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         this.gtidSet = gtidSet;
     }
 
+    public void setParallelByTable(boolean parallelByTable) {
+        this.parallelByTable = parallelByTable;
+    }
+
+    public void setWaitStrategy(MultiStageWaitStrategy waitStrategy) {
+        if (waitStrategy != null) {
+            this.waitStrategy = waitStrategy;
+        }
+    }
+
+    public void setAutoTune(boolean autoTune) {
+        this.autoTune = autoTune;
+    }
+
+    public void setTuneWindowMillis(long tuneWindowMillis) {
+        this.tuneWindowNanos = TimeUnit.MILLISECONDS.toNanos(tuneWindowMillis);
+    }
+
+    public void setMaxRingBufferSize(int maxRingBufferSize) {
+        this.maxRingBufferSize = maxRingBufferSize;
+    }
+
+    public void setMaxParserThreadCount(int maxParserThreadCount) {
+        this.maxParserThreadCount = maxParserThreadCount;
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    public int getParserThreadCount() {
+        return parserThreadCount;
+    }
+
 }
@@ -0,0 +1,160 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.dbsync;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * 线程级复用的列值编码器，直接将列值编码为protobuf的utf-8 ByteString
+ *
+ * <pre>
+ * 1. 复用Column/RowData的builder，避免每个列都创建新的builder
+ * 2. 数字类型直接输出ascii字节，不再经过String.valueOf
+ * 3. utf-8及纯ascii的文本直接使用binlog中的原始字节，不再经过new String以及protobuf序列化时的再次编码
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class ColumnValueEncoder {
+
+    private static final ThreadLocal<ColumnValueEncoder> LOCAL     = new ThreadLocal<ColumnValueEncoder>() {
+
+                                                                       protected ColumnValueEncoder initialValue() {
+                                                                           return new ColumnValueEncoder();
+                                                                       }
+                                                                   };
+    private static final Charset                         UTF_8     = Charset.forName("UTF-8");
+    private static final byte[]                          ASCII     = { 'a', 'z', 'A', 'Z', '0', '9', ' ', '-' };
+    private static final ByteString                      MIN_LONG  = ByteString.copyFromUtf8(String.valueOf(Long.MIN_VALUE));
+
+    private final Column.Builder                         columnBuilder;
+    private final RowData.Builder                        rowDataBuilder;
+    private byte[]                                       scratch   = new byte[64];
+    private Charset                                      lastCharset;                                                       // 最近一次判断过的编码
+    private boolean                                      lastAsciiCompatible;
+
+    public static ColumnValueEncoder get() {
+        return LOCAL.get();
+    }
+
+    ColumnValueEncoder(){
+        this.columnBuilder = Column.newBuilder();
+        this.rowDataBuilder = RowData.newBuilder();
+    }
+
+    /**
+     * 返回清空之后的Column.Builder，build之后可以继续复用
+     */
+    public Column.Builder columnBuilder() {
+        return columnBuilder.clear();
+    }
+
+    /**
+     * 返回清空之后的RowData.Builder，build之后可以继续复用
+     */
+    public RowData.Builder rowDataBuilder() {
+        return rowDataBuilder.clear();
+    }
+
+    public ByteString encode(long value) {
+        if (value == Long.MIN_VALUE) {
+            return MIN_LONG;
+        }
+
+        boolean negative = value < 0;
+        long remaining = negative ? -value : value;
+        int size = negative ? 1 : 0;
+        long tmp = remaining;
+        do {
+            size++;
+            tmp /= 10;
+        } while (tmp != 0);
+
+        byte[] bytes = ensureScratch(size);
+        int position = size;
+        do {
+            bytes[--position] = (byte) ('0' + (remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            bytes[0] = '-';
+        }
+        return ByteString.copyFrom(bytes, 0, size);
+    }
+
+    /**
+     * 字符串编码为utf-8，纯ascii的字符串直接逐字节输出
+     */
+    public ByteString encode(String value) {
+        int length = value.length();
+        byte[] bytes = ensureScratch(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return ByteString.copyFromUtf8(value);
+            }
+            bytes[i] = (byte) c;
+        }
+        return ByteString.copyFrom(bytes, 0, length);
+    }
+
+    /**
+     * 按照iso-8859-1保留原始的字节，和new String(bytes, ISO_8859_1)之后的utf-8编码结果一致
+     */
+    public ByteString encodeLatin1(byte[] value) {
+        byte[] bytes = ensureScratch(value.length * 2);
+        int position = 0;
+        for (byte b : value) {
+            int c = b & 0xFF;
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return ByteString.copyFrom(bytes, 0, position);
+    }
+
+    /**
+     * 按照charset编码的文本，utf-8及纯ascii的数据直接复用原始字节，value不能再被修改
+     */
+    public ByteString encodeText(byte[] value, Charset charset) {
+        if (UTF_8.equals(charset) || (isAsciiCompatible(charset) && isAscii(value))) {
+            ByteString text = UnsafeByteOperations.unsafeWrap(value);
+            if (text.isValidUtf8()) {
+                return text;
+            }
+        }
+
+        return encode(new String(value, charset));
+    }
+
+    private boolean isAsciiCompatible(Charset charset) {
+        if (charset != lastCharset) {
+            lastAsciiCompatible = Arrays.equals(ASCII, new String(ASCII, UTF_8).getBytes(charset));
+            lastCharset = charset;
+        }
+        return lastAsciiCompatible;
+    }
+
+    private static boolean isAscii(byte[] value) {
+        for (byte b : value) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] ensureScratch(int size) {
+        if (scratch.length < size) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+        }
+        return scratch;
+    }
+}
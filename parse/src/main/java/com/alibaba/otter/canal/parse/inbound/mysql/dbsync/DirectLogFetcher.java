@@ -4,12 +4,16 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.ClosedByInterruptException;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.parse.driver.mysql.socket.SocketChannel;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
 import com.taobao.tddl.dbsync.binlog.LogFetcher;
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
 
 /**
  * 基于socket的logEvent实现
@@ -90,29 +94,8 @@ public class DirectLogFetcher extends LogFetcher {
 
             // Detecting error code.
             final int mark = getUint8(NET_HEADER_SIZE);
-            if (mark != 0) {
-                if (mark == 255) // error from master
-                {
-                    // Indicates an error, for example trying to fetch from
-                    // wrong
-                    // binlog position.
-                    position = NET_HEADER_SIZE + 1;
-                    final int errno = getInt16();
-                    String sqlstate = forward(1).getFixString(SQLSTATE_LENGTH);
-                    String errmsg = getFixString(limit - position);
-                    throw new IOException("Received error packet:" + " errno = " + errno + ", sqlstate = " + sqlstate
-                                          + " errmsg = " + errmsg);
-                } else if (mark == 254) {
-                    // Indicates end of stream. It's not clear when this would
-                    // be sent.
-                    logger.warn("Received EOF packet from server, apparent"
-                                + " master disconnected. It's may be duplicate slaveId , check instance config");
-                    return false;
-                } else {
-                    // Should not happen.
-                    throw new IOException("Unexpected response " + mark + " while fetching binlog: packet #" + netnum
-                                          + ", len = " + netlen);
-                }
+            if (mark != 0 && !checkMark(mark, netnum, netlen)) {
+                return false;
             }
 
             // if mysql is in semi mode
@@ -166,6 +149,138 @@ public class DirectLogFetcher extends LogFetcher {
         }
     }
 
+    /**
+     * 获取下一个binlog事件，数据直接从socket读取到该事件独占的byte[]中，返回基于它的LogBuffer
+     * 
+     * <pre>
+     * 1. 不经过fetcher自身的缓冲区，省去了duplicate的整段拷贝，适合交给并行解析的场景
+     * 2. 超过16MB的多packet事件，根据event header中的长度一次分配，各个packet直接读取到最终位置，不再反复扩容拷贝
+     * </pre>
+     * 
+     * @return 到达数据流结尾时返回null
+     */
+    public LogBuffer fetchBuffer() throws IOException {
+        try {
+            origin = 0;
+            position = 0;
+            limit = 0;
+            // Fetching packet header from input.
+            if (!fetch0(0, NET_HEADER_SIZE)) {
+                logger.warn("Reached end of input stream while fetching header");
+                return null;
+            }
+
+            int netlen = getUint24(PACKET_LEN_OFFSET);
+            int netnum = getUint8(PACKET_SEQ_OFFSET);
+            final int prefixLen = issemi ? 3 : 1;
+            final int headerLen = prefixLen + FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN;
+            // 先读取mark以及event header，错误包则读取完整的packet
+            if (!fetch0(NET_HEADER_SIZE, netlen < headerLen ? netlen : headerLen)) {
+                logger.warn("Reached end of input stream: packet #" + netnum + ", len = " + netlen);
+                return null;
+            }
+
+            final int mark = getUint8(NET_HEADER_SIZE);
+            if (mark != 0 || netlen < headerLen) {
+                if (netlen > headerLen) {
+                    fetch0(NET_HEADER_SIZE + headerLen, netlen - headerLen);
+                }
+                if (mark == 0) {
+                    throw new IOException("Unexpected packet length " + netlen + " while fetching binlog: packet #"
+                                          + netnum);
+                } else if (!checkMark(mark, netnum, netlen)) {
+                    return null;
+                }
+            }
+
+            if (issemi) {
+                this.semival = getUint8(NET_HEADER_SIZE + 2);
+            }
+
+            // 多packet的事件按照event header中的长度分配
+            int eventLen = netlen - prefixLen;
+            if (netlen == MAX_PACKET_LENGTH) {
+                eventLen = (int) getUint32(NET_HEADER_SIZE + prefixLen + LogEvent.EVENT_LEN_OFFSET);
+            }
+
+            byte[] data = new byte[eventLen];
+            System.arraycopy(buffer, NET_HEADER_SIZE + prefixLen, data, 0, FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN);
+            int filled = FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN;
+            data = read(data, filled, netlen - headerLen);
+            filled += netlen - headerLen;
+
+            // The first packet is a multi-packet, read the packets into place.
+            while (netlen == MAX_PACKET_LENGTH) {
+                limit = 0;
+                if (!fetch0(0, NET_HEADER_SIZE)) {
+                    logger.warn("Reached end of input stream while fetching header");
+                    return null;
+                }
+
+                netlen = getUint24(PACKET_LEN_OFFSET);
+                data = read(data, filled, netlen);
+                filled += netlen;
+            }
+
+            limit = 0;
+            return new LogBuffer(data, 0, filled);
+        } catch (SocketTimeoutException e) {
+            close(); /* Do cleanup */
+            logger.error("Socket timeout expired, closing connection", e);
+            throw e;
+        } catch (InterruptedIOException e) {
+            close(); /* Do cleanup */
+            logger.info("I/O interrupted while reading from client socket", e);
+            throw e;
+        } catch (ClosedByInterruptException e) {
+            close(); /* Do cleanup */
+            logger.info("I/O interrupted while reading from client socket", e);
+            throw e;
+        } catch (IOException e) {
+            close(); /* Do cleanup */
+            logger.error("I/O error while reading from client socket", e);
+            throw e;
+        }
+    }
+
+    /**
+     * 处理非事件数据的packet，返回false代表数据流结束
+     */
+    private boolean checkMark(final int mark, final int netnum, final int netlen) throws IOException {
+        if (mark == 255) // error from master
+        {
+            // Indicates an error, for example trying to fetch from
+            // wrong
+            // binlog position.
+            position = NET_HEADER_SIZE + 1;
+            final int errno = getInt16();
+            String sqlstate = forward(1).getFixString(SQLSTATE_LENGTH);
+            String errmsg = getFixString(limit - position);
+            throw new IOException("Received error packet:" + " errno = " + errno + ", sqlstate = " + sqlstate
+                                  + " errmsg = " + errmsg);
+        } else if (mark == 254) {
+            // Indicates end of stream. It's not clear when this would
+            // be sent.
+            logger.warn("Received EOF packet from server, apparent"
+                        + " master disconnected. It's may be duplicate slaveId , check instance config");
+            return false;
+        } else {
+            // Should not happen.
+            throw new IOException("Unexpected response " + mark + " while fetching binlog: packet #" + netnum
+                                  + ", len = " + netlen);
+        }
+    }
+
+    private final byte[] read(byte[] data, final int off, final int len) throws IOException {
+        if (off + len > data.length) {
+            // event header中的长度和实际不一致，按照实际数据扩容
+            data = Arrays.copyOf(data, off + len);
+        }
+
+        channel.read(data, off, len, READ_TIMEOUT_MILLISECONDS);
+        return data;
+    }
+
     private final boolean fetch0(final int off, final int len) throws IOException {
         ensureCapacity(off + len);
 
@@ -83,6 +83,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     public static final int             version             = 1;
     public static final String          BEGIN               = "BEGIN";
     public static final String          COMMIT              = "COMMIT";
+    public static final String          PK_HASH             = "pkHash";
     public static final Logger          logger              = LoggerFactory.getLogger(LogEventConvert.class);
 
     private volatile AviaterRegexFilter nameFilter;                                                          // 运行时引用可能会有变化，比如规则发生变化时
@@ -98,6 +99,8 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     // 新增rows过滤，用于仅订阅除rows以外的数据
     private boolean                     filterRows          = false;
     private boolean                     useDruidDdlFilter   = true;
+    // 解析时计算每行主键的hash记录到header中，MQ按主键分区时不需要再解析RowChange
+    private boolean                     generatePkHash      = false;
 
     public LogEventConvert(){
 
@@ -521,14 +524,18 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
 
             rowChangeBuider.setEventType(eventType);
             RowsLogBuffer buffer = event.getRowsBuf(charset.name());
+            // 字符类型直接返回原始字节，由encoder完成utf-8编码
+            buffer.setTextBytes(true);
+            ColumnValueEncoder encoder = ColumnValueEncoder.get();
             BitSet columns = event.getColumns();
             BitSet changeColumns = event.getChangeColumns();
 
             boolean tableError = false;
             int rowsCount = 0;
+            StringBuilder pkHashes = generatePkHash ? new StringBuilder() : null;
             while (buffer.nextOneRow(columns, false)) {
                 // 处理row记录
-                RowData.Builder rowDataBuilder = RowData.newBuilder();
+                RowData.Builder rowDataBuilder = encoder.rowDataBuilder();
                 if (EventType.INSERT == eventType) {
                     // insert的记录放在before字段中
                     tableError |= parseOneRow(rowDataBuilder, event, buffer, columns, true, tableMeta);
@@ -539,7 +546,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                     // update需要处理before/after
                     tableError |= parseOneRow(rowDataBuilder, event, buffer, columns, false, tableMeta);
                     if (!buffer.nextOneRow(changeColumns, true)) {
-                        rowChangeBuider.addRowDatas(rowDataBuilder.build());
+                        addRowData(rowChangeBuider, rowDataBuilder, pkHashes);
                         break;
                     }
 
@@ -547,14 +554,15 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 }
 
                 rowsCount++;
-                rowChangeBuider.addRowDatas(rowDataBuilder.build());
+                addRowData(rowChangeBuider, rowDataBuilder, pkHashes);
             }
             TableMapLogEvent table = event.getTable();
             Header header = createHeader(event.getHeader(),
                 table.getDbName(),
                 table.getTableName(),
                 eventType,
-                rowsCount);
+                rowsCount,
+                pkHashes);
 
             RowChange rowChange = rowChangeBuider.build();
             if (tableError) {
@@ -570,6 +578,27 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         }
     }
 
+    /**
+     * 记录每行after字段中主键值的hash，和MQ按主键分区的计算方式保持一致，多行之间用逗号分隔
+     */
+    private void addRowData(RowChange.Builder rowChangeBuider, RowData.Builder rowDataBuilder, StringBuilder pkHashes) {
+        RowData rowData = rowDataBuilder.build();
+        rowChangeBuider.addRowDatas(rowData);
+        if (pkHashes != null) {
+            int hashCode = 0;
+            for (Column column : rowData.getAfterColumnsList()) {
+                if (column.getIsKey()) {
+                    hashCode = hashCode ^ column.getValue().hashCode();
+                }
+            }
+
+            if (pkHashes.length() > 0) {
+                pkHashes.append(',');
+            }
+            pkHashes.append(hashCode);
+        }
+    }
+
     private EntryPosition createPosition(LogHeader logHeader) {
         return new EntryPosition(logHeader.getLogFileName(), logHeader.getLogPos() - logHeader.getEventLen(), // startPos
             logHeader.getWhen() * 1000L,
@@ -582,6 +611,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         ColumnInfo[] columnInfo = event.getTable().getColumnInfo();
         // mysql8.0针对set @@global.binlog_row_metadata='FULL' 可以记录部分的metadata信息
         boolean existOptionalMetaData = event.getTable().isExistOptionalMetaData();
+        ColumnValueEncoder encoder = ColumnValueEncoder.get();
         boolean tableError = false;
         // check table fileds count，只能处理加字段
         boolean existRDSNoPrimaryKey = false;
@@ -640,14 +670,14 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 // 不解析最后一列
                 String rdsRowIdColumnName = "#alibaba_rds_row_id#";
                 buffer.nextValue(rdsRowIdColumnName, i, info.type, info.meta, false);
-                Column.Builder columnBuilder = Column.newBuilder();
+                Column.Builder columnBuilder = encoder.columnBuilder();
                 columnBuilder.setName(rdsRowIdColumnName);
                 columnBuilder.setIsKey(true);
                 columnBuilder.setMysqlType("bigint");
                 columnBuilder.setIndex(i);
                 columnBuilder.setIsNull(false);
                 Serializable value = buffer.getValue();
-                columnBuilder.setValue(value.toString());
+                columnBuilder.setValueBytes(encoder.encode(((Number) value).longValue()));
                 columnBuilder.setSqlType(Types.BIGINT);
                 columnBuilder.setUpdated(false);
 
@@ -680,7 +710,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 }
             }
 
-            Column.Builder columnBuilder = Column.newBuilder();
+            Column.Builder columnBuilder = encoder.columnBuilder();
             if (fieldMeta != null) {
                 columnBuilder.setName(fieldMeta.getColumnName());
                 columnBuilder.setIsKey(fieldMeta.isKey());
@@ -727,38 +757,34 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         if (isUnsigned && number.longValue() < 0) {
                             switch (buffer.getLength()) {
                                 case 1: /* MYSQL_TYPE_TINY */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(TINYINT_MAX_VALUE
-                                                                                          + number.intValue())));
+                                    columnBuilder.setValueBytes(encoder.encode(TINYINT_MAX_VALUE + number.intValue()));
                                     javaType = Types.SMALLINT; // 往上加一个量级
                                     break;
 
                                 case 2: /* MYSQL_TYPE_SHORT */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(SMALLINT_MAX_VALUE
-                                                                                          + number.intValue())));
+                                    columnBuilder.setValueBytes(encoder.encode(SMALLINT_MAX_VALUE + number.intValue()));
                                     javaType = Types.INTEGER; // 往上加一个量级
                                     break;
 
                                 case 3: /* MYSQL_TYPE_INT24 */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(MEDIUMINT_MAX_VALUE
-                                                                                          + number.intValue())));
+                                    columnBuilder.setValueBytes(encoder.encode(MEDIUMINT_MAX_VALUE + number.intValue()));
                                     javaType = Types.INTEGER; // 往上加一个量级
                                     break;
 
                                 case 4: /* MYSQL_TYPE_LONG */
-                                    columnBuilder.setValue(String.valueOf(Long.valueOf(INTEGER_MAX_VALUE
-                                                                                       + number.longValue())));
+                                    columnBuilder.setValueBytes(encoder.encode(INTEGER_MAX_VALUE + number.longValue()));
                                     javaType = Types.BIGINT; // 往上加一个量级
                                     break;
 
                                 case 8: /* MYSQL_TYPE_LONGLONG */
-                                    columnBuilder.setValue(BIGINT_MAX_VALUE.add(BigInteger.valueOf(number.longValue()))
-                                        .toString());
+                                    columnBuilder.setValueBytes(encoder.encode(BIGINT_MAX_VALUE.add(BigInteger.valueOf(number.longValue()))
+                                        .toString()));
                                     javaType = Types.DECIMAL; // 往上加一个量级，避免执行出错
                                     break;
                             }
                         } else {
-                            // 对象为number类型，直接valueof即可
-                            columnBuilder.setValue(String.valueOf(value));
+                            // 对象为number类型，直接输出ascii字节
+                            columnBuilder.setValueBytes(encoder.encode(number.longValue()));
                         }
 
                         if (isSingleBit && javaType == Types.TINYINT) {
@@ -768,14 +794,14 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                     case Types.REAL: // float
                     case Types.DOUBLE: // double
                         // 对象为number类型，直接valueof即可
-                        columnBuilder.setValue(String.valueOf(value));
+                        columnBuilder.setValueBytes(encoder.encode(String.valueOf(value)));
                         break;
                     case Types.BIT:// bit
-                        // 对象为number类型
-                        columnBuilder.setValue(String.valueOf(value));
+                        // 对象为number类型，64位的bit为BigInteger
+                        columnBuilder.setValueBytes(encoder.encode(String.valueOf(value)));
                         break;
                     case Types.DECIMAL:
-                        columnBuilder.setValue(((BigDecimal) value).toPlainString());
+                        columnBuilder.setValueBytes(encoder.encode(((BigDecimal) value).toPlainString()));
                         break;
                     case Types.TIMESTAMP:
                         // 修复时间边界值
@@ -786,7 +812,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                     case Types.TIME:
                     case Types.DATE:
                         // 需要处理year
-                        columnBuilder.setValue(value.toString());
+                        columnBuilder.setValueBytes(encoder.encode(value.toString()));
                         break;
                     case Types.BINARY:
                     case Types.VARBINARY:
@@ -796,11 +822,11 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         // mysql binlog中blob/text都处理为blob类型，需要反查table
                         // meta，按编码解析text
                         if (fieldMeta != null && isText(fieldMeta.getColumnType())) {
-                            columnBuilder.setValue(new String((byte[]) value, charset));
+                            columnBuilder.setValueBytes(encoder.encodeText((byte[]) value, charset));
                             javaType = Types.CLOB;
                         } else {
                             // byte数组，直接使用iso-8859-1保留对应编码，浪费内存
-                            columnBuilder.setValue(new String((byte[]) value, ISO_8859_1));
+                            columnBuilder.setValueBytes(encoder.encodeLatin1((byte[]) value));
                             // columnBuilder.setValueBytes(ByteString.copyFrom((byte[])
                             // value));
                             javaType = Types.BLOB;
@@ -808,10 +834,14 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         break;
                     case Types.CHAR:
                     case Types.VARCHAR:
-                        columnBuilder.setValue(value.toString());
+                        if (value instanceof byte[]) {
+                            columnBuilder.setValueBytes(encoder.encodeText((byte[]) value, charset));
+                        } else {
+                            columnBuilder.setValueBytes(encoder.encode(value.toString()));
+                        }
                         break;
                     default:
-                        columnBuilder.setValue(value.toString());
+                        columnBuilder.setValueBytes(encoder.encode(value.toString()));
                 }
             }
 
@@ -819,7 +849,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             // 设置是否update的标记位
             columnBuilder.setUpdated(isAfter
                                      && isUpdate(rowDataBuilder.getBeforeColumnsList(),
-                                         columnBuilder.getIsNull() ? null : columnBuilder.getValue(),
+                                         columnBuilder.getIsNull() ? null : columnBuilder.getValueBytes(),
                                          i));
             if (isAfter) {
                 rowDataBuilder.addAfterColumns(columnBuilder.build());
@@ -849,11 +879,11 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     }
 
     private Header createHeader(LogHeader logHeader, String schemaName, String tableName, EventType eventType) {
-        return createHeader(logHeader, schemaName, tableName, eventType, -1);
+        return createHeader(logHeader, schemaName, tableName, eventType, -1, null);
     }
 
     private Header createHeader(LogHeader logHeader, String schemaName, String tableName, EventType eventType,
-                                Integer rowsCount) {
+                                Integer rowsCount, StringBuilder pkHashes) {
         // header会做信息冗余,方便以后做检索或者过滤
         Header.Builder headerBuilder = Header.newBuilder();
         headerBuilder.setVersion(version);
@@ -900,10 +930,16 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             Pair pair = createSpecialPair("rowsCount", String.valueOf(rowsCount));
             headerBuilder.addProps(pair);
         }
+
+        // add pk hash for mq partition
+        if (pkHashes != null && pkHashes.length() > 0) {
+            Pair pair = createSpecialPair(PK_HASH, pkHashes.toString());
+            headerBuilder.addProps(pair);
+        }
         return headerBuilder.build();
     }
 
-    private boolean isUpdate(List<Column> bfColumns, String newValue, int index) {
+    private boolean isUpdate(List<Column> bfColumns, ByteString newValue, int index) {
         if (bfColumns == null) {
             throw new CanalParseException("ERROR ## the bfColumns is null");
         }
@@ -912,16 +948,14 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             return false;
         }
 
+        // full image下before的下标和column index一致，可以直接定位
+        if (index < bfColumns.size() && bfColumns.get(index).getIndex() == index) {
+            return isUpdate(bfColumns.get(index), newValue);
+        }
+
         for (Column column : bfColumns) {
-            if (column.getIndex() == index) {// 比较before / after的column index
-                if (column.getIsNull() && newValue == null) {
-                    // 如果全是null
-                    return false;
-                } else if (newValue != null && (!column.getIsNull() && column.getValue().equals(newValue))) {
-                    // fixed issue #135, old column is Null
-                    // 如果不为null，并且相等
-                    return false;
-                }
+            if (column.getIndex() == index && !isUpdate(column, newValue)) {// 比较before / after的column index
+                return false;
             }
         }
 
@@ -929,6 +963,18 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         return true;
     }
 
+    private boolean isUpdate(Column column, ByteString newValue) {
+        if (column.getIsNull() && newValue == null) {
+            // 如果全是null
+            return false;
+        } else if (newValue != null && (!column.getIsNull() && column.getValueBytes().equals(newValue))) {
+            // fixed issue #135, old column is Null
+            // 如果不为null，并且相等
+            return false;
+        }
+        return true;
+    }
+
     private TableMeta getTableMeta(String dbName, String tbName, boolean useCache, EntryPosition position) {
         try {
             return tableMetaCache.getTableMeta(dbName, tbName, useCache, position);
@@ -1025,6 +1071,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         this.filterRows = filterRows;
     }
 
+    public void setGeneratePkHash(boolean generatePkHash) {
+        this.generatePkHash = generatePkHash;
+    }
+
     public void setUseDruidDdlFilter(boolean useDruidDdlFilter) {
         this.useDruidDdlFilter = useDruidDdlFilter;
     }
@@ -0,0 +1,256 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
+import com.alibaba.otter.canal.parse.exception.CanalParseException;
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+
+/**
+ * 多个binlog文件并行解码，消费方按照文件顺序依次读取
+ *
+ * <pre>
+ * 1. 每个binlog文件都以FormatDescription开始，table map也只在文件内有效，因此每个文件使用独立的LogDecoder/LogContext
+ * 2. 当前文件之后最多预先解码parallelism-1个文件，解码结果放在每个文件独立的队列中
+ * 3. 每个文件按照字节数限制预解码的数据量(event长度加上对象的固定开销)，超过lookAheadSize之后阻塞解码线程，
+ *    按条数限制时大文件只能预解码很少的一部分，并行度会退化为串行
+ * 4. 解码线程按批(最多BATCH_SIZE个event)交给消费方，避免每个event都经过一次队列和预算的同步
+ * 5. needWait模式下的最后一个文件可能还在写入，只预解码已经存在下一个文件的binlog
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class ParallelBinLogFileDecoder {
+
+    private static final Logger  logger                  = LoggerFactory.getLogger(ParallelBinLogFileDecoder.class);
+    private static final Object  END                     = new Object();
+    private static final int     EVENT_OVERHEAD          = 256;                                         // 解码后每个event对象的估算开销
+    private static final int     BATCH_SIZE              = 512;                                         // 每批交给消费方的最大event数
+    public static final int      DEFAULT_LOOK_AHEAD_SIZE = 16 * 1024 * 1024;
+
+    private BinLogFileQueue      binlogs;
+    private int                  parallelism;
+    private int                  bufferSize;
+    private boolean              mmap;
+    private boolean              needWait;
+    private int                  lookAheadSize           = DEFAULT_LOOK_AHEAD_SIZE;                     // 单个文件预解码的最大字节数
+    private ExecutorService      executor;
+    private LinkedList<FileTask> tasks                   = new LinkedList<FileTask>();                  // 按照文件顺序排列
+
+    public ParallelBinLogFileDecoder(BinLogFileQueue binlogs, int parallelism, int bufferSize, boolean mmap,
+                                     boolean needWait){
+        this.binlogs = binlogs;
+        this.parallelism = parallelism;
+        this.bufferSize = bufferSize;
+        this.mmap = mmap;
+        this.needWait = needWait;
+    }
+
+    public void start() {
+        executor = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("LocalBinLog-Decoder"));
+    }
+
+    public void stop() {
+        for (FileTask task : tasks) {
+            task.cancel();
+        }
+        tasks.clear();
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * 打开指定文件，如果已经在预解码则直接复用，同时提交后续文件的解码任务
+     */
+    public FileTask open(File file, long position) {
+        FileTask task = tasks.peekFirst();
+        if (task != null && task.file.equals(file) && task.position == position) {
+            tasks.pollFirst();
+        } else {
+            // 不连续的读取，丢弃所有预解码的结果
+            for (FileTask other : tasks) {
+                other.cancel();
+            }
+            tasks.clear();
+            task = submit(file, position);
+        }
+
+        File last = tasks.isEmpty() ? file : tasks.peekLast().file;
+        while (tasks.size() < parallelism - 1) {
+            File next = binlogs.getNextFile(last);
+            if (next == null || (needWait && binlogs.getNextFile(next) == null)) {
+                break;
+            }
+
+            tasks.addLast(submit(next, 0L));
+            last = next;
+        }
+        return task;
+    }
+
+    private FileTask submit(File file, long position) {
+        FileTask task = new FileTask(file, position, lookAheadSize);
+        task.future = executor.submit(task);
+        return task;
+    }
+
+    public void setLookAheadSize(int lookAheadSize) {
+        if (lookAheadSize > 0) {
+            this.lookAheadSize = lookAheadSize;
+        }
+    }
+
+    /**
+     * 单个binlog文件的解码任务
+     */
+    public class FileTask implements Runnable {
+
+        private final File                  file;
+        private final long                  position;
+        private final BlockingQueue<Object> queue     = new LinkedBlockingQueue<Object>();
+        private final int                   maxBytes;
+        private final Semaphore             budget;                                     // 剩余可预解码的字节数
+        private volatile Future<?>          future;
+        private volatile boolean            cancelled = false;
+        private Batch                       current;                                    // 消费方正在读取的批次
+        private int                         index;
+
+        FileTask(File file, long position, int maxBytes){
+            this.file = file;
+            this.position = position;
+            this.maxBytes = maxBytes;
+            this.budget = new Semaphore(maxBytes);
+        }
+
+        public void run() {
+            FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
+            fetcher.setMmap(mmap);
+            LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+            LogContext context = new LogContext();
+            Batch batch = new Batch();
+            try {
+                fetcher.open(file, position);
+                context.setLogPosition(new LogPosition(file.getName(), position));
+                while (!cancelled && fetcher.fetch()) {
+                    LogEvent event = decoder.decode(fetcher, context);
+                    if (event != null) {
+                        int bytes = bytesOf(event);
+                        if (!budget.tryAcquire(bytes)) {
+                            // 预算不足，先把已解码的部分交给消费方，再等待消费方释放
+                            batch = flush(batch);
+                            budget.acquire(bytes);
+                        }
+                        batch.add(event, bytes);
+                        if (batch.events.size() >= BATCH_SIZE) {
+                            batch = flush(batch);
+                        }
+                    }
+                }
+                flush(batch);
+                queue.put(END);
+            } catch (InterruptedException e) {
+                // 被取消
+            } catch (Throwable e) {
+                if (!cancelled) {
+                    try {
+                        queue.put(e);
+                    } catch (InterruptedException ie) {
+                        // 被取消
+                    }
+                }
+            } finally {
+                try {
+                    fetcher.close();
+                } catch (IOException e) {
+                    logger.warn("close binlog file {} failed, {}", file.getName(), e.getMessage());
+                }
+            }
+        }
+
+        private Batch flush(Batch batch) throws InterruptedException {
+            if (batch.events.isEmpty()) {
+                return batch;
+            }
+            queue.put(batch);
+            return new Batch();
+        }
+
+        /**
+         * 按顺序返回下一个event，文件读取完成返回null
+         */
+        public LogEvent take() throws IOException, InterruptedException {
+            if (current != null && index < current.events.size()) {
+                return current.events.get(index++);
+            }
+            if (current != null) {
+                // 当前批次已经全部交给调用方，释放预算
+                budget.release(current.bytes);
+                current = null;
+            }
+
+            Object item = queue.take();
+            if (item == END) {
+                queue.put(END); // 保证重复调用依然返回null
+                return null;
+            } else if (item instanceof IOException) {
+                throw (IOException) item;
+            } else if (item instanceof Throwable) {
+                throw new CanalParseException("decode binlog file " + file.getName() + " failed",
+                    (Throwable) item);
+            }
+
+            current = (Batch) item;
+            index = 1;
+            return current.events.get(0);
+        }
+
+        /**
+         * 单个event占用的预算，超过总预算的大event按总预算计算，保证依然可以解码
+         */
+        private int bytesOf(LogEvent event) {
+            long bytes = event.getEventLen() + EVENT_OVERHEAD;
+            return (int) Math.min(bytes, maxBytes);
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        public File getFile() {
+            return file;
+        }
+    }
+
+    private static class Batch {
+
+        private final List<LogEvent> events = new ArrayList<LogEvent>();
+        private int                  bytes;
+
+        void add(LogEvent event, int size) {
+            events.add(event);
+            bytes += size;
+        }
+    }
+}
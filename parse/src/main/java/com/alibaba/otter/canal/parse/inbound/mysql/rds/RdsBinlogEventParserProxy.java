@@ -63,6 +63,7 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
             rdsLocalBinlogEventParser.setFilterQueryDdl(this.filterQueryDdl);
             rdsLocalBinlogEventParser.setFilterQueryDml(this.filterQueryDml);
             rdsLocalBinlogEventParser.setFilterRows(this.filterRows);
+            rdsLocalBinlogEventParser.setGeneratePkHash(this.generatePkHash);
             rdsLocalBinlogEventParser.setFilterTableError(this.filterTableError);
             // rdsLocalBinlogEventParser.setIsGTIDMode(this.isGTIDMode);
             rdsLocalBinlogEventParser.setMasterInfo(this.masterInfo);
@@ -79,6 +80,9 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
             rdsLocalBinlogEventParser.setParallel(this.parallel);
             rdsLocalBinlogEventParser.setParallelBufferSize(this.parallelBufferSize);
             rdsLocalBinlogEventParser.setParallelThreadSize(this.parallelThreadSize);
+            rdsLocalBinlogEventParser.setParallelByTable(this.parallelByTable);
+            rdsLocalBinlogEventParser.setParallelWaitStrategy(this.parallelWaitStrategy);
+            rdsLocalBinlogEventParser.setParallelAutoTune(this.parallelAutoTune);
             rdsLocalBinlogEventParser.setFinishListener(new RdsLocalBinlogEventParser.ParseFinishListener() {
 
                 @Override
@@ -88,8 +92,8 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
                         @Override
                         public void run() {
                             rdsLocalBinlogEventParser.stop();
-                        }
                             RdsBinlogEventParserProxy.this.start();
+                        }
                     });
 
                 }
@@ -39,6 +39,8 @@ public class RdsLocalBinlogEventParser extends LocalBinlogEventParser implements
     private int                 batchFileSize;
 
     public RdsLocalBinlogEventParser(){
+        // 下载之后的归档binlog，默认使用mmap读取并预读下一个文件
+        this.mmap = true;
     }
 
     public void start() throws CanalParseException {
@@ -0,0 +1,124 @@
+package com.alibaba.otter.canal.parse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.alibaba.otter.canal.parse.inbound.SinkFunction;
+import com.alibaba.otter.canal.parse.inbound.mysql.LocalBinLogConnection;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+
+/**
+ * 对比本地binlog串行解析和多文件并行解码的耗时
+ *
+ * <pre>
+ * 参数: 文件数 单个文件大小(MB) 并行文件数 每个事务提交后sink的等待时间(us，模拟下游store的写入耗时)
+ * 基于测试用的binlog文件重复其中的事务生成更大的binlog文件
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class LocalBinlogParallelPerformanceTest {
+
+    private static final int HEADER_SIZE = 4 + 102; // magic + FormatDescription
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length > 0 ? Integer.valueOf(args[0]) : 4;
+        int fileSize = (args.length > 1 ? Integer.valueOf(args[1]) : 64) * 1024 * 1024;
+        int parallelFiles = args.length > 2 ? Integer.valueOf(args[2]) : 4;
+        long sinkDelay = TimeUnit.MICROSECONDS.toNanos(args.length > 3 ? Long.valueOf(args[3]) : 0L);
+
+        File directory = new File(System.getProperty("java.io.tmpdir"), "canal-parallel-binlog");
+        FileUtils.deleteQuietly(directory);
+        directory.mkdirs();
+        try {
+            generate(directory, files, fileSize);
+            System.out.println("files: " + files + " x " + (fileSize / 1024 / 1024) + "MB, cpus: "
+                               + Runtime.getRuntime().availableProcessors() + ", sink delay: "
+                               + TimeUnit.NANOSECONDS.toMicros(sinkDelay) + "us/transaction");
+
+            // 预热
+            dump(directory, 0, 0, sinkDelay);
+            for (int i = 0; i < 3; i++) {
+                System.out.println("serial:                  " + dump(directory, 0, 0, sinkDelay) + "ms");
+                // 按条数限制时的预解码量(4096个event)
+                System.out.println("parallel, 4096 events:   "
+                                   + dump(directory, parallelFiles, 4096 * (60 + 256), sinkDelay) + "ms");
+                System.out.println("parallel, look-ahead:    " + dump(directory, parallelFiles, 0, sinkDelay) + "ms");
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    private static long dump(File directory, int parallelFiles, int lookAheadSize, final long sinkDelay)
+                                                                                                        throws IOException {
+        LocalBinLogConnection connection = new LocalBinLogConnection(directory.getPath(), false);
+        connection.setParallelFiles(parallelFiles);
+        if (lookAheadSize > 0) {
+            connection.setLookAheadSize(lookAheadSize);
+        }
+        connection.connect();
+        final long[] count = new long[1];
+        long start = System.nanoTime();
+        try {
+            connection.dump("mysql-bin.000001", 4L, new SinkFunction<LogEvent>() {
+
+                public boolean sink(LogEvent event) {
+                    count[0]++;
+                    if (sinkDelay > 0 && event.getHeader().getType() == LogEvent.XID_EVENT) {
+                        LockSupport.parkNanos(sinkDelay);
+                    }
+                    return true;
+                }
+            });
+        } finally {
+            connection.disconnect();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * 重复测试binlog中FormatDescription之后、最后的Rotate之前的所有事件
+     */
+    private static void generate(File directory, int files, int fileSize) throws IOException {
+        InputStream input = Thread.currentThread()
+            .getContextClassLoader()
+            .getResourceAsStream("binlog/mysql-bin.000001");
+        byte[] data;
+        try {
+            data = IOUtils.toByteArray(input);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+
+        int bodyEnd = HEADER_SIZE;
+        while (bodyEnd + 19 <= data.length && data[bodyEnd + 4] != LogEvent.ROTATE_EVENT) {
+            bodyEnd += readInt(data, bodyEnd + 9);
+        }
+
+        for (int i = 1; i <= files; i++) {
+            OutputStream output = new FileOutputStream(new File(directory, String.format("mysql-bin.%06d", i)));
+            try {
+                output.write(data, 0, HEADER_SIZE);
+                for (long size = HEADER_SIZE; size < fileSize; size += bodyEnd - HEADER_SIZE) {
+                    output.write(data, HEADER_SIZE, bodyEnd - HEADER_SIZE);
+                }
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8 | (data[offset + 2] & 0xff) << 16
+               | (data[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,86 @@
+package com.alibaba.otter.canal.parse.inbound.mysql;
+
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.ColumnValueEncoder;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.google.protobuf.ByteString;
+
+/**
+ * 验证encoder的输出和原先基于String的setValue结果一致
+ *
+ * @since 1.1.3
+ */
+public class ColumnValueEncoderTest {
+
+    private static final Charset UTF_8      = Charset.forName("UTF-8");
+    private static final Charset GBK        = Charset.forName("GBK");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    @Test
+    public void testNumber() {
+        ColumnValueEncoder encoder = ColumnValueEncoder.get();
+        long[] values = { 0L, 1L, -1L, 9L, 10L, 255L, -128L, 65535L, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                4294967295L, Long.MAX_VALUE, Long.MIN_VALUE };
+        for (long value : values) {
+            Assert.assertEquals(ByteString.copyFromUtf8(String.valueOf(value)), encoder.encode(value));
+        }
+    }
+
+    @Test
+    public void testString() {
+        ColumnValueEncoder encoder = ColumnValueEncoder.get();
+        String[] values = { "", "2019-03-23 10:26:45", "3.1415926", "中文abc", buildString(1024) };
+        for (String value : values) {
+            Assert.assertEquals(ByteString.copyFromUtf8(value), encoder.encode(value));
+        }
+    }
+
+    @Test
+    public void testLatin1() {
+        ColumnValueEncoder encoder = ColumnValueEncoder.get();
+        byte[] value = new byte[256];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) i;
+        }
+        Assert.assertEquals(ByteString.copyFromUtf8(new String(value, ISO_8859_1)), encoder.encodeLatin1(value));
+        Assert.assertEquals(new String(value, ISO_8859_1),
+            Column.newBuilder().setValueBytes(encoder.encodeLatin1(value)).build().getValue());
+    }
+
+    @Test
+    public void testText() {
+        ColumnValueEncoder encoder = ColumnValueEncoder.get();
+        String text = "canal 中文测试";
+        // utf-8直接复用原始字节
+        Assert.assertEquals(ByteString.copyFromUtf8(text), encoder.encodeText(text.getBytes(UTF_8), UTF_8));
+        // 非utf-8需要转码
+        Assert.assertEquals(ByteString.copyFromUtf8(text), encoder.encodeText(text.getBytes(GBK), GBK));
+        Assert.assertEquals(ByteString.copyFromUtf8("ascii"), encoder.encodeText("ascii".getBytes(GBK), GBK));
+        // 非法的utf-8字节，和new String的处理保持一致
+        byte[] invalid = { 'a', (byte) 0xC3, 'b' };
+        Assert.assertEquals(ByteString.copyFromUtf8(new String(invalid, UTF_8)), encoder.encodeText(invalid, UTF_8));
+    }
+
+    @Test
+    public void testReuseBuilder() {
+        ColumnValueEncoder encoder = ColumnValueEncoder.get();
+        Column first = encoder.columnBuilder().setName("id").setIsKey(true).setValueBytes(encoder.encode(1L)).build();
+        Column second = encoder.columnBuilder().setName("name").setValueBytes(encoder.encode("canal")).build();
+        Assert.assertEquals("1", first.getValue());
+        Assert.assertTrue(first.getIsKey());
+        Assert.assertEquals("canal", second.getValue());
+        Assert.assertFalse(second.getIsKey());
+    }
+
+    private String buildString(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        return builder.toString();
+    }
+}
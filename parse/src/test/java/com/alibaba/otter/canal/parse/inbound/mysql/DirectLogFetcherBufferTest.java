@@ -0,0 +1,144 @@
+package com.alibaba.otter.canal.parse.inbound.mysql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketAddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.driver.mysql.socket.SocketChannel;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.DirectLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+
+/**
+ * 测试下fetchBuffer对单packet/多packet事件的读取
+ *
+ * @since 1.1.3
+ */
+public class DirectLogFetcherBufferTest {
+
+    @Test
+    public void testSinglePacket() throws IOException {
+        byte[] event1 = buildEvent(100, (byte) 1);
+        byte[] event2 = buildEvent(19, (byte) 2);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writePackets(output, event1);
+        writePackets(output, event2);
+
+        DirectLogFetcher fetcher = new DirectLogFetcher(64);
+        fetcher.start(new StreamSocketChannel(new ByteArrayInputStream(output.toByteArray())));
+        assertEvent(event1, fetcher.fetchBuffer());
+        assertEvent(event2, fetcher.fetchBuffer());
+    }
+
+    @Test
+    public void testMultiPacket() throws IOException {
+        // 超过一个packet的大事件
+        byte[] event = buildEvent(DirectLogFetcher.MAX_PACKET_LENGTH + 1024, (byte) 3);
+        byte[] next = buildEvent(50, (byte) 4);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writePackets(output, event);
+        writePackets(output, next);
+
+        DirectLogFetcher fetcher = new DirectLogFetcher(64);
+        fetcher.start(new StreamSocketChannel(new ByteArrayInputStream(output.toByteArray())));
+        assertEvent(event, fetcher.fetchBuffer());
+        assertEvent(next, fetcher.fetchBuffer());
+    }
+
+    @Test
+    public void testEofPacket() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(new byte[] { 5, 0, 0, 1, (byte) 254, 0, 0, 2, 0 });
+
+        DirectLogFetcher fetcher = new DirectLogFetcher(64);
+        fetcher.start(new StreamSocketChannel(new ByteArrayInputStream(output.toByteArray())));
+        Assert.assertNull(fetcher.fetchBuffer());
+    }
+
+    private void assertEvent(byte[] expected, LogBuffer buffer) {
+        Assert.assertNotNull(buffer);
+        Assert.assertEquals(expected.length, buffer.limit());
+        Assert.assertEquals(expected.length, buffer.getUint32(9));
+        Assert.assertArrayEquals(expected, buffer.getData());
+    }
+
+    private byte[] buildEvent(int length, byte type) {
+        byte[] event = new byte[length];
+        for (int i = 0; i < length; i++) {
+            event[i] = (byte) i;
+        }
+        event[4] = type;
+        event[9] = (byte) length;
+        event[10] = (byte) (length >> 8);
+        event[11] = (byte) (length >> 16);
+        event[12] = (byte) (length >> 24);
+        return event;
+    }
+
+    private void writePackets(ByteArrayOutputStream output, byte[] event) {
+        byte[] payload = new byte[event.length + 1];
+        System.arraycopy(event, 0, payload, 1, event.length);
+        int offset = 0;
+        int seq = 1;
+        int len = 0;
+        do {
+            len = Math.min(DirectLogFetcher.MAX_PACKET_LENGTH, payload.length - offset);
+            output.write(len & 0xff);
+            output.write((len >> 8) & 0xff);
+            output.write((len >> 16) & 0xff);
+            output.write(seq++);
+            output.write(payload, offset, len);
+            offset += len;
+        } while (len == DirectLogFetcher.MAX_PACKET_LENGTH);
+    }
+
+    private static class StreamSocketChannel implements SocketChannel {
+
+        private InputStream input;
+
+        public StreamSocketChannel(InputStream input){
+            this.input = input;
+        }
+
+        public void read(byte[] data, int off, int len, int timeout) throws IOException {
+            int n = 0;
+            while (n < len) {
+                int read = input.read(data, off + n, len - n);
+                if (read < 0) {
+                    throw new IOException("EOF encountered.");
+                }
+                n += read;
+            }
+        }
+
+        public void write(byte[]... buf) throws IOException {
+        }
+
+        public byte[] read(int readSize) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        public byte[] read(int readSize, int timeout) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean isConnected() {
+            return true;
+        }
+
+        public SocketAddress getRemoteSocketAddress() {
+            return null;
+        }
+
+        public SocketAddress getLocalSocketAddress() {
+            return null;
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.alibaba.otter.canal.parse.inbound.mysql;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.SinkFunction;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+
+/**
+ * 验证并行解码多个binlog文件和串行解析的event顺序一致
+ *
+ * @since 1.1.3
+ */
+public class LocalBinLogConnectionParallelTest {
+
+    private String directory;
+
+    @Before
+    public void setUp() {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("dummy.txt");
+        File dummyFile = new File(url.getFile());
+        directory = new File(dummyFile.getParent() + "/binlog").getPath();
+    }
+
+    @Test
+    public void testSameOrder() throws IOException {
+        List<String> serial = dump(0, "mysql-bin.000001", 4L, -1, 0);
+        List<String> parallel = dump(2, "mysql-bin.000001", 4L, -1, 0);
+        Assert.assertFalse(serial.isEmpty());
+        Assert.assertTrue(serial.get(serial.size() - 1).startsWith("mysql-bin.000002"));
+        Assert.assertEquals(serial, parallel);
+
+        // 从中间位置开始
+        String start = serial.get(serial.size() / 2);
+        String fileName = start.substring(0, start.indexOf(':'));
+        long position = Long.valueOf(start.substring(start.indexOf(':') + 1, start.lastIndexOf(':')));
+        Assert.assertEquals(dump(0, fileName, position, -1, 0), dump(2, fileName, position, -1, 0));
+    }
+
+    @Test
+    public void testSmallLookAhead() throws IOException {
+        // 预算只够几个event，解码线程需要反复等待消费方
+        List<String> serial = dump(0, "mysql-bin.000001", 4L, -1, 0);
+        Assert.assertEquals(serial, dump(2, "mysql-bin.000001", 4L, -1, 1024));
+        Assert.assertEquals(serial, dump(2, "mysql-bin.000001", 4L, -1, 1));
+    }
+
+    @Test
+    public void testStopSink() throws IOException {
+        List<String> serial = dump(0, "mysql-bin.000001", 4L, 10, 0);
+        List<String> parallel = dump(2, "mysql-bin.000001", 4L, 10, 0);
+        Assert.assertEquals(10, parallel.size());
+        Assert.assertEquals(serial, parallel);
+    }
+
+    private List<String> dump(int parallelFiles, String fileName, long position, final int limit,
+                              int lookAheadSize) throws IOException {
+        final List<String> events = new ArrayList<String>();
+        LocalBinLogConnection connection = new LocalBinLogConnection(directory, false);
+        connection.setParallelFiles(parallelFiles);
+        connection.setLookAheadSize(lookAheadSize);
+        connection.connect();
+        try {
+            connection.dump(fileName, position, new SinkFunction<LogEvent>() {
+
+                public boolean sink(LogEvent event) {
+                    events.add(event.getHeader().getLogFileName() + ":" + event.getLogPos() + ":"
+                               + event.getHeader().getType());
+                    return limit < 0 || events.size() < limit;
+                }
+            });
+        } finally {
+            connection.disconnect();
+        }
+        return events;
+    }
+}
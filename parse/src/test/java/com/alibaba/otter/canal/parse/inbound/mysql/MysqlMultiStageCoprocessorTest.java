@@ -0,0 +1,215 @@
+package com.alibaba.otter.canal.parse.inbound.mysql;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.EventTransactionBuffer;
+import com.alibaba.otter.canal.parse.inbound.EventTransactionBuffer.TransactionFlushCallback;
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+import com.taobao.tddl.dbsync.binlog.event.RowsLogEvent;
+
+/**
+ * 验证autoTune扩容前后、按表并行解析时数据的顺序，以及扩容和stop并发时不会泄漏线程
+ *
+ * @since 1.1.3
+ */
+public class MysqlMultiStageCoprocessorTest {
+
+    private List<LogEvent> rowsEvents = new ArrayList<LogEvent>();
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("dummy.txt");
+        File file = new File(new File(url.getFile()).getParent() + "/binlog", "mysql-bin.000001");
+        FileLogFetcher fetcher = new FileLogFetcher(1024 * 16);
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        LogContext context = new LogContext();
+        try {
+            fetcher.open(file, 4L);
+            context.setLogPosition(new LogPosition(file.getName(), 4L));
+            while (fetcher.fetch()) {
+                LogEvent event = decoder.decode(fetcher, context);
+                if (event instanceof RowsLogEvent) {
+                    rowsEvents.add(event);
+                }
+            }
+        } finally {
+            fetcher.close();
+        }
+        Assert.assertFalse(rowsEvents.isEmpty());
+    }
+
+    @Test
+    public void testAutoTune() throws Exception {
+        final List<Entry> entries = Collections.synchronizedList(new ArrayList<Entry>());
+        MysqlMultiStageCoprocessor coprocessor = build("autoTune", entries, 500L, false);
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(coprocessor.publish(rowsEvents.get(i % rowsEvents.size())));
+        }
+
+        long deadline = System.currentTimeMillis() + 30 * 1000L;
+        while (entries.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        // dml解析是瓶颈，至少扩容过一次
+        Assert.assertTrue(coprocessor.getRingBufferSize() > 16 || coprocessor.getParserThreadCount() > 1);
+        coprocessor.stop();
+
+        Assert.assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(i, entries.get(i).getHeader().getLogfileOffset());
+        }
+        Assert.assertEquals(0, aliveStageThreads("autoTune"));
+    }
+
+    @Test
+    public void testParallelByTable() throws Exception {
+        final List<Entry> entries = Collections.synchronizedList(new ArrayList<Entry>());
+        MysqlMultiStageCoprocessor coprocessor = build("parallelByTable", entries, 200L, true);
+        coprocessor.setMaxParserThreadCount(3);
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(coprocessor.publish(rowsEvents.get(i % rowsEvents.size())));
+        }
+
+        long deadline = System.currentTimeMillis() + 30 * 1000L;
+        while (entries.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        coprocessor.stop();
+
+        // 各个表由不同的线程解析，投递依然是binlog的顺序
+        Assert.assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(i, entries.get(i).getHeader().getLogfileOffset());
+        }
+        Assert.assertEquals(0, aliveStageThreads("parallelByTable"));
+    }
+
+    @Test
+    public void testStopDuringResize() throws Exception {
+        Random random = new Random();
+        for (int i = 0; i < 30; i++) {
+            String destination = "stopDuringResize" + i;
+            final MysqlMultiStageCoprocessor coprocessor = build(destination, new ArrayList<Entry>(), 20L, i % 2 == 1);
+            coprocessor.setTuneWindowMillis(1L);
+            coprocessor.setMaxParserThreadCount(64);
+            coprocessor.setMaxRingBufferSize(16 << 12);
+
+            Thread publisher = new Thread(new Runnable() {
+
+                public void run() {
+                    int index = 0;
+                    while (coprocessor.publish(rowsEvents.get(index++ % rowsEvents.size()))) {
+                    }
+                }
+            });
+            publisher.start();
+            Thread.sleep(100L + random.nextInt(200));
+            // 投递线程频繁扩容的时候stop，奇数次按表并行
+            coprocessor.stop();
+            publisher.join(10 * 1000L);
+            Assert.assertFalse(publisher.isAlive());
+            Assert.assertEquals(0, aliveStageThreads(destination));
+        }
+    }
+
+    private MysqlMultiStageCoprocessor build(String destination, final List<Entry> entries, final long parseMicros,
+                                             boolean parallelByTable) {
+        EventTransactionBuffer transactionBuffer = new EventTransactionBuffer(new TransactionFlushCallback() {
+
+            public void flush(List<Entry> transaction) throws InterruptedException {
+                entries.addAll(transaction);
+            }
+        });
+        transactionBuffer.start();
+
+        MysqlMultiStageCoprocessor coprocessor = new MysqlMultiStageCoprocessor(16,
+            1,
+            new SlowLogEventConvert(parseMicros),
+            transactionBuffer,
+            destination);
+        coprocessor.setEventsPublishBlockingTime(new AtomicLong());
+        coprocessor.setParallelByTable(parallelByTable);
+        coprocessor.setAutoTune(true);
+        coprocessor.setTuneWindowMillis(50L);
+        coprocessor.setMaxParserThreadCount(4);
+        coprocessor.start();
+        return coprocessor;
+    }
+
+    private int aliveStageThreads(String destination) throws InterruptedException {
+        // 线程池terminated之后线程本身还需要一点时间退出
+        long deadline = System.currentTimeMillis() + 3 * 1000L;
+        int count = countStageThreads(destination);
+        while (count > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            count = countStageThreads(destination);
+        }
+        return count;
+    }
+
+    private int countStageThreads(String destination) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("MultiStageCoprocessor-")
+                && thread.getName().contains("-" + destination + "-")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 基本解析阶段按顺序编号，dml解析阶段模拟较慢的解析并把编号带到结果中
+     */
+    private static class SlowLogEventConvert extends LogEventConvert {
+
+        private final long parseNanos;
+        private long       sequence;
+
+        public SlowLogEventConvert(long parseMicros){
+            this.parseNanos = TimeUnit.MICROSECONDS.toNanos(parseMicros);
+        }
+
+        @Override
+        public TableMeta parseRowsEventForTableMeta(RowsLogEvent event) {
+            TableMeta tableMeta = new TableMeta();
+            tableMeta.setTable(String.valueOf(sequence++));
+            return tableMeta;
+        }
+
+        @Override
+        public Entry parseRowsEvent(RowsLogEvent event, TableMeta tableMeta) {
+            LockSupport.parkNanos(parseNanos);
+            Header header = Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(Long.valueOf(tableMeta.getTable()))
+                .setEventType(EventType.QUERY)
+                .build();
+            return Entry.newBuilder().setHeader(header).setEntryType(EntryType.ROWDATA).build();
+        }
+    }
+}
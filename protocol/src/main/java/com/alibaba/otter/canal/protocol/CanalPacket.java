@@ -40,6 +40,14 @@ public final class CanalPacket {
      * <code>LZF = 4;</code>
      */
     LZF(4),
+    /**
+     * <code>LZ4 = 5;</code>
+     */
+    LZ4(5),
+    /**
+     * <code>ZSTD = 6;</code>
+     */
+    ZSTD(6),
     UNRECOGNIZED(-1),
     ;
 
@@ -63,6 +71,14 @@ public final class CanalPacket {
      * <code>LZF = 4;</code>
      */
     public static final int LZF_VALUE = 4;
+    /**
+     * <code>LZ4 = 5;</code>
+     */
+    public static final int LZ4_VALUE = 5;
+    /**
+     * <code>ZSTD = 6;</code>
+     */
+    public static final int ZSTD_VALUE = 6;
 
 
     public final int getNumber() {
@@ -88,6 +104,8 @@ public final class CanalPacket {
         case 2: return ZLIB;
         case 3: return GZIP;
         case 4: return LZF;
+        case 5: return LZ4;
+        case 6: return ZSTD;
         default: return null;
       }
     }
@@ -209,6 +227,14 @@ public final class CanalPacket {
      * <code>CLIENTROLLBACK = 12;</code>
      */
     CLIENTROLLBACK(12),
+    /**
+     * <pre>
+     * streaming
+     * </pre>
+     *
+     * <code>STREAM = 13;</code>
+     */
+    STREAM(13),
     UNRECOGNIZED(-1),
     ;
 
@@ -276,6 +302,14 @@ public final class CanalPacket {
      * <code>CLIENTROLLBACK = 12;</code>
      */
     public static final int CLIENTROLLBACK_VALUE = 12;
+    /**
+     * <pre>
+     * streaming
+     * </pre>
+     *
+     * <code>STREAM = 13;</code>
+     */
+    public static final int STREAM_VALUE = 13;
 
 
     public final int getNumber() {
@@ -309,6 +343,7 @@ public final class CanalPacket {
         case 10: return DUMP;
         case 11: return HEARTBEAT;
         case 12: return CLIENTROLLBACK;
+        case 13: return STREAM;
         default: return null;
       }
     }
@@ -1983,6 +2018,28 @@ public final class CanalPacket {
      */
     com.alibaba.otter.canal.protocol.CanalPacket.Compression getSupportedCompressions();
 
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    java.util.List<com.alibaba.otter.canal.protocol.CanalPacket.Compression> getSupportedCodecsList();
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    int getSupportedCodecsCount();
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    com.alibaba.otter.canal.protocol.CanalPacket.Compression getSupportedCodecs(int index);
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    java.util.List<java.lang.Integer>
+    getSupportedCodecsValueList();
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    int getSupportedCodecsValue(int index);
+
     public com.alibaba.otter.canal.protocol.CanalPacket.Handshake.CommunicationEncodingPresentCase getCommunicationEncodingPresentCase();
   }
   /**
@@ -2000,6 +2057,7 @@ public final class CanalPacket {
     private Handshake() {
       seeds_ = com.google.protobuf.ByteString.EMPTY;
       supportedCompressions_ = 0;
+      supportedCodecs_ = java.util.Collections.emptyList();
     }
 
     @java.lang.Override
@@ -2043,6 +2101,29 @@ public final class CanalPacket {
               supportedCompressions_ = rawValue;
               break;
             }
+            case 32: {
+              int rawValue = input.readEnum();
+              if (!((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+                supportedCodecs_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000008;
+              }
+              supportedCodecs_.add(rawValue);
+              break;
+            }
+            case 34: {
+              int length = input.readRawVarint32();
+              int oldLimit = input.pushLimit(length);
+              while(input.getBytesUntilLimit() > 0) {
+                int rawValue = input.readEnum();
+                if (!((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+                  supportedCodecs_ = new java.util.ArrayList<java.lang.Integer>();
+                  mutable_bitField0_ |= 0x00000008;
+                }
+                supportedCodecs_.add(rawValue);
+              }
+              input.popLimit(oldLimit);
+              break;
+            }
             default: {
               if (!parseUnknownFieldProto3(
                   input, unknownFields, extensionRegistry, tag)) {
@@ -2058,6 +2139,9 @@ public final class CanalPacket {
         throw new com.google.protobuf.InvalidProtocolBufferException(
             e).setUnfinishedMessage(this);
       } finally {
+        if (((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+          supportedCodecs_ = java.util.Collections.unmodifiableList(supportedCodecs_);
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -2075,6 +2159,7 @@ public final class CanalPacket {
               com.alibaba.otter.canal.protocol.CanalPacket.Handshake.class, com.alibaba.otter.canal.protocol.CanalPacket.Handshake.Builder.class);
     }
 
+    private int bitField0_;
     private int communicationEncodingPresentCase_ = 0;
     private java.lang.Object communicationEncodingPresent_;
     public enum CommunicationEncodingPresentCase
@@ -2180,6 +2265,52 @@ public final class CanalPacket {
       return result == null ? com.alibaba.otter.canal.protocol.CanalPacket.Compression.UNRECOGNIZED : result;
     }
 
+    public static final int SUPPORTED_CODECS_FIELD_NUMBER = 4;
+    private java.util.List<java.lang.Integer> supportedCodecs_;
+    private static final com.google.protobuf.Internal.ListAdapter.Converter<
+        java.lang.Integer, com.alibaba.otter.canal.protocol.CanalPacket.Compression> supportedCodecs_converter_ =
+            new com.google.protobuf.Internal.ListAdapter.Converter<
+                java.lang.Integer, com.alibaba.otter.canal.protocol.CanalPacket.Compression>() {
+              public com.alibaba.otter.canal.protocol.CanalPacket.Compression convert(java.lang.Integer from) {
+                @SuppressWarnings("deprecation")
+                com.alibaba.otter.canal.protocol.CanalPacket.Compression result = com.alibaba.otter.canal.protocol.CanalPacket.Compression.valueOf(from);
+                return result == null ? com.alibaba.otter.canal.protocol.CanalPacket.Compression.UNRECOGNIZED : result;
+              }
+            };
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    public java.util.List<com.alibaba.otter.canal.protocol.CanalPacket.Compression> getSupportedCodecsList() {
+      return new com.google.protobuf.Internal.ListAdapter<
+          java.lang.Integer, com.alibaba.otter.canal.protocol.CanalPacket.Compression>(supportedCodecs_, supportedCodecs_converter_);
+    }
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    public int getSupportedCodecsCount() {
+      return supportedCodecs_.size();
+    }
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    public com.alibaba.otter.canal.protocol.CanalPacket.Compression getSupportedCodecs(int index) {
+      return supportedCodecs_converter_.convert(supportedCodecs_.get(index));
+    }
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    public java.util.List<java.lang.Integer>
+    getSupportedCodecsValueList() {
+      return supportedCodecs_;
+    }
+    /**
+     * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+     */
+    public int getSupportedCodecsValue(int index) {
+      return supportedCodecs_.get(index);
+    }
+    private int supportedCodecsMemoizedSerializedSize;
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -2194,6 +2325,7 @@ public final class CanalPacket {
     @java.lang.Override
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
+      getSerializedSize();
       if (communicationEncodingPresentCase_ == 1) {
         com.google.protobuf.GeneratedMessageV3.writeString(output, 1, communicationEncodingPresent_);
       }
@@ -2203,6 +2335,13 @@ public final class CanalPacket {
       if (supportedCompressions_ != com.alibaba.otter.canal.protocol.CanalPacket.Compression.COMPRESSIONCOMPATIBLEPROTO2.getNumber()) {
         output.writeEnum(3, supportedCompressions_);
       }
+      if (getSupportedCodecsList().size() > 0) {
+        output.writeUInt32NoTag(34);
+        output.writeUInt32NoTag(supportedCodecsMemoizedSerializedSize);
+      }
+      for (int i = 0; i < supportedCodecs_.size(); i++) {
+        output.writeEnumNoTag(supportedCodecs_.get(i));
+      }
       unknownFields.writeTo(output);
     }
 
@@ -2223,6 +2362,18 @@ public final class CanalPacket {
         size += com.google.protobuf.CodedOutputStream
           .computeEnumSize(3, supportedCompressions_);
       }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < supportedCodecs_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeEnumSizeNoTag(supportedCodecs_.get(i));
+        }
+        size += dataSize;
+        if (!getSupportedCodecsList().isEmpty()) {  size += 1;
+          size += com.google.protobuf.CodedOutputStream
+            .computeUInt32SizeNoTag(dataSize);
+        }supportedCodecsMemoizedSerializedSize = dataSize;
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -2242,6 +2393,7 @@ public final class CanalPacket {
       result = result && getSeeds()
           .equals(other.getSeeds());
       result = result && supportedCompressions_ == other.supportedCompressions_;
+      result = result && supportedCodecs_.equals(other.supportedCodecs_);
       result = result && getCommunicationEncodingPresentCase().equals(
           other.getCommunicationEncodingPresentCase());
       if (!result) return false;
@@ -2268,6 +2420,10 @@ public final class CanalPacket {
       hash = (53 * hash) + getSeeds().hashCode();
       hash = (37 * hash) + SUPPORTED_COMPRESSIONS_FIELD_NUMBER;
       hash = (53 * hash) + supportedCompressions_;
+      if (getSupportedCodecsCount() > 0) {
+        hash = (37 * hash) + SUPPORTED_CODECS_FIELD_NUMBER;
+        hash = (53 * hash) + supportedCodecs_.hashCode();
+      }
       switch (communicationEncodingPresentCase_) {
         case 1:
           hash = (37 * hash) + COMMUNICATION_ENCODING_FIELD_NUMBER;
@@ -2413,6 +2569,8 @@ public final class CanalPacket {
 
         supportedCompressions_ = 0;
 
+        supportedCodecs_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000008);
         communicationEncodingPresentCase_ = 0;
         communicationEncodingPresent_ = null;
         return this;
@@ -2441,11 +2599,19 @@ public final class CanalPacket {
       @java.lang.Override
       public com.alibaba.otter.canal.protocol.CanalPacket.Handshake buildPartial() {
         com.alibaba.otter.canal.protocol.CanalPacket.Handshake result = new com.alibaba.otter.canal.protocol.CanalPacket.Handshake(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
         if (communicationEncodingPresentCase_ == 1) {
           result.communicationEncodingPresent_ = communicationEncodingPresent_;
         }
         result.seeds_ = seeds_;
         result.supportedCompressions_ = supportedCompressions_;
+        if (((bitField0_ & 0x00000008) == 0x00000008)) {
+          supportedCodecs_ = java.util.Collections.unmodifiableList(supportedCodecs_);
+          bitField0_ = (bitField0_ & ~0x00000008);
+        }
+        result.supportedCodecs_ = supportedCodecs_;
+        result.bitField0_ = to_bitField0_;
         result.communicationEncodingPresentCase_ = communicationEncodingPresentCase_;
         onBuilt();
         return result;
@@ -2501,6 +2667,16 @@ public final class CanalPacket {
         if (other.supportedCompressions_ != 0) {
           setSupportedCompressionsValue(other.getSupportedCompressionsValue());
         }
+        if (!other.supportedCodecs_.isEmpty()) {
+          if (supportedCodecs_.isEmpty()) {
+            supportedCodecs_ = other.supportedCodecs_;
+            bitField0_ = (bitField0_ & ~0x00000008);
+          } else {
+            ensureSupportedCodecsIsMutable();
+            supportedCodecs_.addAll(other.supportedCodecs_);
+          }
+          onChanged();
+        }
         switch (other.getCommunicationEncodingPresentCase()) {
           case COMMUNICATION_ENCODING: {
             communicationEncodingPresentCase_ = 1;
@@ -2555,6 +2731,8 @@ public final class CanalPacket {
         return this;
       }
 
+      private int bitField0_;
+
 
       /**
        * <code>string communication_encoding = 1;</code>
@@ -2709,6 +2887,124 @@ public final class CanalPacket {
         onChanged();
         return this;
       }
+
+      private java.util.List<java.lang.Integer> supportedCodecs_ =
+        java.util.Collections.emptyList();
+      private void ensureSupportedCodecsIsMutable() {
+        if (!((bitField0_ & 0x00000008) == 0x00000008)) {
+          supportedCodecs_ = new java.util.ArrayList<java.lang.Integer>(supportedCodecs_);
+          bitField0_ |= 0x00000008;
+        }
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public java.util.List<com.alibaba.otter.canal.protocol.CanalPacket.Compression> getSupportedCodecsList() {
+        return new com.google.protobuf.Internal.ListAdapter<
+            java.lang.Integer, com.alibaba.otter.canal.protocol.CanalPacket.Compression>(supportedCodecs_, supportedCodecs_converter_);
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public int getSupportedCodecsCount() {
+        return supportedCodecs_.size();
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public com.alibaba.otter.canal.protocol.CanalPacket.Compression getSupportedCodecs(int index) {
+        return supportedCodecs_converter_.convert(supportedCodecs_.get(index));
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public Builder setSupportedCodecs(
+          int index, com.alibaba.otter.canal.protocol.CanalPacket.Compression value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        ensureSupportedCodecsIsMutable();
+        supportedCodecs_.set(index, value.getNumber());
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public Builder addSupportedCodecs(com.alibaba.otter.canal.protocol.CanalPacket.Compression value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        ensureSupportedCodecsIsMutable();
+        supportedCodecs_.add(value.getNumber());
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public Builder addAllSupportedCodecs(
+          java.lang.Iterable<? extends com.alibaba.otter.canal.protocol.CanalPacket.Compression> values) {
+        ensureSupportedCodecsIsMutable();
+        for (com.alibaba.otter.canal.protocol.CanalPacket.Compression value : values) {
+          supportedCodecs_.add(value.getNumber());
+        }
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public Builder clearSupportedCodecs() {
+        supportedCodecs_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000008);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public java.util.List<java.lang.Integer>
+      getSupportedCodecsValueList() {
+        return java.util.Collections.unmodifiableList(supportedCodecs_);
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public int getSupportedCodecsValue(int index) {
+        return supportedCodecs_.get(index);
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public Builder setSupportedCodecsValue(
+          int index, int value) {
+        ensureSupportedCodecsIsMutable();
+        supportedCodecs_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public Builder addSupportedCodecsValue(int value) {
+        ensureSupportedCodecsIsMutable();
+        supportedCodecs_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated .com.alibaba.otter.canal.protocol.Compression supported_codecs = 4;</code>
+       */
+      public Builder addAllSupportedCodecsValue(
+          java.lang.Iterable<java.lang.Integer> values) {
+        ensureSupportedCodecsIsMutable();
+        for (int value : values) {
+          supportedCodecs_.add(value);
+        }
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -2838,6 +3134,15 @@ public final class CanalPacket {
      */
     long getStartTimestamp();
 
+    /**
+     * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+     */
+    int getCompressionValue();
+    /**
+     * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+     */
+    com.alibaba.otter.canal.protocol.CanalPacket.Compression getCompression();
+
     public com.alibaba.otter.canal.protocol.CanalPacket.ClientAuth.NetReadTimeoutPresentCase getNetReadTimeoutPresentCase();
 
     public com.alibaba.otter.canal.protocol.CanalPacket.ClientAuth.NetWriteTimeoutPresentCase getNetWriteTimeoutPresentCase();
@@ -2865,6 +3170,7 @@ public final class CanalPacket {
       clientId_ = "";
       filter_ = "";
       startTimestamp_ = 0L;
+      compression_ = 0;
     }
 
     @java.lang.Override
@@ -2935,6 +3241,12 @@ public final class CanalPacket {
               startTimestamp_ = input.readInt64();
               break;
             }
+            case 72: {
+              int rawValue = input.readEnum();
+
+              compression_ = rawValue;
+              break;
+            }
             default: {
               if (!parseUnknownFieldProto3(
                   input, unknownFields, extensionRegistry, tag)) {
@@ -3227,6 +3539,23 @@ public final class CanalPacket {
       return startTimestamp_;
     }
 
+    public static final int COMPRESSION_FIELD_NUMBER = 9;
+    private int compression_;
+    /**
+     * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+     */
+    public int getCompressionValue() {
+      return compression_;
+    }
+    /**
+     * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+     */
+    public com.alibaba.otter.canal.protocol.CanalPacket.Compression getCompression() {
+      @SuppressWarnings("deprecation")
+      com.alibaba.otter.canal.protocol.CanalPacket.Compression result = com.alibaba.otter.canal.protocol.CanalPacket.Compression.valueOf(compression_);
+      return result == null ? com.alibaba.otter.canal.protocol.CanalPacket.Compression.UNRECOGNIZED : result;
+    }
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -3267,6 +3596,9 @@ public final class CanalPacket {
       if (startTimestamp_ != 0L) {
         output.writeInt64(8, startTimestamp_);
       }
+      if (compression_ != com.alibaba.otter.canal.protocol.CanalPacket.Compression.COMPRESSIONCOMPATIBLEPROTO2.getNumber()) {
+        output.writeEnum(9, compression_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -3306,6 +3638,10 @@ public final class CanalPacket {
         size += com.google.protobuf.CodedOutputStream
           .computeInt64Size(8, startTimestamp_);
       }
+      if (compression_ != com.alibaba.otter.canal.protocol.CanalPacket.Compression.COMPRESSIONCOMPATIBLEPROTO2.getNumber()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeEnumSize(9, compression_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -3334,6 +3670,7 @@ public final class CanalPacket {
           .equals(other.getFilter());
       result = result && (getStartTimestamp()
           == other.getStartTimestamp());
+      result = result && compression_ == other.compression_;
       result = result && getNetReadTimeoutPresentCase().equals(
           other.getNetReadTimeoutPresentCase());
       if (!result) return false;
@@ -3380,6 +3717,8 @@ public final class CanalPacket {
       hash = (37 * hash) + START_TIMESTAMP_FIELD_NUMBER;
       hash = (53 * hash) + com.google.protobuf.Internal.hashLong(
           getStartTimestamp());
+      hash = (37 * hash) + COMPRESSION_FIELD_NUMBER;
+      hash = (53 * hash) + compression_;
       switch (netReadTimeoutPresentCase_) {
         case 3:
           hash = (37 * hash) + NET_READ_TIMEOUT_FIELD_NUMBER;
@@ -3545,6 +3884,8 @@ public final class CanalPacket {
 
         startTimestamp_ = 0L;
 
+        compression_ = 0;
+
         netReadTimeoutPresentCase_ = 0;
         netReadTimeoutPresent_ = null;
         netWriteTimeoutPresentCase_ = 0;
@@ -3587,6 +3928,7 @@ public final class CanalPacket {
         result.clientId_ = clientId_;
         result.filter_ = filter_;
         result.startTimestamp_ = startTimestamp_;
+        result.compression_ = compression_;
         result.netReadTimeoutPresentCase_ = netReadTimeoutPresentCase_;
         result.netWriteTimeoutPresentCase_ = netWriteTimeoutPresentCase_;
         onBuilt();
@@ -3659,6 +4001,9 @@ public final class CanalPacket {
         if (other.getStartTimestamp() != 0L) {
           setStartTimestamp(other.getStartTimestamp());
         }
+        if (other.compression_ != 0) {
+          setCompressionValue(other.getCompressionValue());
+        }
         switch (other.getNetReadTimeoutPresentCase()) {
           case NET_READ_TIMEOUT: {
             setNetReadTimeout(other.getNetReadTimeout());
@@ -4162,6 +4507,51 @@ public final class CanalPacket {
         onChanged();
         return this;
       }
+
+      private int compression_ = 0;
+      /**
+       * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+       */
+      public int getCompressionValue() {
+        return compression_;
+      }
+      /**
+       * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+       */
+      public Builder setCompressionValue(int value) {
+        compression_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+       */
+      public com.alibaba.otter.canal.protocol.CanalPacket.Compression getCompression() {
+        @SuppressWarnings("deprecation")
+        com.alibaba.otter.canal.protocol.CanalPacket.Compression result = com.alibaba.otter.canal.protocol.CanalPacket.Compression.valueOf(compression_);
+        return result == null ? com.alibaba.otter.canal.protocol.CanalPacket.Compression.UNRECOGNIZED : result;
+      }
+      /**
+       * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+       */
+      public Builder setCompression(com.alibaba.otter.canal.protocol.CanalPacket.Compression value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        
+        compression_ = value.getNumber();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>.com.alibaba.otter.canal.protocol.Compression compression = 9;</code>
+       */
+      public Builder clearCompression() {
+        
+        compression_ = 0;
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -4976,6 +5366,15 @@ public final class CanalPacket {
      * <code>int64 batch_id = 3;</code>
      */
     long getBatchId();
+
+    /**
+     * <pre>
+     * 累计ack，确认batch_id及之前的所有批次
+     * </pre>
+     *
+     * <code>bool cumulative = 4;</code>
+     */
+    boolean getCumulative();
   }
   /**
    * Protobuf type {@code com.alibaba.otter.canal.protocol.ClientAck}
@@ -4993,6 +5392,7 @@ public final class CanalPacket {
       destination_ = "";
       clientId_ = "";
       batchId_ = 0L;
+      cumulative_ = false;
     }
 
     @java.lang.Override
@@ -5036,6 +5436,11 @@ public final class CanalPacket {
               batchId_ = input.readInt64();
               break;
             }
+            case 32: {
+
+              cumulative_ = input.readBool();
+              break;
+            }
             default: {
               if (!parseUnknownFieldProto3(
                   input, unknownFields, extensionRegistry, tag)) {
@@ -5145,6 +5550,19 @@ public final class CanalPacket {
       return batchId_;
     }
 
+    public static final int CUMULATIVE_FIELD_NUMBER = 4;
+    private boolean cumulative_;
+    /**
+     * <pre>
+     * 累计ack，确认batch_id及之前的所有批次
+     * </pre>
+     *
+     * <code>bool cumulative = 4;</code>
+     */
+    public boolean getCumulative() {
+      return cumulative_;
+    }
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -5168,6 +5586,9 @@ public final class CanalPacket {
       if (batchId_ != 0L) {
         output.writeInt64(3, batchId_);
       }
+      if (cumulative_ != false) {
+        output.writeBool(4, cumulative_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -5187,6 +5608,10 @@ public final class CanalPacket {
         size += com.google.protobuf.CodedOutputStream
           .computeInt64Size(3, batchId_);
       }
+      if (cumulative_ != false) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBoolSize(4, cumulative_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -5209,6 +5634,8 @@ public final class CanalPacket {
           .equals(other.getClientId());
       result = result && (getBatchId()
           == other.getBatchId());
+      result = result && (getCumulative()
+          == other.getCumulative());
       result = result && unknownFields.equals(other.unknownFields);
       return result;
     }
@@ -5227,6 +5654,9 @@ public final class CanalPacket {
       hash = (37 * hash) + BATCH_ID_FIELD_NUMBER;
       hash = (53 * hash) + com.google.protobuf.Internal.hashLong(
           getBatchId());
+      hash = (37 * hash) + CUMULATIVE_FIELD_NUMBER;
+      hash = (53 * hash) + com.google.protobuf.Internal.hashBoolean(
+          getCumulative());
       hash = (29 * hash) + unknownFields.hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -5366,6 +5796,8 @@ public final class CanalPacket {
 
         batchId_ = 0L;
 
+        cumulative_ = false;
+
         return this;
       }
 
@@ -5395,6 +5827,7 @@ public final class CanalPacket {
         result.destination_ = destination_;
         result.clientId_ = clientId_;
         result.batchId_ = batchId_;
+        result.cumulative_ = cumulative_;
         onBuilt();
         return result;
       }
@@ -5454,6 +5887,9 @@ public final class CanalPacket {
         if (other.getBatchId() != 0L) {
           setBatchId(other.getBatchId());
         }
+        if (other.getCumulative() != false) {
+          setCumulative(other.getCumulative());
+        }
         this.mergeUnknownFields(other.unknownFields);
         onChanged();
         return this;
@@ -5646,6 +6082,44 @@ public final class CanalPacket {
         onChanged();
         return this;
       }
+
+      private boolean cumulative_ ;
+      /**
+       * <pre>
+       * 累计ack，确认batch_id及之前的所有批次
+       * </pre>
+       *
+       * <code>bool cumulative = 4;</code>
+       */
+      public boolean getCumulative() {
+        return cumulative_;
+      }
+      /**
+       * <pre>
+       * 累计ack，确认batch_id及之前的所有批次
+       * </pre>
+       *
+       * <code>bool cumulative = 4;</code>
+       */
+      public Builder setCumulative(boolean value) {
+        
+        cumulative_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * 累计ack，确认batch_id及之前的所有批次
+       * </pre>
+       *
+       * <code>bool cumulative = 4;</code>
+       */
+      public Builder clearCumulative() {
+        
+        cumulative_ = false;
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -7419,6 +7893,15 @@ public final class CanalPacket {
      */
     boolean getAutoAck();
 
+    /**
+     * <pre>
+     * STREAM模式下未ack的最大批次数
+     * </pre>
+     *
+     * <code>int32 window = 7;</code>
+     */
+    int getWindow();
+
     public com.alibaba.otter.canal.protocol.CanalPacket.Get.TimeoutPresentCase getTimeoutPresentCase();
 
     public com.alibaba.otter.canal.protocol.CanalPacket.Get.UnitPresentCase getUnitPresentCase();
@@ -7445,6 +7928,7 @@ public final class CanalPacket {
       destination_ = "";
       clientId_ = "";
       fetchSize_ = 0;
+      window_ = 0;
     }
 
     @java.lang.Override
@@ -7503,6 +7987,11 @@ public final class CanalPacket {
               autoAckPresent_ = input.readBool();
               break;
             }
+            case 56: {
+
+              window_ = input.readInt32();
+              break;
+            }
             default: {
               if (!parseUnknownFieldProto3(
                   input, unknownFields, extensionRegistry, tag)) {
@@ -7765,6 +8254,19 @@ public final class CanalPacket {
       return false;
     }
 
+    public static final int WINDOW_FIELD_NUMBER = 7;
+    private int window_;
+    /**
+     * <pre>
+     * STREAM模式下未ack的最大批次数
+     * </pre>
+     *
+     * <code>int32 window = 7;</code>
+     */
+    public int getWindow() {
+      return window_;
+    }
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -7800,6 +8302,9 @@ public final class CanalPacket {
         output.writeBool(
             6, (boolean)((java.lang.Boolean) autoAckPresent_));
       }
+      if (window_ != 0) {
+        output.writeInt32(7, window_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -7834,6 +8339,10 @@ public final class CanalPacket {
           .computeBoolSize(
               6, (boolean)((java.lang.Boolean) autoAckPresent_));
       }
+      if (window_ != 0) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(7, window_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -7856,6 +8365,8 @@ public final class CanalPacket {
           .equals(other.getClientId());
       result = result && (getFetchSize()
           == other.getFetchSize());
+      result = result && (getWindow()
+          == other.getWindow());
       result = result && getTimeoutPresentCase().equals(
           other.getTimeoutPresentCase());
       if (!result) return false;
@@ -7906,6 +8417,8 @@ public final class CanalPacket {
       hash = (53 * hash) + getClientId().hashCode();
       hash = (37 * hash) + FETCH_SIZE_FIELD_NUMBER;
       hash = (53 * hash) + getFetchSize();
+      hash = (37 * hash) + WINDOW_FIELD_NUMBER;
+      hash = (53 * hash) + getWindow();
       switch (timeoutPresentCase_) {
         case 4:
           hash = (37 * hash) + TIMEOUT_FIELD_NUMBER;
@@ -8075,6 +8588,8 @@ public final class CanalPacket {
 
         fetchSize_ = 0;
 
+        window_ = 0;
+
         timeoutPresentCase_ = 0;
         timeoutPresent_ = null;
         unitPresentCase_ = 0;
@@ -8119,6 +8634,7 @@ public final class CanalPacket {
         if (autoAckPresentCase_ == 6) {
           result.autoAckPresent_ = autoAckPresent_;
         }
+        result.window_ = window_;
         result.timeoutPresentCase_ = timeoutPresentCase_;
         result.unitPresentCase_ = unitPresentCase_;
         result.autoAckPresentCase_ = autoAckPresentCase_;
@@ -8181,6 +8697,9 @@ public final class CanalPacket {
         if (other.getFetchSize() != 0) {
           setFetchSize(other.getFetchSize());
         }
+        if (other.getWindow() != 0) {
+          setWindow(other.getWindow());
+        }
         switch (other.getTimeoutPresentCase()) {
           case TIMEOUT: {
             setTimeout(other.getTimeout());
@@ -8571,6 +9090,44 @@ public final class CanalPacket {
         }
         return this;
       }
+
+      private int window_ ;
+      /**
+       * <pre>
+       * STREAM模式下未ack的最大批次数
+       * </pre>
+       *
+       * <code>int32 window = 7;</code>
+       */
+      public int getWindow() {
+        return window_;
+      }
+      /**
+       * <pre>
+       * STREAM模式下未ack的最大批次数
+       * </pre>
+       *
+       * <code>int32 window = 7;</code>
+       */
+      public Builder setWindow(int value) {
+        
+        window_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * STREAM模式下未ack的最大批次数
+       * </pre>
+       *
+       * <code>int32 window = 7;</code>
+       */
+      public Builder clearWindow() {
+        
+        window_ = 0;
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -10865,44 +11422,50 @@ public final class CanalPacket {
       "\014\n\004body\030\005 \001(\014B\026\n\024magic_number_presentB\021\n" +
       "\017version_presentB\025\n\023compression_present\"" +
       "<\n\tHeartBeat\022\026\n\016send_timestamp\030\001 \001(\003\022\027\n\017" +
-      "start_timestamp\030\002 \001(\003\"\255\001\n\tHandshake\022 \n\026c" +
+      "start_timestamp\030\002 \001(\003\"\207\002\n\tHandshake\022 \n\026c" +
       "ommunication_encoding\030\001 \001(\tH\000\022\r\n\005seeds\030\002" +
       " \001(\014\022M\n\026supported_compressions\030\003 \001(\0162-.c" +
       "om.alibaba.otter.canal.protocol.Compress" +
-      "ionB \n\036communication_encoding_present\"\363\001" +
-      "\n\nClientAuth\022\020\n\010username\030\001 \001(\t\022\020\n\010passwo" +
-      "rd\030\002 \001(\014\022\032\n\020net_read_timeout\030\003 \001(\005H\000\022\033\n\021" +
-      "net_write_timeout\030\004 \001(\005H\001\022\023\n\013destination" +
-      "\030\005 \001(\t\022\021\n\tclient_id\030\006 \001(\t\022\016\n\006filter\030\007 \001(" +
-      "\t\022\027\n\017start_timestamp\030\010 \001(\003B\032\n\030net_read_t" +
-      "imeout_presentB\033\n\031net_write_timeout_pres" +
-      "ent\"H\n\003Ack\022\024\n\nerror_code\030\001 \001(\005H\000\022\025\n\rerro" +
-      "r_message\030\002 \001(\tB\024\n\022error_code_present\"E\n" +
-      "\tClientAck\022\023\n\013destination\030\001 \001(\t\022\021\n\tclien" +
-      "t_id\030\002 \001(\t\022\020\n\010batch_id\030\003 \001(\003\"=\n\003Sub\022\023\n\013d" +
-      "estination\030\001 \001(\t\022\021\n\tclient_id\030\002 \001(\t\022\016\n\006f" +
-      "ilter\030\007 \001(\t\"?\n\005Unsub\022\023\n\013destination\030\001 \001(" +
-      "\t\022\021\n\tclient_id\030\002 \001(\t\022\016\n\006filter\030\007 \001(\t\"\257\001\n" +
-      "\003Get\022\023\n\013destination\030\001 \001(\t\022\021\n\tclient_id\030\002" +
-      " \001(\t\022\022\n\nfetch_size\030\003 \001(\005\022\021\n\007timeout\030\004 \001(" +
-      "\003H\000\022\016\n\004unit\030\005 \001(\005H\001\022\022\n\010auto_ack\030\006 \001(\010H\002B" +
-      "\021\n\017timeout_presentB\016\n\014unit_presentB\022\n\020au" +
-      "to_ack_present\".\n\010Messages\022\020\n\010batch_id\030\001" +
-      " \001(\003\022\020\n\010messages\030\002 \003(\014\"S\n\004Dump\022\017\n\007journa" +
-      "l\030\001 \001(\t\022\020\n\010position\030\002 \001(\003\022\023\n\ttimestamp\030\003" +
-      " \001(\003H\000B\023\n\021timestamp_present\"J\n\016ClientRol" +
-      "lback\022\023\n\013destination\030\001 \001(\t\022\021\n\tclient_id\030" +
-      "\002 \001(\t\022\020\n\010batch_id\030\003 \001(\003*U\n\013Compression\022\037" +
-      "\n\033COMPRESSIONCOMPATIBLEPROTO2\020\000\022\010\n\004NONE\020" +
-      "\001\022\010\n\004ZLIB\020\002\022\010\n\004GZIP\020\003\022\007\n\003LZF\020\004*\346\001\n\nPacke" +
-      "tType\022\037\n\033PACKAGETYPECOMPATIBLEPROTO2\020\000\022\r" +
-      "\n\tHANDSHAKE\020\001\022\030\n\024CLIENTAUTHENTICATION\020\002\022" +
-      "\007\n\003ACK\020\003\022\020\n\014SUBSCRIPTION\020\004\022\022\n\016UNSUBSCRIP" +
-      "TION\020\005\022\007\n\003GET\020\006\022\014\n\010MESSAGES\020\007\022\r\n\tCLIENTA" +
-      "CK\020\010\022\014\n\010SHUTDOWN\020\t\022\010\n\004DUMP\020\n\022\r\n\tHEARTBEA" +
-      "T\020\013\022\022\n\016CLIENTROLLBACK\020\014B1\n com.alibaba.o" +
-      "tter.canal.protocolB\013CanalPacketH\001b\006prot" +
-      "o3"
+      "ion\022X\n\020supported_codecs\030\004 \003(\0162-.com.alib" +
+      "aba.otter.canal.protocol.CompressionR\017su" +
+      "pportedCodecsB \n\036communication_encoding_" +
+      "present\"\304\002\n\nClientAuth\022\020\n\010username\030\001 \001(\t" +
+      "\022\020\n\010password\030\002 \001(\014\022\032\n\020net_read_timeout\030\003" +
+      " \001(\005H\000\022\033\n\021net_write_timeout\030\004 \001(\005H\001\022\023\n\013d" +
+      "estination\030\005 \001(\t\022\021\n\tclient_id\030\006 \001(\t\022\016\n\006f" +
+      "ilter\030\007 \001(\t\022\027\n\017start_timestamp\030\010 \001(\003\022O\n\013" +
+      "compression\030\t \001(\0162-.com.alibaba.otter.ca" +
+      "nal.protocol.CompressionR\013compressionB\032\n" +
+      "\030net_read_timeout_presentB\033\n\031net_write_t" +
+      "imeout_present\"H\n\003Ack\022\024\n\nerror_code\030\001 \001(" +
+      "\005H\000\022\025\n\rerror_message\030\002 \001(\tB\024\n\022error_code" +
+      "_present\"e\n\tClientAck\022\023\n\013destination\030\001 \001" +
+      "(\t\022\021\n\tclient_id\030\002 \001(\t\022\020\n\010batch_id\030\003 \001(\003\022" +
+      "\036\n\ncumulative\030\004 \001(\010R\ncumulative\"=\n\003Sub\022\023" +
+      "\n\013destination\030\001 \001(\t\022\021\n\tclient_id\030\002 \001(\t\022\016" +
+      "\n\006filter\030\007 \001(\t\"?\n\005Unsub\022\023\n\013destination\030\001" +
+      " \001(\t\022\021\n\tclient_id\030\002 \001(\t\022\016\n\006filter\030\007 \001(\t\"" +
+      "\307\001\n\003Get\022\023\n\013destination\030\001 \001(\t\022\021\n\tclient_i" +
+      "d\030\002 \001(\t\022\022\n\nfetch_size\030\003 \001(\005\022\021\n\007timeout\030\004" +
+      " \001(\003H\000\022\016\n\004unit\030\005 \001(\005H\001\022\022\n\010auto_ack\030\006 \001(\010" +
+      "H\002\022\026\n\006window\030\007 \001(\005R\006windowB\021\n\017timeout_pr" +
+      "esentB\016\n\014unit_presentB\022\n\020auto_ack_presen" +
+      "t\".\n\010Messages\022\020\n\010batch_id\030\001 \001(\003\022\020\n\010messa" +
+      "ges\030\002 \003(\014\"S\n\004Dump\022\017\n\007journal\030\001 \001(\t\022\020\n\010po" +
+      "sition\030\002 \001(\003\022\023\n\ttimestamp\030\003 \001(\003H\000B\023\n\021tim" +
+      "estamp_present\"J\n\016ClientRollback\022\023\n\013dest" +
+      "ination\030\001 \001(\t\022\021\n\tclient_id\030\002 \001(\t\022\020\n\010batc" +
+      "h_id\030\003 \001(\003*h\n\013Compression\022\037\n\033COMPRESSION" +
+      "COMPATIBLEPROTO2\020\000\022\010\n\004NONE\020\001\022\010\n\004ZLIB\020\002\022\010" +
+      "\n\004GZIP\020\003\022\007\n\003LZF\020\004\022\007\n\003LZ4\020\005\022\010\n\004ZSTD\020\006*\362\001\n" +
+      "\nPacketType\022\037\n\033PACKAGETYPECOMPATIBLEPROT" +
+      "O2\020\000\022\r\n\tHANDSHAKE\020\001\022\030\n\024CLIENTAUTHENTICAT" +
+      "ION\020\002\022\007\n\003ACK\020\003\022\020\n\014SUBSCRIPTION\020\004\022\022\n\016UNSU" +
+      "BSCRIPTION\020\005\022\007\n\003GET\020\006\022\014\n\010MESSAGES\020\007\022\r\n\tC" +
+      "LIENTACK\020\010\022\014\n\010SHUTDOWN\020\t\022\010\n\004DUMP\020\n\022\r\n\tHE" +
+      "ARTBEAT\020\013\022\022\n\016CLIENTROLLBACK\020\014\022\n\n\006STREAM\020" +
+      "\rB1\n com.alibaba.otter.canal.protocolB\013C" +
+      "analPacketH\001b\006proto3"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -10933,13 +11496,13 @@ public final class CanalPacket {
     internal_static_com_alibaba_otter_canal_protocol_Handshake_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_alibaba_otter_canal_protocol_Handshake_descriptor,
-        new java.lang.String[] { "CommunicationEncoding", "Seeds", "SupportedCompressions", "CommunicationEncodingPresent", });
+        new java.lang.String[] { "CommunicationEncoding", "Seeds", "SupportedCompressions", "SupportedCodecs", "CommunicationEncodingPresent", });
     internal_static_com_alibaba_otter_canal_protocol_ClientAuth_descriptor =
       getDescriptor().getMessageTypes().get(3);
     internal_static_com_alibaba_otter_canal_protocol_ClientAuth_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_alibaba_otter_canal_protocol_ClientAuth_descriptor,
-        new java.lang.String[] { "Username", "Password", "NetReadTimeout", "NetWriteTimeout", "Destination", "ClientId", "Filter", "StartTimestamp", "NetReadTimeoutPresent", "NetWriteTimeoutPresent", });
+        new java.lang.String[] { "Username", "Password", "NetReadTimeout", "NetWriteTimeout", "Destination", "ClientId", "Filter", "StartTimestamp", "Compression", "NetReadTimeoutPresent", "NetWriteTimeoutPresent", });
     internal_static_com_alibaba_otter_canal_protocol_Ack_descriptor =
       getDescriptor().getMessageTypes().get(4);
     internal_static_com_alibaba_otter_canal_protocol_Ack_fieldAccessorTable = new
@@ -10951,7 +11514,7 @@ public final class CanalPacket {
     internal_static_com_alibaba_otter_canal_protocol_ClientAck_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_alibaba_otter_canal_protocol_ClientAck_descriptor,
-        new java.lang.String[] { "Destination", "ClientId", "BatchId", });
+        new java.lang.String[] { "Destination", "ClientId", "BatchId", "Cumulative", });
     internal_static_com_alibaba_otter_canal_protocol_Sub_descriptor =
       getDescriptor().getMessageTypes().get(6);
     internal_static_com_alibaba_otter_canal_protocol_Sub_fieldAccessorTable = new
@@ -10969,7 +11532,7 @@ public final class CanalPacket {
     internal_static_com_alibaba_otter_canal_protocol_Get_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_alibaba_otter_canal_protocol_Get_descriptor,
-        new java.lang.String[] { "Destination", "ClientId", "FetchSize", "Timeout", "Unit", "AutoAck", "TimeoutPresent", "UnitPresent", "AutoAckPresent", });
+        new java.lang.String[] { "Destination", "ClientId", "FetchSize", "Timeout", "Unit", "AutoAck", "Window", "TimeoutPresent", "UnitPresent", "AutoAckPresent", });
     internal_static_com_alibaba_otter_canal_protocol_Messages_descriptor =
       getDescriptor().getMessageTypes().get(9);
     internal_static_com_alibaba_otter_canal_protocol_Messages_fieldAccessorTable = new
@@ -0,0 +1,237 @@
+package com.alibaba.otter.canal.protocol.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
+import com.github.luben.zstd.Zstd;
+import com.google.protobuf.ByteString;
+
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * MESSAGES数据包的body压缩/解压
+ *
+ * <pre>
+ * 1. ZLIB/GZIP 基于jdk实现，始终可用
+ * 2. LZ4/ZSTD 为可选依赖，classpath中不存在时视为不支持，格式为4字节的原始长度 + 压缩数据
+ * 3. LZF 暂不支持
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class CompressionCodecs {
+
+    private static final boolean LZ4_SUPPORTED  = check(Compression.LZ4);
+    private static final boolean ZSTD_SUPPORTED = check(Compression.ZSTD);
+    private static final int     ZSTD_LEVEL     = 3;
+
+    /**
+     * 是否为需要压缩处理的类型
+     */
+    public static boolean isCompressed(Compression compression) {
+        return compression != null && compression != Compression.NONE
+               && compression != Compression.COMPRESSIONCOMPATIBLEPROTO2;
+    }
+
+    public static boolean isSupported(Compression compression) {
+        if (compression == null) {
+            return false;
+        }
+
+        switch (compression) {
+            case COMPRESSIONCOMPATIBLEPROTO2:
+            case NONE:
+            case ZLIB:
+            case GZIP:
+                return true;
+            case LZ4:
+                return LZ4_SUPPORTED;
+            case ZSTD:
+                return ZSTD_SUPPORTED;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 当前环境支持的压缩方式，按优先顺序排列，服务端在handshake中告知客户端
+     */
+    public static List<Compression> supportedCodecs() {
+        List<Compression> codecs = new ArrayList<Compression>();
+        for (Compression compression : new Compression[] { Compression.LZ4, Compression.ZSTD, Compression.ZLIB,
+                Compression.GZIP }) {
+            if (isSupported(compression)) {
+                codecs.add(compression);
+            }
+        }
+        return codecs;
+    }
+
+    public static byte[] compress(Compression compression, byte[] data, int offset, int length) throws IOException {
+        switch (compression) {
+            case ZLIB: {
+                Deflater deflater = new Deflater();
+                try {
+                    deflater.setInput(data, offset, length);
+                    deflater.finish();
+                    ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(length / 2, 64));
+                    byte[] buffer = new byte[8192];
+                    while (!deflater.finished()) {
+                        int count = deflater.deflate(buffer);
+                        output.write(buffer, 0, count);
+                    }
+                    return output.toByteArray();
+                } finally {
+                    deflater.end();
+                }
+            }
+            case GZIP: {
+                ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(length / 2, 64));
+                GZIPOutputStream gzip = new GZIPOutputStream(output, 8192);
+                gzip.write(data, offset, length);
+                gzip.close();
+                return output.toByteArray();
+            }
+            case LZ4:
+                return Lz4Codec.compress(data, offset, length);
+            case ZSTD:
+                return ZstdCodec.compress(data, offset, length);
+            default:
+                throw new IOException("compression " + compression + " is not supported");
+        }
+    }
+
+    public static byte[] decompress(Compression compression, ByteString data) throws IOException {
+        switch (compression) {
+            case COMPRESSIONCOMPATIBLEPROTO2:
+            case NONE:
+                return data.toByteArray();
+            case ZLIB:
+                return readFully(new InflaterInputStream(data.newInput(), new Inflater()), data.size() * 4);
+            case GZIP:
+                return readFully(new GZIPInputStream(data.newInput(), 8192), data.size() * 4);
+            case LZ4:
+                checkSupported(compression, LZ4_SUPPORTED);
+                return Lz4Codec.decompress(data.toByteArray());
+            case ZSTD:
+                checkSupported(compression, ZSTD_SUPPORTED);
+                return ZstdCodec.decompress(data.toByteArray());
+            default:
+                throw new IOException("compression " + compression + " is not supported");
+        }
+    }
+
+    private static void checkSupported(Compression compression, boolean supported) throws IOException {
+        if (!supported) {
+            throw new IOException("compression " + compression + " is not supported, missing library in classpath");
+        }
+    }
+
+    private static byte[] readFully(InputStream input, int sizeHint) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(sizeHint);
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static boolean check(Compression compression) {
+        try {
+            byte[] data = { 1, 2, 3 };
+            if (compression == Compression.LZ4) {
+                return Arrays.equals(data, Lz4Codec.decompress(Lz4Codec.compress(data, 0, data.length)));
+            } else {
+                return Arrays.equals(data, ZstdCodec.decompress(ZstdCodec.compress(data, 0, data.length)));
+            }
+        } catch (Throwable e) {
+            // 缺少依赖或者native库加载失败
+            return false;
+        }
+    }
+
+    private static void writeLength(byte[] output, int length) {
+        output[0] = (byte) (length >>> 24);
+        output[1] = (byte) (length >>> 16);
+        output[2] = (byte) (length >>> 8);
+        output[3] = (byte) length;
+    }
+
+    private static int readLength(byte[] input) throws IOException {
+        if (input.length < 4) {
+            throw new IOException("compressed data is too short: " + input.length);
+        }
+        return ((input[0] & 0xff) << 24) | ((input[1] & 0xff) << 16) | ((input[2] & 0xff) << 8) | (input[3] & 0xff);
+    }
+
+    private static byte[] trim(byte[] output, int length) {
+        if (output.length == length) {
+            return output;
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(output, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * 单独的内部类引用lz4，避免缺少依赖时加载CompressionCodecs失败
+     */
+    private static class Lz4Codec {
+
+        private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+
+        static byte[] compress(byte[] data, int offset, int length) {
+            byte[] output = new byte[4 + FACTORY.fastCompressor().maxCompressedLength(length)];
+            writeLength(output, length);
+            int size = FACTORY.fastCompressor().compress(data, offset, length, output, 4, output.length - 4);
+            return trim(output, 4 + size);
+        }
+
+        static byte[] decompress(byte[] data) throws IOException {
+            byte[] output = new byte[readLength(data)];
+            FACTORY.fastDecompressor().decompress(data, 4, output, 0, output.length);
+            return output;
+        }
+    }
+
+    /**
+     * 单独的内部类引用zstd，避免缺少依赖时加载CompressionCodecs失败
+     */
+    private static class ZstdCodec {
+
+        static byte[] compress(byte[] data, int offset, int length) throws IOException {
+            byte[] output = new byte[4 + (int) Zstd.compressBound(length)];
+            writeLength(output, length);
+            long size = Zstd.compressByteArray(output, 4, output.length - 4, data, offset, length, ZSTD_LEVEL);
+            if (Zstd.isError(size)) {
+                throw new IOException("zstd compress failed: " + Zstd.getErrorName(size));
+            }
+            return trim(output, 4 + (int) size);
+        }
+
+        static byte[] decompress(byte[] data) throws IOException {
+            byte[] output = new byte[readLength(data)];
+            long size = Zstd.decompressByteArray(output, 0, output.length, data, 4, data.length - 4);
+            if (Zstd.isError(size) || size != output.length) {
+                throw new IOException("zstd decompress failed: "
+                                      + (Zstd.isError(size) ? Zstd.getErrorName(size) : "size mismatch"));
+            }
+            return output;
+        }
+    }
+}
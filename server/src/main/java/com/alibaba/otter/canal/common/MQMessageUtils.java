@@ -31,6 +31,9 @@ import com.google.protobuf.InvalidProtocolBufferException;
 //
 public class MQMessageUtils {
 
+    // parser中计算的主键hash(LogEventConvert.PK_HASH)，多行之间逗号分隔
+    private static final String                        PK_HASH           = "pkHash";
+
     @SuppressWarnings("deprecation")
     private static Map<String, List<PartitionData>>    partitionDatas    = MigrateMap.makeComputingMap(new MapMaker().softValues(),
                                                                              new Function<String, List<PartitionData>>() {
@@ -197,6 +200,30 @@ public class MQMessageUtils {
         }
 
         for (Entry entry : entries) {
+            String database = entry.getHeader().getSchemaName();
+            String table = entry.getHeader().getTableName();
+            String pkHashes = getHeaderProp(entry.getHeader(), PK_HASH);
+            if (pkHashes != null) {
+                // 解析时已经计算过主键hash，一定是dml
+                HashMode hashMode = getPartitionHashColumns(database + "." + table, pkHashConfigs);
+                if (hashMode == null) {
+                    partitionEntries[0].add(entry);
+                    continue;
+                } else if (hashMode.tableHash) {
+                    partitionEntries[Math.abs(Math.abs(table.hashCode()) % partitionsNum)].add(entry);
+                    continue;
+                } else if (hashMode.autoPkHash) {
+                    String[] rowHashes = StringUtils.split(pkHashes, ',');
+                    int[] partitions = new int[rowHashes.length];
+                    for (int i = 0; i < rowHashes.length; i++) {
+                        int hashCode = database.hashCode() ^ Integer.parseInt(rowHashes[i]);
+                        partitions[i] = Math.abs(Math.abs(hashCode) % partitionsNum);
+                    }
+                    partitionRows(entry, null, partitions, partitionEntries);
+                    continue;
+                }
+            }
+
             CanalEntry.RowChange rowChange;
             try {
                 rowChange = CanalEntry.RowChange.parseFrom(entry.getStoreValue());
@@ -208,8 +235,6 @@ public class MQMessageUtils {
                 partitionEntries[0].add(entry);
             } else {
                 if (rowChange.getRowDatasList() != null && !rowChange.getRowDatasList().isEmpty()) {
-                    String database = entry.getHeader().getSchemaName();
-                    String table = entry.getHeader().getTableName();
                     HashMode hashMode = getPartitionHashColumns(database + "." + table, pkHashConfigs);
                     if (hashMode == null) {
                         // 如果都没有匹配，发送到第一个分区
@@ -221,7 +246,9 @@ public class MQMessageUtils {
                         // tableHash not need split entry message
                         partitionEntries[pkHash].add(entry);
                     } else {
-                        for (CanalEntry.RowData rowData : rowChange.getRowDatasList()) {
+                        int[] partitions = new int[rowChange.getRowDatasCount()];
+                        for (int i = 0; i < partitions.length; i++) {
+                            CanalEntry.RowData rowData = rowChange.getRowDatas(i);
                             int hashCode = database.hashCode();
                             if (hashMode.autoPkHash) {
                                 // isEmpty use default pkNames
@@ -239,16 +266,9 @@ public class MQMessageUtils {
                             }
 
                             int pkHash = Math.abs(hashCode) % partitionsNum;
-                            pkHash = Math.abs(pkHash);
-                            // build new entry
-                            Entry.Builder builder = Entry.newBuilder(entry);
-                            RowChange.Builder rowChangeBuilder = RowChange.newBuilder(rowChange);
-                            rowChangeBuilder.clearRowDatas();
-                            rowChangeBuilder.addRowDatas(rowData);
-                            builder.clearStoreValue();
-                            builder.setStoreValue(rowChangeBuilder.build().toByteString());
-                            partitionEntries[pkHash].add(builder.build());
+                            partitions[i] = Math.abs(pkHash);
                         }
+                        partitionRows(entry, rowChange, partitions, partitionEntries);
                     }
                 } else {
                     // 针对stmt/mixed binlog格式的query事件
@@ -267,6 +287,61 @@ public class MQMessageUtils {
         return partitionMessages;
     }
 
+    /**
+     * 按照每行的分区拆分entry，所有行都在同一个分区时直接使用原entry，否则每个分区只构造一次新的entry
+     *
+     * @param rowChange 为null时按需解析
+     */
+    private static void partitionRows(Entry entry, RowChange rowChange, int[] partitions,
+                                      List<Entry>[] partitionEntries) {
+        boolean samePartition = true;
+        for (int partition : partitions) {
+            if (partition != partitions[0]) {
+                samePartition = false;
+                break;
+            }
+        }
+
+        if (samePartition) {
+            partitionEntries[partitions[0]].add(entry);
+            return;
+        }
+
+        if (rowChange == null) {
+            try {
+                rowChange = RowChange.parseFrom(entry.getStoreValue());
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+
+        // 保持每个分区内的行顺序
+        Map<Integer, RowChange.Builder> builders = new LinkedHashMap<>();
+        for (int i = 0; i < partitions.length; i++) {
+            RowChange.Builder builder = builders.get(partitions[i]);
+            if (builder == null) {
+                builder = RowChange.newBuilder(rowChange).clearRowDatas();
+                builders.put(partitions[i], builder);
+            }
+            builder.addRowDatas(rowChange.getRowDatas(i));
+        }
+
+        for (Map.Entry<Integer, RowChange.Builder> item : builders.entrySet()) {
+            partitionEntries[item.getKey()].add(Entry.newBuilder(entry)
+                .setStoreValue(item.getValue().build().toByteString())
+                .build());
+        }
+    }
+
+    private static String getHeaderProp(CanalEntry.Header header, String key) {
+        for (CanalEntry.Pair pair : header.getPropsList()) {
+            if (key.equals(pair.getKey())) {
+                return pair.getValue();
+            }
+        }
+        return null;
+    }
+
     /**
      * 将Message转换为FlatMessage
      *
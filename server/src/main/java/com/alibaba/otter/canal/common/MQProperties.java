@@ -27,6 +27,8 @@ public class MQProperties {
     private String     aliyunAccessKey        = "";
     private String     aliyunSecretKey        = "";
     private boolean    transaction            = false;           // 是否开启事务
+    private boolean    async                  = false;           // 是否异步发送，多个批次同时在途
+    private int        maxInFlightBatches     = 8;               // 异步发送时每个destination最多在途的批次数
     private Properties properties             = new Properties();
 
     public static class CanalDestination {
@@ -215,6 +217,22 @@ public class MQProperties {
         this.transaction = transaction;
     }
 
+    public boolean getAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    public void setMaxInFlightBatches(int maxInFlightBatches) {
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+
     public Properties getProperties() {
         return properties;
     }
@@ -1,15 +1,23 @@
 package com.alibaba.otter.canal.kafka;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +26,7 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.otter.canal.common.MQMessageUtils;
 import com.alibaba.otter.canal.common.MQProperties;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.protocol.FlatMessage;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.spi.CanalMQProducer;
@@ -30,11 +39,14 @@ import com.alibaba.otter.canal.spi.CanalMQProducer;
  */
 public class CanalKafkaProducer implements CanalMQProducer {
 
-    private static final Logger       logger = LoggerFactory.getLogger(CanalKafkaProducer.class);
+    private static final Logger             logger    = LoggerFactory.getLogger(CanalKafkaProducer.class);
 
-    private Producer<String, Message> producer;
-    private Producer<String, String>  producer2;                                                 // 用于扁平message的数据投递
-    private MQProperties              kafkaProperties;
+    private Producer<String, Message>       producer;
+    private Producer<String, String>        producer2;                                             // 用于扁平message的数据投递
+    private MQProperties                    kafkaProperties;
+    private boolean                         async     = false;                                     // 异步发送，多个批次同时在途
+    private ConcurrentMap<String, Pipeline> pipelines = new ConcurrentHashMap<String, Pipeline>(); // 每个destination的在途批次
+    private ExecutorService                 ackExecutor;                                           // 按顺序执行在途批次的ack/rollback
 
     @Override
     public void init(MQProperties kafkaProperties) {
@@ -61,10 +73,10 @@ public class CanalKafkaProducer implements CanalMQProducer {
         }
         if (!kafkaProperties.getFlatMessage()) {
             properties.put("value.serializer", MessageSerializer.class.getName());
-            producer = new KafkaProducer<String, Message>(properties);
+            producer = createProducer(properties);
         } else {
             properties.put("value.serializer", StringSerializer.class.getName());
-            producer2 = new KafkaProducer<String, String>(properties);
+            producer2 = createProducer(properties);
         }
         if (kafkaProperties.getTransaction()) {
             if (!kafkaProperties.getFlatMessage()) {
@@ -73,6 +85,22 @@ public class CanalKafkaProducer implements CanalMQProducer {
                 producer2.initTransactions();
             }
         }
+
+        if (kafkaProperties.getAsync()) {
+            if (kafkaProperties.getTransaction()) {
+                logger.warn("## kafka async send is not supported with transaction, use sync send instead");
+            } else {
+                async = true;
+                ackExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("canal-kafka-ack"));
+            }
+        }
+    }
+
+    /**
+     * 创建kafka producer，单元测试中替换为MockProducer
+     */
+    <V> Producer<String, V> createProducer(Properties properties) {
+        return new KafkaProducer<String, V>(properties);
     }
 
     @Override
@@ -85,6 +113,11 @@ public class CanalKafkaProducer implements CanalMQProducer {
             if (producer2 != null) {
                 producer2.close();
             }
+            if (ackExecutor != null) {
+                // close之后所有在途的record都已完成，等待剩余的ack/rollback执行完
+                ackExecutor.shutdown();
+                ackExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            }
         } catch (Throwable e) {
             logger.warn("##something goes wrong when stopping kafka producer:", e);
         } finally {
@@ -94,6 +127,11 @@ public class CanalKafkaProducer implements CanalMQProducer {
 
     @Override
     public void send(MQProperties.CanalDestination canalDestination, Message message, Callback callback) {
+        if (async) {
+            sendAsync(canalDestination, message, callback);
+            return;
+        }
+
         // 开启事务，需要kafka版本支持
         Producer producerTmp;
         if (!kafkaProperties.getFlatMessage()) {
@@ -118,10 +156,10 @@ public class CanalKafkaProducer implements CanalMQProducer {
                     if (logger.isDebugEnabled()) {
                         logger.debug("## Send message to kafka topic: " + topicName);
                     }
-                    send(canalDestination, topicName, messageSub);
+                    send(canalDestination, topicName, messageSub, null);
                 }
             } else {
-                send(canalDestination, canalDestination.getTopic(), message);
+                send(canalDestination, canalDestination.getTopic(), message, null);
             }
             if (kafkaProperties.getTransaction()) {
                 producerTmp.commitTransaction();
@@ -136,8 +174,108 @@ public class CanalKafkaProducer implements CanalMQProducer {
         }
     }
 
-    private void send(MQProperties.CanalDestination canalDestination, String topicName, Message message)
-                                                                                                        throws Exception {
+    /**
+     * 异步发送，不等待kafka的结果直接返回，在途批次达到上限时阻塞
+     *
+     * <pre>
+     * 1. 每个destination的批次按发送顺序排队，所有record完成之后由ackExecutor按顺序执行commit/rollback
+     * 2. 某个批次失败之后，后续在途的批次全部rollback，等待在途批次处理完之后才允许发送新的批次
+     * </pre>
+     */
+    private void sendAsync(MQProperties.CanalDestination canalDestination, Message message, Callback callback) {
+        Pipeline pipeline = pipelines.get(canalDestination.getCanalDestination());
+        if (pipeline == null) {
+            pipelines.putIfAbsent(canalDestination.getCanalDestination(), new Pipeline());
+            pipeline = pipelines.get(canalDestination.getCanalDestination());
+        }
+
+        PendingBatch batch = new PendingBatch(pipeline, callback);
+        boolean rollback = false;
+        synchronized (pipeline) {
+            try {
+                while (pipeline.batches.size() >= kafkaProperties.getMaxInFlightBatches()
+                       || (pipeline.failed && !pipeline.batches.isEmpty())) {
+                    pipeline.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rollback = true;
+            }
+
+            if (pipeline.failed) {
+                // 获取该批次时之前的批次可能还未rollback，直接回滚重新获取
+                pipeline.failed = false;
+                rollback = true;
+            }
+            if (!rollback) {
+                pipeline.batches.addLast(batch);
+            }
+        }
+
+        if (rollback) {
+            callback.rollback();
+            return;
+        }
+
+        try {
+            if (!StringUtils.isEmpty(canalDestination.getDynamicTopic())) {
+                // 动态topic
+                Map<String, Message> messageMap = MQMessageUtils.messageTopics(message,
+                    canalDestination.getTopic(),
+                    canalDestination.getDynamicTopic());
+
+                for (Map.Entry<String, Message> entry : messageMap.entrySet()) {
+                    send(canalDestination, entry.getKey().replace('.', '_'), entry.getValue(), batch);
+                }
+            } else {
+                send(canalDestination, canalDestination.getTopic(), message, batch);
+            }
+            batch.complete(null);
+        } catch (Throwable e) {
+            logger.error(e.getMessage(), e);
+            batch.complete(e);
+        }
+    }
+
+    /**
+     * 按顺序处理队首已经完成的批次
+     */
+    private void drain(Pipeline pipeline) {
+        while (true) {
+            PendingBatch batch;
+            boolean failed;
+            synchronized (pipeline) {
+                batch = pipeline.batches.peekFirst();
+                if (batch == null || batch.remaining.get() > 0) {
+                    return;
+                }
+
+                failed = pipeline.failed || batch.error != null;
+                pipeline.failed = failed;
+            }
+
+            try {
+                if (failed) {
+                    batch.callback.rollback();
+                } else {
+                    batch.callback.commit();
+                }
+            } catch (Throwable e) {
+                logger.error("## ack/rollback the kafka batch failed", e);
+                failed = true;
+            }
+
+            synchronized (pipeline) {
+                // 处理完成之后再出队，保证新的批次在rollback之后发送
+                pipeline.batches.pollFirst();
+                pipeline.failed |= failed;
+                pipeline.notifyAll();
+            }
+        }
+    }
+
+    private void send(MQProperties.CanalDestination canalDestination, String topicName, Message message,
+                      PendingBatch batch) throws Exception {
         if (!kafkaProperties.getFlatMessage()) {
             List<ProducerRecord<String, Message>> records = new ArrayList<ProducerRecord<String, Message>>();
             if (canalDestination.getPartitionHash() != null && !canalDestination.getPartitionHash().isEmpty()) {
@@ -158,7 +296,11 @@ public class CanalKafkaProducer implements CanalMQProducer {
 
             if (!records.isEmpty()) {
                 for (ProducerRecord<String, Message> record : records) {
-                    producer.send(record).get();
+                    if (batch != null) {
+                        producer.send(record, batch.newCallback());
+                    } else {
+                        producer.send(record).get();
+                    }
                 }
 
                 if (logger.isDebugEnabled()) {
@@ -178,12 +320,12 @@ public class CanalKafkaProducer implements CanalMQProducer {
                         for (int i = 0; i < length; i++) {
                             FlatMessage flatMessagePart = partitionFlatMessage[i];
                             if (flatMessagePart != null) {
-                                produce(topicName, i, flatMessagePart);
+                                produce(topicName, i, flatMessagePart, batch);
                             }
                         }
                     } else {
                         final int partition = canalDestination.getPartition() != null ? canalDestination.getPartition() : 0;
-                        produce(topicName, partition, flatMessage);
+                        produce(topicName, partition, flatMessage, batch);
                     }
 
                     if (logger.isDebugEnabled()) {
@@ -196,17 +338,71 @@ public class CanalKafkaProducer implements CanalMQProducer {
         }
     }
 
-    private void produce(String topicName, int partition, FlatMessage flatMessage) throws ExecutionException,
-                                                                                  InterruptedException {
+    private void produce(String topicName, int partition, FlatMessage flatMessage, PendingBatch batch)
+                                                                                                       throws ExecutionException,
+                                                                                                       InterruptedException {
         ProducerRecord<String, String> record = new ProducerRecord<String, String>(topicName,
             partition,
             null,
             JSON.toJSONString(flatMessage, SerializerFeature.WriteMapNullValue));
-        if (kafkaProperties.getTransaction()) {
+        if (batch != null) {
+            producer2.send(record, batch.newCallback());
+        } else if (kafkaProperties.getTransaction()) {
             producer2.send(record);
         } else {
             producer2.send(record);
         }
     }
 
+    /**
+     * 单个destination的在途批次
+     */
+    private static class Pipeline {
+
+        private final LinkedList<PendingBatch> batches = new LinkedList<PendingBatch>();
+        private boolean                        failed  = false;                         // 出现失败之后，后续的批次都需要rollback
+    }
+
+    /**
+     * 在途的canal批次，所有record都完成之后触发drain
+     */
+    private class PendingBatch {
+
+        private final Pipeline      pipeline;
+        private final Callback      callback;
+        private final AtomicInteger remaining = new AtomicInteger(1); // 未完成的record数，初始的1在全部发出之后释放
+        private volatile Throwable  error;
+
+        PendingBatch(Pipeline pipeline, Callback callback){
+            this.pipeline = pipeline;
+            this.callback = callback;
+        }
+
+        org.apache.kafka.clients.producer.Callback newCallback() {
+            remaining.incrementAndGet();
+            return new org.apache.kafka.clients.producer.Callback() {
+
+                @Override
+                public void onCompletion(RecordMetadata metadata, Exception exception) {
+                    complete(exception);
+                }
+            };
+        }
+
+        void complete(Throwable exception) {
+            if (exception != null) {
+                error = exception;
+            }
+            if (remaining.decrementAndGet() == 0) {
+                ackExecutor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        drain(pipeline);
+                    }
+                });
+            }
+        }
+    }
+
 }
@@ -3,7 +3,6 @@ package com.alibaba.otter.canal.server.embedded;
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
-import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.protocol.position.LogPosition;
@@ -16,14 +15,14 @@ import com.alibaba.otter.canal.spi.CanalMetricsProvider;
 import com.alibaba.otter.canal.spi.CanalMetricsService;
 import com.alibaba.otter.canal.spi.NopCanalMetricsService;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalSubscribeEventStore;
+import com.alibaba.otter.canal.store.memory.DirectMemoryArena;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
 import com.alibaba.otter.canal.store.model.Event;
 import com.alibaba.otter.canal.store.model.Events;
 import com.google.common.base.Function;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MigrateMap;
-import com.google.protobuf.ByteString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -41,12 +40,13 @@ import java.util.concurrent.TimeUnit;
  */
 public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements CanalServer, CanalService {
 
-    private static final Logger        logger  = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
-    private Map<String, CanalInstance> canalInstances;
+    private static final Logger         logger  = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
+    private Map<String, CanalInstance>  canalInstances;
+    private Map<ClientIdentity, Object> clientLocks;                                     // fanout模式下每个client独立的锁
     // private Map<ClientIdentity, Position> lastRollbackPostions;
-    private CanalInstanceGenerator     canalInstanceGenerator;
-    private int                        metricsPort;
-    private CanalMetricsService        metrics = NopCanalMetricsService.NOP;
+    private CanalInstanceGenerator      canalInstanceGenerator;
+    private int                         metricsPort;
+    private CanalMetricsService         metrics = NopCanalMetricsService.NOP;
 
 //    静态内部类的方式实现单例模式
     private static class SingletonHolder {
@@ -76,6 +76,13 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 }
             });
 
+            clientLocks = MigrateMap.makeComputingMap(new Function<ClientIdentity, Object>() {
+
+                public Object apply(ClientIdentity clientIdentity) {
+                    return new Object();
+                }
+            });
+
             // lastRollbackPostions = new MapMaker().makeMap();
         }
     }
@@ -166,6 +173,12 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             logger.info("subscribe successfully, use last cursor position:{} ", clientIdentity, position);
         }
 
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        if (eventStore instanceof CanalSubscribeEventStore) {
+            // 在store中注册独立的游标
+            ((CanalSubscribeEventStore) eventStore).subscribe(clientIdentity, position);
+        }
+
         // 通知下订阅关系变化
         canalInstance.subscribeChange(clientIdentity);
     }
@@ -177,6 +190,10 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     public void unsubscribe(ClientIdentity clientIdentity) throws CanalServerException {
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         canalInstance.getMetaManager().unsubscribe(clientIdentity); // 执行一下meta订阅
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        if (eventStore instanceof CanalSubscribeEventStore) {
+            ((CanalSubscribeEventStore) eventStore).unsubscribe(clientIdentity);
+        }
 
         logger.info("unsubscribe successfully, {}", clientIdentity);
     }
@@ -220,7 +237,9 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         checkStart(clientIdentity.getDestination());
         checkSubscribe(clientIdentity);
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
-        synchronized (canalInstance) {
+        Events<Event> events = null;
+        Long batchId = null;
+        synchronized (getLock(canalInstance, clientIdentity)) {
             // 获取到流式数据中的最后一批获取的位置
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
 
@@ -230,48 +249,35 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                     positionRanges));
             }
 
-            Events<Event> events = null;
             Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
-            events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+            events = getEvents(canalInstance.getEventStore(), clientIdentity, start, batchSize, timeout, unit);
 
             if (CollectionUtils.isEmpty(events.getEvents())) {
                 logger.debug("get successfully, clientId:{} batchSize:{} but result is null",
                     clientIdentity.getClientId(),
                     batchSize);
                 return new Message(-1, true, new ArrayList()); // 返回空包，避免生成batchId，浪费性能
-            } else {
-                // 记录到流式信息
-                Long batchId = canalInstance.getMetaManager().addBatch(clientIdentity, events.getPositionRange());
-                boolean raw = isRaw(canalInstance.getEventStore());
-                List entrys = null;
-                if (raw) {
-                    entrys = Lists.transform(events.getEvents(), new Function<Event, ByteString>() {
-
-                        public ByteString apply(Event input) {
-                            return input.getRawEntry();
-                        }
-                    });
-                } else {
-                    entrys = Lists.transform(events.getEvents(), new Function<Event, CanalEntry.Entry>() {
-
-                        public CanalEntry.Entry apply(Event input) {
-                            return input.getEntry();
-                        }
-                    });
-                }
-                if (logger.isInfoEnabled()) {
-                    logger.info("get successfully, clientId:{} batchSize:{} real size is {} and result is [batchId:{} , position:{}]",
-                        clientIdentity.getClientId(),
-                        batchSize,
-                        entrys.size(),
-                        batchId,
-                        events.getPositionRange());
-                }
-                // 直接提交ack
-                ack(clientIdentity, batchId);
-                return new Message(batchId, raw, entrys);
             }
+
+            // 记录到流式信息
+            batchId = canalInstance.getMetaManager().addBatch(clientIdentity, events.getPositionRange());
+            // ack会释放direct内存，之后可能被新数据覆盖，需要先拷贝到堆内存
+            DirectMemoryArena.copyToHeap(events.getEvents());
+            // 直接提交ack
+            ack(clientIdentity, batchId);
+        }
+
+        // Message的组装不需要在锁内完成
+        Message message = buildMessage(batchId, isRaw(canalInstance.getEventStore()), events);
+        if (logger.isInfoEnabled()) {
+            logger.info("get successfully, clientId:{} batchSize:{} real size is {} and result is [batchId:{} , position:{}]",
+                clientIdentity.getClientId(),
+                batchSize,
+                events.getEvents().size(),
+                batchId,
+                events.getPositionRange());
         }
+        return message;
     }
 
     /**
@@ -308,20 +314,26 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         checkSubscribe(clientIdentity);
 
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
-        synchronized (canalInstance) {
+        Events<Event> events = null;
+        Long batchId = null;
+        synchronized (getLock(canalInstance, clientIdentity)) {
             // 获取到流式数据中的最后一批获取的位置
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
 
-            Events<Event> events = null;
             if (positionRanges != null) { // 存在流数据
-                events = getEvents(canalInstance.getEventStore(), positionRanges.getStart(), batchSize, timeout, unit);
+                events = getEvents(canalInstance.getEventStore(),
+                    clientIdentity,
+                    positionRanges.getStart(),
+                    batchSize,
+                    timeout,
+                    unit);
             } else {// ack后第一次获取
                 Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
                 if (start == null) { // 第一次，还没有过ack记录，则获取当前store中的第一条
                     start = canalInstance.getEventStore().getFirstPosition();
                 }
 
-                events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+                events = getEvents(canalInstance.getEventStore(), clientIdentity, start, batchSize, timeout, unit);
             }
 
             if (CollectionUtils.isEmpty(events.getEvents())) {
@@ -331,38 +343,23 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 // clientIdentity.getClientId(),
                 // batchSize);
                 return new Message(-1, true, new ArrayList()); // 返回空包，避免生成batchId，浪费性能
-            } else {
-                // 记录到流式信息
-                Long batchId = canalInstance.getMetaManager().addBatch(clientIdentity, events.getPositionRange());
-                boolean raw = isRaw(canalInstance.getEventStore());
-                List entrys = null;
-                if (raw) {
-                    entrys = Lists.transform(events.getEvents(), new Function<Event, ByteString>() {
-
-                        public ByteString apply(Event input) {
-                            return input.getRawEntry();
-                        }
-                    });
-                } else {
-                    entrys = Lists.transform(events.getEvents(), new Function<Event, CanalEntry.Entry>() {
-
-                        public CanalEntry.Entry apply(Event input) {
-                            return input.getEntry();
-                        }
-                    });
-                }
-                if (logger.isInfoEnabled()) {
-                    logger.info("getWithoutAck successfully, clientId:{} batchSize:{}  real size is {} and result is [batchId:{} , position:{}]",
-                        clientIdentity.getClientId(),
-                        batchSize,
-                        entrys.size(),
-                        batchId,
-                        events.getPositionRange());
-                }
-                return new Message(batchId, raw, entrys);
             }
 
+            // 记录到流式信息
+            batchId = canalInstance.getMetaManager().addBatch(clientIdentity, events.getPositionRange());
         }
+
+        // Message的组装不需要在锁内完成
+        Message message = buildMessage(batchId, isRaw(canalInstance.getEventStore()), events);
+        if (logger.isInfoEnabled()) {
+            logger.info("getWithoutAck successfully, clientId:{} batchSize:{}  real size is {} and result is [batchId:{} , position:{}]",
+                clientIdentity.getClientId(),
+                batchSize,
+                events.getEvents().size(),
+                batchId,
+                events.getPositionRange());
+        }
+        return message;
     }
 
     /**
@@ -429,10 +426,75 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
 
         // 可定时清理数据
-        canalInstance.getEventStore().ack(positionRanges.getEnd());
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        if (eventStore instanceof CanalSubscribeEventStore) {
+            ((CanalSubscribeEventStore) eventStore).ack(clientIdentity, positionRanges.getEnd());
+        } else {
+            eventStore.ack(positionRanges.getEnd());
+        }
 
     }
 
+    /**
+     * 累计ack，确认小于等于batchId的所有批次
+     *
+     * <pre>
+     * 和逐个batch进行ack相比，cursor和store只在最后更新一次，减少meta的写入
+     * </pre>
+     */
+    public void ackUpTo(ClientIdentity clientIdentity, long batchId) throws CanalServerException {
+        checkStart(clientIdentity.getDestination());
+        checkSubscribe(clientIdentity);
+
+        CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
+        List<Long> batchIds = listBatchIds(clientIdentity);
+        LogPosition ack = null;
+        Position end = null;
+        int count = 0;
+        for (Long id : batchIds) {
+            if (id > batchId) {
+                break;
+            }
+
+            PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().removeBatch(clientIdentity,
+                id); // 更新位置
+            if (positionRanges == null) { // 并发的ack/rollback已经处理
+                continue;
+            }
+            if (positionRanges.getAck() != null) {
+                ack = positionRanges.getAck();
+            }
+            end = positionRanges.getEnd();
+            count++;
+        }
+
+        if (count == 0) { // 说明是重复的ack/rollback
+            throw new CanalServerException(String.format("ack error , clientId:%s batchId:%d is not exist , please check",
+                clientIdentity.getClientId(),
+                batchId));
+        }
+
+        // 更新cursor
+        if (ack != null) {
+            canalInstance.getMetaManager().updateCursor(clientIdentity, ack);
+            if (logger.isInfoEnabled()) {
+                logger.info("ack successfully, clientId:{} batchId:{} batches:{} position:{}",
+                    clientIdentity.getClientId(),
+                    batchId,
+                    count,
+                    ack);
+            }
+        }
+
+        // 可定时清理数据
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        if (eventStore instanceof CanalSubscribeEventStore) {
+            ((CanalSubscribeEventStore) eventStore).ack(clientIdentity, end);
+        } else {
+            eventStore.ack(end);
+        }
+    }
+
     /**
      * 回滚到未进行 {@link #ack} 的地方，下次fetch的时候，可以从最后一个没有 {@link #ack} 的地方开始拿
      */
@@ -446,11 +508,11 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             return;
         }
 
-        synchronized (canalInstance) {
+        synchronized (getLock(canalInstance, clientIdentity)) {
             // 清除batch信息
             canalInstance.getMetaManager().clearAllBatchs(clientIdentity);
             // rollback eventStore中的状态信息
-            canalInstance.getEventStore().rollback();
+            rollback(canalInstance.getEventStore(), clientIdentity);
             logger.info("rollback successfully, clientId:{}", new Object[] { clientIdentity.getClientId() });
         }
     }
@@ -468,7 +530,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         if (!hasSubscribe) {
             return;
         }
-        synchronized (canalInstance) {
+        synchronized (getLock(canalInstance, clientIdentity)) {
             // 清除batch信息
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().removeBatch(clientIdentity,
                 batchId);
@@ -481,8 +543,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             // lastRollbackPostions.put(clientIdentity,
             // positionRanges.getEnd());// 记录一下最后rollback的位置
             // TODO 后续rollback到指定的batchId位置
-            canalInstance.getEventStore().rollback();// rollback
-                                                     // eventStore中的状态信息
+            rollback(canalInstance.getEventStore(), clientIdentity);// rollback
+                                                                     // eventStore中的状态信息
             logger.info("rollback successfully, clientId:{} batchId:{} position:{}",
                 clientIdentity.getClientId(),
                 batchId,
@@ -499,8 +561,26 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     /**
      * 根据不同的参数，选择不同的方式获取数据
      */
-    private Events<Event> getEvents(CanalEventStore eventStore, Position start, int batchSize, Long timeout,
-                                    TimeUnit unit) {
+    private Events<Event> getEvents(CanalEventStore eventStore, ClientIdentity clientIdentity, Position start,
+                                    int batchSize, Long timeout, TimeUnit unit) {
+        if (eventStore instanceof CanalSubscribeEventStore) {
+            // 按照订阅者的游标获取数据
+            CanalSubscribeEventStore subscribeEventStore = (CanalSubscribeEventStore) eventStore;
+            if (timeout == null) {
+                return subscribeEventStore.tryGet(clientIdentity, start, batchSize);
+            } else {
+                try {
+                    if (timeout <= 0) {
+                        return subscribeEventStore.get(clientIdentity, start, batchSize);
+                    } else {
+                        return subscribeEventStore.get(clientIdentity, start, batchSize, timeout, unit);
+                    }
+                } catch (Exception e) {
+                    throw new CanalServerException(e);
+                }
+            }
+        }
+
         if (timeout == null) {
             return eventStore.tryGet(start, batchSize);
         } else {
@@ -516,6 +596,14 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
     }
 
+    private void rollback(CanalEventStore eventStore, ClientIdentity clientIdentity) {
+        if (eventStore instanceof CanalSubscribeEventStore) {
+            ((CanalSubscribeEventStore) eventStore).rollback(clientIdentity);
+        } else {
+            eventStore.rollback();
+        }
+    }
+
     private void checkSubscribe(ClientIdentity clientIdentity) {
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         boolean hasSubscribe = canalInstance.getMetaManager().hasSubscribe(clientIdentity);
@@ -552,6 +640,43 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
     }
 
+    /**
+     * 获取数据时使用的锁
+     *
+     * <pre>
+     * 1. fanout模式下每个client有独立的游标，只需要保证同一个client的meta和数据获取顺序，不同client之间互不阻塞
+     * 2. 非fanout模式下所有client共享store中的游标，仍然按照destination串行，包括等待store数据的过程，
+     *    多个client同时消费一个destination时需要开启canal.instance.memory.fanout
+     * </pre>
+     */
+    private Object getLock(CanalInstance canalInstance, ClientIdentity clientIdentity) {
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        if (eventStore instanceof MemoryEventStoreWithBuffer && ((MemoryEventStoreWithBuffer) eventStore).isFanout()) {
+            return clientLocks.get(clientIdentity);
+        }
+
+        return canalInstance;
+    }
+
+    /**
+     * 一次性拷贝为ArrayList，避免Lists.transform的视图在后续序列化时重复转换
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private Message buildMessage(Long batchId, boolean raw, Events<Event> events) {
+        List<Event> eventList = events.getEvents();
+        List entrys = new ArrayList(eventList.size());
+        if (raw) {
+            for (Event event : eventList) {
+                entrys.add(event.getRawEntry());
+            }
+        } else {
+            for (Event event : eventList) {
+                entrys.add(event.getEntry());
+            }
+        }
+        return new Message(batchId, raw, entrys);
+    }
+
     private boolean isRaw(CanalEventStore eventStore) {
         if (eventStore instanceof MemoryEventStoreWithBuffer) {
             return ((MemoryEventStoreWithBuffer) eventStore).isRaw();
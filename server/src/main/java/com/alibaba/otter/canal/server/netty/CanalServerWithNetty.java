@@ -1,24 +1,33 @@
 package com.alibaba.otter.canal.server.netty;
 
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.server.CanalServer;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.netty.handler.ClientAuthenticationHandler;
 import com.alibaba.otter.canal.server.netty.handler.FixedHeaderFrameDecoder;
 import com.alibaba.otter.canal.server.netty.handler.HandshakeInitializationHandler;
 import com.alibaba.otter.canal.server.netty.handler.SessionHandler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import org.apache.commons.lang.StringUtils;
-import org.jboss.netty.bootstrap.ServerBootstrap;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelPipeline;
-import org.jboss.netty.channel.ChannelPipelineFactory;
-import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.group.ChannelGroup;
-import org.jboss.netty.channel.group.DefaultChannelGroup;
-import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 
 import java.net.InetSocketAddress;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 基于netty网络服务的server实现
@@ -29,15 +38,19 @@ import java.util.concurrent.Executors;
 //
 public class CanalServerWithNetty extends AbstractCanalLifeCycle implements CanalServer {
 
-    private CanalServerWithEmbedded embeddedServer;      // 嵌入式server
+    private CanalServerWithEmbedded embeddedServer;                                                      // 嵌入式server
     private String                  ip;
     private int                     port;
-    private Channel                 serverChannel = null;
-    private ServerBootstrap         bootstrap     = null;
-    private ChannelGroup            childGroups   = null; // socket channel
-                                                          // container, used to
-                                                          // close sockets
-                                                          // explicitly.
+    private int                     ioThreads      = Runtime.getRuntime().availableProcessors() * 2;     // worker线程数
+    private Channel                 serverChannel  = null;
+    private EventLoopGroup          bossGroup      = null;
+    private EventLoopGroup          workerGroup    = null;
+    private ChannelGroup            childGroups    = null;                                               // socket channel
+                                                                                                         // container, used to
+                                                                                                         // close sockets
+                                                                                                         // explicitly.
+    private int                     streamThreads  = 64;                                                 // STREAM模式最多同时推送的连接数
+    private ExecutorService         streamExecutor = null;                                               // STREAM模式的推送线程
 
     private static class SingletonHolder {
 
@@ -46,7 +59,7 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
 
     private CanalServerWithNetty(){
         this.embeddedServer = CanalServerWithEmbedded.instance();
-        this.childGroups = new DefaultChannelGroup();
+        this.childGroups = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
     }
 
     public static CanalServerWithNetty instance() {
@@ -60,25 +73,37 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             embeddedServer.start();
         }
 
-        this.bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
-            Executors.newCachedThreadPool()));
+        // 每个推送中的连接占用一个线程，超过streamThreads时拒绝新的STREAM请求
+        this.streamExecutor = new ThreadPoolExecutor(0,
+            streamThreads,
+            60L,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            new NamedThreadFactory("canal-server-stream"));
+        this.bossGroup = new NioEventLoopGroup(1, new NamedThreadFactory("canal-server-boss"));
+        this.workerGroup = new NioEventLoopGroup(ioThreads, new NamedThreadFactory("canal-server-io"));
+
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class);
         /*
          * enable keep-alive mechanism, handle abnormal network connection
          * scenarios on OS level. the threshold parameters are depended on OS.
          * e.g. On Linux: net.ipv4.tcp_keepalive_time = 300
          * net.ipv4.tcp_keepalive_probes = 2 net.ipv4.tcp_keepalive_intvl = 30
          */
-        bootstrap.setOption("child.keepAlive", true);
+        bootstrap.childOption(ChannelOption.SO_KEEPALIVE, true);
         /*
          * optional parameter.
          */
-        bootstrap.setOption("child.tcpNoDelay", true);
+        bootstrap.childOption(ChannelOption.TCP_NODELAY, true);
+        // 数据包统一使用pooled buffer，减少GET/STREAM响应的内存分配
+        bootstrap.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
 
         // 构造对应的pipeline
-        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+        bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
 
-            public ChannelPipeline getPipeline() throws Exception {
-                ChannelPipeline pipelines = Channels.pipeline();
+            protected void initChannel(SocketChannel ch) throws Exception {
+                ChannelPipeline pipelines = ch.pipeline();
                 pipelines.addLast(FixedHeaderFrameDecoder.class.getName(), new FixedHeaderFrameDecoder());
                 // support to maintain child socket channel.
                 pipelines.addLast(HandshakeInitializationHandler.class.getName(),
@@ -86,17 +111,16 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
                 pipelines.addLast(ClientAuthenticationHandler.class.getName(),
                     new ClientAuthenticationHandler(embeddedServer));
 
-                SessionHandler sessionHandler = new SessionHandler(embeddedServer);
+                SessionHandler sessionHandler = new SessionHandler(embeddedServer, streamExecutor);
                 pipelines.addLast(SessionHandler.class.getName(), sessionHandler);
-                return pipelines;
             }
         });
 
         // 启动
         if (StringUtils.isNotEmpty(ip)) {
-            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.ip, this.port));
+            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.ip, this.port)).syncUninterruptibly().channel();
         } else {
-            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.port));
+            this.serverChannel = bootstrap.bind(new InetSocketAddress(this.port)).syncUninterruptibly().channel();
         }
     }
 
@@ -113,8 +137,19 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             this.childGroups.close().awaitUninterruptibly(5000);
         }
 
-        if (this.bootstrap != null) {
-            this.bootstrap.releaseExternalResources();
+        if (this.bossGroup != null) {
+            this.bossGroup.shutdownGracefully();
+            this.bossGroup = null;
+        }
+
+        if (this.workerGroup != null) {
+            this.workerGroup.shutdownGracefully();
+            this.workerGroup = null;
+        }
+
+        if (this.streamExecutor != null) {
+            this.streamExecutor.shutdownNow();
+            this.streamExecutor = null;
         }
 
         if (embeddedServer.isStart()) {
@@ -130,6 +165,14 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
         this.port = port;
     }
 
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public void setStreamThreads(int streamThreads) {
+        this.streamThreads = streamThreads;
+    }
+
     public void setEmbeddedServer(CanalServerWithEmbedded embeddedServer) {
         this.embeddedServer = embeddedServer;
     }
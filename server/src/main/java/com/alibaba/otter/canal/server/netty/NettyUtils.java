@@ -3,49 +3,53 @@ package com.alibaba.otter.canal.server.netty;
 import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
 import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.buffer.CompositeChannelBuffer;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFutureListener;
-import org.jboss.netty.channel.Channels;
-import org.jboss.netty.util.HashedWheelTimer;
-import org.jboss.netty.util.Timer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.List;
 
 //
 public class NettyUtils {
 
-    private static final Logger logger           = LoggerFactory.getLogger(NettyUtils.class);
-    public static int           HEADER_LENGTH    = 4;
-    public static Timer         hashedWheelTimer = new HashedWheelTimer();
+    private static final Logger logger        = LoggerFactory.getLogger(NettyUtils.class);
+    public static int           HEADER_LENGTH = 4;
 
     public static void write(Channel channel, ByteBuffer body, ChannelFutureListener channelFutureListner) {
-        byte[] header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN).putInt(body.limit()).array();
-        List<ChannelBuffer> components = new ArrayList<ChannelBuffer>(2);
-        components.add(ChannelBuffers.wrappedBuffer(ByteOrder.BIG_ENDIAN, header));
-        components.add(ChannelBuffers.wrappedBuffer(body));
+        write(channel, Unpooled.wrappedBuffer(body), channelFutureListner);
+    }
 
+    public static void write(Channel channel, byte[] body, ChannelFutureListener channelFutureListner) {
+        ByteBuf buffer = channel.alloc().ioBuffer(HEADER_LENGTH + body.length);
+        buffer.writeInt(body.length);
+        buffer.writeBytes(body);
         if (channelFutureListner == null) {
-            Channels.write(channel, new CompositeChannelBuffer(ByteOrder.BIG_ENDIAN, components));
+            channel.writeAndFlush(buffer);
         } else {
-            Channels.write(channel, new CompositeChannelBuffer(ByteOrder.BIG_ENDIAN, components))
-                .addListener(channelFutureListner);
+            channel.writeAndFlush(buffer).addListener(channelFutureListner);
         }
     }
 
-    public static void write(Channel channel, byte[] body, ChannelFutureListener channelFutureListner) {
-        byte[] header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN).putInt(body.length).array();
+    /**
+     * 输出body，header和body组合为一个CompositeByteBuf一次写出，body中的数据不做拷贝
+     * <p>
+     * 推送线程和IO线程可能同时写同一个channel，header和body需要在一次write中完成，避免数据包交错
+     * </p>
+     */
+    public static void write(Channel channel, ByteBuf body, ChannelFutureListener channelFutureListner) {
+        ByteBuf header = channel.alloc().ioBuffer(HEADER_LENGTH);
+        header.writeInt(body.readableBytes());
+        CompositeByteBuf buffer = channel.alloc().compositeBuffer(2);
+        buffer.addComponent(true, header);
+        buffer.addComponent(true, body);
         if (channelFutureListner == null) {
-            Channels.write(channel, ChannelBuffers.wrappedBuffer(header, body));
+            channel.writeAndFlush(buffer);
         } else {
-            Channels.write(channel, ChannelBuffers.wrappedBuffer(header, body)).addListener(channelFutureListner);
+            channel.writeAndFlush(buffer).addListener(channelFutureListner);
         }
     }
 
@@ -3,16 +3,21 @@ package com.alibaba.otter.canal.server.netty.handler;
 import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitor;
 import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitors;
 import com.alibaba.otter.canal.protocol.CanalPacket.ClientAuth;
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
 import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.compress.CompressionCodecs;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 import org.apache.commons.lang.StringUtils;
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.*;
-import org.jboss.netty.handler.timeout.IdleStateAwareChannelHandler;
-import org.jboss.netty.handler.timeout.IdleStateEvent;
-import org.jboss.netty.handler.timeout.IdleStateHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -26,12 +31,14 @@ import java.util.concurrent.TimeUnit;
  * @version 1.0.0
  */
 //
-public class ClientAuthenticationHandler extends SimpleChannelHandler {
+public class ClientAuthenticationHandler extends ChannelInboundHandlerAdapter {
 
-    private static final Logger     logger                                  = LoggerFactory.getLogger(ClientAuthenticationHandler.class);
-    private final int               SUPPORTED_VERSION                       = 3;
-    private final int               defaultSubscriptorDisconnectIdleTimeout = 60 * 60 * 1000;
-    private CanalServerWithEmbedded embeddedServer;
+    private static final Logger                       logger                                  = LoggerFactory.getLogger(ClientAuthenticationHandler.class);
+    public static final AttributeKey<ClientIdentity>  CLIENT_IDENTITY                         = AttributeKey.valueOf("clientIdentity"); // 认证时订阅的客户端
+    private static final String                       IDLE_STATE_AWARE_HANDLER                = "idleStateAwareChannelHandler";
+    private final int                                 SUPPORTED_VERSION                       = 3;
+    private final int                                 defaultSubscriptorDisconnectIdleTimeout = 60 * 60 * 1000;
+    private CanalServerWithEmbedded                   embeddedServer;
 
     public ClientAuthenticationHandler(){
 
@@ -41,9 +48,14 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
         this.embeddedServer = embeddedServer;
     }
 
-    public void messageReceived(final ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-        ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
-        final Packet packet = Packet.parseFrom(buffer.readBytes(buffer.readableBytes()).array());
+    public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
+        ByteBuf buffer = (ByteBuf) msg;
+        final Packet packet;
+        try {
+            packet = Packet.parseFrom(buffer.nioBuffer());
+        } finally {
+            buffer.release();
+        }
         switch (packet.getVersion()) {
             case SUPPORTED_VERSION:
             default:
@@ -57,7 +69,7 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                     try {
                         MDC.put("destination", clientIdentity.getDestination());
                         embeddedServer.subscribe(clientIdentity);
-                        ctx.setAttachment(clientIdentity);// 设置状态数据
+                        ctx.channel().attr(CLIENT_IDENTITY).set(clientIdentity);// 设置状态数据
                         // 尝试启动，如果已经启动，忽略
                         if (!embeddedServer.isStart(clientIdentity.getDestination())) {
                             ServerRunningMonitor runningMonitor = ServerRunningMonitors.getRunningMonitor(clientIdentity.getDestination());
@@ -69,13 +81,27 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                         MDC.remove("destination");
                     }
                 }
+                // 客户端期望压缩，服务端支持时启用，否则保持不压缩
+                Compression compression = clientAuth.getCompression();
+                if (CompressionCodecs.isCompressed(compression)) {
+                    SessionHandler sessionHandler = (SessionHandler) ctx.pipeline()
+                        .get(SessionHandler.class.getName());
+                    if (CompressionCodecs.isSupported(compression) && sessionHandler != null) {
+                        sessionHandler.setCompression(compression);
+                        logger.info("use {} compression for channel : {}", compression, ctx.channel());
+                    } else {
+                        logger.warn("compression {} is not supported, ignore it for channel : {}",
+                            compression,
+                            ctx.channel());
+                    }
+                }
                 // 鉴权一次性，暂不统计
-                NettyUtils.ack(ctx.getChannel(), new ChannelFutureListener() {
+                NettyUtils.ack(ctx.channel(), new ChannelFutureListener() {
 
                     public void operationComplete(ChannelFuture future) throws Exception {
                         logger.info("remove unused channel handlers after authentication is done successfully.");
-                        ctx.getPipeline().remove(HandshakeInitializationHandler.class.getName());
-                        ctx.getPipeline().remove(ClientAuthenticationHandler.class.getName());
+                        ctx.pipeline().remove(HandshakeInitializationHandler.class.getName());
+                        ctx.pipeline().remove(ClientAuthenticationHandler.class.getName());
 
                         int readTimeout = defaultSubscriptorDisconnectIdleTimeout;
                         int writeTimeout = defaultSubscriptorDisconnectIdleTimeout;
@@ -87,26 +113,29 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                         }
                         // fix bug: soTimeout parameter's unit from connector is
                         // millseconds.
-                        IdleStateHandler idleStateHandler = new IdleStateHandler(NettyUtils.hashedWheelTimer,
-                            readTimeout,
+                        IdleStateHandler idleStateHandler = new IdleStateHandler(readTimeout,
                             writeTimeout,
                             0,
                             TimeUnit.MILLISECONDS);
-                        ctx.getPipeline().addBefore(SessionHandler.class.getName(),
+                        ctx.pipeline().addBefore(SessionHandler.class.getName(),
                             IdleStateHandler.class.getName(),
                             idleStateHandler);
 
-                        IdleStateAwareChannelHandler idleStateAwareChannelHandler = new IdleStateAwareChannelHandler() {
+                        ChannelInboundHandlerAdapter idleStateAwareChannelHandler = new ChannelInboundHandlerAdapter() {
 
-                            public void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e) throws Exception {
-                                logger.warn("channel:{} idle timeout exceeds, close channel to save server resources...",
-                                    ctx.getChannel());
-                                ctx.getChannel().close();
+                            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                                if (evt instanceof IdleStateEvent) {
+                                    logger.warn("channel:{} idle timeout exceeds, close channel to save server resources...",
+                                        ctx.channel());
+                                    ctx.channel().close();
+                                } else {
+                                    super.userEventTriggered(ctx, evt);
+                                }
                             }
 
                         };
-                        ctx.getPipeline().addBefore(SessionHandler.class.getName(),
-                            IdleStateAwareChannelHandler.class.getName(),
+                        ctx.pipeline().addBefore(SessionHandler.class.getName(),
+                            IDLE_STATE_AWARE_HANDLER,
                             idleStateAwareChannelHandler);
                     }
 
@@ -1,10 +1,10 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.replay.ReplayingDecoder;
-import org.jboss.netty.handler.codec.replay.VoidEnum;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ReplayingDecoder;
+
+import java.util.List;
 
 /**
  * 解析对应的header信息
@@ -13,10 +13,10 @@ import org.jboss.netty.handler.codec.replay.VoidEnum;
  * @version 1.0.0
  */
 //
-public class FixedHeaderFrameDecoder extends ReplayingDecoder<VoidEnum> {
+public class FixedHeaderFrameDecoder extends ReplayingDecoder<Void> {
 
-    protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer, VoidEnum state)
-                                                                                                             throws Exception {
-        return buffer.readBytes(buffer.readInt());
+    protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
+        // 数据包由后续的handler负责release
+        out.add(buffer.readBytes(buffer.readInt()));
     }
 }
@@ -1,15 +1,15 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.ChannelStateEvent;
-import org.jboss.netty.channel.SimpleChannelHandler;
-import org.jboss.netty.channel.group.ChannelGroup;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.group.ChannelGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.Handshake;
 import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.compress.CompressionCodecs;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 
 /**
@@ -19,7 +19,7 @@ import com.alibaba.otter.canal.server.netty.NettyUtils;
  * @version 1.0.0
  */
 //
-public class HandshakeInitializationHandler extends SimpleChannelHandler {
+public class HandshakeInitializationHandler extends ChannelInboundHandlerAdapter {
 
     // support to maintain socket channel.
     private ChannelGroup childGroups;
@@ -30,18 +30,23 @@ public class HandshakeInitializationHandler extends SimpleChannelHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(HandshakeInitializationHandler.class);
 
-    public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
         // add new socket channel in channel container, used to manage sockets.
         if (childGroups != null) {
-            childGroups.add(ctx.getChannel());
+            childGroups.add(ctx.channel());
         }
 
+        // 告知客户端服务端支持的压缩方式，由客户端在ClientAuth中选择
+        Handshake handshake = Handshake.newBuilder()
+            .addAllSupportedCodecs(CompressionCodecs.supportedCodecs())
+            .build();
         byte[] body = Packet.newBuilder()
             .setType(CanalPacket.PacketType.HANDSHAKE)
-            .setBody(Handshake.newBuilder().build().toByteString())
+            .setBody(handshake.toByteString())
             .build()
             .toByteArray();
-        NettyUtils.write(ctx.getChannel(), body, null);
-        logger.info("send handshake initialization packet to : {}", ctx.getChannel());
+        NettyUtils.write(ctx.channel(), body, null);
+        logger.info("send handshake initialization packet to : {}", ctx.channel());
+        ctx.fireChannelActive();
     }
 }
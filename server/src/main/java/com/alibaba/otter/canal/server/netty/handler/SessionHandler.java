@@ -7,30 +7,50 @@ import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.*;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.compress.CompressionCodecs;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 import com.alibaba.otter.canal.server.netty.listener.ChannelFutureAggregator;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
 import com.google.protobuf.WireFormat;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
-import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.slf4j.helpers.MessageFormatter;
 import org.springframework.util.CollectionUtils;
 
+import java.io.IOException;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 //
-public class SessionHandler extends SimpleChannelHandler {
+public class SessionHandler extends ChannelInboundHandlerAdapter {
 
-    private static final Logger     logger = LoggerFactory.getLogger(SessionHandler.class);
+    private static final Logger     logger                 = LoggerFactory.getLogger(SessionHandler.class);
+    private static final int        WRAP_THRESHOLD         = 1024;                                      // 超过该大小的entry直接作为CompositeByteBuf的一段，不做拷贝
+    private static final int        COMPRESS_THRESHOLD     = 1024;                                      // 超过该大小的MESSAGES才进行压缩
+    private static final long       STREAM_TIMEOUT         = 1000L;                                     // STREAM模式下单次getWithoutAck的默认等待时间(ms)
     private CanalServerWithEmbedded embeddedServer;
+    private ExecutorService         streamExecutor;                                                     // STREAM推送线程池，由CanalServerWithNetty统一管理
+    private volatile Compression    compression;                                                        // 和客户端协商的MESSAGES压缩方式
+    private volatile StreamTask     streamTask;                                                         // 当前channel上的STREAM推送任务
+    private final Object            creditLock             = new Object();
 
     public SessionHandler(){
     }
@@ -39,12 +59,22 @@ public class SessionHandler extends SimpleChannelHandler {
         this.embeddedServer = embeddedServer;
     }
 
+    public SessionHandler(CanalServerWithEmbedded embeddedServer, ExecutorService streamExecutor){
+        this.embeddedServer = embeddedServer;
+        this.streamExecutor = streamExecutor;
+    }
+
     @SuppressWarnings({ "deprecation" })
-    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         logger.info("message receives in session handler...");
         long start = System.nanoTime();
-        ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
-        Packet packet = Packet.parseFrom(buffer.readBytes(buffer.readableBytes()).array());
+        ByteBuf buffer = (ByteBuf) msg;
+        Packet packet;
+        try {
+            packet = Packet.parseFrom(buffer.nioBuffer());
+        } finally {
+            buffer.release();
+        }
         ClientIdentity clientIdentity = null;
         try {
             switch (packet.getType()) {
@@ -67,11 +97,11 @@ public class SessionHandler extends SimpleChannelHandler {
                         embeddedServer.subscribe(clientIdentity);
                         // ctx.setAttachment(clientIdentity);// 设置状态数据
                         byte[] ackBytes = NettyUtils.ackPacket();
-                        NettyUtils.write(ctx.getChannel(), ackBytes, new ChannelFutureAggregator(sub.getDestination(),
+                        NettyUtils.write(ctx.channel(), ackBytes, new ChannelFutureAggregator(sub.getDestination(),
                                 sub, packet.getType(), ackBytes.length, System.nanoTime() - start));
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401, MessageFormatter.format("destination or clientId is null", sub.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(), errorBytes ,new ChannelFutureAggregator(sub.getDestination(),
+                        NettyUtils.write(ctx.channel(), errorBytes ,new ChannelFutureAggregator(sub.getDestination(),
                                 sub, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 401));
                     }
                     break;
@@ -82,14 +112,15 @@ public class SessionHandler extends SimpleChannelHandler {
                             Short.valueOf(unsub.getClientId()),
                             unsub.getFilter());
                         MDC.put("destination", clientIdentity.getDestination());
+                        stopStream(false);
                         embeddedServer.unsubscribe(clientIdentity);
                         stopCanalInstanceIfNecessary(clientIdentity);// 尝试关闭
                         byte[] ackBytes = NettyUtils.ackPacket();
-                        NettyUtils.write(ctx.getChannel(), ackBytes, new ChannelFutureAggregator(unsub.getDestination(),
+                        NettyUtils.write(ctx.channel(), ackBytes, new ChannelFutureAggregator(unsub.getDestination(),
                                 unsub, packet.getType(), ackBytes.length, System.nanoTime() - start));
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401, MessageFormatter.format("destination or clientId is null", unsub.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(unsub.getDestination(),
+                        NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(unsub.getDestination(),
                                 unsub, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 401));
                     }
                     break;
@@ -121,80 +152,49 @@ public class SessionHandler extends SimpleChannelHandler {
                         }
                         // }
 
-                        if (message.getId() != -1 && message.isRaw()) {
-                            List<ByteString> rowEntries = message.getRawEntries();
-                            // message size
-                            int messageSize = 0;
-                            messageSize += com.google.protobuf.CodedOutputStream.computeInt64Size(1, message.getId());
-
-                            int dataSize = 0;
-                            for (int i = 0; i < rowEntries.size(); i++) {
-                                dataSize += com.google.protobuf.CodedOutputStream.computeBytesSizeNoTag(rowEntries.get(i));
-                            }
-                            messageSize += dataSize;
-                            messageSize += 1 * rowEntries.size();
-                            // packet size
-                            int size = 0;
-                            size += com.google.protobuf.CodedOutputStream.computeEnumSize(3,
-                                PacketType.MESSAGES.getNumber());
-                            size += com.google.protobuf.CodedOutputStream.computeTagSize(5)
-                                    + com.google.protobuf.CodedOutputStream.computeRawVarint32Size(messageSize)
-                                    + messageSize;
-                            // recyle bytes
-                            // ByteBuffer byteBuffer = (ByteBuffer)
-                            // ctx.getAttachment();
-                            // if (byteBuffer != null && size <=
-                            // byteBuffer.capacity()) {
-                            // byteBuffer.clear();
-                            // } else {
-                            // byteBuffer =
-                            // ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
-                            // ctx.setAttachment(byteBuffer);
-                            // }
-                            // CodedOutputStream output =
-                            // CodedOutputStream.newInstance(byteBuffer);
-                            byte[] body = new byte[size];
-                            CodedOutputStream output = CodedOutputStream.newInstance(body);
-                            output.writeEnum(3, PacketType.MESSAGES.getNumber());
-
-                            output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
-                            output.writeRawVarint32(messageSize);
-                            // message
-                            output.writeInt64(1, message.getId());
-                            for (int i = 0; i < rowEntries.size(); i++) {
-                                output.writeBytes(2, rowEntries.get(i));
+                        writeMessage(ctx.channel(), message, get, packet.getType(), start);
+                    } else {
+                        byte[] errorBytes = NettyUtils.errorPacket(401, MessageFormatter.format("destination or clientId is null", get.toString()).getMessage());
+                        NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(get.getDestination(),
+                                get, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 401));
+                    }
+                    break;
+                case STREAM:
+                    Get stream = CanalPacket.Get.parseFrom(packet.getBody());
+                    if (StringUtils.isNotEmpty(stream.getDestination()) && StringUtils.isNotEmpty(stream.getClientId())) {
+                        clientIdentity = new ClientIdentity(stream.getDestination(), Short.valueOf(stream.getClientId()));
+                        MDC.put("destination", clientIdentity.getDestination());
+                        if (stream.getWindow() <= 0) {
+                            // window<=0代表停止推送，由推送线程在最后一个MESSAGES之后回复ack，保证客户端读取的顺序
+                            if (!stopStream(true)) {
+                                byte[] ackBytes = NettyUtils.ackPacket();
+                                NettyUtils.write(ctx.channel(), ackBytes, new ChannelFutureAggregator(stream.getDestination(),
+                                        stream, packet.getType(), ackBytes.length, System.nanoTime() - start));
                             }
-                            output.checkNoSpaceLeft();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                    get, packet.getType(), body.length, System.nanoTime() - start, message.getId() == -1));
-                            
-                            // output.flush();
-                            // byteBuffer.flip();
-                            // NettyUtils.write(ctx.getChannel(), byteBuffer,
-                            // null);
+                        } else if (streamExecutor == null) {
+                            byte[] errorBytes = NettyUtils.errorPacket(400, MessageFormatter.format("stream is NOT supported", stream.toString()).getMessage());
+                            NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(stream.getDestination(),
+                                    stream, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 400));
                         } else {
-                            Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
-                            packetBuilder.setType(PacketType.MESSAGES);
-
-                            Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
-                            messageBuilder.setBatchId(message.getId());
-                            if (message.getId() != -1) {
-                                if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
-                                    messageBuilder.addAllMessages(message.getRawEntries());
-                                } else if (!CollectionUtils.isEmpty(message.getEntries())) {
-                                    for (Entry entry : message.getEntries()) {
-                                        messageBuilder.addMessages(entry.toByteString());
-                                    }
-                                }
+                            // 新的推送任务等待旧任务退出之后再回复ack，保证ack之后的数据包都是新任务推送的MESSAGES
+                            StreamTask previous = streamTask;
+                            stopStream(false);
+                            StreamTask task = new StreamTask(ctx.channel(), clientIdentity, stream, previous);
+                            streamTask = task;
+                            try {
+                                streamExecutor.execute(task);
+                            } catch (RejectedExecutionException e) {
+                                // 推送线程已满，客户端可以退回GET模式
+                                streamTask = null;
+                                byte[] errorBytes = NettyUtils.errorPacket(400, MessageFormatter.format("too many streams, stream is rejected", stream.toString()).getMessage());
+                                NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(stream.getDestination(),
+                                        stream, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 400));
                             }
-                            byte[] body = packetBuilder.setBody(messageBuilder.build().toByteString()).build().toByteArray();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                    get, packet.getType(), body.length, System.nanoTime() - start, message.getId() == -1));// 输出数据
                         }
                     } else {
-                        byte[] errorBytes = NettyUtils.errorPacket(401, MessageFormatter.format("destination or clientId is null", get.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(get.getDestination(),
-                                get, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 401));
+                        byte[] errorBytes = NettyUtils.errorPacket(401, MessageFormatter.format("destination or clientId is null", stream.toString()).getMessage());
+                        NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(stream.getDestination(),
+                                stream, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 401));
                     }
                     break;
                 case CLIENTACK:
@@ -203,18 +203,23 @@ public class SessionHandler extends SimpleChannelHandler {
                     if (StringUtils.isNotEmpty(ack.getDestination()) && StringUtils.isNotEmpty(ack.getClientId())) {
                         if (ack.getBatchId() == 0L) {
                             byte[] errorBytes = NettyUtils.errorPacket(402, MessageFormatter.format("batchId should assign value", ack.toString()).getMessage());
-                            NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(ack.getDestination(),
+                            NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(ack.getDestination(),
                                     ack, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 402));
                         } else if (ack.getBatchId() == -1L) { // -1代表上一次get没有数据，直接忽略之
                             // donothing
                         } else {
                             clientIdentity = new ClientIdentity(ack.getDestination(), Short.valueOf(ack.getClientId()));
-                            embeddedServer.ack(clientIdentity, ack.getBatchId());
+                            if (ack.getCumulative()) {
+                                embeddedServer.ackUpTo(clientIdentity, ack.getBatchId()); // 累计ack
+                            } else {
+                                embeddedServer.ack(clientIdentity, ack.getBatchId());
+                            }
+                            releaseCredit(ack.getBatchId(), ack.getCumulative());
                             new ChannelFutureAggregator(ack.getDestination(), ack, packet.getType(), 0, System.nanoTime() - start).operationComplete(null);
                         }
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401, MessageFormatter.format("destination or clientId is null", ack.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(ack.getDestination(),
+                        NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(ack.getDestination(),
                                 ack, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 401));
                     }
                     break;
@@ -230,47 +235,87 @@ public class SessionHandler extends SimpleChannelHandler {
                         } else {
                             embeddedServer.rollback(clientIdentity, rollback.getBatchId()); // 只回滚单个批次
                         }
+                        releaseCredit(rollback.getBatchId(), false);
                         new ChannelFutureAggregator(rollback.getDestination(), rollback, packet.getType(), 0, System.nanoTime() - start).operationComplete(null);
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401, MessageFormatter.format("destination or clientId is null", rollback.toString()).getMessage());
-                        NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(rollback.getDestination(),
+                        NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(rollback.getDestination(),
                                 rollback, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 401));
                     }
                     break;
                 default:
                     byte[] errorBytes = NettyUtils.errorPacket(400, MessageFormatter.format("packet type={} is NOT supported!", packet.getType()).getMessage());
-                    NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(ctx.getChannel().getRemoteAddress().toString(),
+                    NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(ctx.channel().remoteAddress().toString(),
                             null, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 400));
                     break;
             }
         } catch (Throwable exception) {
             byte[] errorBytes = NettyUtils.errorPacket(400, MessageFormatter.format("something goes wrong with channel:{}, exception={}",
-                    ctx.getChannel(),
+                    ctx.channel(),
                     ExceptionUtils.getStackTrace(exception)).getMessage());
-            NettyUtils.write(ctx.getChannel(), errorBytes, new ChannelFutureAggregator(ctx.getChannel().getRemoteAddress().toString(),
+            NettyUtils.write(ctx.channel(), errorBytes, new ChannelFutureAggregator(ctx.channel().remoteAddress().toString(),
                     null, packet.getType(), errorBytes.length, System.nanoTime() - start, (short) 400));
         } finally {
             MDC.remove("destination");
         }
     }
 
-    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         logger.error("something goes wrong with channel:{}, exception={}",
-            ctx.getChannel(),
-            ExceptionUtils.getStackTrace(e.getCause()));
+            ctx.channel(),
+            ExceptionUtils.getStackTrace(cause));
+
+        ctx.channel().close();
+    }
 
-        ctx.getChannel().close();
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // 唤醒因channel不可写而暂停的推送任务
+        signalCredit();
+        ctx.fireChannelWritabilityChanged();
     }
 
-    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        stopStream(false);
         // logger.info("remove binding subscription value object if any...");
-        // ClientIdentity clientIdentity = (ClientIdentity) ctx.getAttachment();
+        // ClientIdentity clientIdentity =
+        // ctx.channel().attr(ClientAuthenticationHandler.CLIENT_IDENTITY).get();
         // // 如果唯一的订阅者都取消了订阅，直接关闭服务，针对内部版本模式下可以减少资源浪费
         // if (clientIdentity != null) {
         // stopCanalInstanceIfNecessary(clientIdentity);
         // }
     }
 
+    /**
+     * 停止当前的推送任务，返回是否存在运行中的任务，运行中的任务会在退出时按需回复ack
+     */
+    private boolean stopStream(boolean ackOnExit) {
+        StreamTask task = streamTask;
+        streamTask = null;
+        if (task == null) {
+            return false;
+        }
+
+        boolean stopped = task.stop(ackOnExit);
+        signalCredit();
+        return stopped;
+    }
+
+    private void signalCredit() {
+        synchronized (creditLock) {
+            creditLock.notifyAll();
+        }
+    }
+
+    /**
+     * 客户端ack/rollback之后释放推送任务的credit，batchId为0代表rollback所有批次
+     */
+    private void releaseCredit(long batchId, boolean cumulative) {
+        StreamTask task = streamTask;
+        if (task != null) {
+            task.release(batchId, cumulative);
+        }
+    }
+
     private void stopCanalInstanceIfNecessary(ClientIdentity clientIdentity) {
         List<ClientIdentity> clientIdentitys = embeddedServer.listAllSubscribe(clientIdentity.getDestination());
         if (clientIdentitys != null && clientIdentitys.size() == 1 && clientIdentitys.contains(clientIdentity)) {
@@ -281,6 +326,135 @@ public class SessionHandler extends SimpleChannelHandler {
         }
     }
 
+    /**
+     * 输出MESSAGES数据包，GET请求和STREAM推送共用
+     */
+    private void writeMessage(Channel channel, Message message, Get get, PacketType type, long start)
+                                                                                                   throws IOException {
+        if (message.getId() != -1 && message.isRaw()) {
+            List<ByteString> rowEntries = message.getRawEntries();
+            // message size
+            int messageSize = 0;
+            messageSize += com.google.protobuf.CodedOutputStream.computeInt64Size(1, message.getId());
+
+            int dataSize = 0;
+            for (int i = 0; i < rowEntries.size(); i++) {
+                dataSize += com.google.protobuf.CodedOutputStream.computeBytesSizeNoTag(rowEntries.get(i));
+            }
+            messageSize += dataSize;
+            messageSize += 1 * rowEntries.size();
+            if (compression != null && messageSize >= COMPRESS_THRESHOLD) {
+                byte[] messages = new byte[messageSize];
+                CodedOutputStream output = CodedOutputStream.newInstance(messages);
+                output.writeInt64(1, message.getId());
+                for (int i = 0; i < rowEntries.size(); i++) {
+                    output.writeBytes(2, rowEntries.get(i));
+                }
+                output.checkNoSpaceLeft();
+                byte[] body = compressPacket(messages);
+                if (body != null) {
+                    NettyUtils.write(channel, body, new ChannelFutureAggregator(get.getDestination(),
+                            get, type, body.length, System.nanoTime() - start, message.getId() == -1));
+                    return;
+                }
+            }
+
+            ByteBuf body = buildMessagesBody(channel.alloc(), message.getId(), rowEntries, messageSize);
+            int size = body.readableBytes();
+            NettyUtils.write(channel, body, new ChannelFutureAggregator(get.getDestination(),
+                    get, type, size, System.nanoTime() - start, message.getId() == -1));
+        } else {
+            Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
+            packetBuilder.setType(PacketType.MESSAGES);
+
+            Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
+            messageBuilder.setBatchId(message.getId());
+            if (message.getId() != -1) {
+                if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
+                    messageBuilder.addAllMessages(message.getRawEntries());
+                } else if (!CollectionUtils.isEmpty(message.getEntries())) {
+                    for (Entry entry : message.getEntries()) {
+                        messageBuilder.addMessages(entry.toByteString());
+                    }
+                }
+            }
+            byte[] body = null;
+            ByteString messages = messageBuilder.build().toByteString();
+            if (compression != null && messages.size() >= COMPRESS_THRESHOLD) {
+                body = compressPacket(messages.toByteArray());
+            }
+            if (body == null) {
+                body = packetBuilder.setBody(messages).build().toByteArray();
+            }
+            NettyUtils.write(channel, body, new ChannelFutureAggregator(get.getDestination(),
+                    get, type, body.length, System.nanoTime() - start, message.getId() == -1));// 输出数据
+        }
+
+    }
+
+    /**
+     * 压缩MESSAGES的body，压缩之后没有收益时返回null，按照未压缩的方式输出
+     */
+    private byte[] compressPacket(byte[] messages) throws IOException {
+        byte[] compressed = CompressionCodecs.compress(compression, messages, 0, messages.length);
+        if (compressed.length >= messages.length) {
+            return null;
+        }
+
+        return Packet.newBuilder()
+            .setType(PacketType.MESSAGES)
+            .setCompression(compression)
+            .setBody(UnsafeByteOperations.unsafeWrap(compressed))
+            .build()
+            .toByteArray();
+    }
+
+    /**
+     * 基于CompositeByteBuf组装MESSAGES数据包，和heap模式输出相同的protobuf格式
+     * <p>
+     * 较大的entry直接包装为其中一段(heap/direct均不拷贝)，较小的entry和protobuf的tag/length合并写入pooled buffer
+     * </p>
+     */
+    private ByteBuf buildMessagesBody(ByteBufAllocator allocator, long batchId, List<ByteString> rowEntries,
+                                      int messageSize) throws IOException {
+        CompositeByteBuf body = allocator.compositeBuffer(Integer.MAX_VALUE);
+        try {
+            ByteBuf pending = allocator.ioBuffer();
+            CodedOutputStream output = CodedOutputStream.newInstance(new ByteBufOutputStream(pending), 64);
+            output.writeEnum(3, PacketType.MESSAGES.getNumber());
+            output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeRawVarint32(messageSize);
+            output.writeInt64(1, batchId);
+            for (ByteString rowEntry : rowEntries) {
+                if (rowEntry.size() >= WRAP_THRESHOLD) {
+                    output.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                    output.writeRawVarint32(rowEntry.size());
+                    output.flush();
+                    body.addComponent(true, pending);
+                    body.addComponent(true, Unpooled.wrappedBuffer(rowEntry.asReadOnlyByteBuffer()));
+
+                    pending = allocator.ioBuffer();
+                    output = CodedOutputStream.newInstance(new ByteBufOutputStream(pending), 64);
+                } else {
+                    output.writeBytes(2, rowEntry);
+                }
+            }
+            output.flush();
+            if (pending.isReadable()) {
+                body.addComponent(true, pending);
+            } else {
+                pending.release();
+            }
+            return body;
+        } catch (IOException e) {
+            body.release();
+            throw e;
+        } catch (RuntimeException e) {
+            body.release();
+            throw e;
+        }
+    }
+
     private TimeUnit convertTimeUnit(int unit) {
         switch (unit) {
             case 0:
@@ -306,4 +480,145 @@ public class SessionHandler extends SimpleChannelHandler {
         this.embeddedServer = embeddedServer;
     }
 
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public void setStreamExecutor(ExecutorService streamExecutor) {
+        this.streamExecutor = streamExecutor;
+    }
+
+    /**
+     * STREAM模式的推送任务，基于credit的流控
+     *
+     * <pre>
+     * 1. credit = window - 已推送未ack的批次数，没有credit时等待客户端的ack/rollback，
+ *    在途的批次在推送任务内计数，不需要每次都从meta中查询
+     * 2. channel不可写(发送缓冲区积压)时暂停推送，避免数据堆积在server内存中，由channelWritabilityChanged唤醒
+     * 3. 客户端rollback之后会从上一次ack的位置重新推送
+     * 4. 重新发起STREAM时，新任务等待旧任务退出之后才回复ack并开始推送
+     * </pre>
+     */
+    private class StreamTask implements Runnable {
+
+        private final Channel          channel;
+        private final ClientIdentity   clientIdentity;
+        private final Get              stream;
+        private final long             timeout;
+        private final TimeUnit         unit;
+        private final LinkedList<Long> inflight  = new LinkedList<Long>(); // 已推送未ack的batchId，递增排列，由creditLock保护
+        private final CountDownLatch   exited    = new CountDownLatch(1);  // 推送任务退出
+        private StreamTask             previous;                           // 同一channel上被替换的推送任务
+        private volatile boolean       running   = true;
+        private boolean                ackOnExit = false;
+        private boolean                finished  = false;
+
+        StreamTask(Channel channel, ClientIdentity clientIdentity, Get stream, StreamTask previous){
+            this.channel = channel;
+            this.clientIdentity = clientIdentity;
+            this.stream = stream;
+            this.previous = previous;
+            if (stream.getTimeout() <= 0) {
+                this.timeout = STREAM_TIMEOUT;
+                this.unit = TimeUnit.MILLISECONDS;
+            } else {
+                this.timeout = stream.getTimeout();
+                this.unit = convertTimeUnit(stream.getUnit());
+            }
+        }
+
+        public void run() {
+            MDC.put("destination", clientIdentity.getDestination());
+            try {
+                if (previous != null) {
+                    previous.exited.await();
+                    previous = null;
+                }
+                if (channel.isActive()) {
+                    // 回复STREAM请求的ack，之后的数据包都是推送的MESSAGES
+                    byte[] ackBytes = NettyUtils.ackPacket();
+                    NettyUtils.write(channel, ackBytes, new ChannelFutureAggregator(clientIdentity.getDestination(),
+                        stream, PacketType.STREAM, ackBytes.length, 0));
+                }
+
+                while (running && channel.isActive()) {
+                    synchronized (creditLock) {
+                        // stop/ack/rollback/可写状态变化都会在creditLock上通知
+                        if (!running) {
+                            break;
+                        }
+                        if (!channel.isWritable() || inflight.size() >= stream.getWindow()) {
+                            creditLock.wait();
+                            continue;
+                        }
+                    }
+
+                    long start = System.nanoTime();
+                    Message message = embeddedServer.getWithoutAck(clientIdentity,
+                        stream.getFetchSize(),
+                        timeout,
+                        unit);
+                    if (message.getId() == -1) {
+                        continue; // 没有数据时不推送空包
+                    }
+
+                    synchronized (creditLock) {
+                        inflight.addLast(message.getId());
+                    }
+                    writeMessage(channel, message, stream, PacketType.STREAM, start);
+                }
+            } catch (InterruptedException e) {
+                // 线程池关闭
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                if (running && channel.isActive()) {
+                    logger.error("stream messages failed with channel:{}, exception={}",
+                        channel,
+                        ExceptionUtils.getStackTrace(e));
+                    byte[] errorBytes = NettyUtils.errorPacket(400,
+                        MessageFormatter.format("stream messages failed, exception={}", ExceptionUtils.getStackTrace(e))
+                            .getMessage());
+                    NettyUtils.write(channel, errorBytes, new ChannelFutureAggregator(clientIdentity.getDestination(),
+                        stream, PacketType.STREAM, errorBytes.length, 0, (short) 400));
+                }
+            } finally {
+                synchronized (this) {
+                    finished = true;
+                    if (ackOnExit && channel.isActive()) {
+                        byte[] ackBytes = NettyUtils.ackPacket();
+                        NettyUtils.write(channel, ackBytes, new ChannelFutureAggregator(clientIdentity.getDestination(),
+                            stream, PacketType.STREAM, ackBytes.length, 0));
+                    }
+                }
+                exited.countDown();
+                MDC.remove("destination");
+            }
+        }
+
+        void release(long batchId, boolean cumulative) {
+            synchronized (creditLock) {
+                if (batchId == 0L) {
+                    inflight.clear();
+                } else if (cumulative) {
+                    while (!inflight.isEmpty() && inflight.peekFirst() <= batchId) {
+                        inflight.pollFirst();
+                    }
+                } else {
+                    inflight.remove(batchId);
+                }
+                creditLock.notifyAll();
+            }
+        }
+
+        synchronized boolean stop(boolean ackOnExit) {
+            this.running = false;
+            if (finished) {
+                return false;
+            }
+
+            this.ackOnExit = ackOnExit;
+            return true;
+        }
+    }
+
 }
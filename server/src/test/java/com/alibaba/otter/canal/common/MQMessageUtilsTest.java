@@ -0,0 +1,97 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.Pair;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.Message;
+
+/**
+ * 验证header中带有pkHash时的分区结果和解析RowChange计算的结果一致
+ *
+ * @since 1.1.3
+ */
+public class MQMessageUtilsTest {
+
+    private static final int PARTITIONS = 3;
+
+    @Test
+    public void testPkHash() throws Exception {
+        for (String config : new String[] { "test\\..*:$pk$", "test\\..*", "test.test_table:id", "other\\..*" }) {
+            Message withHash = new Message(1L, Arrays.asList(buildEntry(10, true), buildEntry(1, true)));
+            Message withoutHash = new Message(1L, Arrays.asList(buildEntry(10, false), buildEntry(1, false)));
+            Message[] fast = MQMessageUtils.messagePartition(withHash, PARTITIONS, config);
+            Message[] slow = MQMessageUtils.messagePartition(withoutHash, PARTITIONS, config);
+            for (int i = 0; i < PARTITIONS; i++) {
+                Assert.assertEquals(config, rows(slow[i]), rows(fast[i]));
+            }
+        }
+
+        // 单行的entry直接使用原对象，不需要重新构造
+        Entry single = buildEntry(1, true);
+        Message[] result = MQMessageUtils.messagePartition(new Message(1L, Arrays.asList(single)),
+            PARTITIONS,
+            "test\\..*:$pk$");
+        int count = 0;
+        for (Message message : result) {
+            if (message != null) {
+                Assert.assertSame(single, message.getEntries().get(0));
+                count++;
+            }
+        }
+        Assert.assertEquals(1, count);
+    }
+
+    private List<String> rows(Message message) throws Exception {
+        List<String> rows = new ArrayList<String>();
+        if (message == null) {
+            return rows;
+        }
+
+        for (Entry entry : message.getEntries()) {
+            for (RowData rowData : RowChange.parseFrom(entry.getStoreValue()).getRowDatasList()) {
+                rows.add(entry.getHeader().getTableName() + ":" + rowData.getAfterColumns(0).getValue());
+            }
+        }
+        return rows;
+    }
+
+    private Entry buildEntry(int rowsCount, boolean withHash) {
+        RowChange.Builder rowChange = RowChange.newBuilder().setEventType(EventType.INSERT).setIsDdl(false);
+        StringBuilder pkHashes = new StringBuilder();
+        for (int i = 0; i < rowsCount; i++) {
+            String id = String.valueOf(i * 7 + rowsCount);
+            rowChange.addRowDatas(RowData.newBuilder()
+                .addAfterColumns(Column.newBuilder().setName("id").setIsKey(true).setValue(id))
+                .addAfterColumns(Column.newBuilder().setName("name").setValue("name" + i)));
+            if (pkHashes.length() > 0) {
+                pkHashes.append(',');
+            }
+            pkHashes.append(id.hashCode());
+        }
+
+        Header.Builder header = Header.newBuilder()
+            .setSchemaName("test")
+            .setTableName("test_table")
+            .setEventType(EventType.INSERT);
+        if (withHash) {
+            header.addProps(Pair.newBuilder().setKey("pkHash").setValue(pkHashes.toString()));
+        }
+        return Entry.newBuilder()
+            .setHeader(header)
+            .setEntryType(EntryType.ROWDATA)
+            .setStoreValue(rowChange.build().toByteString())
+            .build();
+    }
+}
@@ -0,0 +1,173 @@
+package com.alibaba.otter.canal.kafka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.common.MQProperties;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.spi.CanalMQProducer;
+
+/**
+ * 异步发送时按顺序commit，失败之后回滚后续批次，以及在途批次数达到上限时阻塞
+ *
+ * @since 1.1.3
+ */
+public class CanalKafkaProducerTest {
+
+    private RecordingProducer               mockProducer = new RecordingProducer();
+    private List<String>                    acks         = Collections.synchronizedList(new ArrayList<String>());
+    private MQProperties.CanalDestination   destination  = new MQProperties.CanalDestination();
+    private CanalKafkaProducer              kafkaProducer;
+
+    @Before
+    public void setUp() {
+        MQProperties properties = new MQProperties();
+        properties.setFlatMessage(false);
+        properties.setAsync(true);
+        properties.setMaxInFlightBatches(2);
+
+        destination.setCanalDestination("example");
+        destination.setTopic("example");
+        destination.setPartition(0);
+
+        kafkaProducer = new CanalKafkaProducer() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            <V> Producer<String, V> createProducer(Properties properties) {
+                return (Producer<String, V>) mockProducer;
+            }
+        };
+        kafkaProducer.init(properties);
+    }
+
+    @After
+    public void tearDown() {
+        kafkaProducer.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void testCommitInOrder() throws Exception {
+        send(1);
+        send(2);
+        // 后发送的批次先完成，需要等待前面的批次
+        mockProducer.complete(1, null);
+        Thread.sleep(200L);
+        Assert.assertTrue(acks.isEmpty());
+
+        mockProducer.complete(0, null);
+        waitAcks(2);
+        Assert.assertEquals(Arrays.asList("commit-1", "commit-2"), acks);
+    }
+
+    @Test(timeout = 10000)
+    public void testRollbackAfterFailure() throws Exception {
+        send(1);
+        mockProducer.complete(0, null);
+        waitAcks(1);
+
+        send(2);
+        send(3);
+        mockProducer.complete(1, new RuntimeException("broker is down"));
+        mockProducer.complete(2, null);
+        waitAcks(3);
+        // 失败批次之后的批次即使发送成功也需要rollback
+        Assert.assertEquals(Arrays.asList("commit-1", "rollback-2", "rollback-3"), acks);
+
+        // 失败之后获取的第一个批次可能在rollback之前获取，直接回滚
+        send(4);
+        waitAcks(4);
+        Assert.assertEquals("rollback-4", acks.get(3));
+
+        send(5);
+        mockProducer.complete(3, null);
+        waitAcks(5);
+        Assert.assertEquals("commit-5", acks.get(4));
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockAtMaxInFlight() throws Exception {
+        send(1);
+        send(2);
+        Thread sender = new Thread(new Runnable() {
+
+            public void run() {
+                send(3);
+            }
+        });
+        sender.start();
+        sender.join(200L);
+        // 在途批次已满，第三个批次阻塞
+        Assert.assertTrue(sender.isAlive());
+        Assert.assertEquals(2, mockProducer.callbacks.size());
+
+        mockProducer.complete(0, null);
+        sender.join();
+        Assert.assertEquals(3, mockProducer.callbacks.size());
+
+        mockProducer.complete(1, null);
+        mockProducer.complete(2, null);
+        waitAcks(3);
+        Assert.assertEquals(Arrays.asList("commit-1", "commit-2", "commit-3"), acks);
+    }
+
+    private void send(final long batchId) {
+        kafkaProducer.send(destination, new Message(batchId, new ArrayList<Entry>()), new CanalMQProducer.Callback() {
+
+            public void commit() {
+                acks.add("commit-" + batchId);
+            }
+
+            public void rollback() {
+                acks.add("rollback-" + batchId);
+            }
+        });
+    }
+
+    private void waitAcks(int count) throws InterruptedException {
+        while (acks.size() < count) {
+            Thread.sleep(10L);
+        }
+    }
+
+    /**
+     * 记录每个record的callback，由测试按任意顺序完成
+     */
+    private static class RecordingProducer extends MockProducer<String, Message> {
+
+        private final List<Callback> callbacks = Collections.synchronizedList(new ArrayList<Callback>());
+
+        public RecordingProducer(){
+            super(true, new StringSerializer(), new MessageSerializer());
+        }
+
+        @Override
+        public synchronized Future<RecordMetadata> send(ProducerRecord<String, Message> record, Callback callback) {
+            // MockProducer.send(record)内部也会调用到这里
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            return super.send(record, null);
+        }
+
+        void complete(int index, Exception exception) {
+            callbacks.get(index).onCompletion(null, exception);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.alibaba.otter.canal.server;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
+import com.alibaba.otter.canal.meta.MemoryMetaManager;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.server.exception.CanalServerException;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+
+/**
+ * 累计ack一次确认多个批次，以及没有可确认的批次时报错
+ *
+ * @since 1.1.3
+ */
+public class CanalServerWithEmbedded_AckUpToTest {
+
+    private static final String         DESTINATION     = "example";
+    private static final ClientIdentity CLIENT_IDENTITY = new ClientIdentity(DESTINATION, (short) 1);
+
+    private CanalServerWithEmbedded     server;
+    private MemoryEventStoreWithBuffer  eventStore;
+    private MemoryMetaManager           metaManager;
+
+    @Before
+    public void setUp() {
+        eventStore = new MemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        metaManager = new MemoryMetaManager();
+        metaManager.start();
+        final CanalInstance instance = new StubCanalInstance(DESTINATION, eventStore, metaManager);
+
+        server = new CanalServerWithEmbedded();
+        server.setCanalInstanceGenerator(new CanalInstanceGenerator() {
+
+            public CanalInstance generate(String destination) {
+                return instance;
+            }
+        });
+        server.start();
+        server.start(DESTINATION);
+
+        for (int i = 1; i <= 5; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent(i)));
+        }
+        server.subscribe(CLIENT_IDENTITY);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testAckUpTo() throws Exception {
+        long first = server.getWithoutAck(CLIENT_IDENTITY, 1).getId();
+        long second = server.getWithoutAck(CLIENT_IDENTITY, 1).getId();
+        long third = server.getWithoutAck(CLIENT_IDENTITY, 1).getId();
+        Assert.assertEquals(Arrays.asList(first, second, third), server.listBatchIds(CLIENT_IDENTITY));
+
+        // 一次确认前两个批次，cursor更新到第二个批次的位置
+        server.ackUpTo(CLIENT_IDENTITY, second);
+        Assert.assertEquals(Arrays.asList(third), server.listBatchIds(CLIENT_IDENTITY));
+        LogPosition cursor = (LogPosition) metaManager.getCursor(CLIENT_IDENTITY);
+        Assert.assertEquals(2L, cursor.getPostion().getPosition().longValue());
+
+        // store也已确认，rollback之后从未确认的批次重新获取
+        server.rollback(CLIENT_IDENTITY);
+        Message message = server.getWithoutAck(CLIENT_IDENTITY, 1);
+        Assert.assertEquals(3L, Entry.parseFrom(message.getRawEntries().get(0)).getHeader().getLogfileOffset());
+
+        // batchId之后的批次不受影响
+        long fifth = server.getWithoutAck(CLIENT_IDENTITY, 2).getId();
+        server.ackUpTo(CLIENT_IDENTITY, message.getId());
+        Assert.assertEquals(Arrays.asList(fifth), server.listBatchIds(CLIENT_IDENTITY));
+    }
+
+    @Test
+    public void testAckUpToWithoutPending() throws Exception {
+        long first = server.getWithoutAck(CLIENT_IDENTITY, 1).getId();
+        server.ackUpTo(CLIENT_IDENTITY, first);
+
+        // 重复的累计ack
+        try {
+            server.ackUpTo(CLIENT_IDENTITY, first);
+            Assert.fail("expect ack error");
+        } catch (CanalServerException e) {
+            Assert.assertTrue(e.getMessage().contains("is not exist"));
+        }
+
+        // 只有更大的batchId在途
+        server.getWithoutAck(CLIENT_IDENTITY, 1);
+        try {
+            server.ackUpTo(CLIENT_IDENTITY, first);
+            Assert.fail("expect ack error");
+        } catch (CanalServerException e) {
+            Assert.assertTrue(e.getMessage().contains("is not exist"));
+        }
+        Assert.assertEquals(1, server.listBatchIds(CLIENT_IDENTITY).size());
+    }
+
+    private Event buildEvent(long offset) {
+        Header header = Header.newBuilder()
+            .setLogfileName("mysql-bin.000001")
+            .setLogfileOffset(offset)
+            .setExecuteTime(offset)
+            .setEventLength(1024)
+            .build();
+        // 事务结尾才是可以ack的位点
+        Entry entry = Entry.newBuilder().setHeader(header).setEntryType(EntryType.TRANSACTIONEND).build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry);
+    }
+}
@@ -0,0 +1,104 @@
+package com.alibaba.otter.canal.server;
+
+import java.net.InetSocketAddress;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
+import com.alibaba.otter.canal.meta.MemoryMetaManager;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+
+/**
+ * direct内存模式下get自动ack之后，返回的数据不能被后续写入覆盖
+ *
+ * @since 1.1.3
+ */
+public class CanalServerWithEmbedded_DirectMemoryTest {
+
+    private static final String        DESTINATION = "example";
+
+    private CanalServerWithEmbedded    server;
+    private MemoryEventStoreWithBuffer eventStore;
+    private int                        entrySize;
+
+    @Before
+    public void setUp() {
+        entrySize = buildEvent(1L).getRawEntry().size();
+        eventStore = new MemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(16);
+        eventStore.setDirectMemory(true);
+        // direct内存只能容纳两条数据，ack之后的写入会复用相同的位置
+        eventStore.setDirectMemorySize(entrySize * 2);
+        eventStore.setDirectChunkSize(entrySize * 2);
+        eventStore.start();
+
+        final MemoryMetaManager metaManager = new MemoryMetaManager();
+        metaManager.start();
+        final CanalInstance instance = new StubCanalInstance(DESTINATION, eventStore, metaManager);
+
+        server = new CanalServerWithEmbedded();
+        server.setCanalInstanceGenerator(new CanalInstanceGenerator() {
+
+            public CanalInstance generate(String destination) {
+                return instance;
+            }
+        });
+        server.start();
+        server.start(DESTINATION);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testGetAfterOverwrite() throws Exception {
+        ClientIdentity clientIdentity = new ClientIdentity(DESTINATION, (short) 1);
+        Assert.assertTrue(eventStore.tryPut(buildEvent(1L)));
+        Assert.assertTrue(eventStore.tryPut(buildEvent(2L)));
+        server.subscribe(clientIdentity);
+
+        Message message = server.get(clientIdentity, 2);
+        Assert.assertEquals(2, message.getRawEntries().size());
+        Assert.assertEquals(0, eventStore.getArena().getUsedSize());
+
+        // get已经ack释放了direct内存，新数据写入到相同的位置
+        Event third = buildEvent(3L);
+        Event fourth = buildEvent(4L);
+        Assert.assertTrue(eventStore.tryPut(third));
+        Assert.assertTrue(eventStore.tryPut(fourth));
+        Assert.assertTrue(third.isDirect());
+        Assert.assertEquals(0L, third.getDirectOffset() % (entrySize * 2));
+
+        Assert.assertEquals(1L, Entry.parseFrom(message.getRawEntries().get(0)).getHeader().getLogfileOffset());
+        Assert.assertEquals(2L, Entry.parseFrom(message.getRawEntries().get(1)).getHeader().getLogfileOffset());
+
+        message = server.get(clientIdentity, 2);
+        Assert.assertEquals(3L, Entry.parseFrom(message.getRawEntries().get(0)).getHeader().getLogfileOffset());
+        Assert.assertEquals(4L, Entry.parseFrom(message.getRawEntries().get(1)).getHeader().getLogfileOffset());
+    }
+
+    private Event buildEvent(long offset) {
+        Header header = Header.newBuilder()
+            .setLogfileName("mysql-bin.000001")
+            .setLogfileOffset(offset)
+            .setExecuteTime(offset)
+            .setEventLength(1024)
+            .build();
+        Entry entry = Entry.newBuilder().setHeader(header).build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry);
+    }
+}
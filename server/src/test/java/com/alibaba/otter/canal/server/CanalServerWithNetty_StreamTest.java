@@ -0,0 +1,268 @@
+package com.alibaba.otter.canal.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
+import com.alibaba.otter.canal.meta.MemoryMetaManager;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientAck;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientAuth;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientRollback;
+import com.alibaba.otter.canal.protocol.CanalPacket.Get;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.protocol.CanalPacket.Sub;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.server.netty.CanalServerWithNetty;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.google.protobuf.ByteString;
+
+/**
+ * STREAM模式下按window限制在途批次，重新发起STREAM时的顺序，以及推送线程满时拒绝新的STREAM请求
+ *
+ * @since 1.1.3
+ */
+public class CanalServerWithNetty_StreamTest {
+
+    private static final String        DESTINATION = "example";
+    private static final int           PORT        = 11189;
+
+    private CanalServerWithNetty       nettyServer;
+    private MemoryEventStoreWithBuffer eventStore;
+
+    @Before
+    public void setUp() {
+        eventStore = new MemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        MemoryMetaManager metaManager = new MemoryMetaManager();
+        metaManager.start();
+        final CanalInstance instance = new StubCanalInstance(DESTINATION, eventStore, metaManager);
+
+        CanalServerWithEmbedded embeddedServer = new CanalServerWithEmbedded();
+        embeddedServer.setCanalInstanceGenerator(new CanalInstanceGenerator() {
+
+            public CanalInstance generate(String destination) {
+                return instance;
+            }
+        });
+        embeddedServer.start();
+        // 提前启动destination，避免走ServerRunningMonitor
+        embeddedServer.start(DESTINATION);
+
+        nettyServer = CanalServerWithNetty.instance();
+        nettyServer.setEmbeddedServer(embeddedServer);
+        nettyServer.setPort(PORT);
+        nettyServer.setStreamThreads(2);
+        nettyServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        nettyServer.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void testWindow() throws Exception {
+        for (int i = 1; i <= 6; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent(i)));
+        }
+
+        Socket socket = connect("1");
+        try {
+            stream(socket, "1", 2);
+            Assert.assertEquals(0, readAck(socket).getErrorCode());
+            long first = readMessages(socket).getBatchId();
+            long second = readMessages(socket).getBatchId();
+            // 在途批次达到window，没有ack之前不再推送
+            assertNoPacket(socket);
+
+            write(socket, PacketType.CLIENTACK, ClientAck.newBuilder()
+                .setDestination(DESTINATION)
+                .setClientId("1")
+                .setBatchId(first)
+                .build()
+                .toByteString());
+            long third = readMessages(socket).getBatchId();
+            assertNoPacket(socket);
+
+            // 累计ack一次释放多个credit
+            write(socket, PacketType.CLIENTACK, ClientAck.newBuilder()
+                .setDestination(DESTINATION)
+                .setClientId("1")
+                .setBatchId(third)
+                .setCumulative(true)
+                .build()
+                .toByteString());
+            Assert.assertTrue(readMessages(socket).getBatchId() > third);
+            Assert.assertTrue(readMessages(socket).getBatchId() > third);
+            assertNoPacket(socket);
+            Assert.assertTrue(second < third);
+
+            // 回滚所有批次之后重新推送
+            write(socket, PacketType.CLIENTROLLBACK, ClientRollback.newBuilder()
+                .setDestination(DESTINATION)
+                .setClientId("1")
+                .build()
+                .toByteString());
+            readMessages(socket);
+            readMessages(socket);
+            assertNoPacket(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testRestartStream() throws Exception {
+        Socket socket = connect("1");
+        try {
+            stream(socket, "1", 1, 5000);
+            Assert.assertEquals(0, readAck(socket).getErrorCode());
+
+            // 旧任务阻塞在getWithoutAck中时重新发起STREAM，旧任务可能还会推送一个批次，但必须在ack之前
+            stream(socket, "1", 1);
+            // 等待服务端处理完重新发起的STREAM请求
+            Thread.sleep(500);
+            for (int i = 1; i <= 6; i++) {
+                Assert.assertTrue(eventStore.tryPut(buildEvent(i)));
+            }
+            Packet packet = readPacket(socket);
+            if (packet.getType() == PacketType.MESSAGES) {
+                packet = readPacket(socket);
+            }
+            Assert.assertEquals(PacketType.ACK, packet.getType());
+            Assert.assertEquals(0, Ack.parseFrom(packet.getBody()).getErrorCode());
+
+            // ack之后只有新任务按window推送的一个批次
+            readMessages(socket);
+            assertNoPacket(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testRejectStream() throws Exception {
+        Socket first = connect("1");
+        Socket second = connect("2");
+        Socket third = connect("3");
+        try {
+            stream(first, "1", 2);
+            Assert.assertEquals(0, readAck(first).getErrorCode());
+            stream(second, "2", 2);
+            Assert.assertEquals(0, readAck(second).getErrorCode());
+
+            // 推送线程都已被占用
+            stream(third, "3", 2);
+            Assert.assertEquals(400, readAck(third).getErrorCode());
+        } finally {
+            first.close();
+            second.close();
+            third.close();
+        }
+    }
+
+    private Socket connect(String clientId) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress("127.0.0.1", PORT));
+        Assert.assertEquals(PacketType.HANDSHAKE, readPacket(socket).getType());
+
+        write(socket, PacketType.CLIENTAUTHENTICATION, ClientAuth.newBuilder().setUsername("").build().toByteString());
+        Assert.assertEquals(0, readAck(socket).getErrorCode());
+
+        write(socket, PacketType.SUBSCRIPTION, Sub.newBuilder()
+            .setDestination(DESTINATION)
+            .setClientId(clientId)
+            .build()
+            .toByteString());
+        Assert.assertEquals(0, readAck(socket).getErrorCode());
+        return socket;
+    }
+
+    private void stream(Socket socket, String clientId, int window) throws IOException {
+        stream(socket, clientId, window, 100);
+    }
+
+    private void stream(Socket socket, String clientId, int window, long timeout) throws IOException {
+        write(socket, PacketType.STREAM, Get.newBuilder()
+            .setDestination(DESTINATION)
+            .setClientId(clientId)
+            .setFetchSize(1)
+            .setTimeout(timeout)
+            .setUnit(2)
+            .setWindow(window)
+            .build()
+            .toByteString());
+    }
+
+    private void write(Socket socket, PacketType type, ByteString body) throws IOException {
+        byte[] bytes = Packet.newBuilder().setType(type).setBody(body).build().toByteArray();
+        DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        output.flush();
+    }
+
+    private Packet readPacket(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(socket.getInputStream());
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return Packet.parseFrom(bytes);
+    }
+
+    private Ack readAck(Socket socket) throws IOException {
+        Packet packet = readPacket(socket);
+        Assert.assertEquals(PacketType.ACK, packet.getType());
+        return Ack.parseFrom(packet.getBody());
+    }
+
+    private Messages readMessages(Socket socket) throws IOException {
+        Packet packet = readPacket(socket);
+        Assert.assertEquals(PacketType.MESSAGES, packet.getType());
+        Messages messages = Messages.parseFrom(packet.getBody());
+        Assert.assertEquals(1, messages.getMessagesCount());
+        return messages;
+    }
+
+    private void assertNoPacket(Socket socket) throws IOException {
+        socket.setSoTimeout(500);
+        try {
+            socket.getInputStream().read();
+            Assert.fail("unexpected packet");
+        } catch (SocketTimeoutException e) {
+            // expected
+        } finally {
+            socket.setSoTimeout(0);
+        }
+    }
+
+    private Event buildEvent(long offset) {
+        Header header = Header.newBuilder()
+            .setLogfileName("mysql-bin.000001")
+            .setLogfileOffset(offset)
+            .setExecuteTime(offset)
+            .setEventLength(1024)
+            .build();
+        Entry entry = Entry.newBuilder().setHeader(header).build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry);
+    }
+}
@@ -0,0 +1,95 @@
+package com.alibaba.otter.canal.server;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientAuth;
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
+import com.alibaba.otter.canal.protocol.CanalPacket.Handshake;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.protocol.compress.CompressionCodecs;
+import com.google.protobuf.ByteString;
+
+/**
+ * 验证MESSAGES压缩之后的编解码，以及Handshake/ClientAuth中的压缩协商字段
+ *
+ * @since 1.1.3
+ */
+public class CompressionTest {
+
+    @Test
+    public void testCompress() throws IOException {
+        Messages.Builder builder = Messages.newBuilder().setBatchId(10L);
+        for (int i = 0; i < 100; i++) {
+            Header header = Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(1024 + i)
+                .setSchemaName("test")
+                .setTableName("test_table")
+                .build();
+            builder.addMessages(Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(EntryType.ROWDATA)
+                .build()
+                .toByteString());
+        }
+        Messages messages = builder.build();
+        byte[] data = messages.toByteArray();
+
+        for (Compression compression : new Compression[] { Compression.ZLIB, Compression.GZIP, Compression.LZ4,
+                Compression.ZSTD }) {
+            Assert.assertTrue(CompressionCodecs.isSupported(compression));
+            byte[] compressed = CompressionCodecs.compress(compression, data, 0, data.length);
+            Assert.assertTrue(compression + " not compressed", compressed.length < data.length);
+
+            byte[] body = Packet.newBuilder()
+                .setType(PacketType.MESSAGES)
+                .setCompression(compression)
+                .setBody(ByteString.copyFrom(compressed))
+                .build()
+                .toByteArray();
+            Packet packet = Packet.parseFrom(body);
+            Assert.assertEquals(compression, packet.getCompression());
+            Messages result = Messages.parseFrom(CompressionCodecs.decompress(packet.getCompression(),
+                packet.getBody()));
+            Assert.assertEquals(messages, result);
+        }
+    }
+
+    @Test
+    public void testNegotiation() throws IOException {
+        Assert.assertFalse(CompressionCodecs.isCompressed(Compression.NONE));
+        Assert.assertFalse(CompressionCodecs.isCompressed(Compression.COMPRESSIONCOMPATIBLEPROTO2));
+        Assert.assertFalse(CompressionCodecs.isSupported(Compression.LZF));
+        Assert.assertFalse(CompressionCodecs.isSupported(Compression.UNRECOGNIZED));
+
+        ClientAuth auth = ClientAuth.newBuilder().setUsername("canal").setCompression(Compression.LZ4).build();
+        Assert.assertEquals(Compression.LZ4, ClientAuth.parseFrom(auth.toByteArray()).getCompression());
+        // 老版本客户端不传递该字段
+        ClientAuth old = ClientAuth.newBuilder().setUsername("canal").build();
+        Assert.assertEquals(Compression.COMPRESSIONCOMPATIBLEPROTO2, ClientAuth.parseFrom(old.toByteArray())
+            .getCompression());
+        Assert.assertNotNull(ClientAuth.getDescriptor().findFieldByName("compression"));
+    }
+
+    @Test
+    public void testHandshakeCodecs() throws IOException {
+        Assert.assertEquals(Arrays.asList(Compression.LZ4, Compression.ZSTD, Compression.ZLIB, Compression.GZIP),
+            CompressionCodecs.supportedCodecs());
+
+        Handshake handshake = Handshake.newBuilder().addAllSupportedCodecs(CompressionCodecs.supportedCodecs()).build();
+        Assert.assertEquals(CompressionCodecs.supportedCodecs(), Handshake.parseFrom(handshake.toByteArray())
+            .getSupportedCodecsList());
+        // 老版本服务端不传递该字段
+        Assert.assertEquals(0, Handshake.parseFrom(Handshake.newBuilder().build().toByteArray())
+            .getSupportedCodecsCount());
+    }
+}
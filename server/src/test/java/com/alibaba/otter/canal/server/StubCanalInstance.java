@@ -0,0 +1,61 @@
+package com.alibaba.otter.canal.server;
+
+import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.common.alarm.CanalAlarmHandler;
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.instance.core.CanalMQConfig;
+import com.alibaba.otter.canal.meta.CanalMetaManager;
+import com.alibaba.otter.canal.parse.CanalEventParser;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.sink.CanalEventSink;
+import com.alibaba.otter.canal.store.CanalEventStore;
+
+/**
+ * 只包含store和meta的instance，测试中直接向store写入数据，不需要连接mysql
+ *
+ * @since 1.1.3
+ */
+class StubCanalInstance extends AbstractCanalLifeCycle implements CanalInstance {
+
+    private final String           destination;
+    private final CanalEventStore  eventStore;
+    private final CanalMetaManager metaManager;
+
+    StubCanalInstance(String destination, CanalEventStore eventStore, CanalMetaManager metaManager){
+        this.destination = destination;
+        this.eventStore = eventStore;
+        this.metaManager = metaManager;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public CanalEventParser getEventParser() {
+        return null;
+    }
+
+    public CanalEventSink getEventSink() {
+        return null;
+    }
+
+    public CanalEventStore getEventStore() {
+        return eventStore;
+    }
+
+    public CanalMetaManager getMetaManager() {
+        return metaManager;
+    }
+
+    public CanalAlarmHandler getAlarmHandler() {
+        return null;
+    }
+
+    public boolean subscribeChange(ClientIdentity identity) {
+        return true;
+    }
+
+    public CanalMQConfig getMqConfig() {
+        return null;
+    }
+}
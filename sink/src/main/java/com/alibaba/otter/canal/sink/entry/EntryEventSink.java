@@ -9,6 +9,7 @@ import com.alibaba.otter.canal.sink.CanalEventDownStreamHandler;
 import com.alibaba.otter.canal.sink.CanalEventSink;
 import com.alibaba.otter.canal.sink.exception.CanalSinkException;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.memory.LockFreeMemoryEventStoreWithBuffer;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
 import com.alibaba.otter.canal.store.model.Event;
 import org.slf4j.Logger;
@@ -19,6 +20,7 @@ import org.springframework.util.CollectionUtils;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 
@@ -33,6 +35,7 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
 
     private static final Logger    logger                        = LoggerFactory.getLogger(EntryEventSink.class);
     private static final int       maxFullTimes                  = 10;
+    private static final long      maxPutWaitMillis              = 100;                                          // 无锁store单次等待空位的最长时间
     private CanalEventStore<Event> eventStore;
     protected boolean              filterTransactionEntry        = false;                                        // 是否需要尽可能过滤事务头/尾
     protected boolean              filterEmtryTransactionEntry   = true;                                         // 是否需要过滤空的事务头/尾
@@ -160,7 +163,7 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         long blockingStart = 0L;
         int fullTimes = 0;
         do {
-            if (eventStore.tryPut(events)) {
+            if (put(events, fullTimes)) {
                 if (fullTimes > 0) {
                     eventsSinkBlockingTime.addAndGet(System.nanoTime() - blockingStart);
                 }
@@ -172,7 +175,7 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
                 if (fullTimes == 0) {
                     blockingStart = System.nanoTime();
                 }
-                applyWait(++fullTimes);
+                ++fullTimes;
                 if (fullTimes % 100 == 0) {
                     long nextStart = System.nanoTime();
                     eventsSinkBlockingTime.addAndGet(nextStart - blockingStart);
@@ -188,6 +191,28 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         return false;
     }
 
+    /**
+     * 第一次直接tryPut，store满了之后再等待空位:
+     * 无锁store交给其配置的WaitStrategy等待，超时返回后检查running状态并执行retry，其余store按次数退避之后重试
+     */
+    private boolean put(List<Event> events, int fullTimes) {
+        if (fullTimes == 0) {
+            return eventStore.tryPut(events);
+        }
+
+        if (eventStore instanceof LockFreeMemoryEventStoreWithBuffer) {
+            try {
+                return eventStore.put(events, maxPutWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        applyWait(fullTimes);
+        return eventStore.tryPut(events);
+    }
+
     // 处理无数据的情况，避免空循环挂死
     private void applyWait(int fullTimes) {
         int newFullTimes = fullTimes > maxFullTimes ? maxFullTimes : fullTimes;
@@ -0,0 +1,113 @@
+package com.alibaba.otter.canal.sink;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink;
+import com.alibaba.otter.canal.store.memory.LockFreeMemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.wait.WaitStrategyType;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * store满的时候sink通过无锁store的等待策略阻塞，消费者ack之后继续写入
+ *
+ * @since 1.1.3
+ */
+public class EntryEventSinkTest {
+
+    private static final int        COUNT   = 200;
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 3306);
+
+    @Test
+    public void testSinkToLockFreeStore() throws Exception {
+        for (WaitStrategyType type : WaitStrategyType.values()) {
+            doSink(type);
+        }
+    }
+
+    private void doSink(WaitStrategyType type) throws Exception {
+        final LockFreeMemoryEventStoreWithBuffer eventStore = new LockFreeMemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(16);
+        eventStore.setWaitStrategyType(type);
+        eventStore.start();
+
+        final EntryEventSink eventSink = new EntryEventSink();
+        eventSink.setEventStore(eventStore);
+        eventSink.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<List<Long>> consumer = executor.submit(new Callable<List<Long>>() {
+
+            public List<Long> call() throws Exception {
+                List<Long> result = new ArrayList<Long>();
+                Position position = null;
+                while (result.size() < COUNT) {
+                    Events<Event> events = eventStore.get(position, 8, 100L, TimeUnit.MILLISECONDS);
+                    if (events.getEvents().isEmpty()) {
+                        continue;
+                    }
+
+                    position = events.getPositionRange().getEnd();
+                    for (Event event : events.getEvents()) {
+                        result.add(event.getPosition());
+                    }
+                    // 消费慢于写入，sink会等待空位
+                    Thread.sleep(1L);
+                    eventStore.ack(position);
+                }
+                return result;
+            }
+        });
+
+        Future<Boolean> producer = executor.submit(new Callable<Boolean>() {
+
+            public Boolean call() throws Exception {
+                for (int i = 0; i < COUNT; i++) {
+                    if (!eventSink.sink(Arrays.asList(buildEntry(i)), address, "example")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+
+        Assert.assertTrue(producer.get(30, TimeUnit.SECONDS));
+        List<Long> result = consumer.get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(COUNT, result.size());
+        for (int i = 0; i < COUNT; i++) {
+            Assert.assertEquals(i, result.get(i).longValue());
+        }
+        Assert.assertTrue(eventSink.getEventsSinkBlockingTime().get() > 0);
+
+        executor.shutdownNow();
+        eventSink.stop();
+        eventStore.stop();
+    }
+
+    private static Entry buildEntry(long offset) {
+        Header.Builder headerBuilder = Header.newBuilder();
+        headerBuilder.setLogfileName("mysql-bin.000001");
+        headerBuilder.setLogfileOffset(offset);
+        headerBuilder.setExecuteTime(1L);
+        Entry.Builder entryBuilder = Entry.newBuilder();
+        entryBuilder.setHeader(headerBuilder.build());
+        entryBuilder.setEntryType(EntryType.ROWDATA);
+        return entryBuilder.build();
+    }
+}
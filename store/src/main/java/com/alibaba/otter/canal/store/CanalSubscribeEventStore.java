@@ -0,0 +1,58 @@
+package com.alibaba.otter.canal.store;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 支持多订阅者的store，每个{@linkplain ClientIdentity}维护独立的get/ack游标
+ *
+ * <pre>
+ * 1. 一份parse数据可以同时分发给多个消费者，不需要为每个消费者重复dump binlog
+ * 2. 数据的清理以所有订阅者中最慢的ack位置为准
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public interface CanalSubscribeEventStore<T> extends CanalEventStore<T> {
+
+    /**
+     * 注册订阅者，position为该订阅者最后一次ack的位置，store会跳过该位置之前的数据
+     */
+    void subscribe(ClientIdentity clientIdentity, Position position) throws CanalStoreException;
+
+    /**
+     * 取消订阅，不再阻塞数据的清理
+     */
+    void unsubscribe(ClientIdentity clientIdentity) throws CanalStoreException;
+
+    /**
+     * 获取指定订阅者的数据，阻塞直到有足够的batchSize数据
+     */
+    Events<T> get(ClientIdentity clientIdentity, Position start, int batchSize) throws InterruptedException,
+                                                                                 CanalStoreException;
+
+    /**
+     * 获取指定订阅者的数据，超时之后有多少返回多少
+     */
+    Events<T> get(ClientIdentity clientIdentity, Position start, int batchSize, long timeout, TimeUnit unit)
+                                                                                                            throws InterruptedException,
+                                                                                                            CanalStoreException;
+
+    /**
+     * 根据指定位置，不阻塞获取指定订阅者的数据
+     */
+    Events<T> tryGet(ClientIdentity clientIdentity, Position start, int batchSize) throws CanalStoreException;
+
+    /**
+     * 确认指定订阅者的消费位置
+     */
+    void ack(ClientIdentity clientIdentity, Position position) throws CanalStoreException;
+
+    /**
+     * 指定订阅者的get位置回退到ack位置
+     */
+    void rollback(ClientIdentity clientIdentity) throws CanalStoreException;
+}
@@ -0,0 +1,387 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.CanalStoreScavenge;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * 基于文件的store实现，数据以append-only方式顺序写入mmap映射的分段文件
+ *
+ * <pre>
+ * 存储策略：
+ * 1. put/get/ack/rollback的游标语义和{@linkplain MemoryEventStoreWithBuffer}保持一致，只是数据从内存ringbuffer换成了分段文件
+ * 2. 每个分段文件固定存储storeCount条记录，最多保留rollverCount个分段文件，ack之后整段释放删除
+ * 3. 磁盘使用率超过percentThresold之后，即使分段未满也不再写入，等待消费ack释放空间
+ * 4. mixed模式下，最近写入的bufferSize条记录同时保留在内存中，消费追得上时直接走内存读取
+ * 5. store只作为parser和consumer之间的缓冲，重启时会清理历史文件，由parser按照meta位点重新拉取
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class FileEventStore extends MemoryEventStoreWithBuffer implements CanalEventStore<Event>, CanalStoreScavenge {
+
+    private static final Logger                             logger              = LoggerFactory.getLogger(FileEventStore.class);
+    private static final Charset                            charset             = Charset.forName("UTF-8");
+    private static final String                             SEGMENT_PREFIX      = "store-";
+    private static final String                             SEGMENT_SUFFIX      = ".dat";
+    private static final long                               DISK_CHECK_INTERVAL = 1000L;
+
+    private File                                            dataDir;                                             // 文件存储的根目录
+    private int                                             storeCount          = 64 * 1024;                     // 每个文件存储的记录数
+    private int                                             rollverCount        = 256;                           // 最多保留的文件个数
+    private int                                             segmentInitSize     = 16 * 1024 * 1024;              // 单个文件初始映射大小
+    private int                                             percentThresold     = 90;                            // 磁盘使用百分比阀值
+    private boolean                                         mixed               = false;                         // 是否在内存中保留最近写入的数据
+
+    private File                                            storeDir;
+    private ConcurrentNavigableMap<Long, FileSegment>       segments;
+    private List<LogIdentity>                               identities;                                          // 数据来源，文件中只记录下标
+    private volatile boolean                                diskFull            = false;
+    private volatile long                                   lastDiskCheckTime   = 0L;
+
+    public FileEventStore(){
+
+    }
+
+    public FileEventStore(BatchMode batchMode){
+        super(batchMode);
+    }
+
+    public void start() throws CanalStoreException {
+        // 数据已经存储在文件中，mixed模式下内存中只保留最近的热数据，不需要再写入direct内存
+        setDirectMemory(false);
+        super.start();
+        Assert.notNull(dataDir);
+        if (storeCount <= 0 || rollverCount <= 0) {
+            throw new IllegalArgumentException("storeCount and rollverCount must be positive");
+        }
+
+        storeDir = new File(dataDir, destination == null ? "store" : destination + File.separator + "store");
+        try {
+            if (storeDir.exists()) {
+                // 历史数据会由parser根据meta位点重新拉取，直接清理
+                FileUtils.cleanDirectory(storeDir);
+            } else {
+                FileUtils.forceMkdir(storeDir);
+            }
+        } catch (IOException e) {
+            throw new CanalStoreException(e);
+        }
+
+        if (!storeDir.canRead() || !storeDir.canWrite()) {
+            throw new CanalStoreException("dir[" + storeDir.getPath() + "] can not read/write");
+        }
+
+        segments = new ConcurrentSkipListMap<Long, FileSegment>();
+        identities = new ArrayList<LogIdentity>();
+        diskFull = false;
+        lastDiskCheckTime = 0L;
+    }
+
+    public void cleanUntil(Position position) throws CanalStoreException {
+        super.cleanUntil(position);
+        releaseSegments();
+    }
+
+    public void ack(ClientIdentity clientIdentity, Position position) throws CanalStoreException {
+        super.ack(clientIdentity, position);
+        releaseSegments();
+    }
+
+    public void unsubscribe(ClientIdentity clientIdentity) throws CanalStoreException {
+        super.unsubscribe(clientIdentity);
+        releaseSegments();
+    }
+
+    /**
+     * 释放最慢的ack位置之前的分段文件
+     */
+    private void releaseSegments() {
+        // 保留ack位置所在的分段，getFirstPosition需要读取最后一次ack的数据
+        long ackSequence = getAckSequence().get();
+        if (ackSequence < 0) {
+            return;
+        }
+
+        long ackSegment = ackSequence / storeCount;
+        while (!segments.isEmpty()) {
+            Map.Entry<Long, FileSegment> first = segments.firstEntry();
+            if (first == null || first.getKey() >= ackSegment) {
+                break;
+            }
+
+            FileSegment segment = segments.remove(first.getKey());
+            if (segment != null) {
+                segment.destroy();
+            }
+        }
+        diskFull = false;
+        lastDiskCheckTime = 0L;
+    }
+
+    public void cleanAll() throws CanalStoreException {
+        super.cleanAll();
+        if (segments != null) {
+            for (FileSegment segment : segments.values()) {
+                segment.destroy();
+            }
+            segments.clear();
+        }
+
+        if (identities != null) {
+            identities.clear();
+        }
+    }
+
+    // =================== storage method =================
+
+    protected boolean checkFreeSlotAt(final long sequence) {
+        // 按照分段个数控制，ack所在的分段仍然需要保留
+        final long minPoint = getMinimumGetOrAck();
+        final long retainSegment = (minPoint < 0 ? 0 : minPoint) / storeCount;
+        if (sequence / storeCount - retainSegment >= rollverCount) {
+            return false;
+        }
+
+        return !checkDiskFull();
+    }
+
+    protected void putEvent(long sequence, Event event) {
+        long index = sequence / storeCount;
+        FileSegment segment = segments.get(index);
+        if (segment == null) {
+            File file = new File(storeDir, SEGMENT_PREFIX + String.format("%020d", index) + SEGMENT_SUFFIX);
+            segment = new FileSegment(index, file, storeCount, segmentInitSize);
+            segments.put(index, segment);
+            lastDiskCheckTime = 0L; // 新增文件之后重新检查一次磁盘
+        }
+
+        encode(segment, event);
+        if (mixed) {
+            super.putEvent(sequence, event);
+        }
+    }
+
+    protected boolean isBufferInMemory() {
+        // 只有mixed模式才需要内存ringbuffer
+        return mixed;
+    }
+
+    protected Event getEvent(long sequence) {
+        if (mixed && getPutSequence().get() - sequence < getBufferSize()) {
+            // 仍在内存ringbuffer中，未被后续数据覆盖
+            Event event = super.getEvent(sequence);
+            if (event != null) {
+                return event;
+            }
+        }
+
+        FileSegment segment = segments.get(sequence / storeCount);
+        if (segment == null) {
+            throw new CanalStoreException("sequence:" + sequence + " not found in file store");
+        }
+
+        return decode(segment.read((int) (sequence % storeCount)));
+    }
+
+    private boolean checkDiskFull() {
+        long now = System.currentTimeMillis();
+        if (now - lastDiskCheckTime < DISK_CHECK_INTERVAL) {
+            return diskFull;
+        }
+
+        lastDiskCheckTime = now;
+        long total = storeDir.getTotalSpace();
+        if (total <= 0) {
+            diskFull = false;
+        } else {
+            long used = total - storeDir.getUsableSpace();
+            diskFull = used * 100 / total >= percentThresold;
+            if (diskFull) {
+                logger.warn("dir[{}] disk used percent exceed {}%, stop put data", storeDir.getPath(), percentThresold);
+            }
+        }
+        return diskFull;
+    }
+
+    // =================== codec method =================
+
+    /**
+     * 记录格式：
+     *
+     * <pre>
+     * [flag(1)][executeTime(8)][position(8)][serverId(8)][rawLength(8)][rowsCount(4)]
+     * [entryType(4)][eventType(4)][identity(4)][journalName][gtid][payload]
+     * 字符串及payload以[length(4)][bytes]形式存储，length为-1代表null
+     * </pre>
+     */
+    private void encode(FileSegment segment, Event event) {
+        byte[] journalName = toBytes(event.getJournalName());
+        byte[] gtid = toBytes(event.getGtid());
+        boolean raw = event.getRawEntry() != null;
+        ByteString payload = raw ? event.getRawEntry() : (event.getEntry() != null ? event.getEntry().toByteString() : null);
+
+        int length = 1 + 8 * 4 + 4 * 4 + lengthOf(journalName) + lengthOf(gtid) + 4
+                     + (payload == null ? 0 : payload.size());
+        ByteBuffer buffer = segment.allocate(length);
+        buffer.put(raw ? (byte) 1 : (byte) 0);
+        buffer.putLong(event.getExecuteTime());
+        buffer.putLong(event.getPosition());
+        buffer.putLong(event.getServerId());
+        buffer.putLong(event.getRawLength());
+        buffer.putInt(event.getRowsCount());
+        buffer.putInt(event.getEntryType() == null ? -1 : event.getEntryType().getNumber());
+        buffer.putInt(event.getEventType() == null ? -1 : event.getEventType().getNumber());
+        buffer.putInt(indexOf(event.getLogIdentity()));
+        putBytes(buffer, journalName);
+        putBytes(buffer, gtid);
+        if (payload == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(payload.size());
+            payload.copyTo(buffer);
+        }
+    }
+
+    private Event decode(ByteBuffer buffer) {
+        Event event = new Event();
+        boolean raw = buffer.get() == 1;
+        event.setExecuteTime(buffer.getLong());
+        event.setPosition(buffer.getLong());
+        event.setServerId(buffer.getLong());
+        event.setRawLength(buffer.getLong());
+        event.setRowsCount(buffer.getInt());
+        int entryType = buffer.getInt();
+        event.setEntryType(entryType < 0 ? null : EntryType.valueOf(entryType));
+        int eventType = buffer.getInt();
+        event.setEventType(eventType < 0 ? null : EventType.valueOf(eventType));
+        int identity = buffer.getInt();
+        event.setLogIdentity(identity < 0 ? null : identities.get(identity));
+        event.setJournalName(getString(buffer));
+        event.setGtid(getString(buffer));
+
+        int length = buffer.getInt();
+        if (length >= 0) {
+            buffer.limit(buffer.position() + length);
+            ByteString payload = ByteString.copyFrom(buffer);
+            if (raw) {
+                event.setRawEntry(payload);
+            } else {
+                try {
+                    event.setEntry(CanalEntry.Entry.parseFrom(payload));
+                } catch (InvalidProtocolBufferException e) {
+                    throw new CanalStoreException(e);
+                }
+            }
+        }
+        return event;
+    }
+
+    private int indexOf(LogIdentity identity) {
+        if (identity == null) {
+            return -1;
+        }
+
+        // 一般只有一个数据来源，只在主备切换时才会新增
+        for (int i = identities.size() - 1; i >= 0; i--) {
+            if (identities.get(i).equals(identity)) {
+                return i;
+            }
+        }
+        identities.add(identity);
+        return identities.size() - 1;
+    }
+
+    private byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(charset);
+    }
+
+    private int lengthOf(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, charset);
+    }
+
+    // ================ setter / getter ==================
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = new File(dataDir);
+    }
+
+    public void setDataDirByFile(File dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    public void setStoreCount(int storeCount) {
+        this.storeCount = storeCount;
+    }
+
+    public void setRollverCount(int rollverCount) {
+        this.rollverCount = rollverCount;
+    }
+
+    public void setSegmentInitSize(int segmentInitSize) {
+        this.segmentInitSize = segmentInitSize;
+    }
+
+    public void setPercentThresold(int percentThresold) {
+        this.percentThresold = percentThresold;
+    }
+
+    public void setMixed(boolean mixed) {
+        this.mixed = mixed;
+    }
+
+    public boolean isMixed() {
+        return mixed;
+    }
+
+    public int getSegmentCount() {
+        return segments == null ? 0 : segments.size();
+    }
+
+}
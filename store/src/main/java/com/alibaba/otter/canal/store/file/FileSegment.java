@@ -0,0 +1,182 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.store.CanalStoreException;
+
+/**
+ * 基于mmap的append-only存储段，每个段固定存储storeCount条记录
+ *
+ * <pre>
+ * 文件格式：[recordLength(4 byte)][record] [recordLength(4 byte)][record] ...
+ * 1. 记录在文件中的起始offset保存在内存索引中，按照slot直接定位
+ * 2. 映射空间不足时按照2倍进行扩容，重新mmap
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class FileSegment {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSegment.class);
+
+    private final long          index;                                           // 段序号
+    private final File          file;
+    private final int[]         offsets;                                         // 每条记录的起始位置
+    private RandomAccessFile    raf;
+    private FileChannel         channel;
+    private MappedByteBuffer    buffer;
+    private int                 writePosition = 0;
+    private int                 count         = 0;
+
+    public FileSegment(long index, File file, int storeCount, int initSize){
+        this.index = index;
+        this.file = file;
+        this.offsets = new int[storeCount];
+        try {
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            this.buffer = channel.map(MapMode.READ_WRITE, 0, initSize);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(raf);
+            throw new CanalStoreException("create segment file[" + file.getPath() + "] failed", e);
+        }
+    }
+
+    /**
+     * 申请一条指定长度的记录空间，返回可直接写入的buffer视图
+     */
+    public ByteBuffer allocate(int length) {
+        if (count >= offsets.length) {
+            throw new CanalStoreException("segment[" + index + "] is full");
+        }
+
+        int required = writePosition + 4 + length;
+        if (required < 0) {
+            throw new CanalStoreException("segment[" + index + "] exceed max size, record length : " + length);
+        }
+        ensureCapacity(required);
+
+        offsets[count++] = writePosition;
+        buffer.putInt(writePosition, length);
+        ByteBuffer view = buffer.duplicate();
+        view.position(writePosition + 4);
+        view.limit(required);
+        writePosition = required;
+        return view.slice();
+    }
+
+    /**
+     * 读取指定slot的记录，返回只读的buffer视图
+     */
+    public ByteBuffer read(int slot) {
+        if (slot < 0 || slot >= count) {
+            throw new CanalStoreException("segment[" + index + "] slot " + slot + " not found");
+        }
+
+        int offset = offsets[slot];
+        int length = buffer.getInt(offset);
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.limit(offset + 4 + length);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * 释放mmap并删除文件
+     */
+    public void destroy() {
+        unmap(buffer);
+        buffer = null;
+        IOUtils.closeQuietly(channel);
+        IOUtils.closeQuietly(raf);
+        if (file.exists() && !file.delete()) {
+            logger.warn("delete segment file[{}] failed", file.getPath());
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        int capacity = buffer.capacity();
+        if (required <= capacity) {
+            return;
+        }
+
+        long newCapacity = capacity;
+        while (newCapacity < required) {
+            newCapacity <<= 1;
+        }
+        newCapacity = Math.min(newCapacity, Integer.MAX_VALUE);
+        try {
+            MappedByteBuffer newBuffer = channel.map(MapMode.READ_WRITE, 0, newCapacity);
+            unmap(buffer);
+            buffer = newBuffer;
+        } catch (IOException e) {
+            throw new CanalStoreException("remap segment file[" + file.getPath() + "] failed", e);
+        }
+    }
+
+    /**
+     * 主动释放mmap内存，避免依赖gc回收导致文件句柄及虚拟内存长时间占用
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        try {
+            // jdk9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (NoSuchMethodException e) {
+            // jdk8及以下版本，继续尝试cleaner
+        } catch (Throwable e) {
+            logger.warn("unmap segment buffer failed", e);
+            return;
+        }
+
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (Throwable e) {
+            logger.warn("unmap segment buffer failed", e);
+        }
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isFull() {
+        return count >= offsets.length;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.otter.canal.store.model.Event;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * 基于direct内存的环形存储区，用于保存raw模式下序列化之后的entry
+ *
+ * <pre>
+ * 实现思路：
+ * 1. 存储区由多个固定大小的chunk组成，chunk按需申请并循环复用，单条记录不会跨chunk存储
+ * 2. 写入位置和释放位置都是单调递增的逻辑offset，store按照ack的顺序进行释放，所以只需要记录释放到的位置
+ * 3. 空间不足或者单条记录超过chunk大小时，数据依然保留在堆内存中，不阻塞写入
+ * 4. 读取时基于direct内存创建ByteString视图，不产生数据拷贝，视图只在对应数据被ack之前有效
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class DirectMemoryArena {
+
+    private final int          chunkSize;
+    private final ByteBuffer[] chunks;
+    private final long         capacity;
+    private volatile long      writeOffset   = 0L;                  // 只有put线程会修改
+    private final AtomicLong   releaseOffset = new AtomicLong(0L);
+    private String             lastJournalName;                     // 复用相同的binlog文件名，避免重复的字符串对象
+
+    public DirectMemoryArena(long size, int chunkSize){
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+
+        int chunkCount = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+        this.chunkSize = chunkSize;
+        this.chunks = new ByteBuffer[chunkCount];
+        this.capacity = (long) chunkSize * chunkCount;
+    }
+
+    /**
+     * 将event中的rawEntry写入direct内存，写入成功后event只保留offset信息
+     */
+    public boolean write(Event event) {
+        if (lastJournalName != null && lastJournalName.equals(event.getJournalName())) {
+            event.setJournalName(lastJournalName);
+        } else {
+            lastJournalName = event.getJournalName();
+        }
+
+        ByteString rawEntry = event.getRawEntry();
+        // 写入失败时记录当前位置，保证按照event释放时位置依然有序
+        event.setDirectOffset(writeOffset);
+        event.setDirectLength(0);
+        if (rawEntry == null || rawEntry.isEmpty() || rawEntry.size() > chunkSize) {
+            return false;
+        }
+
+        int length = rawEntry.size();
+        long offset = writeOffset;
+        int remaining = chunkSize - (int) (offset % chunkSize);
+        if (length > remaining) {
+            // 不跨chunk存储，直接跳到下一个chunk
+            offset += remaining;
+        }
+
+        if (offset + length - releaseOffset.get() > capacity) {
+            // 空间不足，数据保留在堆内存
+            return false;
+        }
+
+        ByteBuffer buffer = chunk(offset).duplicate();
+        buffer.position((int) (offset % chunkSize));
+        rawEntry.copyTo(buffer);
+
+        writeOffset = offset + length;
+        event.setDirectOffset(offset);
+        event.setDirectLength(length);
+        event.setRawEntry(null);
+        return true;
+    }
+
+    /**
+     * 返回基于direct内存视图的event，堆内存中的event直接返回
+     */
+    public Event read(Event event) {
+        if (!event.isDirect()) {
+            return event;
+        }
+
+        long offset = event.getDirectOffset();
+        ByteBuffer buffer = chunk(offset).duplicate();
+        int position = (int) (offset % chunkSize);
+        buffer.limit(position + event.getDirectLength());
+        buffer.position(position);
+
+        Event result = new Event();
+        result.setLogIdentity(event.getLogIdentity());
+        result.setRawEntry(UnsafeByteOperations.unsafeWrap(buffer.slice()));
+        result.setExecuteTime(event.getExecuteTime());
+        result.setEntryType(event.getEntryType());
+        result.setJournalName(event.getJournalName());
+        result.setPosition(event.getPosition());
+        result.setServerId(event.getServerId());
+        result.setEventType(event.getEventType());
+        result.setGtid(event.getGtid());
+        result.setRawLength(event.getRawLength());
+        result.setRowsCount(event.getRowsCount());
+        result.setDirectOffset(offset);
+        result.setDirectLength(event.getDirectLength());
+        return result;
+    }
+
+    /**
+     * 将read返回的direct内存视图拷贝到堆内存，用于数据在ack释放之后依然需要被访问的场景(比如get的自动ack)
+     */
+    public static void copyToHeap(List<Event> events) {
+        for (Event event : events) {
+            // 视图event由read新建，不会被store引用，可以直接替换rawEntry
+            if (event.getDirectLength() > 0 && event.getRawEntry() != null) {
+                event.setRawEntry(ByteString.copyFrom(event.getRawEntry().asReadOnlyByteBuffer()));
+            }
+        }
+    }
+
+    /**
+     * 释放event及之前的所有数据，event必须已经被所有消费者ack
+     */
+    public void release(Event event) {
+        if (event == null || event.getDirectOffset() < 0) {
+            return;
+        }
+
+        long offset = event.getDirectOffset() + event.getDirectLength();
+        for (;;) {
+            long current = releaseOffset.get();
+            if (offset <= current || releaseOffset.compareAndSet(current, offset)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 当前未释放的direct内存大小
+     */
+    public long getUsedSize() {
+        return writeOffset - releaseOffset.get();
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    private ByteBuffer chunk(long offset) {
+        int index = (int) ((offset / chunkSize) % chunks.length);
+        ByteBuffer chunk = chunks[index];
+        if (chunk == null) {
+            chunk = ByteBuffer.allocateDirect(chunkSize);
+            chunks[index] = chunk;
+        }
+        return chunk;
+    }
+
+}
@@ -0,0 +1,269 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.CanalStoreScavenge;
+import com.alibaba.otter.canal.store.memory.wait.WaitStrategy;
+import com.alibaba.otter.canal.store.memory.wait.WaitStrategy.WaitCondition;
+import com.alibaba.otter.canal.store.memory.wait.WaitStrategyType;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 基于sequence无锁发布的memory store，单生产者/多消费者模型
+ *
+ * <pre>
+ * 实现思路：(参考disruptor)
+ * 1. put操作只有sink线程一个生产者，先写入ringbuffer数据，再通过putSequence的volatile写发布
+ * 2. get操作通过getSequence的cas完成批次的抢占，cas失败说明有其他消费者已经拿走数据，重新尝试
+ * 3. ack操作通过ackSequence的cas推进，生产者只会覆盖min(get,ack)之前的数据，保证消费者读到的数据不会被覆盖
+ * 4. put/get的阻塞等待交给{@linkplain WaitStrategy}处理，可在cpu占用和延迟之间做权衡
+ * 5. 非fanout模式下按订阅者的get/ack/rollback共享默认游标，同样走无锁的路径
+ * 6. fanout模式下需要同时维护多个订阅者的游标，按订阅者的get/ack依然通过lock保护，只有等待数据的过程交给{@linkplain WaitStrategy}
+ * 7. cas冲突时先自旋，再yield，最后短暂park，避免高并发下空转
+ * </pre>
+ *
+ * @since 1.1.3
+ */
+public class LockFreeMemoryEventStoreWithBuffer extends MemoryEventStoreWithBuffer implements CanalEventStore<Event>, CanalStoreScavenge {
+
+    private static final int    maxRetryTimes    = 10;
+    private WaitStrategyType    waitStrategyType = WaitStrategyType.BLOCKING;
+    private WaitStrategy        putWaitStrategy;                              // 等待空位的生产者
+    private WaitStrategy        getWaitStrategy;                              // 等待数据的消费者
+    private final AtomicBoolean producing        = new AtomicBoolean(false);  // 单生产者保护
+
+    public LockFreeMemoryEventStoreWithBuffer(){
+
+    }
+
+    public LockFreeMemoryEventStoreWithBuffer(BatchMode batchMode){
+        super(batchMode);
+    }
+
+    public void start() throws CanalStoreException {
+        super.start();
+        putWaitStrategy = waitStrategyType.newInstance();
+        getWaitStrategy = waitStrategyType.newInstance();
+    }
+
+    public void put(List<Event> data) throws InterruptedException, CanalStoreException {
+        waitAndPut(data, -1);
+    }
+
+    public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return waitAndPut(data, unit.toNanos(timeout));
+    }
+
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        // 正常只有sink线程put，如果出现并发put直接返回失败，由调用方重试
+        if (!producing.compareAndSet(false, true)) {
+            return false;
+        }
+
+        try {
+            if (!checkFreeSlotAt(getPutSequence().get() + data.size())) {
+                return false;
+            } else {
+                doPut(data);
+                return true;
+            }
+        } finally {
+            producing.set(false);
+        }
+    }
+
+    private boolean waitAndPut(final List<Event> data, long nanos) throws InterruptedException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + nanos;
+        WaitCondition notFull = new WaitCondition() {
+
+            public boolean isSatisfied() {
+                return checkFreeSlotAt(getPutSequence().get() + data.size());
+            }
+        };
+
+        for (;;) {
+            if (tryPut(data)) {
+                return true;
+            }
+
+            long remaining = nanos < 0 ? -1 : deadline - System.nanoTime();
+            if (nanos >= 0 && remaining <= 0) {
+                return false;
+            }
+
+            if (!putWaitStrategy.waitFor(notFull, remaining)) {
+                return false;
+            }
+        }
+    }
+
+    public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        getWaitStrategy.waitFor(notEmpty(start, batchSize), -1);
+        return tryGet(start, batchSize);
+    }
+
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException,
+                                                                                        CanalStoreException {
+        // 如果时间到了，有多少取多少
+        getWaitStrategy.waitFor(notEmpty(start, batchSize), unit.toNanos(timeout));
+        return tryGet(start, batchSize);
+    }
+
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        int retryTimes = 0;
+        for (;;) {
+            Events<Event> result = doGet(start, batchSize);
+            if (!result.getEvents().isEmpty() || getGetSequence().get() >= getPutSequence().get()) {
+                return result;
+            }
+            // cas失败，说明其他消费者抢先拿走了数据，重新尝试
+            backoff(++retryTimes);
+        }
+    }
+
+    public Events<Event> get(ClientIdentity clientIdentity, Position start, int batchSize) throws InterruptedException,
+                                                                                          CanalStoreException {
+        getWaitStrategy.waitFor(notEmpty(clientIdentity, start, batchSize), -1);
+        return tryGet(clientIdentity, start, batchSize);
+    }
+
+    public Events<Event> get(ClientIdentity clientIdentity, Position start, int batchSize, long timeout, TimeUnit unit)
+                                                                                                                    throws InterruptedException,
+                                                                                                                    CanalStoreException {
+        // 如果时间到了，有多少取多少
+        getWaitStrategy.waitFor(notEmpty(clientIdentity, start, batchSize), unit.toNanos(timeout));
+        return tryGet(clientIdentity, start, batchSize);
+    }
+
+    public Events<Event> tryGet(ClientIdentity clientIdentity, Position start, int batchSize)
+                                                                                             throws CanalStoreException {
+        if (!isFanout()) {
+            return tryGet(start, batchSize);
+        }
+        return super.tryGet(clientIdentity, start, batchSize);
+    }
+
+    public void ack(ClientIdentity clientIdentity, Position position) throws CanalStoreException {
+        if (!isFanout()) {
+            cleanUntil(position);
+            return;
+        }
+        super.ack(clientIdentity, position);
+    }
+
+    public void rollback(ClientIdentity clientIdentity) throws CanalStoreException {
+        if (!isFanout()) {
+            rollback();
+            return;
+        }
+        super.rollback(clientIdentity);
+        getWaitStrategy.signalAllWhenBlocking();
+    }
+
+    private WaitCondition notEmpty(final ClientIdentity clientIdentity, final Position start, final int batchSize) {
+        return new WaitCondition() {
+
+            public boolean isSatisfied() {
+                return checkUnGetSlotAt(clientIdentity, (LogPosition) start, batchSize);
+            }
+        };
+    }
+
+    private WaitCondition notEmpty(final Position start, final int batchSize) {
+        return new WaitCondition() {
+
+            public boolean isSatisfied() {
+                return checkUnGetSlotAt((LogPosition) start, batchSize);
+            }
+        };
+    }
+
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        for (;;) {
+            long ackSequence = getAckSequence().get();
+            LogPosition position = doGetFirstPosition();
+            if (ackSequence == getAckSequence().get()) {
+                return position;
+            }
+            // 读取过程中发生了ack，数据可能已被清理，重新读取
+        }
+    }
+
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        return doGetLatestPosition();
+    }
+
+    public void cleanUntil(Position position) throws CanalStoreException {
+        int retryTimes = 0;
+        while (!doCleanUntil(position)) {
+            // 并发ack，退避之后重新尝试
+            backoff(++retryTimes);
+        }
+    }
+
+    public void rollback() throws CanalStoreException {
+        doRollback();
+        getWaitStrategy.signalAllWhenBlocking();
+    }
+
+    public void cleanAll() throws CanalStoreException {
+        // 避免与生产者并发修改ringbuffer
+        while (!producing.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+
+        try {
+            super.cleanAll();
+        } finally {
+            producing.set(false);
+        }
+    }
+
+    // cas冲突时的退避，避免多个消费者同时空转
+    private void backoff(int retryTimes) {
+        if (retryTimes <= 3) { // 3次以内直接重试
+            return;
+        } else if (retryTimes <= maxRetryTimes) {
+            Thread.yield();
+        } else { // 持续冲突，最多park 100us
+            LockSupport.parkNanos(10 * 1000L * Math.min(retryTimes - maxRetryTimes, 10));
+        }
+    }
+
+    protected void signalNotEmpty() {
+        getWaitStrategy.signalAllWhenBlocking();
+    }
+
+    protected void signalNotFull() {
+        putWaitStrategy.signalAllWhenBlocking();
+    }
+
+    // ================ setter / getter ==================
+
+    public void setWaitStrategyType(WaitStrategyType waitStrategyType) {
+        this.waitStrategyType = waitStrategyType;
+    }
+
+    public WaitStrategyType getWaitStrategyType() {
+        return waitStrategyType;
+    }
+
+}
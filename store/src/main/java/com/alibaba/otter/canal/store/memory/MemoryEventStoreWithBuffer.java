@@ -2,6 +2,7 @@ package com.alibaba.otter.canal.store.memory;
 
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.position.LogPosition;
 import com.alibaba.otter.canal.protocol.position.Position;
 import com.alibaba.otter.canal.protocol.position.PositionRange;
@@ -9,6 +10,7 @@ import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
 import com.alibaba.otter.canal.store.CanalEventStore;
 import com.alibaba.otter.canal.store.CanalStoreException;
 import com.alibaba.otter.canal.store.CanalStoreScavenge;
+import com.alibaba.otter.canal.store.CanalSubscribeEventStore;
 import com.alibaba.otter.canal.store.helper.CanalEventUtils;
 import com.alibaba.otter.canal.store.model.BatchMode;
 import com.alibaba.otter.canal.store.model.Event;
@@ -17,6 +19,8 @@ import org.apache.commons.lang.StringUtils;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -29,13 +33,17 @@ import java.util.concurrent.locks.ReentrantLock;
  * 变更记录：
  * 1. 新增BatchMode类型，支持按内存大小获取批次数据，内存大小更加可控.
  *   a. put操作，会首先根据bufferSize进行控制，然后再进行bufferSize * bufferMemUnit进行控制. 因存储的内容是以Event，如果纯依赖于memsize进行控制，会导致RingBuffer出现动态伸缩
+ * 2. 新增fanout模式，每个ClientIdentity维护独立的get/ack游标，一份数据可以分发给多个订阅者
+ *   a. 默认的get/ack游标退化为所有订阅者中最慢的位置，ringbuffer的空位判断及数据清理以最慢的ack为准
+ *   b. 非fanout模式下，所有订阅者共享默认游标，和原有行为保持一致
+ * 3. 新增directMemory模式，raw模式下entry的序列化数据写入{@linkplain DirectMemoryArena}，ringbuffer中的Event只保留位置信息，减少堆内存及old gc的压力
  * </pre>
  * 
  * @author jianghang 2012-6-20 上午09:46:31
  * @version 1.0.0
  */
 //
-public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge implements CanalEventStore<Event>, CanalStoreScavenge {
+public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge implements CanalSubscribeEventStore<Event>, CanalStoreScavenge {
 
     private static final long INIT_SEQUENCE = -1;
     private int               bufferSize    = 16 * 1024;
@@ -53,6 +61,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     private AtomicLong        getMemSize    = new AtomicLong(0);
     private AtomicLong        ackMemSize    = new AtomicLong(0);
 
+    // 多订阅者的get/ack游标，fanout模式下默认游标记录的是所有订阅者中最慢的位置
+    private Cursor                                defaultCursor = new Cursor(getSequence, ackSequence, getMemSize, ackMemSize);
+    private ConcurrentMap<ClientIdentity, Cursor> cursors       = new ConcurrentHashMap<ClientIdentity, Cursor>();
+
     // 记录下put/get/ack操作的三个execTime
     private AtomicLong        putExecTime   = new AtomicLong(System.currentTimeMillis());
     private AtomicLong        getExecTime   = new AtomicLong(System.currentTimeMillis());
@@ -71,6 +83,11 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     private BatchMode         batchMode     = BatchMode.ITEMSIZE;                        // 默认为内存大小模式
     private boolean           ddlIsolation  = false;
     private boolean           raw           = true;                                      // 针对entry是否开启raw模式
+    private boolean           fanout        = false;                                     // 是否为每个订阅者维护独立的游标
+    private boolean           directMemory  = false;                                     // raw模式下是否将entry存储在direct内存中
+    private long              directMemorySize;                                          // direct内存大小，默认为bufferSize * bufferMemUnit
+    private int               directChunkSize = 4 * 1024 * 1024;                         // direct内存按chunk申请及复用
+    private DirectMemoryArena arena;
 
     public MemoryEventStoreWithBuffer(){
 
@@ -87,7 +104,13 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
 
         indexMask = bufferSize - 1;
-        entries = new Event[bufferSize];
+        if (isBufferInMemory()) {
+            entries = new Event[bufferSize];
+        }
+        if (directMemory && raw) {
+            long size = directMemorySize > 0 ? directMemorySize : (long) bufferSize * bufferMemUnit;
+            arena = new DirectMemoryArena(size, directChunkSize);
+        }
     }
 
     public void stop() throws CanalStoreException {
@@ -185,13 +208,13 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     /**
      * 执行具体的put操作
      */
-    private void doPut(List<Event> data) {
+    protected void doPut(List<Event> data) {
         long current = putSequence.get();
         long end = current + data.size();
 
         // 先写数据，再更新对应的cursor,并发度高的情况，putSequence会被get请求可见，拿出了ringbuffer中的老的Entry值
         for (long next = current + 1; next <= end; next++) {
-            entries[getIndex(next)] = data.get((int) (next - current - 1));
+            putEvent(next, data.get((int) (next - current - 1)));
         }
 
         putSequence.set(end);
@@ -207,7 +230,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
         profiling(data, OP.PUT);
         // tell other threads that store is not empty
-        notEmpty.signal();
+        signalNotEmpty();
     }
 
     public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
@@ -267,10 +290,14 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
-    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+    protected Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+        return doGet(defaultCursor, start, batchSize);
+    }
+
+    private Events<Event> doGet(Cursor cursor, Position start, int batchSize) throws CanalStoreException {
         LogPosition startPosition = (LogPosition) start;
 
-        long current = getSequence.get();
+        long current = cursor.getSequence.get();
         long maxAbleSequence = putSequence.get();
         long next = current;
         long end = current;
@@ -290,7 +317,11 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             end = (next + batchSize - 1) < maxAbleSequence ? (next + batchSize - 1) : maxAbleSequence;
             // 提取数据并返回
             for (; next <= end; next++) {
-                Event event = entries[getIndex(next)];
+                Event event = getEvent(next);
+                if (event == null) {
+                    // 并发ack已经清理了该位置，当前get请求已失效
+                    return new Events<Event>();
+                }
                 if (ddlIsolation && isDdl(event.getEventType())) {
                     // 如果是ddl隔离，直接返回
                     if (entrys.size() == 0) {
@@ -309,7 +340,11 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             long maxMemSize = batchSize * bufferMemUnit;
             for (; memsize <= maxMemSize && next <= maxAbleSequence; next++) {
                 // 永远保证可以取出第一条的记录，避免死锁
-                Event event = entries[getIndex(next)];
+                Event event = getEvent(next);
+                if (event == null) {
+                    // 并发ack已经清理了该位置，当前get请求已失效
+                    return new Events<Event>();
+                }
                 if (ddlIsolation && isDdl(event.getEventType())) {
                     // 如果是ddl隔离，直接返回
                     if (entrys.size() == 0) {
@@ -347,9 +382,15 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             }
         }
 
-        if (getSequence.compareAndSet(current, end)) {
-            getMemSize.addAndGet(memsize);
-            notFull.signal();
+        if (cursor.getSequence.compareAndSet(current, end)) {
+            cursor.getMemSize.addAndGet(memsize);
+            if (arena != null) {
+                // 基于direct内存创建数据视图，在ack之前数据不会被覆盖
+                for (int i = 0; i < entrys.size(); i++) {
+                    entrys.set(i, arena.read(entrys.get(i)));
+                }
+            }
+            signalNotFull();
             profiling(result.getEvents(), OP.GET);
             return result;
         } else {
@@ -361,54 +402,62 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            long firstSeqeuence = ackSequence.get();
-            if (firstSeqeuence == INIT_SEQUENCE && firstSeqeuence < putSequence.get()) {
-                // 没有ack过数据
-                Event event = entries[getIndex(firstSeqeuence + 1)]; // 最后一次ack为-1，需要移动到下一条,included
-                                                                     // = false
-                return CanalEventUtils.createPosition(event, false);
-            } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence < putSequence.get()) {
-                // ack未追上put操作
-                Event event = entries[getIndex(firstSeqeuence + 1)]; // 最后一次ack的位置数据
-                                                                     // + 1
-                return CanalEventUtils.createPosition(event, true);
-            } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence == putSequence.get()) {
-                // 已经追上，store中没有数据
-                Event event = entries[getIndex(firstSeqeuence)]; // 最后一次ack的位置数据，和last为同一条，included
-                                                                 // = false
-                return CanalEventUtils.createPosition(event, false);
-            } else {
-                // 没有任何数据
-                return null;
-            }
+            return doGetFirstPosition();
         } finally {
             lock.unlock();
         }
     }
 
+    protected LogPosition doGetFirstPosition() {
+        long firstSeqeuence = ackSequence.get();
+        if (firstSeqeuence == INIT_SEQUENCE && firstSeqeuence < putSequence.get()) {
+            // 没有ack过数据
+            Event event = getEvent(firstSeqeuence + 1); // 最后一次ack为-1，需要移动到下一条,included
+                                                        // = false
+            return event == null ? null : CanalEventUtils.createPosition(event, false);
+        } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence < putSequence.get()) {
+            // ack未追上put操作
+            Event event = getEvent(firstSeqeuence + 1); // 最后一次ack的位置数据
+                                                        // + 1
+            return event == null ? null : CanalEventUtils.createPosition(event, true);
+        } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence == putSequence.get()) {
+            // 已经追上，store中没有数据
+            Event event = getEvent(firstSeqeuence); // 最后一次ack的位置数据，和last为同一条，included
+                                                    // = false
+            return event == null ? null : CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
     public LogPosition getLatestPosition() throws CanalStoreException {
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            long latestSequence = putSequence.get();
-            if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
-                Event event = entries[(int) putSequence.get() & indexMask]; // 最后一次写入的数据，最后一条未消费的数据
-                return CanalEventUtils.createPosition(event, true);
-            } else if (latestSequence > INIT_SEQUENCE && latestSequence == ackSequence.get()) {
-                // ack已经追上了put操作
-                Event event = entries[(int) putSequence.get() & indexMask]; // 最后一次写入的数据，included
-                                                                            // =
-                                                                            // false
-                return CanalEventUtils.createPosition(event, false);
-            } else {
-                // 没有任何数据
-                return null;
-            }
+            return doGetLatestPosition();
         } finally {
             lock.unlock();
         }
     }
 
+    protected LogPosition doGetLatestPosition() {
+        long latestSequence = putSequence.get();
+        if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
+            Event event = getEvent(latestSequence); // 最后一次写入的数据，最后一条未消费的数据
+            return CanalEventUtils.createPosition(event, true);
+        } else if (latestSequence > INIT_SEQUENCE && latestSequence == ackSequence.get()) {
+            // ack已经追上了put操作
+            Event event = getEvent(latestSequence); // 最后一次写入的数据，included
+                                                    // =
+                                                    // false
+            return CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
     public void ack(Position position) throws CanalStoreException {
         cleanUntil(position);
     }
@@ -417,62 +466,91 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            long sequence = ackSequence.get();
-            long maxSequence = getSequence.get();
-
-            boolean hasMatch = false;
-            long memsize = 0;
-            // ack没有list，但有已存在的foreach，还是节省一下list的开销
-            long localExecTime = 0L;
-            int deltaRows = 0;
-            for (long next = sequence + 1; next <= maxSequence; next++) {
-                Event event = entries[getIndex(next)];
-                if (localExecTime == 0 && event.getExecuteTime() > 0) {
-                    localExecTime = event.getExecuteTime();
-                }
-                deltaRows += event.getRowsCount();
-                memsize += calculateSize(event);
-                boolean match = CanalEventUtils.checkPosition(event, (LogPosition) position);
-                if (match) {// 找到对应的position，更新ack seq
-                    hasMatch = true;
+            doCleanUntil(position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 执行具体的ack操作，返回false代表并发ack导致ackSequence发生了变化
+     */
+    protected boolean doCleanUntil(Position position) throws CanalStoreException {
+        return doCleanUntil(defaultCursor, position);
+    }
+
+    private boolean doCleanUntil(Cursor cursor, Position position) throws CanalStoreException {
+        long sequence = cursor.ackSequence.get();
+        long maxSequence = cursor.getSequence.get();
 
+        boolean hasMatch = false;
+        long memsize = 0;
+        // ack没有list，但有已存在的foreach，还是节省一下list的开销
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        for (long next = sequence + 1; next <= maxSequence; next++) {
+            Event event = getEvent(next);
+            if (event == null) {
+                // 并发ack已经清理了该位置
+                return false;
+            }
+            if (localExecTime == 0 && event.getExecuteTime() > 0) {
+                localExecTime = event.getExecuteTime();
+            }
+            deltaRows += event.getRowsCount();
+            memsize += calculateSize(event);
+            boolean match = CanalEventUtils.checkPosition(event, (LogPosition) position);
+            if (match) {// 找到对应的position，更新ack seq
+                hasMatch = true;
+
+                if (cursor.ackSequence.compareAndSet(sequence, next)) {// 避免并发ack
                     if (batchMode.isMemSize()) {
-                        ackMemSize.addAndGet(memsize);
-                        // 尝试清空buffer中的内存，将ack之前的内存全部释放掉
-                        for (long index = sequence + 1; index < next; index++) {
-                            entries[getIndex(index)] = null;// 设置为null
+                        cursor.ackMemSize.addAndGet(memsize);
+                        // 尝试清空buffer中的内存，将ack之前的内存全部释放掉，fanout模式下需要等所有订阅者ack之后再统一清理
+                        if (cursor == defaultCursor) {
+                            cleanEntries(sequence + 1, next);
                         }
                     }
+                    if (cursor == defaultCursor) {
+                        releaseDirectMemory(event);
+                    }
 
-                    if (ackSequence.compareAndSet(sequence, next)) {// 避免并发ack
-                        notFull.signal();
-                        ackTableRows.addAndGet(deltaRows);
-                        if (localExecTime > 0) {
-                            ackExecTime.lazySet(localExecTime);
-                        }
-                        return;
+                    signalNotFull();
+                    ackTableRows.addAndGet(deltaRows);
+                    if (localExecTime > 0) {
+                        ackExecTime.lazySet(localExecTime);
                     }
+                    return true;
+                } else {
+                    return false;
                 }
             }
-            if (!hasMatch) {// 找不到对应需要ack的position
-                throw new CanalStoreException("no match ack position" + position.toString());
-            }
-        } finally {
-            lock.unlock();
         }
+        if (!hasMatch) {// 找不到对应需要ack的position
+            throw new CanalStoreException("no match ack position" + position.toString());
+        }
+        return true;
     }
 
     public void rollback() throws CanalStoreException {
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            getSequence.set(ackSequence.get());
-            getMemSize.set(ackMemSize.get());
+            doRollback();
         } finally {
             lock.unlock();
         }
     }
 
+    protected void doRollback() {
+        doRollback(defaultCursor);
+    }
+
+    private void doRollback(Cursor cursor) {
+        cursor.getSequence.set(cursor.ackSequence.get());
+        cursor.getMemSize.set(cursor.ackMemSize.get());
+    }
+
     public void cleanAll() throws CanalStoreException {
         final ReentrantLock lock = this.lock;
         lock.lock();
@@ -484,7 +562,9 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             putMemSize.set(0);
             getMemSize.set(0);
             ackMemSize.set(0);
+            cursors.clear();
             entries = null;
+            arena = null;
             // for (int i = 0; i < entries.length; i++) {
             // entries[i] = null;
             // }
@@ -493,9 +573,237 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
+    // =================== subscribe method =================
+
+    public void subscribe(ClientIdentity clientIdentity, Position position) throws CanalStoreException {
+        if (!fanout) {
+            return;
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (!cursors.containsKey(clientIdentity)) {
+                // 新的订阅者从当前最慢的ack位置开始，之前的数据可能已经被清理
+                Cursor cursor = new Cursor(new AtomicLong(ackSequence.get()),
+                    new AtomicLong(ackSequence.get()),
+                    new AtomicLong(ackMemSize.get()),
+                    new AtomicLong(ackMemSize.get()));
+                cursor.startPosition = (LogPosition) position;
+                cursors.put(clientIdentity, cursor);
+                updateCursor();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void unsubscribe(ClientIdentity clientIdentity) throws CanalStoreException {
+        if (!fanout) {
+            return;
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (cursors.remove(clientIdentity) != null) {
+                updateCursor();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> get(ClientIdentity clientIdentity, Position start, int batchSize) throws InterruptedException,
+                                                                                          CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            Cursor cursor = getCursor(clientIdentity);
+            try {
+                while (!checkUnGetSlotAt(alignCursor(cursor), (LogPosition) start, batchSize))
+                    notEmpty.await();
+            } catch (InterruptedException ie) {
+                notEmpty.signal(); // propagate to non-interrupted thread
+                throw ie;
+            }
+
+            return doGet(clientIdentity, cursor, start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> get(ClientIdentity clientIdentity, Position start, int batchSize, long timeout, TimeUnit unit)
+                                                                                                                    throws InterruptedException,
+                                                                                                                    CanalStoreException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            Cursor cursor = getCursor(clientIdentity);
+            for (;;) {
+                if (checkUnGetSlotAt(alignCursor(cursor), (LogPosition) start, batchSize)) {
+                    return doGet(clientIdentity, cursor, start, batchSize);
+                }
+
+                if (nanos <= 0) {
+                    // 如果时间到了，有多少取多少
+                    return doGet(clientIdentity, cursor, start, batchSize);
+                }
+
+                try {
+                    nanos = notEmpty.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    notEmpty.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> tryGet(ClientIdentity clientIdentity, Position start, int batchSize)
+                                                                                             throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(clientIdentity, alignCursor(getCursor(clientIdentity)), start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void ack(ClientIdentity clientIdentity, Position position) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Cursor cursor = getCursor(clientIdentity);
+            doCleanUntil(cursor, position);
+            if (cursor != defaultCursor) {
+                updateCursor();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void rollback(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Cursor cursor = getCursor(clientIdentity);
+            doRollback(cursor);
+            if (cursor != defaultCursor) {
+                updateCursor();
+                signalNotEmpty();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Events<Event> doGet(ClientIdentity clientIdentity, Cursor cursor, Position start, int batchSize) {
+        Events<Event> result = doGet(cursor, start, batchSize);
+        if (cursor != defaultCursor && !result.getEvents().isEmpty()) {
+            updateCursor();
+        }
+        return result;
+    }
+
+    /**
+     * 非fanout模式下所有订阅者共享默认游标
+     */
+    private Cursor getCursor(ClientIdentity clientIdentity) {
+        if (!fanout) {
+            return defaultCursor;
+        }
+
+        Cursor cursor = cursors.get(clientIdentity);
+        if (cursor == null) {
+            throw new CanalStoreException("clientIdentity:" + clientIdentity + " not subscribe store");
+        }
+        return cursor;
+    }
+
+    /**
+     * 跳过订阅位置之前的数据，parser会从所有订阅者中最小的位置开始重新拉取，较快的订阅者需要跳过已经消费过的数据，调用时需持有lock
+     */
+    private Cursor alignCursor(Cursor cursor) {
+        LogPosition startPosition = cursor.startPosition;
+        if (startPosition == null) {
+            return cursor;
+        }
+
+        long current = cursor.ackSequence.get();
+        long maxAbleSequence = putSequence.get();
+        long next = current + 1;
+        long memsize = 0;
+        for (; next <= maxAbleSequence; next++) {
+            Event event = getEvent(next);
+            if (event == null) {
+                break;
+            }
+
+            LogPosition position = CanalEventUtils.createPosition(event);
+            if (CanalEventUtils.min(position, startPosition) != position
+                || (startPosition.getPostion().isIncluded() && CanalEventUtils.checkPosition(event, startPosition))) {
+                // 已经到达订阅位置，后续数据都需要投递
+                cursor.startPosition = null;
+                break;
+            }
+            memsize += calculateSize(event);
+        }
+
+        if (next - 1 > current) {
+            cursor.getSequence.set(next - 1);
+            cursor.ackSequence.set(next - 1);
+            cursor.getMemSize.addAndGet(memsize);
+            cursor.ackMemSize.set(cursor.getMemSize.get());
+            updateCursor();
+        }
+        return cursor;
+    }
+
+    /**
+     * 根据所有订阅者的游标，更新默认游标为最慢的位置，并清理所有订阅者都已经ack的数据，调用时需持有lock
+     */
+    private void updateCursor() {
+        Cursor minGet = null;
+        Cursor minAck = null;
+        for (Cursor cursor : cursors.values()) {
+            if (minGet == null || cursor.getSequence.get() < minGet.getSequence.get()) {
+                minGet = cursor;
+            }
+            if (minAck == null || cursor.ackSequence.get() < minAck.ackSequence.get()) {
+                minAck = cursor;
+            }
+        }
+
+        if (minAck == null) {
+            // 没有任何订阅者，保留默认游标的位置
+            return;
+        }
+
+        long sequence = ackSequence.get();
+        long next = minAck.ackSequence.get();
+        getSequence.set(minGet.getSequence.get());
+        getMemSize.set(minGet.getMemSize.get());
+        ackMemSize.set(minAck.ackMemSize.get());
+        ackSequence.set(next);
+        if (next > sequence) {
+            releaseDirectMemory(getEvent(next));
+            if (batchMode.isMemSize()) {
+                cleanEntries(sequence + 1, next);
+            }
+            signalNotFull();
+        }
+    }
+
     // =================== helper method =================
 
-    private long getMinimumGetOrAck() {
+    protected long getMinimumGetOrAck() {
         long get = getSequence.get();
         long ack = ackSequence.get();
         return ack <= get ? ack : get;
@@ -504,7 +812,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     /**
      * 查询是否有空位
      */
-    private boolean checkFreeSlotAt(final long sequence) {
+    protected boolean checkFreeSlotAt(final long sequence) {
         final long wrapPoint = sequence - bufferSize;
         final long minPoint = getMinimumGetOrAck();
         if (wrapPoint > minPoint) { // 刚好追上一轮
@@ -527,9 +835,20 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     /**
      * 检查是否存在需要get的数据,并且数量>=batchSize
      */
-    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+    protected boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+        return checkUnGetSlotAt(defaultCursor, startPosition, batchSize);
+    }
+
+    /**
+     * 检查指定订阅者是否存在需要get的数据,并且数量>=batchSize
+     */
+    protected boolean checkUnGetSlotAt(ClientIdentity clientIdentity, LogPosition startPosition, int batchSize) {
+        return checkUnGetSlotAt(getCursor(clientIdentity), startPosition, batchSize);
+    }
+
+    private boolean checkUnGetSlotAt(Cursor cursor, LogPosition startPosition, int batchSize) {
         if (batchMode.isItemSize()) {
-            long current = getSequence.get();
+            long current = cursor.getSequence.get();
             long maxAbleSequence = putSequence.get();
             long next = current;
             if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
@@ -543,7 +862,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             }
         } else {
             // 处理内存大小判断
-            long currentSize = getMemSize.get();
+            long currentSize = cursor.getMemSize.get();
             long maxAbleSize = putMemSize.get();
 
             if (maxAbleSize - currentSize >= batchSize * bufferMemUnit) {
@@ -559,6 +878,68 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         return event.getRawLength();
     }
 
+    /**
+     * 通知等待get的线程，调用时需持有lock
+     */
+    protected void signalNotEmpty() {
+        if (cursors.isEmpty()) {
+            notEmpty.signal();
+        } else {
+            // 多个订阅者都可能在等待数据
+            notEmpty.signalAll();
+        }
+    }
+
+    /**
+     * 通知等待put的线程，调用时需持有lock
+     */
+    protected void signalNotFull() {
+        notFull.signal();
+    }
+
+    /**
+     * 写入指定sequence位置的数据，子类可扩展具体的存储介质
+     */
+    protected void putEvent(long sequence, Event event) {
+        if (arena != null) {
+            arena.write(event);
+        }
+        entries[getIndex(sequence)] = event;
+    }
+
+    /**
+     * 释放所有订阅者都已经ack的direct内存
+     */
+    private void releaseDirectMemory(Event event) {
+        if (arena != null) {
+            arena.release(event);
+        }
+    }
+
+    /**
+     * 读取指定sequence位置的数据，子类可扩展具体的存储介质
+     */
+    protected Event getEvent(long sequence) {
+        return entries[getIndex(sequence)];
+    }
+
+    /**
+     * 数据是否保存在内存ringbuffer中，子类的存储介质不依赖ringbuffer时不再分配
+     */
+    protected boolean isBufferInMemory() {
+        return true;
+    }
+
+    private void cleanEntries(long from, long to) {
+        if (entries == null) {
+            return;
+        }
+
+        for (long index = from; index < to; index++) {
+            entries[getIndex(index)] = null;// 设置为null
+        }
+    }
+
     private int getIndex(long sequcnce) {
         return (int) sequcnce & indexMask;
     }
@@ -608,6 +989,25 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         PUT, GET, ACK
     }
 
+    /**
+     * 订阅者的get/ack游标
+     */
+    private static class Cursor {
+
+        private final AtomicLong     getSequence;
+        private final AtomicLong     ackSequence;
+        private final AtomicLong     getMemSize;
+        private final AtomicLong     ackMemSize;
+        private volatile LogPosition startPosition; // 订阅时的位置，对齐之后为null
+
+        public Cursor(AtomicLong getSequence, AtomicLong ackSequence, AtomicLong getMemSize, AtomicLong ackMemSize){
+            this.getSequence = getSequence;
+            this.ackSequence = ackSequence;
+            this.getMemSize = getMemSize;
+            this.ackMemSize = ackMemSize;
+        }
+    }
+
     // ================ setter / getter ==================
     public int getBufferSize() {
         return this.bufferSize;
@@ -637,10 +1037,42 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         this.raw = raw;
     }
 
+    public boolean isDirectMemory() {
+        return directMemory;
+    }
+
+    public void setDirectMemory(boolean directMemory) {
+        this.directMemory = directMemory;
+    }
+
+    public void setDirectMemorySize(long directMemorySize) {
+        this.directMemorySize = directMemorySize;
+    }
+
+    public void setDirectChunkSize(int directChunkSize) {
+        this.directChunkSize = directChunkSize;
+    }
+
+    public DirectMemoryArena getArena() {
+        return arena;
+    }
+
+    public boolean isFanout() {
+        return fanout;
+    }
+
+    public void setFanout(boolean fanout) {
+        this.fanout = fanout;
+    }
+
     public AtomicLong getPutSequence() {
         return putSequence;
     }
 
+    public AtomicLong getGetSequence() {
+        return getSequence;
+    }
+
     public AtomicLong getAckSequence() {
         return ackSequence;
     }
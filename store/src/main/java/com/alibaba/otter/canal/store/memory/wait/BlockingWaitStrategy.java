@@ -0,0 +1,56 @@
+package com.alibaba.otter.canal.store.memory.wait;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于lock/condition的阻塞等待，只有存在等待线程时才会在signal时加锁，cpu占用最低
+ *
+ * @since 1.1.3
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+
+    private final ReentrantLock lock         = new ReentrantLock();
+    private final Condition     condition    = lock.newCondition();
+    private final AtomicBoolean signalNeeded = new AtomicBoolean(false);
+
+    public boolean waitFor(WaitCondition waitCondition, long timeoutNanos) throws InterruptedException {
+        if (waitCondition.isSatisfied()) {
+            return true;
+        }
+
+        long nanos = timeoutNanos;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                signalNeeded.set(true);
+                if (waitCondition.isSatisfied()) {
+                    return true;
+                }
+
+                if (timeoutNanos < 0) {
+                    condition.await();
+                } else {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = condition.awaitNanos(nanos);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void signalAllWhenBlocking() {
+        if (signalNeeded.getAndSet(false)) {
+            lock.lock();
+            try {
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.alibaba.otter.canal.store.memory.wait;
+
+/**
+ * 纯自旋等待，延迟最低，需要独占cpu核
+ *
+ * @since 1.1.3
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    public boolean waitFor(WaitCondition condition, long timeoutNanos) throws InterruptedException {
+        long deadline = timeoutNanos < 0 ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+        while (!condition.isSatisfied()) {
+            if (timeoutNanos >= 0 && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    public void signalAllWhenBlocking() {
+    }
+}
@@ -0,0 +1,53 @@
+package com.alibaba.otter.canal.store.memory.wait;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 先自旋，再yield，最后parkNanos，兼顾延迟和cpu占用
+ *
+ * @since 1.1.3
+ */
+public class SleepingWaitStrategy implements WaitStrategy {
+
+    private static final int  DEFAULT_RETRIES = 200;
+    private static final long DEFAULT_SLEEP   = 100 * 1000L; // 100us
+
+    private final int         retries;
+    private final long        sleepTimeNs;
+
+    public SleepingWaitStrategy(){
+        this(DEFAULT_RETRIES, DEFAULT_SLEEP);
+    }
+
+    public SleepingWaitStrategy(int retries, long sleepTimeNs){
+        this.retries = retries;
+        this.sleepTimeNs = sleepTimeNs;
+    }
+
+    public boolean waitFor(WaitCondition condition, long timeoutNanos) throws InterruptedException {
+        long deadline = timeoutNanos < 0 ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+        int counter = retries;
+        while (!condition.isSatisfied()) {
+            if (timeoutNanos >= 0 && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+
+            if (counter > 100) {
+                --counter;
+            } else if (counter > 0) {
+                --counter;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(sleepTimeNs);
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    public void signalAllWhenBlocking() {
+    }
+}
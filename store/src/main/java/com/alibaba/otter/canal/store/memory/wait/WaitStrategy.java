@@ -0,0 +1,31 @@
+package com.alibaba.otter.canal.store.memory.wait;
+
+/**
+ * 无锁store中put/get的等待策略，参考disruptor的WaitStrategy
+ *
+ * @since 1.1.3
+ */
+public interface WaitStrategy {
+
+    /**
+     * 等待条件满足
+     *
+     * @param condition 等待的条件
+     * @param timeoutNanos 最长等待时间，小于0代表一直等待
+     * @return 条件是否已满足，超时返回false
+     */
+    boolean waitFor(WaitCondition condition, long timeoutNanos) throws InterruptedException;
+
+    /**
+     * 状态发生变化时唤醒阻塞等待的线程
+     */
+    void signalAllWhenBlocking();
+
+    /**
+     * 等待条件
+     */
+    public static interface WaitCondition {
+
+        boolean isSatisfied();
+    }
+}
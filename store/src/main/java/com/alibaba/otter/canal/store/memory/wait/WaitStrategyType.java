@@ -0,0 +1,31 @@
+package com.alibaba.otter.canal.store.memory.wait;
+
+/**
+ * 等待策略类型，方便通过配置选择
+ *
+ * @since 1.1.3
+ */
+public enum WaitStrategyType {
+    /** 阻塞等待 */
+    BLOCKING,
+    /** 自旋+yield+sleep */
+    SLEEPING,
+    /** 自旋+yield */
+    YIELDING,
+    /** 纯自旋 */
+    BUSYSPIN;
+
+    public WaitStrategy newInstance() {
+        switch (this) {
+            case SLEEPING:
+                return new SleepingWaitStrategy();
+            case YIELDING:
+                return new YieldingWaitStrategy();
+            case BUSYSPIN:
+                return new BusySpinWaitStrategy();
+            case BLOCKING:
+            default:
+                return new BlockingWaitStrategy();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.alibaba.otter.canal.store.memory.wait;
+
+/**
+ * 自旋一定次数后yield，低延迟但会占用cpu
+ *
+ * @since 1.1.3
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    private static final int SPIN_TRIES = 100;
+
+    public boolean waitFor(WaitCondition condition, long timeoutNanos) throws InterruptedException {
+        long deadline = timeoutNanos < 0 ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+        int counter = SPIN_TRIES;
+        while (!condition.isSatisfied()) {
+            if (timeoutNanos >= 0 && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+
+            if (counter == 0) {
+                Thread.yield();
+            } else {
+                --counter;
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    public void signalAllWhenBlocking() {
+    }
+}
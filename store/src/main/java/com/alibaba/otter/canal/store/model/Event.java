@@ -33,6 +33,9 @@ public class Event implements Serializable {
     private String            gtid;
     private long              rawLength;
     private int               rowsCount;
+    // 堆外存储模式下rawEntry写入direct内存，对象中只保留位置信息
+    private long              directOffset     = -1L;
+    private int               directLength;
 
     // ==== https://github.com/alibaba/canal/issues/1019
     private CanalEntry.Entry  entry;
@@ -164,6 +167,26 @@ public class Event implements Serializable {
         this.rowsCount = rowsCount;
     }
 
+    public long getDirectOffset() {
+        return directOffset;
+    }
+
+    public void setDirectOffset(long directOffset) {
+        this.directOffset = directOffset;
+    }
+
+    public int getDirectLength() {
+        return directLength;
+    }
+
+    public void setDirectLength(int directLength) {
+        this.directLength = directLength;
+    }
+
+    public boolean isDirect() {
+        return directLength > 0 && rawEntry == null;
+    }
+
     public CanalEntry.Entry getEntry() {
         return entry;
     }
@@ -0,0 +1,142 @@
+package com.alibaba.otter.cancel.store.file;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.cancel.store.memory.buffer.MemoryEventStoreBase;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.file.FileEventStore;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试下file store的put/get/ack/rollback
+ *
+ * @since 1.1.3
+ */
+public class FileEventStoreTest extends MemoryEventStoreBase {
+
+    private File dataDir;
+
+    @Before
+    public void setUp() {
+        dataDir = new File(System.getProperty("java.io.tmpdir"), "canal_file_store_" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(dataDir);
+    }
+
+    @Test
+    public void testFileMode() {
+        doTest(false);
+    }
+
+    @Test
+    public void testMixedMode() {
+        doTest(true);
+    }
+
+    @Test
+    public void testFileModeMemSize() {
+        // 非mixed模式不分配内存ringbuffer，MEMSIZE模式下ack同样不需要清理ringbuffer
+        FileEventStore eventStore = buildStore(false);
+        eventStore.setBatchMode(BatchMode.MEMSIZE);
+        eventStore.start();
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+        Events<Event> events = eventStore.tryGet(eventStore.getFirstPosition(), 10);
+        Assert.assertEquals(3, events.getEvents().size());
+        eventStore.ack(events.getPositionRange().getEnd());
+
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 4L)));
+        events = eventStore.tryGet(events.getPositionRange().getEnd(), 10);
+        Assert.assertEquals(1, events.getEvents().size());
+        Assert.assertEquals(4L, events.getEvents().get(0).getExecuteTime());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testFull() {
+        FileEventStore eventStore = buildStore(false);
+        eventStore.start();
+
+        int capacity = 4 * 4;
+        for (int i = 0; i < capacity; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + capacity)));
+
+        Events<Event> events = eventStore.tryGet(eventStore.getFirstPosition(), 6);
+        Assert.assertEquals(6, events.getEvents().size());
+        eventStore.ack(events.getPositionRange().getEnd());
+        // ack所在的分段依然保留，只释放了第一个分段
+        Assert.assertEquals(3, eventStore.getSegmentCount());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + capacity + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + capacity + 4)));
+        eventStore.stop();
+    }
+
+    private void doTest(boolean mixed) {
+        int count = 10;
+        FileEventStore eventStore = buildStore(mixed);
+        eventStore.start();
+
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition();
+        Position lastest = eventStore.getLatestPosition();
+        Assert.assertEquals(first, CanalEventUtils.createPosition(buildEvent("1", 1L, 1L)));
+        Assert.assertEquals(lastest, CanalEventUtils.createPosition(buildEvent("1", 1L, 1L + count - 1)));
+
+        Events<Event> entrys1 = eventStore.tryGet(first, 6);
+        Assert.assertEquals(6, entrys1.getEvents().size());
+        Assert.assertEquals(1L, entrys1.getEvents().get(0).getExecuteTime());
+        Assert.assertEquals("1", entrys1.getEvents().get(0).getJournalName());
+        Assert.assertNotNull(entrys1.getEvents().get(0).getRawEntry());
+
+        eventStore.rollback();
+        entrys1 = eventStore.tryGet(first, 6);
+        Assert.assertEquals(6, entrys1.getEvents().size());
+
+        eventStore.ack(entrys1.getPositionRange().getEnd());
+        Assert.assertEquals(2, eventStore.getSegmentCount());
+
+        Events<Event> entrys2 = eventStore.tryGet(entrys1.getPositionRange().getEnd(), count);
+        Assert.assertEquals(count - 6, entrys2.getEvents().size());
+        Assert.assertEquals(lastest, entrys2.getPositionRange().getEnd());
+        Assert.assertEquals(eventStore.getFirstPosition(), entrys2.getPositionRange().getStart());
+
+        eventStore.ack(entrys2.getPositionRange().getEnd());
+        Events<Event> entrys3 = eventStore.tryGet(entrys2.getPositionRange().getEnd(), count);
+        Assert.assertEquals(0, entrys3.getEvents().size());
+        eventStore.stop();
+    }
+
+    private FileEventStore buildStore(boolean mixed) {
+        FileEventStore eventStore = new FileEventStore(BatchMode.ITEMSIZE);
+        eventStore.setDataDirByFile(dataDir);
+        eventStore.setDestination("example");
+        eventStore.setBufferSize(4);
+        eventStore.setStoreCount(4);
+        eventStore.setRollverCount(4);
+        eventStore.setSegmentInitSize(64);
+        eventStore.setPercentThresold(100);
+        eventStore.setMixed(mixed);
+        return eventStore;
+    }
+}
@@ -0,0 +1,174 @@
+package com.alibaba.otter.cancel.store.memory.buffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.memory.LockFreeMemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.wait.WaitStrategyType;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 无锁store的多线程put/get/ack测试
+ *
+ * @since 1.1.3
+ */
+public class LockFreeMemoryEventStoreTest extends MemoryEventStoreBase {
+
+    private static final int COUNT = 100000;
+
+    @Test
+    public void testPutAndAck() throws Exception {
+        for (WaitStrategyType type : WaitStrategyType.values()) {
+            doPutAndAck(type, BatchMode.ITEMSIZE);
+            doPutAndAck(type, BatchMode.MEMSIZE);
+        }
+    }
+
+    @Test
+    public void testMultiConsumer() throws Exception {
+        final LockFreeMemoryEventStoreWithBuffer eventStore = new LockFreeMemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(256 * 1024);
+        eventStore.setWaitStrategyType(WaitStrategyType.SLEEPING);
+        eventStore.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<List<Long>> consumer1 = executor.submit(new Consumer(eventStore, false));
+        Future<List<Long>> consumer2 = executor.submit(new Consumer(eventStore, false));
+        executor.submit(new Producer(eventStore)).get();
+
+        List<Long> result = new ArrayList<Long>();
+        result.addAll(assertOrdered(consumer1.get()));
+        result.addAll(assertOrdered(consumer2.get()));
+        Collections.sort(result);
+        Assert.assertEquals(COUNT, result.size());
+        for (int i = 0; i < COUNT; i++) {
+            Assert.assertEquals(i, result.get(i).longValue());
+        }
+        executor.shutdownNow();
+        eventStore.stop();
+    }
+
+    @Test
+    public void testClientIdentity() throws Exception {
+        LockFreeMemoryEventStoreWithBuffer eventStore = new LockFreeMemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        // 非fanout模式下订阅者共享默认游标
+        ClientIdentity clientIdentity = new ClientIdentity("example", (short) 1001);
+        eventStore.subscribe(clientIdentity, null);
+        for (long offset = 0; offset < 16; offset++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", offset, 1L, 1)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 16L, 1L, 1)));
+
+        Events<Event> events = eventStore.get(clientIdentity, null, 10, 100L, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(10, events.getEvents().size());
+        eventStore.rollback(clientIdentity);
+        events = eventStore.tryGet(clientIdentity, null, 10);
+        Assert.assertEquals(0L, events.getEvents().get(0).getPosition());
+
+        eventStore.ack(clientIdentity, events.getPositionRange().getEnd());
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 16L, 1L, 1)));
+        events = eventStore.tryGet(clientIdentity, events.getPositionRange().getEnd(), 10);
+        Assert.assertEquals(7, events.getEvents().size());
+        Assert.assertEquals(10L, events.getEvents().get(0).getPosition());
+        Assert.assertEquals(16L, events.getEvents().get(6).getPosition());
+        eventStore.stop();
+    }
+
+    private void doPutAndAck(WaitStrategyType type, BatchMode batchMode) throws Exception {
+        final LockFreeMemoryEventStoreWithBuffer eventStore = new LockFreeMemoryEventStoreWithBuffer(batchMode);
+        eventStore.setBufferSize(1024);
+        eventStore.setBufferMemUnit(1);
+        eventStore.setWaitStrategyType(type);
+        eventStore.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<List<Long>> consumer = executor.submit(new Consumer(eventStore, true));
+        executor.submit(new Producer(eventStore)).get();
+
+        List<Long> result = assertOrdered(consumer.get());
+        Assert.assertEquals(COUNT, result.size());
+        executor.shutdownNow();
+        eventStore.stop();
+    }
+
+    private List<Long> assertOrdered(List<Long> result) {
+        long last = -1L;
+        for (Long offset : result) {
+            Assert.assertTrue(last < offset);
+            last = offset;
+        }
+        return result;
+    }
+
+    class Producer implements Callable<Void> {
+
+        private LockFreeMemoryEventStoreWithBuffer eventStore;
+
+        public Producer(LockFreeMemoryEventStoreWithBuffer eventStore){
+            this.eventStore = eventStore;
+        }
+
+        public Void call() throws Exception {
+            List<Event> events = new ArrayList<Event>();
+            for (long offset = 0; offset < COUNT; offset++) {
+                events.add(buildEvent("1", offset, 1L, 1));
+                if (events.size() == 10) {
+                    eventStore.put(events);
+                    events = new ArrayList<Event>();
+                }
+            }
+            eventStore.put(events);
+            return null;
+        }
+    }
+
+    class Consumer implements Callable<List<Long>> {
+
+        private LockFreeMemoryEventStoreWithBuffer eventStore;
+        private boolean                            ack;
+        private List<Long>                         result = new ArrayList<Long>();
+
+        public Consumer(LockFreeMemoryEventStoreWithBuffer eventStore, boolean ack){
+            this.eventStore = eventStore;
+            this.ack = ack;
+        }
+
+        public List<Long> call() throws Exception {
+            Position position = null;
+            int emptyCount = 0;
+            while (emptyCount < 10 && result.size() < COUNT) {
+                Events<Event> events = eventStore.get(position, 50, 100L, TimeUnit.MILLISECONDS);
+                if (events.getEvents().isEmpty()) {
+                    emptyCount++;
+                    continue;
+                }
+
+                emptyCount = 0;
+                position = events.getPositionRange().getEnd();
+                for (Event event : events.getEvents()) {
+                    result.add(event.getPosition());
+                }
+                if (ack) {
+                    eventStore.ack(position);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.alibaba.otter.cancel.store.memory.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试下direct内存模式的put/get/ack
+ *
+ * @since 1.1.3
+ */
+public class MemoryEventStoreDirectMemoryTest extends MemoryEventStoreBase {
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        int count = 10;
+        MemoryEventStoreWithBuffer eventStore = buildStore(1024 * 1024);
+        eventStore.start();
+
+        List<ByteString> rawEntrys = new ArrayList<ByteString>();
+        for (int i = 0; i < count; i++) {
+            Event event = buildEvent("1", 1L + i, 1L + i);
+            rawEntrys.add(event.getRawEntry());
+            Assert.assertTrue(eventStore.tryPut(event));
+            // 数据已经写入direct内存
+            Assert.assertTrue(event.isDirect());
+            Assert.assertNull(event.getRawEntry());
+        }
+
+        Events<Event> events = eventStore.tryGet(eventStore.getFirstPosition(), count);
+        Assert.assertEquals(count, events.getEvents().size());
+        for (int i = 0; i < count; i++) {
+            Event event = events.getEvents().get(i);
+            Assert.assertEquals(rawEntrys.get(i), event.getRawEntry());
+            Assert.assertTrue(event.getRawEntry().asReadOnlyByteBuffer().isDirect());
+            Assert.assertEquals(1L + i, Entry.parseFrom(event.getRawEntry()).getHeader().getLogfileOffset());
+        }
+
+        // rollback之后可以重复读取
+        eventStore.rollback();
+        events = eventStore.tryGet(eventStore.getFirstPosition(), count);
+        Assert.assertEquals(rawEntrys.get(0), events.getEvents().get(0).getRawEntry());
+
+        long used = eventStore.getArena().getUsedSize();
+        Assert.assertTrue(used > 0);
+        eventStore.ack(events.getPositionRange().getEnd());
+        Assert.assertEquals(0, eventStore.getArena().getUsedSize());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testFallbackToHeap() {
+        Event first = buildEvent("1", 1L, 1L);
+        int size = first.getRawEntry().size();
+        // 只能容纳两条数据
+        MemoryEventStoreWithBuffer eventStore = buildStore(size * 2);
+        eventStore.setDirectChunkSize(size * 2);
+        eventStore.start();
+
+        Assert.assertTrue(eventStore.tryPut(first));
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 2L, 2L)));
+        Event third = buildEvent("1", 3L, 3L);
+        Assert.assertTrue(eventStore.tryPut(third));
+        Assert.assertFalse(third.isDirect());
+        Assert.assertNotNull(third.getRawEntry());
+
+        Events<Event> events = eventStore.tryGet(eventStore.getFirstPosition(), 2);
+        eventStore.ack(events.getPositionRange().getEnd());
+        Event fourth = buildEvent("1", 4L, 4L);
+        Assert.assertTrue(eventStore.tryPut(fourth));
+        Assert.assertTrue(fourth.isDirect());
+
+        events = eventStore.tryGet(events.getPositionRange().getEnd(), 2);
+        Assert.assertEquals(2, events.getEvents().size());
+        Assert.assertEquals(third.getRawEntry(), events.getEvents().get(0).getRawEntry());
+        Assert.assertEquals(4L, events.getEvents().get(1).getPosition());
+        eventStore.stop();
+    }
+
+    private MemoryEventStoreWithBuffer buildStore(long directMemorySize) {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(16);
+        eventStore.setDirectMemory(true);
+        eventStore.setDirectMemorySize(directMemorySize);
+        return eventStore;
+    }
+}
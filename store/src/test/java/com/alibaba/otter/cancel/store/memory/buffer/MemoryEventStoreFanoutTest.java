@@ -0,0 +1,131 @@
+package com.alibaba.otter.cancel.store.memory.buffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试下多订阅者独立游标的get/ack/rollback
+ *
+ * @since 1.1.3
+ */
+public class MemoryEventStoreFanoutTest extends MemoryEventStoreBase {
+
+    private static final String DESTINATION = "example";
+    private ClientIdentity      client1     = new ClientIdentity(DESTINATION, (short) 1001);
+    private ClientIdentity      client2     = new ClientIdentity(DESTINATION, (short) 1002);
+
+    @Test
+    public void testSlowestAck() {
+        int bufferSize = 16;
+        MemoryEventStoreWithBuffer eventStore = buildStore(bufferSize);
+        eventStore.subscribe(client1, null);
+        eventStore.subscribe(client2, null);
+
+        for (int i = 0; i < bufferSize; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + i, 1L + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L + bufferSize, 1L + bufferSize)));
+
+        // client1全部消费完，client2还未消费，依然不能写入
+        Events<Event> events1 = eventStore.tryGet(client1, null, bufferSize);
+        Assert.assertEquals(bufferSize, events1.getEvents().size());
+        eventStore.ack(client1, events1.getPositionRange().getEnd());
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L + bufferSize, 1L + bufferSize)));
+
+        // client2消费一半，释放一半空间
+        Events<Event> events2 = eventStore.tryGet(client2, null, bufferSize / 2);
+        Assert.assertEquals(bufferSize / 2, events2.getEvents().size());
+        Assert.assertEquals(1L, events2.getEvents().get(0).getPosition());
+        eventStore.ack(client2, events2.getPositionRange().getEnd());
+        for (int i = 0; i < bufferSize / 2; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + bufferSize + i, 1L + bufferSize + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L + bufferSize * 2, 1L + bufferSize * 2)));
+
+        // 各自的游标互不影响
+        events1 = eventStore.tryGet(client1, events1.getPositionRange().getEnd(), bufferSize);
+        Assert.assertEquals(bufferSize / 2, events1.getEvents().size());
+        Assert.assertEquals(1L + bufferSize, events1.getEvents().get(0).getPosition());
+
+        Events<Event> rollbackEvents = eventStore.tryGet(client2, events2.getPositionRange().getEnd(), 4);
+        Assert.assertEquals(1L + bufferSize / 2, rollbackEvents.getEvents().get(0).getPosition());
+        eventStore.rollback(client2);
+        events2 = eventStore.tryGet(client2, events2.getPositionRange().getEnd(), 4);
+        Assert.assertEquals(rollbackEvents.getPositionRange(), events2.getPositionRange());
+
+        // 取消订阅最慢的client之后，只需要等待client1的ack
+        eventStore.unsubscribe(client2);
+        eventStore.ack(client1, events1.getPositionRange().getEnd());
+        for (int i = 0; i < bufferSize; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + bufferSize * 2 + i, 1L + bufferSize * 2 + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L + bufferSize * 3, 1L + bufferSize * 3)));
+        eventStore.stop();
+    }
+
+    @Test
+    public void testSubscribePosition() {
+        int count = 10;
+        MemoryEventStoreWithBuffer eventStore = buildStore(16);
+        // client2已经消费到第5条，parser从最慢的client1位置开始重新拉取
+        Position position = CanalEventUtils.createPosition(buildEvent("1", 5L, 5L));
+        eventStore.subscribe(client1, null);
+        eventStore.subscribe(client2, position);
+
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + i, 1L + i)));
+        }
+
+        Events<Event> events1 = eventStore.tryGet(client1, null, count);
+        Assert.assertEquals(count, events1.getEvents().size());
+        Assert.assertEquals(1L, events1.getEvents().get(0).getPosition());
+
+        Events<Event> events2 = eventStore.tryGet(client2, position, count);
+        Assert.assertEquals(count - 5, events2.getEvents().size());
+        Assert.assertEquals(6L, events2.getEvents().get(0).getPosition());
+
+        // 慢的client决定了store的ack位置
+        eventStore.ack(client2, events2.getPositionRange().getEnd());
+        Assert.assertEquals(CanalEventUtils.createPosition(buildEvent("1", 1L, 1L), false),
+            eventStore.getFirstPosition());
+        eventStore.ack(client1, events1.getPositionRange().getEnd());
+        Assert.assertEquals(count - 1, eventStore.getAckSequence().get());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testWithoutFanout() {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(16);
+        eventStore.start();
+        eventStore.subscribe(client1, null);
+        eventStore.subscribe(client2, null);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + i, 1L + i)));
+        }
+
+        // 非fanout模式下所有订阅者共享一个游标
+        Events<Event> events1 = eventStore.tryGet(client1, null, 5);
+        Assert.assertEquals(5, events1.getEvents().size());
+        Events<Event> events2 = eventStore.tryGet(client2, events1.getPositionRange().getEnd(), 5);
+        Assert.assertEquals(6L, events2.getEvents().get(0).getPosition());
+        eventStore.stop();
+    }
+
+    private MemoryEventStoreWithBuffer buildStore(int bufferSize) {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer(BatchMode.ITEMSIZE);
+        eventStore.setBufferSize(bufferSize);
+        eventStore.setFanout(true);
+        eventStore.start();
+        return eventStore;
+    }
+}